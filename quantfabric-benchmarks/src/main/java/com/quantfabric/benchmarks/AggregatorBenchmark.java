@@ -0,0 +1,215 @@
+/*
+ * Copyright 2022-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.quantfabric.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.quantfabric.algo.market.datamodel.MDEvent;
+import com.quantfabric.algo.market.dataprovider.orderbook.OrderBookInfo;
+import com.quantfabric.algo.market.dataprovider.orderbook.OrderBookInfo.OrderBookTypes;
+import com.quantfabric.algo.market.dataprovider.orderbook.OrderBookSnapshot;
+import com.quantfabric.algo.market.dataprovider.orderbook.processor.OrderBookProcessor;
+import com.quantfabric.algo.market.dataprovider.orderbook.processor.OrderBookSnapshotListener;
+import com.quantfabric.algo.market.dataprovider.orderbook.processor.OrderBookSnapshotListener.OrderBookSnapshotListenerException;
+import com.quantfabric.algo.market.dataprovider.orderbook.storage.BaseOrderBookCache;
+import com.quantfabric.algo.market.gateway.feed.MarketDataFeed.OrderBookCacheType;
+import com.quantfabric.algo.market.provider.aggregator.BaseMarketViewAggregator;
+import com.quantfabric.algo.market.provider.aggregator.MarketViewAggregator;
+import com.quantfabric.algo.market.provider.aggregator.MarketViewAggregatorListener;
+import com.quantfabric.algo.market.provider.aggregator.OHLCAggregator;
+import com.quantfabric.algo.market.provider.aggregator.TopMDQuoteAggregator;
+import com.quantfabric.algo.market.provider.aggregator.VWAPAggregator;
+
+/**
+ * Market view aggregators fed with order book snapshots recorded from the synthetic feed,
+ * so only the aggregation and the publishing to a subscriber are measured.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AggregatorBenchmark
+{
+	public enum AggregatorType
+	{
+		TOP_QUOTE, VWAP, OHLC
+	}
+
+	@Param({ "TOP_QUOTE", "VWAP", "OHLC" })
+	public AggregatorType aggregatorType;
+
+	@Param({ "10", "50" })
+	public int depth;
+
+	private BaseMarketViewAggregator aggregator;
+	private MarketViewAggregatorListener listener;
+	private RecordedUpdate[] updates;
+	private int cursor;
+
+	private static class RecordedUpdate
+	{
+		private final OrderBookInfo orderBookInfo;
+		private final OrderBookSnapshot snapshot;
+		private final long updateId;
+
+		RecordedUpdate(OrderBookInfo orderBookInfo, OrderBookSnapshot snapshot, long updateId)
+		{
+			this.orderBookInfo = orderBookInfo;
+			this.snapshot = snapshot;
+			this.updateId = updateId;
+		}
+	}
+
+	private static class SnapshotRecorder implements OrderBookSnapshotListener
+	{
+		private final List<RecordedUpdate> updates;
+		private OrderBookSnapshot lastSnapshot;
+
+		SnapshotRecorder(List<RecordedUpdate> updates)
+		{
+			this.updates = updates;
+		}
+
+		@Override
+		public String getName()
+		{
+			return "recorder";
+		}
+
+		@Override
+		public void onNewSnapshot(OrderBookSnapshot orderBookSnapshot)
+		{
+			lastSnapshot = orderBookSnapshot;
+		}
+
+		@Override
+		public void onEndUpdate(OrderBookInfo orderBookInfo, long updateId, boolean isBookModified)
+		{
+			if (isBookModified)
+				updates.add(new RecordedUpdate(orderBookInfo, lastSnapshot, updateId));
+		}
+
+		@Override
+		public void onNoUpdate(long snapshotId)
+		{
+		}
+	}
+
+	private static BaseMarketViewAggregator createAggregator(AggregatorType aggregatorType)
+	{
+		Properties properties = new Properties();
+
+		switch (aggregatorType)
+		{
+			case VWAP:
+				return new VWAPAggregator("vwap", properties);
+			case OHLC:
+				properties.setProperty("timeFrame", "1 min");
+				return new OHLCAggregator("ohlc", properties);
+			default:
+				return new TopMDQuoteAggregator("top", properties);
+		}
+	}
+
+	@Setup(Level.Trial)
+	public void setUp()
+	{
+		SyntheticL2Feed feed = new SyntheticL2Feed("BENCH", "BTCUSDT", depth, 4, 42);
+		List<RecordedUpdate> recorded = new ArrayList<RecordedUpdate>();
+		SnapshotRecorder recorder = new SnapshotRecorder(recorded);
+
+		BaseOrderBookCache bidCache = OrderBookCacheBenchmark.createCache(
+				OrderBookCacheType.SIMPLE, OrderBookTypes.BID_BOOK, feed.getFeedName());
+		BaseOrderBookCache offerCache = OrderBookCacheBenchmark.createCache(
+				OrderBookCacheType.SIMPLE, OrderBookTypes.OFFER_BOOK, feed.getFeedName());
+		bidCache.addOrderBookSnapshotListener(recorder);
+		offerCache.addOrderBookSnapshotListener(recorder);
+
+		OrderBookProcessor bidProcessor = new OrderBookProcessor(null, bidCache);
+		OrderBookProcessor offerProcessor = new OrderBookProcessor(null, offerCache);
+
+		for (MDEvent event : feed.snapshot())
+		{
+			bidProcessor.sendUpdate(event);
+			offerProcessor.sendUpdate(event);
+		}
+		for (MDEvent event : feed.messages(OrderBookCacheBenchmark.MESSAGES))
+		{
+			bidProcessor.sendUpdate(event);
+			offerProcessor.sendUpdate(event);
+		}
+
+		updates = recorded.toArray(new RecordedUpdate[0]);
+		aggregator = createAggregator(aggregatorType);
+	}
+
+	@Setup(Level.Iteration)
+	public void subscribe(final Blackhole blackhole)
+	{
+		listener = new MarketViewAggregatorListener()
+		{
+			@Override
+			public void update(MarketViewAggregator source, Object event, boolean forceProcessing)
+			{
+				blackhole.consume(event);
+			}
+
+			@Override
+			public void update(MarketViewAggregator source, Object[] events, boolean forceProcessing)
+			{
+				blackhole.consume(events);
+			}
+		};
+		aggregator.subscribe(listener);
+	}
+
+	@TearDown(Level.Iteration)
+	public void unSubscribe()
+	{
+		aggregator.unSubscribe(listener);
+	}
+
+	@Benchmark
+	public void onUpdate() throws OrderBookSnapshotListenerException
+	{
+		RecordedUpdate update = updates[cursor];
+		if (++cursor == updates.length)
+			cursor = 0;
+
+		aggregator.onNewSnapshot(update.snapshot);
+		aggregator.onEndUpdate(update.orderBookInfo, update.updateId, true);
+	}
+}
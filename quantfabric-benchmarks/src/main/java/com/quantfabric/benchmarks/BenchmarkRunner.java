@@ -0,0 +1,52 @@
+/*
+ * Copyright 2022-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.quantfabric.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the market data benchmarks with the allocation profiler attached.
+ * <p>
+ * The module is built with the <code>benchmarks</code> profile only
+ * (<code>mvn -P benchmarks package</code>).
+ * <p>
+ * Usage: <code>java -jar target/benchmarks.jar [include regex] [result file]</code>,
+ * by default every benchmark is run and results are written to <code>jmh-result.json</code>.
+ * The shaded jar also accepts the regular JMH command line through
+ * <code>java -cp target/benchmarks.jar org.openjdk.jmh.Main</code>.
+ */
+public class BenchmarkRunner
+{
+	public static void main(String[] args) throws RunnerException
+	{
+		String include = args.length > 0 ? args[0] : ".*";
+		String resultFile = args.length > 1 ? args[1] : "jmh-result.json";
+
+		Options options = new OptionsBuilder()
+				.include(BenchmarkRunner.class.getPackage().getName() + "\\." + include)
+				.addProfiler(GCProfiler.class)
+				.resultFormat(ResultFormatType.JSON)
+				.result(resultFile)
+				.build();
+
+		new Runner(options).run();
+	}
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2022-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.quantfabric.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.quantfabric.algo.market.datamodel.MDDelete;
+import com.quantfabric.algo.market.datamodel.MDEvent;
+import com.quantfabric.algo.market.datamodel.MDItem;
+import com.quantfabric.algo.market.datamodel.MDItem.MDItemType;
+import com.quantfabric.algo.market.datamodel.MDPrice;
+import com.quantfabric.algo.market.dataprovider.FeedNameImpl;
+import com.quantfabric.algo.market.dataprovider.orderbook.OrderBookInfo.OrderBookTypes;
+import com.quantfabric.algo.market.dataprovider.orderbook.OrderBookView;
+import com.quantfabric.algo.market.dataprovider.orderbook.storage.BaseOrderBookCache;
+import com.quantfabric.algo.market.dataprovider.orderbook.storage.OrderBookStorageWriter.OrderBookStorageWriterException;
+import com.quantfabric.algo.market.dataprovider.orderbook.storage.SimpleOrderBookCache;
+import com.quantfabric.algo.market.dataprovider.orderbook.storage.SortedOrderBookCache;
+import com.quantfabric.algo.market.gateway.feed.MarketDataFeed.OrderBookCacheType;
+
+/**
+ * Bid book cache updates, level reads and snapshot commits at different book depths.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OrderBookCacheBenchmark
+{
+	static final int MESSAGES = 1 << 14;
+
+	@Param({ "SIMPLE", "SORTED" })
+	public OrderBookCacheType cacheType;
+
+	@Param({ "10", "50", "200" })
+	public int depth;
+
+	private BaseOrderBookCache cache;
+	private OrderBookView view;
+	private MDItem[] updates;
+	private int cursor;
+	private long snapshotId;
+
+	static BaseOrderBookCache createCache(OrderBookCacheType cacheType, OrderBookTypes bookType, String feedName)
+	{
+		return cacheType == OrderBookCacheType.SORTED
+				? new SortedOrderBookCache(bookType, new FeedNameImpl(feedName))
+				: new SimpleOrderBookCache(bookType, new FeedNameImpl(feedName));
+	}
+
+	static void apply(BaseOrderBookCache cache, MDItem item)
+	{
+		if (item instanceof MDPrice)
+			cache.addPrice((MDPrice) item);
+		else if (item instanceof MDDelete)
+			cache.deletePrice((MDDelete) item);
+	}
+
+	private static List<MDItem> bidItems(List<MDEvent> events)
+	{
+		List<MDItem> items = new ArrayList<MDItem>();
+		for (MDEvent event : events)
+			if (event instanceof MDItem && ((MDItem) event).getMdItemType() == MDItemType.BID)
+				items.add((MDItem) event);
+		return items;
+	}
+
+	@Setup(Level.Trial)
+	public void setUp()
+	{
+		SyntheticL2Feed feed = new SyntheticL2Feed("BENCH", "BTCUSDT", depth, 4, 42);
+		List<MDItem> snapshot = bidItems(feed.snapshot());
+		updates = bidItems(feed.messages(MESSAGES)).toArray(new MDItem[0]);
+
+		cache = createCache(cacheType, OrderBookTypes.BID_BOOK, feed.getFeedName());
+		view = (OrderBookView) cache;
+
+		for (MDItem item : snapshot)
+			apply(cache, item);
+	}
+
+	private MDItem next()
+	{
+		MDItem item = updates[cursor];
+		if (++cursor == updates.length)
+			cursor = 0;
+		return item;
+	}
+
+	@Benchmark
+	public OrderBookView applyUpdate()
+	{
+		apply(cache, next());
+		return view;
+	}
+
+	@Benchmark
+	public List<MDPrice> getAllLevels()
+	{
+		return view.getAllLevels();
+	}
+
+	@Benchmark
+	public Object applyUpdateAndCommit() throws OrderBookStorageWriterException
+	{
+		MDItem item = next();
+		apply(cache, item);
+		cache.commit(++snapshotId, item.getSourceTimestamp());
+		return cache.getOrderBookSnapshot();
+	}
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2022-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.quantfabric.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.quantfabric.algo.market.datamodel.MDEvent;
+import com.quantfabric.algo.market.dataprovider.orderbook.OrderBookInfo.OrderBookTypes;
+import com.quantfabric.algo.market.dataprovider.orderbook.processor.OrderBookProcessor;
+import com.quantfabric.algo.market.dataprovider.orderbook.storage.BaseOrderBookCache;
+import com.quantfabric.algo.market.gateway.feed.MarketDataFeed.OrderBookCacheType;
+
+/**
+ * Feed events handed to the bid and offer {@link OrderBookProcessor}s the way a market
+ * adapter publishes them: every processor sees every event of the feed and commits its
+ * book on the message's end update.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class OrderBookProcessorBenchmark
+{
+	@Param({ "SIMPLE", "SORTED" })
+	public OrderBookCacheType cacheType;
+
+	@Param({ "10", "50", "200" })
+	public int depth;
+
+	@Param({ "1", "8" })
+	public int itemsPerMessage;
+
+	private OrderBookProcessor bidProcessor;
+	private OrderBookProcessor offerProcessor;
+	private MDEvent[] events;
+	private int cursor;
+
+	@Setup(Level.Trial)
+	public void setUp()
+	{
+		SyntheticL2Feed feed = new SyntheticL2Feed("BENCH", "BTCUSDT", depth, itemsPerMessage, 42);
+		List<MDEvent> snapshot = feed.snapshot();
+		events = feed.messages(OrderBookCacheBenchmark.MESSAGES).toArray(new MDEvent[0]);
+
+		BaseOrderBookCache bidCache = 
+				OrderBookCacheBenchmark.createCache(cacheType, OrderBookTypes.BID_BOOK, feed.getFeedName());
+		BaseOrderBookCache offerCache = 
+				OrderBookCacheBenchmark.createCache(cacheType, OrderBookTypes.OFFER_BOOK, feed.getFeedName());
+
+		// processors are driven directly, no market feeder is needed
+		bidProcessor = new OrderBookProcessor(null, bidCache);
+		offerProcessor = new OrderBookProcessor(null, offerCache);
+
+		for (MDEvent event : snapshot)
+		{
+			bidProcessor.sendUpdate(event);
+			offerProcessor.sendUpdate(event);
+		}
+	}
+
+	@Benchmark
+	public void handleEvent()
+	{
+		MDEvent event = events[cursor];
+		if (++cursor == events.length)
+			cursor = 0;
+
+		bidProcessor.sendUpdate(event);
+		offerProcessor.sendUpdate(event);
+	}
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2022-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.quantfabric.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.quantfabric.algo.market.datamodel.MDEvent;
+import com.quantfabric.messaging.NativeSubscriberBuffer;
+import com.quantfabric.messaging.Subscriber;
+import com.quantfabric.messaging.SubscriberBufferPool;
+import com.quantfabric.messaging.SubscriberBufferSettings;
+import com.quantfabric.messaging.SubscriberBufferSettings.WaitStrategy;
+
+/**
+ * Handoff of feed events through a {@link NativeSubscriberBuffer} to its consumer thread.
+ * Every invocation publishes a batch and waits until the consumer has seen all of it,
+ * so the score is the per event cost of the producer to consumer round trip.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SubscriberBufferBenchmark
+{
+	private static final int BATCH = 256;
+
+	@Param({ "BUSY_SPIN", "YIELDING", "BLOCKING" })
+	public WaitStrategy waitStrategy;
+
+	@Param({ "false", "true" })
+	public boolean multiProducer;
+
+	@Param({ "1024" })
+	public int capacity;
+
+	private final AtomicLong consumed = new AtomicLong();
+	private SubscriberBufferPool pool;
+	private NativeSubscriberBuffer buffer;
+	private MDEvent[] events;
+	private int cursor;
+	private long published;
+
+	@Setup(Level.Trial)
+	public void setUp()
+	{
+		events = new SyntheticL2Feed("BENCH", "BTCUSDT", 50, 4, 42)
+				.messages(OrderBookCacheBenchmark.MESSAGES).toArray(new MDEvent[0]);
+
+		SubscriberBufferSettings settings = new SubscriberBufferSettings(capacity, waitStrategy);
+		settings.setMultiProducer(multiProducer);
+
+		pool = new SubscriberBufferPool("benchmark", SubscriberBufferPool.UNBOUNDED);
+		buffer = new NativeSubscriberBuffer("benchmark", new Subscriber<Object>()
+		{
+			@Override
+			public void sendUpdate(Object data)
+			{
+				consumed.lazySet(consumed.get() + 1);
+			}
+
+			@Override
+			public void sendUpdate(Object[] data)
+			{
+				consumed.lazySet(consumed.get() + data.length);
+			}
+		}, settings, pool);
+		buffer.start();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown()
+	{
+		buffer.dispose();
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(BATCH)
+	public long handoff()
+	{
+		for (int i = 0; i < BATCH; i++)
+		{
+			buffer.sendUpdate(events[cursor]);
+			if (++cursor == events.length)
+				cursor = 0;
+		}
+		published += BATCH;
+
+		while (consumed.get() < published)
+			Thread.onSpinWait();
+
+		return published;
+	}
+}
@@ -0,0 +1,241 @@
+/*
+ * Copyright 2022-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.quantfabric.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import com.quantfabric.algo.market.datamodel.EndUpdate;
+import com.quantfabric.algo.market.datamodel.MDDelete;
+import com.quantfabric.algo.market.datamodel.MDEvent;
+import com.quantfabric.algo.market.datamodel.MDItem;
+import com.quantfabric.algo.market.datamodel.MDItem.MDItemType;
+import com.quantfabric.algo.market.datamodel.MDMessageInfo.MDMessageType;
+import com.quantfabric.algo.market.datamodel.MDPrice;
+import com.quantfabric.algo.market.datamodel.MDPrice.PriceType;
+import com.quantfabric.algo.market.datamodel.MDTrade;
+import com.quantfabric.algo.market.datamodel.MDTrade.MDTradeSide;
+
+/**
+ * Deterministic generator of an L2 incremental feed: an initial book of the given
+ * depth on both sides followed by messages of price updates closed by {@link EndUpdate}.
+ * <p>
+ * Most updates change the size of a level close to the top, the rest remove a level and
+ * open another one within the depth, the mid price drifts by a tick now and then and
+ * a trade is printed on every tenth message. Events are generated up front so the
+ * benchmarks measure consumers only.
+ */
+public class SyntheticL2Feed
+{
+	public static final String SOURCE_NAME = "synthetic";
+	public static final long INITIAL_MID = 1_000_000L;
+	public static final int POINTS_IN_ONE = 100;
+
+	private final String feedName;
+	private final String symbol;
+	private final int depth;
+	private final int itemsPerMessage;
+	private final Random random;
+
+	private final TreeSet<Long> bids = new TreeSet<Long>();
+	private final TreeSet<Long> offers = new TreeSet<Long>();
+
+	private long mid = INITIAL_MID;
+	private long messageId = 0;
+	private long sourceTimestamp = 1_600_000_000_000L;
+
+	public SyntheticL2Feed(String feedName, String symbol, int depth, int itemsPerMessage, long seed)
+	{
+		this.feedName = feedName;
+		this.symbol = symbol;
+		this.depth = depth;
+		this.itemsPerMessage = itemsPerMessage;
+		this.random = new Random(seed);
+	}
+
+	public String getFeedName()
+	{
+		return feedName;
+	}
+
+	public int getDepth()
+	{
+		return depth;
+	}
+
+	/**
+	 * @return the initial book, bid levels followed by offer levels and an {@link EndUpdate}
+	 */
+	public List<MDEvent> snapshot()
+	{
+		List<MDEvent> events = new ArrayList<MDEvent>(depth * 2 + 1);
+		long id = ++messageId;
+
+		for (int i = 0; i < depth; i++)
+		{
+			bids.add(mid - 1 - i);
+			events.add(price(id, MDMessageType.SNAPSHOT, MDItemType.BID, mid - 1 - i, events.size(), depth * 2));
+		}
+		for (int i = 0; i < depth; i++)
+		{
+			offers.add(mid + 1 + i);
+			events.add(price(id, MDMessageType.SNAPSHOT, MDItemType.OFFER, mid + 1 + i, events.size(), depth * 2));
+		}
+
+		events.add(endUpdate(id));
+		return events;
+	}
+
+	/**
+	 * @return the given number of messages, each of them closed by an {@link EndUpdate}
+	 */
+	public List<MDEvent> messages(int count)
+	{
+		List<MDEvent> events = new ArrayList<MDEvent>(count * (itemsPerMessage + 1));
+
+		for (int m = 0; m < count; m++)
+		{
+			long id = ++messageId;
+			sourceTimestamp += 1 + random.nextInt(5);
+
+			if (random.nextInt(50) == 0)
+				driftMid(id, events);
+
+			for (int i = 0; i < itemsPerMessage; i++)
+			{
+				MDItemType side = random.nextBoolean() ? MDItemType.BID : MDItemType.OFFER;
+				TreeSet<Long> levels = side == MDItemType.BID ? bids : offers;
+
+				if (levels.isEmpty())
+					openBestLevel(id, side, levels, events);
+				else if (random.nextInt(5) == 0)
+					replaceLevel(id, side, levels, events);
+				else
+					events.add(price(id, MDMessageType.INCREMENTAL_REFRESH, side,
+							pickLevel(side, levels), i, itemsPerMessage));
+			}
+
+			if (m % 10 == 9)
+				events.add(trade(id));
+
+			events.add(endUpdate(id));
+		}
+		return events;
+	}
+
+	/**
+	 * Level index biased to the top of the book.
+	 */
+	private long pickLevel(MDItemType side, TreeSet<Long> levels)
+	{
+		int index = Math.min((int) Math.abs(random.nextGaussian() * depth / 4), levels.size() - 1);
+		Long level = side == MDItemType.BID ? levels.descendingSet().first() : levels.first();
+
+		for (Long price : side == MDItemType.BID ? levels.descendingSet() : levels)
+			if (index-- == 0)
+			{
+				level = price;
+				break;
+			}
+		return level;
+	}
+
+	private void replaceLevel(long id, MDItemType side, TreeSet<Long> levels, List<MDEvent> events)
+	{
+		long removed = pickLevel(side, levels);
+		levels.remove(removed);
+		events.add(delete(id, side, removed));
+
+		long best = side == MDItemType.BID ? mid - 1 : mid + 1;
+		long step = side == MDItemType.BID ? -1 : 1;
+
+		for (int attempt = 0; attempt < depth * 2; attempt++)
+		{
+			long candidate = best + step * random.nextInt(depth * 2);
+			if (levels.add(candidate))
+			{
+				events.add(price(id, MDMessageType.INCREMENTAL_REFRESH, side, candidate, 0, itemsPerMessage));
+				return;
+			}
+		}
+	}
+
+	private void openBestLevel(long id, MDItemType side, TreeSet<Long> levels, List<MDEvent> events)
+	{
+		long best = side == MDItemType.BID ? mid - 1 : mid + 1;
+		levels.add(best);
+		events.add(price(id, MDMessageType.INCREMENTAL_REFRESH, side, best, 0, itemsPerMessage));
+	}
+
+	private void driftMid(long id, List<MDEvent> events)
+	{
+		long move = random.nextBoolean() ? 1 : -1;
+		mid += move;
+
+		// the best level of the side the mid moved towards is crossed now
+		TreeSet<Long> crossedSide = move > 0 ? offers : bids;
+
+		if (crossedSide.remove(mid))
+			events.add(delete(id, move > 0 ? MDItemType.OFFER : MDItemType.BID, mid));
+	}
+
+	private MDPrice price(long id, MDMessageType messageType, MDItemType side, long price, int index, int count)
+	{
+		MDPrice mdPrice = new MDPrice(id, messageType, SOURCE_NAME, sourceTimestamp, count, index,
+				side, itemId(side, price), symbol, 0, price, 1 + random.nextInt(100),
+				side == MDItemType.BID ? PriceType.BID : PriceType.OFFER, false);
+		return withFeed(mdPrice);
+	}
+
+	private MDDelete delete(long id, MDItemType side, long price)
+	{
+		return withFeed(new MDDelete(id, SOURCE_NAME, sourceTimestamp, itemsPerMessage, 0,
+				side, itemId(side, price), symbol, 0));
+	}
+
+	private MDTrade trade(long id)
+	{
+		MDTrade mdTrade = new MDTrade();
+		mdTrade.setMessageId(id);
+		mdTrade.setMessageType(MDMessageType.INCREMENTAL_REFRESH);
+		mdTrade.setSourceName(SOURCE_NAME);
+		mdTrade.setSourceTimestamp(sourceTimestamp);
+		mdTrade.setMdItemType(MDItemType.TRADE);
+		mdTrade.setSymbol(symbol);
+		mdTrade.setPrice(mid);
+		mdTrade.setTradeSide(random.nextBoolean() ? MDTradeSide.BUY : MDTradeSide.SELL);
+		return withFeed(mdTrade);
+	}
+
+	private EndUpdate endUpdate(long id)
+	{
+		return new EndUpdate(id, MDMessageType.INCREMENTAL_REFRESH, SOURCE_NAME, sourceTimestamp, itemsPerMessage);
+	}
+
+	private <T extends MDItem> T withFeed(T item)
+	{
+		item.setFeedName(feedName);
+		item.setPointsInOne(POINTS_IN_ONE);
+		return item;
+	}
+
+	private static String itemId(MDItemType side, long price)
+	{
+		return (side == MDItemType.BID ? "B" : "O") + price;
+	}
+}
@@ -26,6 +26,7 @@ import com.quantfabric.algo.market.datamodel.MDPrice.PriceType;
 import com.quantfabric.algo.market.gateway.feed.MarketDataFeed;
 import com.quantfabric.algo.order.TradeOrder;
 import com.quantfabric.algo.order.TradeOrder.OrderType;
+import com.quantfabric.util.latency.LatencyStage;
 
 import org.knowm.xchange.dto.marketdata.Trade;
 import org.knowm.xchange.dto.marketdata.Trades;
@@ -52,9 +53,11 @@ public class BinanceXChangeAdapter extends XChangeMarketAdapter {
 
 		getLogger().debug(getSourceName() + "[" + currency + "] Trades size = " + trades.getTrades().size());
 		setSourceTimestamp(System.currentTimeMillis());
+		long receivedNanos = LatencyStage.start();
 
 		synchronized (this) {
 			for (MDEvent event : collectEvents(trades, currency)) {
+				event.setReceivedNanos(receivedNanos);
 				try {
 					publish(event);
 				} catch (PublisherException e) {
@@ -71,9 +74,11 @@ public class BinanceXChangeAdapter extends XChangeMarketAdapter {
 		getLogger().debug(getSourceName() + "[" + currency + "] OfferBook size = "  + orderBook.getAsks().size());
 
 		setSourceTimestamp(System.currentTimeMillis());
+		long receivedNanos = LatencyStage.start();
 
 		synchronized (this) {
 			for (MDEvent event : collectEvents(orderBook, currency)) {
+				event.setReceivedNanos(receivedNanos);
 				try {
 					publish(event);
 				} catch (PublisherException e) {
@@ -154,6 +154,7 @@ public class BinanceStreamingMarketDataService extends BinanceMarketDataServiceR
 
     private MDTrade fromRaw(BinanceRawTrade rawTrade, MarketDataFeed feed) { //,Feed feed)
         MDTrade mdTrade = new MDTrade();
+        mdTrade.stampReceived();
         mdTrade.setMdItemId(new Date().toString());
         mdTrade.setMdItemType(rawTrade.isBuyerMarketMaker() ? MDItem.MDItemType.BID : MDItem.MDItemType.ASK);
         mdTrade.setSourceTimestamp(rawTrade.getTimestamp());
@@ -176,7 +177,7 @@ public class BinanceStreamingMarketDataService extends BinanceMarketDataServiceR
 
     private MDTopOfBook fromRaw(BinanceBookTicker ticker, MarketDataFeed feed) {
         Instrument instrument = adapter.getInstrumentProvider().getInstrumentBySymbol(ticker.getSymbol());
-        return new MDTopOfBook(
+        MDTopOfBook topOfBook = new MDTopOfBook(
                 new Date().getTime(), ticker.updateId, MDMessageInfo.MDMessageType.SNAPSHOT, ticker.getSymbol(),
                 (ticker.toTicker().getTimestamp() != null ? ticker.toTicker().getTimestamp() : new Date()),
                 (ticker.getAskQty().intValue() + ticker.getBidQty().intValue()),
@@ -186,6 +187,8 @@ public class BinanceStreamingMarketDataService extends BinanceMarketDataServiceR
                 ticker.getBidQty().doubleValue(), instrument.castToLong(ticker.getAskPrice()),
                 ticker.getAskQty().doubleValue()
         );
+        topOfBook.stampReceived();
+        return topOfBook;
 
     }
 }
@@ -22,8 +22,8 @@ import com.quantfabric.algo.market.gateway.feed.Feed;
 import com.quantfabric.algo.market.gateway.feed.MarketDataFeed;
 import com.quantfabric.algo.order.TradeOrder;
 import com.quantfabric.algo.order.report.OrderExecutionReport;
+import com.quantfabric.market.connector.xchange.OrderBookDiffer;
 import com.quantfabric.market.connector.xchange.XChangeMarketAdapter;
-import com.quantfabric.messaging.Publisher;
 import com.quantfabric.util.UnsupportedMDTypeForExchange;
 import info.bitrich.xchangestream.core.ProductSubscription;
 import org.knowm.xchange.currency.CurrencyPair;
@@ -32,7 +32,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.Collection;
-import java.util.Date;
 import java.util.HashMap;
 import java.util.Properties;
 import java.util.function.BiConsumer;
@@ -41,6 +40,8 @@ public class BinanceStreamingXChangeAdapter extends XChangeMarketAdapter {
 
     private static final Logger logger = LoggerFactory.getLogger(BinanceStreamingXChangeAdapter.class);
 
+    private final OrderBookDiffer orderBookDiffer = new OrderBookDiffer(this);
+
     public BinanceStreamingXChangeAdapter(BinanceStreamingMarketConnection connection, Properties adapterSettings, Properties credentials) {
         super(connection, new BinanceStreamingCommandFactory(), adapterSettings);
     }
@@ -88,6 +89,7 @@ public class BinanceStreamingXChangeAdapter extends XChangeMarketAdapter {
                         feedEventMap.put(feed, this::tradeObservation);
                         break;
                     case ORDERBOOK:
+                        orderBookDiffer.reset(feed);
                         feedEventMap.put(feed, this::orderBookObservation);
                         break;
                     case TOP_OF_BOOK:
@@ -123,6 +125,7 @@ public class BinanceStreamingXChangeAdapter extends XChangeMarketAdapter {
     public void unsubscribeMarketData(MarketDataFeed feed) {
         connection.getMarketDataFeeds().remove(feed);
         feed.getDisposable().dispose();
+        orderBookDiffer.reset(feed);
         if(connection.getMarketDataFeeds().isEmpty() && connection.getExecutionFeeds().isEmpty())
             ((BinanceStreamingXChange)connection.getExchange()).disconnect();
     }
@@ -139,6 +142,7 @@ public class BinanceStreamingXChangeAdapter extends XChangeMarketAdapter {
     public void unsubscribeMarketData(Collection<Feed> feeds) {
         for(Feed f : feeds) {
            f.getDisposable().dispose();
+            orderBookDiffer.reset(f);
             if(f instanceof ExecutionFeed)
                 connection.getExecutionFeeds().remove(f);
             if(f instanceof MarketDataFeed)
@@ -148,44 +152,11 @@ public class BinanceStreamingXChangeAdapter extends XChangeMarketAdapter {
     }
 
     public void orderBookObservation(Feed feed, Object o) {
-        OrderBook order = (OrderBook) o;
-        int itemCount = order.getBids().size() + order.getAsks().size();
-
-        int[] itemIndex = new int[1];
-
-        String priceId = "";
-
-        order.getBids().forEach(p -> {
-            long price = feed.getInstrument().castToLong(p.getOriginalAmount());
-            int size = order.getBids().size();
-            try {
-                publish(
-                        new MDPrice(new Date().getTime(), MDMessageInfo.MDMessageType.SNAPSHOT, getSourceName(),
-                                order.getTimeStamp(), itemCount, itemIndex[0]++, MDItem.MDItemType.BID, priceId,
-                                feed.getInstrument().getSymbol(), feed.getFeedId(), price, size,
-                                MDPrice.PriceType.DEALABLE, true, MDPrice.DEFAULT_AMOUNT_ORDERS)
-
-                );
-            } catch (Publisher.PublisherException e) {
-                logger.error("Can't publish orderBook", e);
-            }
-            logger.info("OrderBook - Next order handled {}", feed.getFeedName());
-        });
-
-        order.getAsks().forEach(p -> {
-            long price = feed.getInstrument().castToLong(p.getOriginalAmount());
-            double volume = order.getBids().size();
-            try {
-                publish(
-                        new MDPrice(new Date().getTime(), MDMessageInfo.MDMessageType.SNAPSHOT, getSourceName(),
-                                order.getTimeStamp(), itemCount, itemIndex[0]++, MDItem.MDItemType.OFFER, priceId, feed.getInstrument().getSymbol(),
-                                feed.getFeedId(), price, volume, MDPrice.PriceType.DEALABLE, true, MDPrice.DEFAULT_AMOUNT_ORDERS)
-
-                );
-            } catch (Publisher.PublisherException e) {
-                getLogger().error("Can't publish orderBook", e);
-            }
-        });
+        try {
+            orderBookDiffer.publish((MarketDataFeed) feed, (OrderBook) o);
+        } catch (PublisherException e) {
+            logger.error("Can't publish orderBook", e);
+        }
     }
 
     public void topOfBookObservation(Feed feed, Object o) {
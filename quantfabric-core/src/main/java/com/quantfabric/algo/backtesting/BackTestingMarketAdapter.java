@@ -28,6 +28,8 @@ import com.quantfabric.algo.backtesting.storage.MarketDataCacheProvider;
 import com.quantfabric.algo.market.datamodel.MDEvent;
 import com.quantfabric.algo.market.gateway.BaseMarketAdapter;
 import com.quantfabric.algo.runtime.QuantfabricRuntime;
+import com.quantfabric.messaging.Recyclable;
+import com.quantfabric.util.timer.TimerWheel;
 
 public class BackTestingMarketAdapter extends BaseMarketAdapter
 {
@@ -110,6 +112,10 @@ public class BackTestingMarketAdapter extends BaseMarketAdapter
 			@Override
 			public void onPlay(MDEvent event)
 			{
+				// the player keeps its reference, publishing releases the adapter's one
+				if (event instanceof Recyclable)
+					((Recyclable) event).retain();
+				
 				try
 				{
 					publish(event);
@@ -211,6 +217,15 @@ public class BackTestingMarketAdapter extends BaseMarketAdapter
 		return player;
 	}
 
+	/**
+	 * @return wheel of the player's clock, the snapshots are in the time of the played data
+	 */
+	@Override
+	public TimerWheel getTimerWheel()
+	{
+		return player.getClock().getTimerWheel();
+	}
+
 	@Override
 	public void setPassword(String password) throws MarketAdapterException
 	{
@@ -29,6 +29,7 @@ import com.quantfabric.algo.backtesting.player.MarketDataPlayer.MarketDataPlayer
 import com.quantfabric.algo.backtesting.player.events.StopPlayingEvent;
 import com.quantfabric.algo.backtesting.player.track.TrackInfo;
 import com.quantfabric.algo.market.datamodel.MDEvent;
+import com.quantfabric.util.timer.ReplayClock;
 
 
 public class MDPTask
@@ -54,7 +55,7 @@ public class MDPTask
 	private RepeatMode repeatMode;
 	private TrackInfo track;
 	private long delayBeforeStart;
-	private boolean executeDelay;
+	private double replaySpeed;
 	private boolean isWaitEndPreviousTrack;
 	
 	private final List<StartNotifyListener> startNotifyListeners = new ArrayList<StartNotifyListener>();
@@ -231,14 +232,33 @@ public class MDPTask
 		this.delayBeforeStart = delayBeforeStart;
 	}
 
+	/**
+	 * Replays the track in real time, or as fast as possible without the delay.
+	 */
 	public void setExecuteDelay(boolean executeDelay)
 	{
-		this.executeDelay = executeDelay;		
+		setReplaySpeed(executeDelay ? ReplayClock.REAL_TIME : ReplayClock.MAX_SPEED);
 	}
 	
 	public boolean getExecuteDelay()
 	{
-		return executeDelay;
+		return replaySpeed != ReplayClock.MAX_SPEED;
+	}
+
+	/**
+	 * @param replaySpeed multiple of the real time the track is replayed at,
+	 * {@link ReplayClock#MAX_SPEED} to replay it as fast as possible
+	 */
+	public void setReplaySpeed(double replaySpeed)
+	{
+		if (!(replaySpeed > 0))
+			throw new IllegalArgumentException("Replay speed must be positive");
+		this.replaySpeed = replaySpeed;
+	}
+
+	public double getReplaySpeed()
+	{
+		return replaySpeed;
 	}
 	
 	@Override
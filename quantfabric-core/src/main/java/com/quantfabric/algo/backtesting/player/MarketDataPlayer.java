@@ -15,6 +15,8 @@
  */
 package com.quantfabric.algo.backtesting.player;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -23,7 +25,6 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -36,13 +37,21 @@ import com.quantfabric.algo.backtesting.player.track.FeedsTrack.Range;
 import com.quantfabric.algo.backtesting.player.track.TrackInfo;
 import com.quantfabric.algo.backtesting.storage.MarketDataCacheProvider;
 import com.quantfabric.algo.backtesting.storage.MarketDataCacheProvider.MarketDataCacheProviderException;
+import com.quantfabric.algo.backtesting.storage.MergingIterator;
 import com.quantfabric.algo.market.datamodel.EndUpdate;
 import com.quantfabric.algo.market.datamodel.MDEvent;
 import com.quantfabric.algo.market.datamodel.MDItem;
 import com.quantfabric.algo.market.datamodel.MDItem.MDItemType;
 import com.quantfabric.algo.market.datamodel.MDMessageInfo.MDMessageType;
 import com.quantfabric.algo.market.datamodel.NewSnapshot;
+import com.quantfabric.util.timer.ReplayClock;
 
+/**
+ * Plays tracks of the recorded market data. The player's {@link ReplayClock} follows the source
+ * timestamps of the played items, the time-dependent components given its wheel (e.g. the OHLC
+ * bars closed by timeout) work in the recorded time whatever the replay speed of the tracks is.
+ * Each play and each repeat of a looped track starts the clock over.
+ */
 public class MarketDataPlayer
 {	
 	private final static Logger log = LoggerFactory.getLogger(MarketDataPlayer.class);
@@ -85,6 +94,10 @@ public class MarketDataPlayer
 		STOPPING
 	}
 	
+	/**
+	 * Listener of the played content, pooled items are valid for the time of
+	 * {@link #onPlay(MDEvent)} only, listeners keeping them have to retain them.
+	 */
 	public interface ContentListener
 	{
 		void onPlay(MDEvent event);
@@ -96,6 +109,7 @@ public class MarketDataPlayer
 	private final List<ContentListener> contentListeners = new ArrayList<ContentListener>();
 	private MarketDataCacheProvider storageProvider;
 	private List<MDPTask> playlist; 
+	private final ReplayClock clock = new ReplayClock();
 	
 
 	
@@ -133,6 +147,11 @@ public class MarketDataPlayer
 		this(null, new ArrayList<MDPTask>());
 	}
 
+	public ReplayClock getClock()
+	{
+		return clock;
+	}
+
 	public MarketDataCacheProvider getStorageProvider()
 	{
 		return storageProvider;
@@ -262,29 +281,29 @@ public class MarketDataPlayer
 	private class ContentPlayer extends Thread
 	{		
 		private final RepeatMode repaeatMode;
-		private final boolean executeDelay;
+		private final double replaySpeed;
 		private final Iterator<MDItem> contentIterator;
 		private final int trackNumber;
 		
 		@SuppressWarnings("unused")
-		public ContentPlayer(RepeatMode repeatMode, boolean executeDelay,
+		public ContentPlayer(RepeatMode repeatMode, double replaySpeed,
 				Collection<MDItem> content, int trackNumber, String suffixName)
 		{
-			this(repeatMode, executeDelay, content.iterator(), trackNumber, suffixName);
+			this(repeatMode, replaySpeed, content.iterator(), trackNumber, suffixName);
 		}
 		
-		public ContentPlayer(RepeatMode repeatMode, boolean executeDelay,
+		public ContentPlayer(RepeatMode repeatMode, double replaySpeed,
 				Iterator<MDItem> contentIterator, int trackNumber, String suffixName)
 		{
 			super("ContentPlayer-" + suffixName);
 			this.contentIterator = contentIterator;
 			this.repaeatMode = repeatMode;
-			this.executeDelay = executeDelay;
+			this.replaySpeed = replaySpeed;
 			this.trackNumber = trackNumber;
 			this.setDaemon(true);
 		}
 		
-		private boolean doTerminate = false;
+		private volatile boolean doTerminate = false;
 		
 		public boolean doTerminate()
 		{
@@ -302,11 +321,37 @@ public class MarketDataPlayer
 		
 		@Override
 		public void run() 
+		{
+			try
+			{
+				playTrack();
+			}
+			finally
+			{
+				closeContent();
+			}
+		}
+		
+		private void closeContent()
+		{
+			if (contentIterator instanceof Closeable)
+				try
+				{
+					((Closeable) contentIterator).close();
+				}
+				catch (IOException e)
+				{
+					log.warn("Can't close played content", e);
+				}
+		}
+		
+		private void playTrack()
 		{
 			if (doTerminate)
 				return;
 				
 			log.info("ContentPlayer started");
+			clock.setSpeed(replaySpeed);
 			setPlayerState(PlayerState.PLAYING);
 			notifyConnected();
 			
@@ -319,11 +364,18 @@ public class MarketDataPlayer
 				if (contenetIterator.hasNext())
 				{
 					MDItem item = contenetIterator.next();
+					
+					if (!advanceClock(item))
+					{
+						item.release();
+						break;
+					}
 							
 					if (item.getMdItemType() != MDItemType.BID && 
 						item.getMdItemType() != MDItemType.OFFER)
 					{
 						publish(item);
+						item.release();
 						continue;
 					}
 					
@@ -335,6 +387,8 @@ public class MarketDataPlayer
 					publish(item);
 					backItem = item;
 				}
+				else if (doTerminate)
+					break;
 				else
 					return;
 			}
@@ -346,7 +400,14 @@ public class MarketDataPlayer
 				if (item.getMdItemType() != MDItemType.BID && 
 					item.getMdItemType() != MDItemType.OFFER)
 				{
+					if (!advanceClock(item))
+					{
+						publishEndUpdate(backItem);
+						item.release();
+						break;
+					}
 					publish(item);
+					item.release();
 					continue;
 				}
 				
@@ -367,33 +428,36 @@ public class MarketDataPlayer
 					needCheckForNewSnapshot = true;
 				}
 				
-				if (executeDelay)
-					try 
-					{										
-						TimeUnit.MILLISECONDS.sleep(4); 
-						//sleep(delay);
-					} 
-					catch (Exception e)
-					{
-						log.error("ContentPlayer error during delay executing", e);
-					}
+				// the previous message is completed before the tasks due by the new one run
+				if (!advanceClock(item))
+				{
+					if (!needCheckForNewSnapshot)
+						publishEndUpdate(backItem);
+					item.release();
+					break;
+				}
 				
 				if (needCheckForNewSnapshot && item.getMessageType() == MDMessageType.SNAPSHOT)
 					publishNewSnapshot(item);
 				
 				publish(item);
+				backItem.release();
 				backItem = item;
 				
 				if (doTerminate || !contenetIterator.hasNext())
 					publishEndUpdate(backItem);
 			}
 			
+			if (backItem != null)
+				backItem.release();
+			
 			if (repaeatMode == RepeatMode.LOOP && !doTerminate)
 			{
 				for (Map.Entry<MDPTask, ContentPlayer> entry : getContentPlayers().entrySet())
 					if (entry.getValue() == this)
 					{
 						log.info("Going to replay last track");
+						clock.reset();
 						try
 						{							
 							startNotifyListener.onStart(entry.getKey());
@@ -414,6 +478,28 @@ public class MarketDataPlayer
 			log.info("ContentPlayer was stopped");	
 		}
 		
+		/**
+		 * Waits for the item by the replay speed and moves the clock to it.
+		 * 
+		 * @return <code>false</code> when the player was interrupted meanwhile
+		 */
+		private boolean advanceClock(MDItem item)
+		{
+			if (item.getSourceTimestamp() <= 0)
+				return true;
+			
+			try
+			{
+				clock.advanceTo(item.getSourceTimestamp());
+				return true;
+			}
+			catch (InterruptedException e)
+			{
+				doTerminate = true;
+				return false;
+			}
+		}
+		
 		private void publishEndUpdate(MDItem lastItem)
 		{
 			EndUpdate eu = new EndUpdate(
@@ -475,26 +561,22 @@ public class MarketDataPlayer
 		{	
 			try
 			{
-				Iterator<MDItem> contentIterator = null;
+				List<Iterator<MDItem>> contentIterators = new ArrayList<Iterator<MDItem>>();
 				
-				if (task.getTrack() instanceof FeedsTrack)
-				{								
-					FeedsTrack track = (FeedsTrack)task.getTrack();
-					
-					log.info(String.format("Initializing to play feeds track (ContextID = %s)", track.getContextId()));
-							
-					if (track.getRange() == Range.ALL)
-						contentIterator = getStorageProvider().deferredLoad(
-								track.getContextId(), 
-								track.getFeeds());
-					else
-						contentIterator = getStorageProvider().deferredLoad(
-							track.getContextId(),
-							track.getFeeds(), 
-							track.getRange().getFrom(),
-							track.getRange().getTo());
+				for (MDPTask groupTask : getTrackGroup(task))
+				{
+					Iterator<MDItem> iterator = loadContent(groupTask);
+					if (iterator != null)
+						contentIterators.add(iterator);
 				}
 				
+				Iterator<MDItem> contentIterator = null;
+				
+				if (contentIterators.size() == 1)
+					contentIterator = contentIterators.get(0);
+				else if (contentIterators.size() > 1)
+					contentIterator = new MergingIterator(contentIterators);
+				
 				if (contentIterator != null)
 				{
 					//if (task.isWaitEndPreviousTrack())
@@ -510,6 +592,27 @@ public class MarketDataPlayer
 			}
 		}
 				
+		private Iterator<MDItem> loadContent(MDPTask task) throws MarketDataCacheProviderException
+		{
+			if (!(task.getTrack() instanceof FeedsTrack))
+				return null;
+			
+			FeedsTrack track = (FeedsTrack)task.getTrack();
+			
+			log.info(String.format("Initializing to play feeds track (ContextID = %s)", track.getContextId()));
+					
+			if (track.getRange() == Range.ALL)
+				return getStorageProvider().deferredLoad(
+						track.getContextId(), 
+						track.getFeeds());
+			else
+				return getStorageProvider().deferredLoad(
+					track.getContextId(),
+					track.getFeeds(), 
+					track.getRange().getFrom(),
+					track.getRange().getTo());
+		}
+		
 		private void playContent(MDPTask task, Iterator<MDItem> contentIterator)
 		{
 			if (getPlayerState() != PlayerState.INITIALIZED)
@@ -532,7 +635,7 @@ public class MarketDataPlayer
 			
 			ContentPlayer contentPlayer = new ContentPlayer(
 					task.getRepeatMode(),
-					task.getExecuteDelay(),
+					task.getReplaySpeed(),
 					contentIterator, 
 					task.getTrack().getTrackNumber(),
 					String.valueOf(getContentPlayers().size()));
@@ -543,6 +646,23 @@ public class MarketDataPlayer
 		}
 	};
 	
+	/**
+	 * Tasks of the same track number are played together as one stream merged by the source
+	 * timestamp, so the feeds of several tracks are replayed in their recorded order.
+	 * 
+	 * @return tasks of the playlist with the track number of the given task
+	 */
+	private List<MDPTask> getTrackGroup(MDPTask task)
+	{
+		List<MDPTask> group = new ArrayList<MDPTask>();
+		
+		for (MDPTask playlistTask : playlist)
+			if (playlistTask.getTrack().getTrackNumber() == task.getTrack().getTrackNumber())
+				group.add(playlistTask);
+		
+		return group;
+	}
+	
 	private void initTask(MDPTask task, int playAfterTrack) throws MarketDataPlayerException
 	{
 		if (task.addStartNotifyListener(startNotifyListener));
@@ -561,6 +681,7 @@ public class MarketDataPlayer
 			throw new MarketDataPlayerException("Can't do play because player does not stopped.");
 		
 		setPlayerState(PlayerState.INITIALIZING);
+		clock.reset();
 		
 		if (getStorageProvider() == null)
 			log.warn("Called Play but not set MarketDataStorageProvider");
@@ -575,14 +696,20 @@ public class MarketDataPlayer
 				});		
 		
 		int prevTrackNumber = TrackInfo.DEFAULT_TRACK_NUMBER;
+		MDPTask prevTask = null;
 		for (MDPTask task : playlist)
 		{
+			// played together with the previous task of the same track
+			if (prevTask != null && task.getTrack().getTrackNumber() == prevTrackNumber)
+				continue;
+			
 			if (prevTrackNumber != TrackInfo.DEFAULT_TRACK_NUMBER)
 				initTask(task, prevTrackNumber);
 			else
 				initTask(task);
 			
 			prevTrackNumber = task.getTrack().getTrackNumber();
+			prevTask = task;
 		}
 		
 		setPlayerState(PlayerState.INITIALIZED);
@@ -605,6 +732,7 @@ public class MarketDataPlayer
 				if (cp.doTerminate())
 					try
 					{
+						cp.interrupt();
 						cp.join();
 					}
 					catch (InterruptedException e)
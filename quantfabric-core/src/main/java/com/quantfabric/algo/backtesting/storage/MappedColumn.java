@@ -0,0 +1,139 @@
+/*
+ * Copyright 2022-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.quantfabric.algo.backtesting.storage;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Fixed width column of primitive values backed by a memory-mapped file.
+ * Values are addressed by row number, a writable column grows its mapping
+ * by doubling when a row beyond the current capacity is requested.
+ */
+final class MappedColumn implements Closeable
+{
+	private static final long MAX_MAPPING_SIZE = Integer.MAX_VALUE;
+
+	private final File file;
+	private final FileChannel channel;
+	private final int width;
+	private final boolean writable;
+
+	private MappedByteBuffer buffer;
+	private long capacity;
+
+	private MappedColumn(File file, int width, boolean writable, long capacity) throws IOException
+	{
+		this.file = file;
+		this.width = width;
+		this.writable = writable;
+		this.channel = writable
+			? FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)
+			: FileChannel.open(file.toPath(), StandardOpenOption.READ);
+
+		map(writable ? Math.max(capacity, channel.size() / width) : capacity);
+	}
+
+	static MappedColumn openForWrite(File file, int width, long capacity) throws IOException
+	{
+		return new MappedColumn(file, width, true, capacity);
+	}
+
+	static MappedColumn openForRead(File file, int width, long rows) throws IOException
+	{
+		return new MappedColumn(file, width, false, rows);
+	}
+
+	private void map(long rows) throws IOException
+	{
+		long size = rows * width;
+
+		if (size > MAX_MAPPING_SIZE)
+			throw new IOException(String.format("Column (%s) exceeds maximal mapping size", file));
+
+		buffer = channel.map(writable ? MapMode.READ_WRITE : MapMode.READ_ONLY, 0, size);
+		capacity = rows;
+	}
+
+	void ensureCapacity(long rows) throws IOException
+	{
+		if (rows <= capacity)
+			return;
+
+		long newCapacity = Math.max(capacity, 1);
+		while (newCapacity < rows)
+			newCapacity <<= 1;
+
+		map(Math.min(newCapacity, MAX_MAPPING_SIZE / width));
+
+		if (capacity < rows)
+			throw new IOException(String.format("Column (%s) exceeds maximal mapping size", file));
+	}
+
+	long getCapacity()
+	{
+		return capacity;
+	}
+
+	long getLong(long row)
+	{
+		return buffer.getLong((int) (row * width));
+	}
+
+	void putLong(long row, long value)
+	{
+		buffer.putLong((int) (row * width), value);
+	}
+
+	int getInt(long row)
+	{
+		return buffer.getInt((int) (row * width));
+	}
+
+	void putInt(long row, int value)
+	{
+		buffer.putInt((int) (row * width), value);
+	}
+
+	double getDouble(long row)
+	{
+		return buffer.getDouble((int) (row * width));
+	}
+
+	void putDouble(long row, double value)
+	{
+		buffer.putDouble((int) (row * width), value);
+	}
+
+	void force()
+	{
+		if (writable)
+			buffer.force();
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		force();
+		buffer = null;
+		channel.close();
+	}
+}
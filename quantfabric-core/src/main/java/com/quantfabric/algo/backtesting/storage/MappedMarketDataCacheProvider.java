@@ -0,0 +1,652 @@
+/*
+ * Copyright 2022-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.quantfabric.algo.backtesting.storage;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.quantfabric.algo.market.datamodel.MDDelete;
+import com.quantfabric.algo.market.datamodel.MDFeedEvent;
+import com.quantfabric.algo.market.datamodel.MDItem;
+import com.quantfabric.algo.market.datamodel.MDPrice;
+import com.quantfabric.algo.market.datamodel.MDTrade;
+import com.quantfabric.algo.market.gateway.MarketConnectionImp;
+import com.quantfabric.algo.market.gateway.feed.MarketDataFeed;
+
+/**
+ * Market data cache which records ticks into memory-mapped columnar files.
+ * <p>
+ * Data is laid out as {@code <path>/<contextId>/<feedName>/<yyyyMMdd>/}, one
+ * {@link TickSegment} per feed and UTC day of the source timestamp. Recording
+ * is an append to a handful of mapped columns, loading streams the segments
+ * lazily so a full day of depth can be replayed without materializing it.
+ * Multi-feed loads are merged by source timestamp, every feed is read ahead by
+ * a {@link PrefetchingIterator} so the replay doesn't stall on the segments' I/O.
+ * A range ends at the first tick past it. Deferred loads of feeds with pooled
+ * items enabled decode the ticks into pooled items, the reader releases every
+ * item once done with it.
+ * <p>
+ * Settings:
+ * <ul>
+ * <li>{@value #PATH_SETTING} - root directory of the cache, "mdcache" by default</li>
+ * <li>{@value #INITIAL_ROWS_SETTING} - rows preallocated for a new segment</li>
+ * <li>{@value #PREFETCH_BATCH_SIZE_SETTING} - ticks read ahead at once per feed,
+ * 0 disables reading ahead</li>
+ * <li>{@value #PREFETCH_BATCHES_SETTING} - batches a feed may be read ahead by</li>
+ * <li>{@value #LATE_TICKS_GRACE_SETTING} - milliseconds into a new day the segment
+ * of the previous day stays open for late ticks, one minute by default</li>
+ * <li>write-behind settings of {@link WriteBehindRecorder}</li>
+ * </ul>
+ */
+public class MappedMarketDataCacheProvider extends MarketDataCacheProvider
+{
+	public static final String PATH_SETTING = "path";
+	public static final String INITIAL_ROWS_SETTING = "initialRows";
+	public static final String PREFETCH_BATCH_SIZE_SETTING = "prefetchBatchSize";
+	public static final String PREFETCH_BATCHES_SETTING = "prefetchBatches";
+	public static final String LATE_TICKS_GRACE_SETTING = "lateTicksGrace";
+
+	private static final String DEFAULT_PATH = "mdcache";
+	private static final int DEFAULT_INITIAL_ROWS = 1 << 16;
+	private static final int DEFAULT_LATE_TICKS_GRACE = 60_000;
+	private static final long MILLIS_IN_DAY = 86_400_000L;
+	private static final DateTimeFormatter DAY_FORMAT = DateTimeFormatter.BASIC_ISO_DATE;
+
+	private final Map<String, FeedRecorder> recorders = new ConcurrentHashMap<>();
+
+	private File root;
+	private int initialRows;
+	private int prefetchBatchSize;
+	private int prefetchBatches;
+	private int lateTicksGrace;
+	private volatile int contextId;
+
+	public MappedMarketDataCacheProvider(MarketConnectionImp connection, Properties settings)
+		throws MarketDataCacheProviderException
+	{
+		super(connection, settings);
+	}
+
+	@Override
+	protected void init() throws MarketDataCacheProviderException
+	{
+		Properties settings = getSettings() == null ? new Properties() : getSettings();
+
+		root = new File(settings.getProperty(PATH_SETTING, DEFAULT_PATH));
+		initialRows = getIntSetting(settings, INITIAL_ROWS_SETTING, DEFAULT_INITIAL_ROWS);
+		prefetchBatchSize = getIntSetting(settings, PREFETCH_BATCH_SIZE_SETTING, PrefetchingIterator.DEFAULT_BATCH_SIZE);
+		prefetchBatches = getIntSetting(settings, PREFETCH_BATCHES_SETTING, PrefetchingIterator.DEFAULT_BATCHES);
+		lateTicksGrace = getIntSetting(settings, LATE_TICKS_GRACE_SETTING, DEFAULT_LATE_TICKS_GRACE);
+
+		if (initialRows <= 0)
+			throw new MarketDataCacheProviderConfigException(
+					String.format("Setting (%s) must be positive", INITIAL_ROWS_SETTING));
+
+		if (prefetchBatchSize < 0)
+			throw new MarketDataCacheProviderConfigException(
+					String.format("Setting (%s) must not be negative", PREFETCH_BATCH_SIZE_SETTING));
+
+		if (prefetchBatches <= 0)
+			throw new MarketDataCacheProviderConfigException(
+					String.format("Setting (%s) must be positive", PREFETCH_BATCHES_SETTING));
+
+		if (lateTicksGrace < 0)
+			throw new MarketDataCacheProviderConfigException(
+					String.format("Setting (%s) must not be negative", LATE_TICKS_GRACE_SETTING));
+
+		if (!root.isDirectory() && !root.mkdirs())
+			throw new MarketDataCacheProviderConfigException(
+					String.format("Can't create market data cache directory (%s)", root));
+
+		contextId = -1;
+	}
+
+	private static int getIntSetting(Properties settings, String name, int defaultValue)
+		throws MarketDataCacheProviderConfigException
+	{
+		try
+		{
+			return Integer.parseInt(settings.getProperty(name, String.valueOf(defaultValue)));
+		}
+		catch (NumberFormatException e)
+		{
+			throw new MarketDataCacheProviderConfigException(
+					String.format("Invalid value of setting (%s)", name), e);
+		}
+	}
+
+	@Override
+	public synchronized int newContext() throws MarketDataCacheProviderException
+	{
+		closeRecorders();
+
+		int newContextId = 0;
+		String[] contexts = root.list();
+		if (contexts != null)
+			for (String context : contexts)
+				try
+				{
+					newContextId = Math.max(newContextId, Integer.parseInt(context) + 1);
+				}
+				catch (NumberFormatException e)
+				{
+					// not a context directory
+				}
+
+		File contextDirectory = getContextDirectory(newContextId);
+		if (!contextDirectory.mkdirs())
+			throw new MarketDataCacheProviderException(
+					String.format("Can't create context directory (%s)", contextDirectory));
+
+		contextId = newContextId;
+		getLogger().info("Market data cache context {} created in {}", newContextId, contextDirectory);
+
+		return newContextId;
+	}
+
+	/**
+	 * Saves items waiting in the write-behind ring, then flushes and closes segments
+	 * of the current context.
+	 */
+	public void close() throws MarketDataCacheProviderException
+	{
+		// the writer may need the provider's lock to open a segment
+		stopRecording();
+
+		synchronized (this)
+		{
+			closeRecorders();
+		}
+	}
+
+	@Override
+	public void flush()
+	{
+		for (FeedRecorder recorder : recorders.values())
+			recorder.flush();
+	}
+
+	private void closeRecorders() throws MarketDataCacheProviderException
+	{
+		MarketDataCacheProviderException failure = null;
+
+		for (FeedRecorder recorder : recorders.values())
+			try
+			{
+				recorder.close();
+			}
+			catch (IOException e)
+			{
+				if (failure == null)
+					failure = new MarketDataCacheProviderException("Can't close market data cache segment", e);
+				else
+					failure.addSuppressed(e);
+			}
+
+		recorders.clear();
+
+		if (failure != null)
+			throw failure;
+	}
+
+	@Override
+	public void save(MarketDataFeed feed, MDFeedEvent mdItem) throws MarketDataCacheProviderException
+	{
+		if (mdItem instanceof MDPrice)
+			save(feed, (MDPrice) mdItem);
+		else if (mdItem instanceof MDDelete)
+			save(feed, (MDDelete) mdItem);
+		else if (mdItem instanceof MDTrade)
+			getRecorder(feed).append((MDTrade) mdItem);
+	}
+
+	@Override
+	public void save(MarketDataFeed feed, MDPrice price) throws MarketDataCacheProviderException
+	{
+		getRecorder(feed).append(price);
+	}
+
+	@Override
+	public void save(MarketDataFeed feed, MDDelete deleteQuote) throws MarketDataCacheProviderException
+	{
+		getRecorder(feed).append(deleteQuote);
+	}
+
+	private FeedRecorder getRecorder(MarketDataFeed feed) throws MarketDataCacheProviderException
+	{
+		String feedName = feed.getFeedName().getName();
+		FeedRecorder recorder = recorders.get(feedName);
+
+		if (recorder == null)
+			synchronized (this)
+			{
+				if (contextId < 0)
+					newContext();
+
+				recorder = recorders.computeIfAbsent(feedName,
+						name -> new FeedRecorder(getFeedDirectory(contextId, name)));
+			}
+
+		return recorder;
+	}
+
+	@Override
+	public Collection<MDItem> load(int contextId, MarketDataFeed feed) throws MarketDataCacheProviderException
+	{
+		return load(contextId, Collections.singletonList(feed), null, null);
+	}
+
+	@Override
+	public Collection<MDItem> load(int contextId, MarketDataFeed feed, Date from, Date to)
+		throws MarketDataCacheProviderException
+	{
+		return load(contextId, Collections.singletonList(feed), from, to);
+	}
+
+	@Override
+	public Collection<MDItem> load(int contextId, Collection<MarketDataFeed> feeds)
+		throws MarketDataCacheProviderException
+	{
+		return load(contextId, feeds, null, null);
+	}
+
+	@Override
+	public Collection<MDItem> load(int contextId, Collection<MarketDataFeed> feeds, Date from, Date to)
+		throws MarketDataCacheProviderException
+	{
+		return toCollection(open(contextId, feeds, from, to, false));
+	}
+
+	@Override
+	public Iterator<MDItem> deferredLoad(int contextId, MarketDataFeed feed) throws MarketDataCacheProviderException
+	{
+		return deferredLoad(contextId, Collections.singletonList(feed), null, null);
+	}
+
+	@Override
+	public Iterator<MDItem> deferredLoad(int contextId, MarketDataFeed feed, Date from, Date to)
+		throws MarketDataCacheProviderException
+	{
+		return deferredLoad(contextId, Collections.singletonList(feed), from, to);
+	}
+
+	@Override
+	public Iterator<MDItem> deferredLoad(int contextId, Collection<MarketDataFeed> feeds)
+		throws MarketDataCacheProviderException
+	{
+		return deferredLoad(contextId, feeds, null, null);
+	}
+
+	@Override
+	public Iterator<MDItem> deferredLoad(int contextId, Collection<MarketDataFeed> feeds, Date from, Date to)
+		throws MarketDataCacheProviderException
+	{
+		return open(contextId, feeds, from, to, true);
+	}
+
+	/**
+	 * @param pooledItems whether feeds with pooled items enabled are read into
+	 * {@link com.quantfabric.algo.market.datamodel.MDItemPool pooled} items,
+	 * which the reader releases once done with them
+	 */
+	private Iterator<MDItem> open(int contextId, Collection<MarketDataFeed> feeds, Date from, Date to,
+		boolean pooledItems) throws MarketDataCacheProviderException
+	{
+		long fromTimestamp = from == null ? Long.MIN_VALUE : from.getTime();
+		long toTimestamp = to == null ? Long.MAX_VALUE : to.getTime();
+
+		if (!getContextDirectory(contextId).isDirectory())
+			throw new MarketDataCacheProviderException(
+					String.format("Market data cache context (%d) doesn't exist", contextId));
+
+		List<Iterator<MDItem>> iterators = new ArrayList<>(feeds.size());
+		for (MarketDataFeed feed : feeds)
+		{
+			Iterator<MDItem> iterator = new FeedIterator(
+					getFeedDirectory(contextId, feed.getFeedName().getName()), fromTimestamp, toTimestamp,
+					pooledItems && feed.isPooledItems() ? new TickSegment.ItemPools() : null);
+
+			if (prefetchBatchSize > 0)
+				iterator = new PrefetchingIterator<MDItem>(iterator,
+						contextId + "-" + feed.getFeedName().getName(), prefetchBatchSize, prefetchBatches);
+
+			iterators.add(iterator);
+		}
+
+		return iterators.size() == 1 ? iterators.get(0) : new MergingIterator(iterators);
+	}
+
+	private static Collection<MDItem> toCollection(Iterator<MDItem> iterator)
+	{
+		Collection<MDItem> items = new ArrayList<>();
+
+		while (iterator.hasNext())
+			items.add(iterator.next());
+
+		return items;
+	}
+
+	private File getContextDirectory(int contextId)
+	{
+		return new File(root, String.valueOf(contextId));
+	}
+
+	private File getFeedDirectory(int contextId, String feedName)
+	{
+		return new File(getContextDirectory(contextId), feedName);
+	}
+
+	private static long toDay(long timestamp)
+	{
+		return Math.floorDiv(timestamp, MILLIS_IN_DAY);
+	}
+
+	private static String toDayName(long day)
+	{
+		return LocalDate.ofEpochDay(day).format(DAY_FORMAT);
+	}
+
+	private static long parseDay(String name)
+	{
+		try
+		{
+			return LocalDate.parse(name, DAY_FORMAT).toEpochDay();
+		}
+		catch (RuntimeException e)
+		{
+			return Long.MIN_VALUE;
+		}
+	}
+
+	/**
+	 * Appends ticks of one feed, switching to a new segment when the day of
+	 * the source timestamp changes. The segment of the previous day is kept
+	 * open for late ticks until the new day is older than the grace period.
+	 */
+	private class FeedRecorder
+	{
+		private final File directory;
+		private TickSegment segment;
+		private long day = Long.MIN_VALUE;
+		private TickSegment previousSegment;
+		private long previousDay = Long.MIN_VALUE;
+
+		FeedRecorder(File directory)
+		{
+			this.directory = directory;
+		}
+
+		synchronized void append(MDPrice price) throws MarketDataCacheProviderException
+		{
+			try
+			{
+				getSegment(price).append(price);
+			}
+			catch (IOException e)
+			{
+				throw new MarketDataCacheProviderException("Can't save price to " + directory, e);
+			}
+		}
+
+		synchronized void append(MDDelete delete) throws MarketDataCacheProviderException
+		{
+			try
+			{
+				getSegment(delete).append(delete);
+			}
+			catch (IOException e)
+			{
+				throw new MarketDataCacheProviderException("Can't save delete to " + directory, e);
+			}
+		}
+
+		synchronized void append(MDTrade trade) throws MarketDataCacheProviderException
+		{
+			try
+			{
+				getSegment(trade).append(trade);
+			}
+			catch (IOException e)
+			{
+				throw new MarketDataCacheProviderException("Can't save trade to " + directory, e);
+			}
+		}
+
+		private TickSegment getSegment(MDItem item) throws IOException
+		{
+			long sourceTimestamp = item.getSourceTimestamp();
+			long itemDay = toDay(sourceTimestamp);
+
+			if (segment != null && itemDay == day)
+			{
+				if (previousSegment != null && sourceTimestamp - day * MILLIS_IN_DAY >= lateTicksGrace)
+					closePreviousSegment();
+
+				return segment;
+			}
+
+			if (previousSegment != null && itemDay == previousDay)
+				return previousSegment;
+
+			if (segment != null && itemDay < day)
+				return openLateSegment(itemDay);
+
+			closePreviousSegment();
+			previousSegment = segment;
+			previousDay = day;
+
+			segment = TickSegment.openForWrite(new File(directory, toDayName(itemDay)), initialRows);
+			day = itemDay;
+
+			return segment;
+		}
+
+		/**
+		 * A tick older than both open segments reopens the segment of its day
+		 * in place of the previous one.
+		 */
+		private TickSegment openLateSegment(long itemDay) throws IOException
+		{
+			closePreviousSegment();
+			previousSegment = TickSegment.openForWrite(new File(directory, toDayName(itemDay)), initialRows);
+			previousDay = itemDay;
+
+			return previousSegment;
+		}
+
+		private void closePreviousSegment() throws IOException
+		{
+			if (previousSegment != null)
+			{
+				previousSegment.close();
+				previousSegment = null;
+				previousDay = Long.MIN_VALUE;
+			}
+		}
+
+		synchronized void flush()
+		{
+			if (previousSegment != null)
+				previousSegment.flush();
+			if (segment != null)
+				segment.flush();
+		}
+
+		synchronized void close() throws IOException
+		{
+			try
+			{
+				closePreviousSegment();
+			}
+			finally
+			{
+				if (segment != null)
+				{
+					segment.close();
+					segment = null;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Streams ticks of one feed within a time range, opening day segments one
+	 * at a time.
+	 */
+	private static class FeedIterator implements Iterator<MDItem>, Closeable
+	{
+		private final long from;
+		private final long to;
+		private final Iterator<File> days;
+		private final TickSegment.ItemPools pools;
+
+		private TickSegment segment;
+		private long row;
+		private MDItem next;
+		private boolean ended;
+
+		FeedIterator(File feedDirectory, long from, long to, TickSegment.ItemPools pools)
+		{
+			this.from = from;
+			this.to = to;
+			this.pools = pools;
+
+			long firstDay = from == Long.MIN_VALUE ? Long.MIN_VALUE : toDay(from);
+			long lastDay = to == Long.MAX_VALUE ? Long.MAX_VALUE : toDay(to);
+
+			List<File> dayDirectories = new ArrayList<>();
+			File[] files = feedDirectory.listFiles(File::isDirectory);
+			if (files != null)
+			{
+				Arrays.sort(files);
+				for (File file : files)
+				{
+					long day = parseDay(file.getName());
+					if (day != Long.MIN_VALUE && day >= firstDay && day <= lastDay)
+						dayDirectories.add(file);
+				}
+			}
+
+			days = dayDirectories.iterator();
+		}
+
+		@Override
+		public boolean hasNext()
+		{
+			if (next == null)
+				next = fetch();
+
+			return next != null;
+		}
+
+		@Override
+		public MDItem next()
+		{
+			if (!hasNext())
+				throw new NoSuchElementException();
+
+			MDItem item = next;
+			next = null;
+
+			return item;
+		}
+
+		private MDItem fetch()
+		{
+			while (!ended)
+			{
+				if (segment == null)
+				{
+					if (!days.hasNext())
+						return null;
+
+					openSegment(days.next());
+					continue;
+				}
+
+				while (row < segment.getRowCount())
+				{
+					long sourceTimestamp = segment.getSourceTimestamp(row);
+
+					if (sourceTimestamp > to)
+					{
+						// the range ends at the first tick past it, later days aren't opened
+						closeSegment();
+						ended = true;
+						return null;
+					}
+
+					if (sourceTimestamp >= from)
+						return segment.read(row++, pools);
+
+					row++;
+				}
+
+				closeSegment();
+			}
+
+			return null;
+		}
+
+		@Override
+		public void close()
+		{
+			if (segment != null)
+				closeSegment();
+		}
+
+		private void openSegment(File directory)
+		{
+			try
+			{
+				segment = TickSegment.openForRead(directory);
+				row = segment.findFirstRow(from);
+			}
+			catch (IOException e)
+			{
+				throw new IllegalStateException("Can't open market data cache segment " + directory, e);
+			}
+		}
+
+		private void closeSegment()
+		{
+			try
+			{
+				segment.close();
+			}
+			catch (IOException e)
+			{
+				getLogger().warn("Can't close market data cache segment", e);
+			}
+
+			segment = null;
+		}
+	}
+}
@@ -96,6 +96,7 @@ public abstract class MarketDataCacheProvider
 	
 	private final MarketConnectionImp connection;
 	private final Properties settings;
+	private final WriteBehindRecorder recorder;
 	
 	public MarketDataCacheProvider(MarketConnectionImp connection, Properties settings)
 		throws MarketDataCacheProviderException
@@ -103,6 +104,11 @@ public abstract class MarketDataCacheProvider
 		this.connection = connection;
 		this.settings = settings;
 		init();
+		
+		recorder = WriteBehindRecorder.isEnabled(settings) 
+				? new WriteBehindRecorder(getClass().getSimpleName() 
+						+ (connection == null ? "" : "-" + connection.getName()), this, settings)
+				: null;
 	}
 			
 	public static Logger getLogger()
@@ -122,6 +128,60 @@ public abstract class MarketDataCacheProvider
 	
 	protected abstract void init() throws MarketDataCacheProviderException;
 	
+	/**
+	 * Records a live item, through the {@link WriteBehindRecorder} unless write-behind
+	 * is disabled by the settings.
+	 * 
+	 * @throws MarketDataCacheProviderException if recording isn't started or was stopped
+	 */
+	public void record(MarketDataFeed feed, MDFeedEvent mdItem) throws MarketDataCacheProviderException
+	{
+		if (recorder == null)
+		{
+			save(feed, mdItem);
+			return;
+		}
+		
+		if (!recorder.isRunning())
+			throw new MarketDataCacheProviderException("Recording of " + recorder.getName() + " isn't started");
+		
+		recorder.record(feed, mdItem);
+	}
+	
+	/**
+	 * Starts the write-behind writer, live items can be recorded until {@link #stopRecording()}.
+	 */
+	public void startRecording()
+	{
+		if (recorder != null)
+			recorder.start();
+	}
+	
+	/**
+	 * Saves all recorded items still waiting in the write-behind ring.
+	 */
+	public void stopRecording()
+	{
+		if (recorder != null)
+			recorder.stop();
+	}
+	
+	/**
+	 * @return the write-behind stage, <code>null</code> if items are saved synchronously
+	 */
+	public WriteBehindRecorder getRecorder()
+	{
+		return recorder;
+	}
+	
+	/**
+	 * Makes saved items durable, called by the write-behind stage once per group of writes.
+	 */
+	public void flush() throws MarketDataCacheProviderException
+	{
+	}
+	
+	
 	public abstract int newContext()  throws MarketDataCacheProviderException;
 	public abstract void save(MarketDataFeed feed, MDFeedEvent mdItem) throws MarketDataCacheProviderException;
 	public abstract void save(MarketDataFeed feed, MDPrice price) throws MarketDataCacheProviderException;
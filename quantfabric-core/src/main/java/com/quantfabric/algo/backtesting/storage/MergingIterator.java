@@ -0,0 +1,96 @@
+/*
+ * Copyright 2022-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.quantfabric.algo.backtesting.storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+import com.quantfabric.algo.market.datamodel.MDItem;
+
+/**
+ * Merges several source timestamp ordered streams into one, ticks with equal timestamps
+ * keep the order of the streams. Closing the iterator closes the streams which are
+ * {@link Closeable}.
+ */
+public class MergingIterator implements Iterator<MDItem>, Closeable
+{
+	private static class Head
+	{
+		final int order;
+		final Iterator<MDItem> source;
+		MDItem item;
+
+		Head(int order, Iterator<MDItem> source)
+		{
+			this.order = order;
+			this.source = source;
+			this.item = source.next();
+		}
+	}
+
+	private final List<? extends Iterator<MDItem>> sources;
+	private final PriorityQueue<Head> heads = new PriorityQueue<>((a, b) -> {
+		int result = Long.compare(a.item.getSourceTimestamp(), b.item.getSourceTimestamp());
+		return result != 0 ? result : Integer.compare(a.order, b.order);
+	});
+
+	public MergingIterator(List<? extends Iterator<MDItem>> sources)
+	{
+		this.sources = sources;
+
+		for (int i = 0; i < sources.size(); i++)
+			if (sources.get(i).hasNext())
+				heads.add(new Head(i, sources.get(i)));
+	}
+
+	@Override
+	public boolean hasNext()
+	{
+		return !heads.isEmpty();
+	}
+
+	@Override
+	public MDItem next()
+	{
+		Head head = heads.poll();
+		if (head == null)
+			throw new NoSuchElementException();
+
+		MDItem item = head.item;
+
+		if (head.source.hasNext())
+		{
+			head.item = head.source.next();
+			heads.add(head);
+		}
+
+		return item;
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		heads.clear();
+
+		for (Iterator<MDItem> source : sources)
+			if (source instanceof Closeable)
+				((Closeable) source).close();
+	}
+}
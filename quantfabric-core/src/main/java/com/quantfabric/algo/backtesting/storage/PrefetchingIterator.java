@@ -0,0 +1,182 @@
+/*
+ * Copyright 2022-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.quantfabric.algo.backtesting.storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Reads a stream ahead on a daemon thread of its own: the items are handed over in batches
+ * through a bounded buffer, so the consumer doesn't wait for I/O and decoding while the buffer
+ * isn't empty and the reader doesn't run away from a slow consumer.
+ * <p>
+ * A failure of the source is rethrown to the consumer after the items read before it.
+ * Interrupting the consumer while it waits for a batch, or before, ends the iteration.
+ * An abandoned iterator should be closed, that stops the reader and closes the source when
+ * it's {@link Closeable}.
+ */
+public class PrefetchingIterator<T> implements Iterator<T>, Closeable
+{
+	public static final int DEFAULT_BATCH_SIZE = 1024;
+	public static final int DEFAULT_BATCHES = 4;
+
+	private static final Object[] END = new Object[0];
+
+	private final Iterator<T> source;
+	private final int batchSize;
+	private final BlockingQueue<Object[]> batches;
+	private final Thread reader;
+	private volatile RuntimeException failure;
+	private volatile boolean closed;
+
+	private Object[] batch;
+	private int index;
+
+	public PrefetchingIterator(Iterator<T> source, String name)
+	{
+		this(source, name, DEFAULT_BATCH_SIZE, DEFAULT_BATCHES);
+	}
+
+	public PrefetchingIterator(Iterator<T> source, String name, int batchSize, int batches)
+	{
+		if (batchSize <= 0 || batches <= 0)
+			throw new IllegalArgumentException("batchSize and batches must be positive");
+
+		this.source = source;
+		this.batchSize = batchSize;
+		this.batches = new ArrayBlockingQueue<Object[]>(batches);
+		this.reader = new Thread(this::read, "Prefetch-" + name);
+		this.reader.setDaemon(true);
+		this.reader.start();
+	}
+
+	@Override
+	public boolean hasNext()
+	{
+		if (closed)
+			return false;
+		if (batch != null && index < batch.length)
+			return true;
+		if (batch == END)
+			return false;
+
+		try
+		{
+			batch = batches.take();
+			index = 0;
+		}
+		catch (InterruptedException e)
+		{
+			// the consumer is being stopped, it keeps the flag and sees no more items
+			Thread.currentThread().interrupt();
+			batch = null;
+			return false;
+		}
+
+		if (batch == END)
+		{
+			if (failure != null)
+				throw failure;
+			return false;
+		}
+
+		return true;
+	}
+
+	@SuppressWarnings("unchecked")
+	@Override
+	public T next()
+	{
+		if (!hasNext())
+			throw new NoSuchElementException();
+
+		T item = (T) batch[index];
+		batch[index++] = null;
+		return item;
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		closed = true;
+		reader.interrupt();
+		batches.clear();
+	}
+
+	private void read()
+	{
+		try
+		{
+			boolean end = false;
+
+			while (!closed && !end && failure == null)
+			{
+				Object[] items = new Object[batchSize];
+				int count = 0;
+
+				try
+				{
+					while (count < batchSize)
+					{
+						if (!source.hasNext())
+						{
+							end = true;
+							break;
+						}
+
+						Object item = source.next();
+						items[count++] = item;
+					}
+				}
+				catch (RuntimeException e)
+				{
+					failure = e;
+				}
+
+				if (count > 0)
+					batches.put(count < batchSize ? Arrays.copyOf(items, count) : items);
+			}
+
+			batches.put(END);
+		}
+		catch (InterruptedException e)
+		{
+			// closed by the consumer
+		}
+		finally
+		{
+			closeSource();
+		}
+	}
+
+	private void closeSource()
+	{
+		if (source instanceof Closeable)
+			try
+			{
+				((Closeable) source).close();
+			}
+			catch (IOException e)
+			{
+				MarketDataCacheProvider.getLogger().warn("Can't close prefetched source", e);
+			}
+	}
+}
@@ -0,0 +1,528 @@
+/*
+ * Copyright 2022-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.quantfabric.algo.backtesting.storage;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import com.quantfabric.algo.market.datamodel.MDDelete;
+import com.quantfabric.algo.market.datamodel.MDItem;
+import com.quantfabric.algo.market.datamodel.MDItem.MDItemType;
+import com.quantfabric.algo.market.datamodel.MDItemPool;
+import com.quantfabric.algo.market.datamodel.MDMessageInfo.MDMessageType;
+import com.quantfabric.algo.market.datamodel.MDPrice;
+import com.quantfabric.algo.market.datamodel.MDPrice.PriceType;
+import com.quantfabric.algo.market.datamodel.MDTrade;
+import com.quantfabric.algo.market.datamodel.MDTrade.MDTradeSide;
+
+/**
+ * Ticks of one feed for one day stored column by column in memory-mapped files.
+ * <p>
+ * Every column holds one fixed width value per row, variable length item ids
+ * are kept in an append-only dictionary and referenced by their number. The
+ * row count lives in a mapped header which is updated after every appended
+ * row, so a segment remains readable after the recording process died.
+ * Values common to all ticks of the feed (symbol, instrument, points in one,
+ * feed ids) are taken from the first tick and kept in the segment properties.
+ * <p>
+ * A sparse index stores, for every {@value #INDEX_INTERVAL}th row, the highest
+ * source timestamp of the rows preceding it, which lets readers skip straight
+ * to the first block that may contain a requested time.
+ */
+final class TickSegment implements Closeable
+{
+	static final int INDEX_INTERVAL = 1024;
+
+	private static final String HEADER_FILE = "header.col";
+	private static final String DICTIONARY_FILE = "itemIds.dict";
+	private static final String PROPERTIES_FILE = "segment.properties";
+
+	private static final int HEADER_ROW_COUNT = 0;
+	private static final int HEADER_MAX_SOURCE_TIMESTAMP = 1;
+	private static final int HEADER_ROWS = 4;
+
+	private static final String FEED_NAME = "feedName";
+	private static final String SYMBOL = "symbol";
+	private static final String SOURCE_NAME = "sourceName";
+	private static final String FEED_ID = "feedId";
+	private static final String CURRENCY = "currency";
+	private static final String INSTRUMENT_ID = "instrumentId";
+	private static final String POINTS_IN_ONE = "pointsInOne";
+	private static final String FEED_GROUP_ID = "feedGroupId";
+
+	private static final int KIND_PRICE = 0;
+	private static final int KIND_DELETE = 1;
+	private static final int KIND_TRADE = 2;
+
+	private static final int NO_ITEM_ID = -1;
+
+	private static final MDMessageType[] MESSAGE_TYPES = MDMessageType.values();
+	private static final MDItemType[] ITEM_TYPES = MDItemType.values();
+	private static final PriceType[] PRICE_TYPES = PriceType.values();
+	private static final MDTradeSide[] TRADE_SIDES = MDTradeSide.values();
+
+	private final File directory;
+	private final boolean writable;
+
+	private final MappedColumn header;
+	private final MappedColumn timestamps;
+	private final MappedColumn sourceTimestamps;
+	private final MappedColumn messageIds;
+	private final MappedColumn prices;
+	private final MappedColumn sizes;
+	private final MappedColumn flags;
+	private final MappedColumn positions;
+	private final MappedColumn itemIds;
+	private final MappedColumn extensionsA;
+	private final MappedColumn extensionsB;
+	private final MappedColumn index;
+	private final MappedColumn[] columns;
+
+	private final List<String> dictionary = new ArrayList<>();
+	private final Map<String, Integer> dictionaryIndex = new HashMap<>();
+	private final FileChannel dictionaryChannel;
+
+	private final Properties properties = new Properties();
+	private String feedName;
+	private String symbol;
+	private String sourceName;
+	private int feedId;
+	private String currency;
+	private String instrumentId;
+	private int pointsInOne;
+	private int feedGroupId;
+
+	private long rowCount;
+	private long maxSourceTimestamp;
+	private long capacity;
+
+	private TickSegment(File directory, boolean writable, long capacity) throws IOException
+	{
+		this.directory = directory;
+		this.writable = writable;
+
+		if (writable && !directory.isDirectory() && !directory.mkdirs())
+			throw new IOException(String.format("Can't create segment directory (%s)", directory));
+
+		header = open(HEADER_FILE, Long.BYTES, HEADER_ROWS);
+		rowCount = header.getLong(HEADER_ROW_COUNT);
+		maxSourceTimestamp = rowCount == 0 ? Long.MIN_VALUE : header.getLong(HEADER_MAX_SOURCE_TIMESTAMP);
+
+		long rows = writable ? Math.max(capacity, rowCount) : rowCount;
+
+		timestamps = open("timestamp.col", Long.BYTES, rows);
+		sourceTimestamps = open("sourceTimestamp.col", Long.BYTES, rows);
+		messageIds = open("messageId.col", Long.BYTES, rows);
+		prices = open("price.col", Long.BYTES, rows);
+		sizes = open("size.col", Double.BYTES, rows);
+		flags = open("flags.col", Integer.BYTES, rows);
+		positions = open("position.col", Long.BYTES, rows);
+		itemIds = open("itemId.col", Integer.BYTES, rows);
+		extensionsA = open("extA.col", Long.BYTES, rows);
+		extensionsB = open("extB.col", Long.BYTES, rows);
+		index = open("index.col", Long.BYTES, indexEntries(rows));
+
+		columns = new MappedColumn[] {
+				timestamps, sourceTimestamps, messageIds, prices, sizes, flags,
+				positions, itemIds, extensionsA, extensionsB };
+		this.capacity = getColumnsCapacity();
+
+		loadDictionary();
+		dictionaryChannel = writable
+			? FileChannel.open(new File(directory, DICTIONARY_FILE).toPath(),
+				StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)
+			: null;
+
+		loadProperties();
+	}
+
+	static TickSegment openForWrite(File directory, long capacity) throws IOException
+	{
+		return new TickSegment(directory, true, capacity);
+	}
+
+	static TickSegment openForRead(File directory) throws IOException
+	{
+		return new TickSegment(directory, false, 0);
+	}
+
+	private MappedColumn open(String fileName, int width, long rows) throws IOException
+	{
+		File file = new File(directory, fileName);
+
+		return writable
+			? MappedColumn.openForWrite(file, width, rows)
+			: MappedColumn.openForRead(file, width, rows);
+	}
+
+	private static long indexEntries(long rows)
+	{
+		return (rows + INDEX_INTERVAL - 1) / INDEX_INTERVAL;
+	}
+
+	private long getColumnsCapacity()
+	{
+		long result = Long.MAX_VALUE;
+		for (MappedColumn column : columns)
+			result = Math.min(result, column.getCapacity());
+		return result;
+	}
+
+	long getRowCount()
+	{
+		return rowCount;
+	}
+
+	String getFeedName()
+	{
+		return feedName;
+	}
+
+	void append(MDPrice price) throws IOException
+	{
+		long row = beginRow(price);
+
+		prices.putLong(row, price.getPrice());
+		sizes.putDouble(row, price.getSize());
+		flags.putInt(row, flags(KIND_PRICE, price)
+				| (price.getPriceType() == null ? PriceType.UNKNOWN : price.getPriceType()).ordinal() << 9
+				| (price.isAggregated() ? 1 << 15 : 0));
+		extensionsA.putLong(row, price.getAmountOrders());
+		extensionsB.putLong(row, 0);
+
+		commitRow(row, price);
+	}
+
+	void append(MDDelete delete) throws IOException
+	{
+		long row = beginRow(delete);
+
+		prices.putLong(row, 0);
+		sizes.putDouble(row, 0);
+		flags.putInt(row, flags(KIND_DELETE, delete));
+		extensionsA.putLong(row, 0);
+		extensionsB.putLong(row, 0);
+
+		commitRow(row, delete);
+	}
+
+	void append(MDTrade trade) throws IOException
+	{
+		if (currency == null && trade.getCurrency() != null)
+		{
+			currency = trade.getCurrency();
+			storeProperty(CURRENCY, currency);
+		}
+
+		long row = beginRow(trade);
+
+		prices.putLong(row, trade.getPrice());
+		sizes.putDouble(row, 0);
+		flags.putInt(row, flags(KIND_TRADE, trade)
+				| (trade.getTradeSide() == null ? MDTradeSide.NA : trade.getTradeSide()).ordinal() << 13
+				| (trade.isBuyerMarketMaker() ? 1 << 16 : 0));
+		extensionsA.putLong(row, trade.getBuyerOrderId());
+		extensionsB.putLong(row, trade.getSellerOrderId());
+
+		commitRow(row, trade);
+	}
+
+	private long beginRow(MDItem item) throws IOException
+	{
+		if (feedName == null)
+			initProperties(item);
+
+		long row = rowCount;
+
+		if (row >= capacity)
+		{
+			for (MappedColumn column : columns)
+				column.ensureCapacity(row + 1);
+			capacity = getColumnsCapacity();
+			index.ensureCapacity(indexEntries(capacity));
+		}
+
+		if (row % INDEX_INTERVAL == 0)
+			index.putLong(row / INDEX_INTERVAL, maxSourceTimestamp);
+
+		timestamps.putLong(row, item.getTimestamp());
+		sourceTimestamps.putLong(row, item.getSourceTimestamp());
+		messageIds.putLong(row, item.getMessageId());
+		positions.putLong(row, (long) item.getItemCount() << 32 | item.getItemIndex() & 0xFFFFFFFFL);
+		itemIds.putInt(row, toItemId(item.getMdItemId()));
+
+		return row;
+	}
+
+	private void commitRow(long row, MDItem item)
+	{
+		rowCount = row + 1;
+		maxSourceTimestamp = Math.max(maxSourceTimestamp, item.getSourceTimestamp());
+
+		header.putLong(HEADER_MAX_SOURCE_TIMESTAMP, maxSourceTimestamp);
+		header.putLong(HEADER_ROW_COUNT, rowCount);
+	}
+
+	private static int flags(int kind, MDItem item)
+	{
+		MDMessageType messageType = item.getMessageType() == null ? MDMessageType.UNKNOWN : item.getMessageType();
+		MDItemType itemType = item.getMdItemType() == null ? MDItemType.UNKNOWN : item.getMdItemType();
+
+		return kind | messageType.ordinal() << 2 | itemType.ordinal() << 5;
+	}
+
+	private int toItemId(String mdItemId) throws IOException
+	{
+		if (mdItemId == null)
+			return NO_ITEM_ID;
+
+		Integer id = dictionaryIndex.get(mdItemId);
+		if (id != null)
+			return id;
+
+		id = dictionary.size();
+		dictionary.add(mdItemId);
+		dictionaryIndex.put(mdItemId, id);
+		dictionaryChannel.write(ByteBuffer.wrap((mdItemId + "\n").getBytes(StandardCharsets.UTF_8)));
+
+		return id;
+	}
+
+	/**
+	 * Returns index of the first row which may have source timestamp not less
+	 * than {@code from}, all rows before it are known to be earlier.
+	 */
+	long findFirstRow(long from)
+	{
+		long low = 0;
+		long high = indexEntries(rowCount) - 1;
+
+		while (low < high)
+		{
+			long middle = (low + high + 1) >>> 1;
+			if (index.getLong(middle) < from)
+				low = middle;
+			else
+				high = middle - 1;
+		}
+
+		return low * INDEX_INTERVAL;
+	}
+
+	long getSourceTimestamp(long row)
+	{
+		return sourceTimestamps.getLong(row);
+	}
+
+	MDItem read(long row)
+	{
+		return read(row, null);
+	}
+
+	/**
+	 * Decodes the row into an item taken from the pools, a new item is
+	 * allocated if {@code pools} is <code>null</code>.
+	 */
+	MDItem read(long row, ItemPools pools)
+	{
+		int rowFlags = flags.getInt(row);
+		MDItem item;
+
+		switch (rowFlags & 3)
+		{
+			case KIND_PRICE:
+				MDPrice price = pools == null ? new MDPrice() : pools.prices.acquire();
+				price.setPrice(prices.getLong(row));
+				price.setSize(sizes.getDouble(row));
+				price.setPriceType(PRICE_TYPES[rowFlags >>> 9 & 15]);
+				price.setAggregated((rowFlags & 1 << 15) != 0);
+				price.setAmountOrders((int) extensionsA.getLong(row));
+				item = price;
+				break;
+			case KIND_DELETE:
+				item = pools == null ? new MDDelete() : pools.deletes.acquire();
+				break;
+			default:
+				MDTrade trade = pools == null ? new MDTrade() : pools.trades.acquire();
+				trade.setPrice(prices.getLong(row));
+				trade.setCurrency(currency);
+				trade.setTradeSide(TRADE_SIDES[rowFlags >>> 13 & 3]);
+				trade.setBuyerMarketMaker((rowFlags & 1 << 16) != 0);
+				trade.setBuyerOrderId(extensionsA.getLong(row));
+				trade.setSellerOrderId(extensionsB.getLong(row));
+				item = trade;
+		}
+
+		long position = positions.getLong(row);
+		int itemId = itemIds.getInt(row);
+
+		item.setTimestamp(timestamps.getLong(row));
+		item.setSourceTimestamp(sourceTimestamps.getLong(row));
+		item.setMessageId(messageIds.getLong(row));
+		item.setMessageType(MESSAGE_TYPES[rowFlags >>> 2 & 7]);
+		item.setMdItemType(ITEM_TYPES[rowFlags >>> 5 & 15]);
+		item.setItemCount((int) (position >>> 32));
+		item.setItemIndex((int) position);
+		item.setMdItemId(itemId == NO_ITEM_ID ? null : dictionary.get(itemId));
+		item.setSourceName(sourceName);
+		item.setSymbol(symbol);
+		item.setFeedId(feedId);
+		item.setFeedName(feedName);
+		item.setInstrumentId(instrumentId);
+		item.setPointsInOne(pointsInOne);
+		item.setFeedGroupId(feedGroupId);
+
+		return item;
+	}
+
+	/**
+	 * Pools of the items decoded by the readers of one feed.
+	 */
+	static final class ItemPools
+	{
+		private final MDItemPool<MDPrice> prices = MDItemPool.forPrices(MDItemPool.DEFAULT_CAPACITY);
+		private final MDItemPool<MDDelete> deletes = MDItemPool.forDeletes(MDItemPool.DEFAULT_CAPACITY);
+		private final MDItemPool<MDTrade> trades = MDItemPool.forTrades(MDItemPool.DEFAULT_CAPACITY);
+	}
+
+	private void loadDictionary() throws IOException
+	{
+		File file = new File(directory, DICTIONARY_FILE);
+		if (!file.exists())
+			return;
+
+		for (String id : Files.readAllLines(file.toPath(), StandardCharsets.UTF_8))
+		{
+			dictionaryIndex.put(id, dictionary.size());
+			dictionary.add(id);
+		}
+	}
+
+	private void loadProperties() throws IOException
+	{
+		File file = new File(directory, PROPERTIES_FILE);
+		if (!file.exists())
+			return;
+
+		try (InputStream in = new FileInputStream(file))
+		{
+			properties.load(in);
+		}
+
+		feedName = properties.getProperty(FEED_NAME);
+		symbol = properties.getProperty(SYMBOL);
+		sourceName = properties.getProperty(SOURCE_NAME);
+		feedId = Integer.parseInt(properties.getProperty(FEED_ID, "0"));
+		currency = properties.getProperty(CURRENCY);
+		instrumentId = properties.getProperty(INSTRUMENT_ID);
+		pointsInOne = Integer.parseInt(properties.getProperty(POINTS_IN_ONE, "0"));
+		feedGroupId = Integer.parseInt(properties.getProperty(FEED_GROUP_ID, "0"));
+	}
+
+	private void initProperties(MDItem item) throws IOException
+	{
+		feedName = item.getFeedName() == null ? directory.getParentFile().getName() : item.getFeedName();
+		symbol = item.getSymbol();
+		sourceName = item.getSourceName();
+		feedId = item.getFeedId();
+		instrumentId = item.getInstrumentId();
+		pointsInOne = item.getPointsInOne();
+		feedGroupId = item.getFeedGroupId();
+
+		properties.setProperty(FEED_NAME, feedName);
+		if (symbol != null)
+			properties.setProperty(SYMBOL, symbol);
+		if (sourceName != null)
+			properties.setProperty(SOURCE_NAME, sourceName);
+		properties.setProperty(FEED_ID, String.valueOf(feedId));
+		if (instrumentId != null)
+			properties.setProperty(INSTRUMENT_ID, instrumentId);
+		properties.setProperty(POINTS_IN_ONE, String.valueOf(pointsInOne));
+		properties.setProperty(FEED_GROUP_ID, String.valueOf(feedGroupId));
+
+		storeProperties();
+	}
+
+	private void storeProperty(String name, String value) throws IOException
+	{
+		properties.setProperty(name, value);
+		storeProperties();
+	}
+
+	private void storeProperties() throws IOException
+	{
+		try (OutputStream out = new FileOutputStream(new File(directory, PROPERTIES_FILE)))
+		{
+			properties.store(out, null);
+		}
+	}
+
+	void flush()
+	{
+		for (MappedColumn column : columns)
+			column.force();
+		index.force();
+		header.force();
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		IOException failure = null;
+
+		for (MappedColumn column : columns)
+			failure = close(column, failure);
+		failure = close(index, failure);
+		failure = close(header, failure);
+
+		if (dictionaryChannel != null)
+			failure = close(dictionaryChannel, failure);
+
+		if (failure != null)
+			throw failure;
+	}
+
+	private static IOException close(Closeable closeable, IOException failure)
+	{
+		try
+		{
+			closeable.close();
+		}
+		catch (IOException e)
+		{
+			if (failure == null)
+				return e;
+			failure.addSuppressed(e);
+		}
+
+		return failure;
+	}
+}
@@ -0,0 +1,527 @@
+/*
+ * Copyright 2022-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.quantfabric.algo.backtesting.storage;
+
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.quantfabric.algo.market.datamodel.MDDelete;
+import com.quantfabric.algo.market.datamodel.MDFeedEvent;
+import com.quantfabric.algo.market.datamodel.MDItem;
+import com.quantfabric.algo.market.datamodel.MDPrice;
+import com.quantfabric.algo.market.datamodel.MDTopOfBook;
+import com.quantfabric.algo.market.datamodel.MDTrade;
+import com.quantfabric.algo.market.gateway.feed.MarketDataFeed;
+import com.quantfabric.algo.backtesting.storage.MarketDataCacheProvider.MarketDataCacheProviderConfigException;
+import com.quantfabric.algo.backtesting.storage.MarketDataCacheProvider.MarketDataCacheProviderException;
+import com.quantfabric.messaging.Recyclable;
+
+/**
+ * Write-behind stage of a {@link MarketDataCacheProvider}: recorded items are copied into
+ * a ring of their feed and saved by a background writer, so the publishing thread never
+ * waits for the storage. Each feed's ring is allocated when its first item is recorded,
+ * providers only replaying data never pay for it.
+ * <p>
+ * A feed's items have to be recorded by one thread at a time, the rings take them without
+ * locking. Prices, deletes, trades and tops of book are copied into the slot's own items,
+ * the publisher may reuse an item as soon as it was recorded. Other items are kept by
+ * reference, {@link Recyclable} ones are retained while they wait.
+ * <p>
+ * The writer saves everything available in one pass and flushes the provider at most
+ * once per flush interval. What happens to an item arriving at a full ring is decided by
+ * the {@link OverflowPolicy} of its feed.
+ * <p>
+ * Settings (of the cache provider):
+ * <ul>
+ * <li>{@value #CAPACITY_SETTING} - capacity of each feed's ring, rounded up to a power of two,
+ * 0 saves synchronously</li>
+ * <li>{@value #SPILL_CAPACITY_SETTING} - capacity of the spill ring of a feed, rounded up to
+ * a power of two</li>
+ * <li>{@value #POLICY_SETTING} - default overflow policy, <code>block</code> by default,
+ * <code>{@value #POLICY_SETTING}.&lt;feedName&gt;</code> overrides it for one feed</li>
+ * <li>{@value #FLUSH_INTERVAL_SETTING} - milliseconds between flushes of the provider</li>
+ * </ul>
+ */
+public class WriteBehindRecorder
+{
+	public enum OverflowPolicy
+	{
+		/** the item is not recorded */
+		DROP,
+		/** the publishing thread waits for the writer */
+		BLOCK,
+		/** 
+		 * the item is put into the spill ring of its feed, allocated on the first overflow,
+		 * items arriving at a full spill ring are dropped
+		 */
+		SPILL
+	}
+
+	public static final String CAPACITY_SETTING = "writeBehind.capacity";
+	public static final String SPILL_CAPACITY_SETTING = "writeBehind.spillCapacity";
+	public static final String POLICY_SETTING = "writeBehind.policy";
+	public static final String FLUSH_INTERVAL_SETTING = "writeBehind.flushInterval";
+
+	public static final int DEFAULT_CAPACITY = 1 << 14;
+	public static final int DEFAULT_SPILL_CAPACITY = 1 << 18;
+	public static final long DEFAULT_FLUSH_INTERVAL = 1000;
+
+	private static final Logger log = LoggerFactory.getLogger(WriteBehindRecorder.class);
+
+	private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+	private static final long BLOCKED_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(10);
+
+	private static final class Slot
+	{
+		private MDPrice price;
+		private MDDelete delete;
+		private MDTrade trade;
+		private MDTopOfBook topOfBook;
+		private MDFeedEvent item;
+		// spilled items are saved after the ring's items up to this sequence
+		private long after;
+
+		void set(MDFeedEvent event, long after)
+		{
+			Class<?> type = event.getClass();
+			MDItem copy;
+
+			if (type == MDPrice.class)
+				copy = price == null ? price = new MDPrice() : price;
+			else if (type == MDDelete.class)
+				copy = delete == null ? delete = new MDDelete() : delete;
+			else if (type == MDTrade.class)
+				copy = trade == null ? trade = new MDTrade() : trade;
+			else if (type == MDTopOfBook.class)
+				copy = topOfBook == null ? topOfBook = new MDTopOfBook() : topOfBook;
+			else
+				copy = null;
+
+			if (copy == null)
+			{
+				if (event instanceof Recyclable)
+					((Recyclable) event).retain();
+				item = event;
+			}
+			else
+			{
+				copy.copyFrom((MDItem) event);
+				item = copy;
+			}
+			this.after = after;
+		}
+
+		void clear()
+		{
+			// copies aren't pooled, releasing them does nothing
+			if (item instanceof Recyclable)
+				((Recyclable) item).release();
+			item = null;
+		}
+	}
+
+	/**
+	 * Single producer, single consumer ring of slots.
+	 */
+	private static final class Ring
+	{
+		private final Slot[] slots;
+		private final int mask;
+		private final AtomicLong published = new AtomicLong(-1);
+		private final AtomicLong consumed = new AtomicLong(-1);
+
+		Ring(int capacity)
+		{
+			slots = new Slot[capacity];
+			mask = capacity - 1;
+
+			for (int i = 0; i < capacity; i++)
+				slots[i] = new Slot();
+		}
+
+		boolean offer(MDFeedEvent item, long after)
+		{
+			long next = published.get() + 1;
+
+			if (next - consumed.get() > slots.length)
+				return false;
+
+			slots[(int) next & mask].set(item, after);
+			published.lazySet(next);
+
+			return true;
+		}
+
+		long getPublished()
+		{
+			return published.get();
+		}
+
+		long getConsumed()
+		{
+			return consumed.get();
+		}
+
+		long size()
+		{
+			return published.get() - consumed.get();
+		}
+	}
+
+	private final class FeedQueue
+	{
+		private final MarketDataFeed feed;
+		private final OverflowPolicy policy;
+		private final Ring ring = new Ring(capacity);
+		// written by the feed's producer only
+		private volatile Ring spill;
+
+		FeedQueue(MarketDataFeed feed, OverflowPolicy policy)
+		{
+			this.feed = feed;
+			this.policy = policy;
+		}
+
+		boolean offer(MDFeedEvent item)
+		{
+			Ring spill = this.spill;
+
+			// once spilling, the feed's items have to follow the spilled ones
+			if (spill != null && spill.size() > 0)
+				return spill(spill, item);
+
+			if (ring.offer(item, 0))
+				return true;
+
+			if (policy != OverflowPolicy.SPILL)
+				return false;
+
+			if (spill == null)
+				this.spill = spill = new Ring(spillCapacity);
+
+			return spill(spill, item);
+		}
+
+		private boolean spill(Ring spill, MDFeedEvent item)
+		{
+			if (!spill.offer(item, ring.getPublished()))
+				return false;
+
+			spilled.incrementAndGet();
+			return true;
+		}
+
+		int drain()
+		{
+			int written = drain(ring, Long.MAX_VALUE);
+			Ring spill = this.spill;
+
+			if (spill != null)
+				written += drain(spill, ring.getConsumed());
+
+			return written;
+		}
+
+		private int drain(Ring source, long saved)
+		{
+			long next = source.getConsumed() + 1;
+			long available = source.getPublished();
+			long sequence = next;
+
+			for (; sequence <= available; sequence++)
+			{
+				Slot slot = source.slots[(int) sequence & source.mask];
+
+				if (slot.after > saved)
+					break;
+
+				save(feed, slot.item);
+				slot.clear();
+			}
+
+			if (sequence > next)
+				source.consumed.lazySet(sequence - 1);
+
+			return (int) (sequence - next);
+		}
+
+		long getBacklog()
+		{
+			Ring spill = this.spill;
+			return ring.size() + (spill == null ? 0 : spill.size());
+		}
+	}
+
+	private final String name;
+	private final MarketDataCacheProvider provider;
+	private final int capacity;
+	private final int spillCapacity;
+	private final long flushIntervalNanos;
+	private final OverflowPolicy defaultPolicy;
+	private final Properties settings;
+	private final Map<String, FeedQueue> queues = new ConcurrentHashMap<>();
+
+	private final AtomicLong dropped = new AtomicLong();
+	private final AtomicLong spilled = new AtomicLong();
+	private final AtomicLong failed = new AtomicLong();
+
+	private volatile boolean running;
+	private Thread writer;
+
+	public WriteBehindRecorder(String name, MarketDataCacheProvider provider, Properties settings)
+		throws MarketDataCacheProviderConfigException
+	{
+		this.name = name;
+		this.provider = provider;
+		this.settings = settings == null ? new Properties() : settings;
+
+		this.capacity = powerOfTwo(parseInt(CAPACITY_SETTING, DEFAULT_CAPACITY));
+		this.spillCapacity = powerOfTwo(parseInt(SPILL_CAPACITY_SETTING, DEFAULT_SPILL_CAPACITY));
+		this.flushIntervalNanos = TimeUnit.MILLISECONDS.toNanos(
+				parseInt(FLUSH_INTERVAL_SETTING, (int) DEFAULT_FLUSH_INTERVAL));
+		this.defaultPolicy = parsePolicy(this.settings.getProperty(POLICY_SETTING));
+	}
+
+	/**
+	 * @return <code>false</code> when the settings ask for synchronous saving
+	 */
+	public static boolean isEnabled(Properties settings)
+	{
+		return settings == null 
+				|| !"0".equals(settings.getProperty(CAPACITY_SETTING, String.valueOf(DEFAULT_CAPACITY)).trim());
+	}
+
+	public String getName()
+	{
+		return name;
+	}
+
+	/**
+	 * @return capacity of each feed's ring
+	 */
+	public int getCapacity()
+	{
+		return capacity;
+	}
+
+	public int getSpillCapacity()
+	{
+		return spillCapacity;
+	}
+
+	public synchronized void start()
+	{
+		if (running)
+			return;
+
+		running = true;
+		writer = new Thread(this::write, name + "-writer");
+		writer.setDaemon(true);
+		writer.start();
+	}
+
+	/**
+	 * Saves all items still waiting and flushes the provider.
+	 */
+	public synchronized void stop()
+	{
+		if (!running)
+			return;
+
+		running = false;
+		LockSupport.unpark(writer);
+
+		try
+		{
+			writer.join();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		writer = null;
+	}
+
+	public boolean isRunning()
+	{
+		return running;
+	}
+
+	/**
+	 * Queues the item for saving, never blocks unless the feed's ring is full and its
+	 * policy is {@link OverflowPolicy#BLOCK}.
+	 */
+	public void record(MarketDataFeed feed, MDFeedEvent item)
+	{
+		FeedQueue queue = getQueue(feed);
+
+		while (!queue.offer(item))
+		{
+			if (queue.policy != OverflowPolicy.BLOCK || !running)
+			{
+				dropped.incrementAndGet();
+				return;
+			}
+			LockSupport.parkNanos(BLOCKED_PARK_NANOS);
+		}
+	}
+
+	private FeedQueue getQueue(MarketDataFeed feed)
+	{
+		String feedName = feed.getFeedName().getName();
+		FeedQueue queue = queues.get(feedName);
+
+		if (queue == null)
+			queue = queues.computeIfAbsent(feedName, key -> new FeedQueue(feed, getPolicy(feed)));
+
+		return queue;
+	}
+
+	private void write()
+	{
+		long lastFlush = System.nanoTime();
+		boolean dirty = false;
+
+		while (true)
+		{
+			boolean stopping = !running;
+			int written = 0;
+
+			for (FeedQueue queue : queues.values())
+				written += queue.drain();
+
+			dirty |= written > 0;
+
+			long now = System.nanoTime();
+
+			if (dirty && (stopping || now - lastFlush >= flushIntervalNanos))
+			{
+				flush();
+				dirty = false;
+				lastFlush = now;
+			}
+
+			if (stopping && getBacklog() == 0)
+				break;
+
+			if (written == 0)
+				LockSupport.parkNanos(IDLE_PARK_NANOS);
+		}
+	}
+
+	private void save(MarketDataFeed feed, MDFeedEvent item)
+	{
+		try
+		{
+			provider.save(feed, item);
+		}
+		catch (MarketDataCacheProviderException | RuntimeException e)
+		{
+			if (failed.incrementAndGet() == 1)
+				log.error("Write-behind recorder (" + name + ") can't save market data", e);
+		}
+	}
+
+	private void flush()
+	{
+		try
+		{
+			provider.flush();
+		}
+		catch (MarketDataCacheProviderException | RuntimeException e)
+		{
+			log.error("Write-behind recorder (" + name + ") can't flush market data cache", e);
+		}
+	}
+
+	public long getBacklog()
+	{
+		long backlog = 0;
+
+		for (FeedQueue queue : queues.values())
+			backlog += queue.getBacklog();
+
+		return backlog;
+	}
+
+	public long getDroppedCount()
+	{
+		return dropped.get();
+	}
+
+	public long getSpilledCount()
+	{
+		return spilled.get();
+	}
+
+	public long getFailedCount()
+	{
+		return failed.get();
+	}
+
+	public OverflowPolicy getPolicy(MarketDataFeed feed)
+	{
+		String value = settings.getProperty(POLICY_SETTING + "." + feed.getFeedName().getName());
+		return value == null ? defaultPolicy : parsePolicy(value);
+	}
+
+	private static OverflowPolicy parsePolicy(String value)
+	{
+		if (value == null)
+			return OverflowPolicy.BLOCK;
+
+		try
+		{
+			return OverflowPolicy.valueOf(value.trim().toUpperCase());
+		}
+		catch (IllegalArgumentException e)
+		{
+			log.warn("Unknown write-behind overflow policy (" + value + "), blocking is used");
+			return OverflowPolicy.BLOCK;
+		}
+	}
+
+	private static int powerOfTwo(int value)
+	{
+		return Integer.highestOneBit(Math.max(1, value * 2 - 1));
+	}
+
+	private int parseInt(String setting, int defaultValue) throws MarketDataCacheProviderConfigException
+	{
+		try
+		{
+			int value = Integer.parseInt(settings.getProperty(setting, String.valueOf(defaultValue)).trim());
+
+			if (value < 0)
+				throw new MarketDataCacheProviderConfigException(
+						String.format("Setting (%s) can't be negative", setting));
+
+			return value;
+		}
+		catch (NumberFormatException e)
+		{
+			throw new MarketDataCacheProviderConfigException(
+					String.format("Invalid value of setting (%s)", setting), e);
+		}
+	}
+}
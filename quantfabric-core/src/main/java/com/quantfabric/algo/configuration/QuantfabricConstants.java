@@ -23,6 +23,7 @@ public class QuantfabricConstants {
     public static final String BATCH_SUBSCRIPTION = "batch_subscription";
     public static final String CONFIG_URL = "configUrl";
     public static final String LOG_MESSAGES = "logMessages";
+    public static final String DISPATCH_THREADS = "dispatchThreads";
 
     public static final String BINANCE_TICKER_USE_REALTIME = "Binance_Ticker_Use_Realtime";
 
@@ -41,6 +42,8 @@ public class QuantfabricConstants {
     public static final String NAME = "name";
     public static final String INSTRUMENT = "instrument";
     public static final String MARKET_DEPTH = "marketDepth";
+    public static final String ORDER_BOOK_CACHE = "orderBookCache";
+    public static final String POOLED_ITEMS = "pooledItems";
     public static final String SAVE = "save";
     public static final String CHANNEL = "channel";
     public static final String FEED_GROUP_ID = "feedGroupId";
@@ -65,6 +65,9 @@ public class BaseMDFeedEvent extends MDEvent implements MDFeedEvent
 		setFeedName(event.getFeedName());
 		setInstrumentId(event.getInstrumentId());
 		setPointsInOne(event.getPointsInOne());
+		
+		if (event instanceof MDEvent)
+			setReceivedNanos(((MDEvent) event).receivedNanos());
 	}
 	
 	public String getSymbol()
@@ -122,9 +122,17 @@ public class ComplexAccumulatedOHLC extends BaseMDFeedEvent {
 
 	public void close(boolean closedByTimeout) {
 		
+		close(closedByTimeout, MDEvent.getCurrentTime());
+	}
+
+	/**
+	 * @param closedTimestamp time of the clock the bar is built in
+	 */
+	public void close(boolean closedByTimeout, long closedTimestamp) {
+		
 		closed = true;
 		this.closedByTimeout = closedByTimeout;
-		closedTimestamp = System.currentTimeMillis();
+		this.closedTimestamp = closedTimestamp;
 	}
 	
 	private void setFeedInfo(String symbol, int feedId, int feedGroupId, String feedName, String instrumentId, int pointsInOne) {
@@ -150,8 +158,11 @@ public class ComplexAccumulatedOHLC extends BaseMDFeedEvent {
 	@Override
 	public ComplexAccumulatedOHLC clone() {
 		
-		return new ComplexAccumulatedOHLC(getSymbol(), getFeedId(), getFeedGroupId(), getFeedName(), getInstrumentId(), getPointsInOne(),
-				snapshotId, genericOHLCUpdate, tradeOHLCUpdate, closed, closedByTimeout, closedTimestamp);
+		ComplexAccumulatedOHLC copy = new ComplexAccumulatedOHLC(getSymbol(), getFeedId(), getFeedGroupId(), getFeedName(), 
+				getInstrumentId(), getPointsInOne(), snapshotId, genericOHLCUpdate, tradeOHLCUpdate, closed, closedByTimeout, 
+				closedTimestamp);
+		copy.setReceivedNanos(receivedNanos());
+		return copy;
 	}
 	
 	@Override
@@ -21,10 +21,10 @@ import java.util.Arrays;
 public class IncrementalUpdate {
 	
 	private final int[] bidIds;
-	private final int[] bidPrices;
+	private final long[] bidPrices;
 	private final int[] bidVolumes;
 	private final int[] askIds;
-	private final int[] askPrices;
+	private final long[] askPrices;
 	private final int[] askVolumes;
 	private final int[] deletedIds;
 	
@@ -32,13 +32,14 @@ public class IncrementalUpdate {
 	private final String productCode;
 	
 	private boolean isNewSnapshot = false;
+	private long sequence;
 	
 	public IncrementalUpdate() {
 		this(0, null, null, null, null, null, null, null, null);
 	}
 	
-	public IncrementalUpdate(long snapshotId, int[] bidIds, int[] bidPrices, int[] bidVolumes,
-			int[] askIds, int[] askPrices, int[] askVolumes, int[] deletedIds, String productCode) {
+	public IncrementalUpdate(long snapshotId, int[] bidIds, long[] bidPrices, int[] bidVolumes,
+			int[] askIds, long[] askPrices, int[] askVolumes, int[] deletedIds, String productCode) {
 		
 		this.snapshotId = snapshotId;
 		this.bidIds = bidIds;
@@ -57,7 +58,7 @@ public class IncrementalUpdate {
 	}
 
 	
-	public int[] getBidPrices() {
+	public long[] getBidPrices() {
 		return bidPrices;
 	}
 
@@ -72,7 +73,7 @@ public class IncrementalUpdate {
 	}
 
 	
-	public int[] getAskPrices() {
+	public long[] getAskPrices() {
 		return askPrices;
 	}
 
@@ -104,10 +105,22 @@ public class IncrementalUpdate {
 	public void setNewSnapshot(boolean isNewSnapshot) {
 		this.isNewSnapshot = isNewSnapshot;
 	}	
+	
+	/**
+	 * @return number of the update in the stream of its product, consecutive updates
+	 * have consecutive sequences
+	 */
+	public long getSequence() {
+		return sequence;
+	}
+	
+	public void setSequence(long sequence) {
+		this.sequence = sequence;
+	}
 
 	@Override
 	public String toString() {
-		return "IncrementalUpdate(" + productCode + ") id = " + snapshotId + " [bidPrices=" + Arrays.toString(bidPrices) + ", askPrices=" + Arrays.toString(askPrices) + ", bidVolumes="
+		return "IncrementalUpdate(" + productCode + ") id = " + snapshotId + " seq = " + sequence + " [bidPrices=" + Arrays.toString(bidPrices) + ", askPrices=" + Arrays.toString(askPrices) + ", bidVolumes="
 				+ Arrays.toString(bidVolumes) + ", askVolumes=" + Arrays.toString(askVolumes) + ", bidIds=" + Arrays.toString(bidIds) + ", askIds= "
 				+ Arrays.toString(askIds) + ", deletedIds=" + Arrays.toString(deletedIds) + ", isNewSnapshot=" + isNewSnapshot +"]";
 	}
@@ -18,6 +18,8 @@ package com.quantfabric.algo.market.datamodel;
 import java.io.Serializable;
 import java.util.Date;
 
+import com.quantfabric.util.latency.LatencyStage;
+
 public class MDEvent implements Serializable
 {
 	/**
@@ -26,6 +28,11 @@ public class MDEvent implements Serializable
 	private static final long serialVersionUID = -180280035801717304L;
 	
 	private long timestamp;
+	/** 
+	 * local receive of the event by the connector for latency measurements, <code>0</code> 
+	 * when they are disabled or the event was not stamped
+	 */
+	private transient long receivedNanos;
 	
 	public MDEvent(long timestamp)
 	{
@@ -51,6 +58,24 @@ public class MDEvent implements Serializable
 		this.timestamp = timestamp;
 	}
 
+	public long receivedNanos()
+	{
+		return receivedNanos;
+	}
+
+	public void setReceivedNanos(long receivedNanos)
+	{
+		this.receivedNanos = receivedNanos;
+	}
+
+	/**
+	 * Called by connectors when the event is received, copies of the event keep the stamp.
+	 */
+	public void stampReceived()
+	{
+		receivedNanos = LatencyStage.start();
+	}
+
 	public Date getTimestampAsDate()
 	{
 		return new Date(getTimestamp());
@@ -16,8 +16,11 @@
 package com.quantfabric.algo.market.datamodel;
 
 import java.util.Date;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
-public class MDItem extends MDMessageInfo implements MDFeedEvent
+import com.quantfabric.messaging.Recyclable;
+
+public class MDItem extends MDMessageInfo implements MDFeedEvent, Recyclable, Cloneable
 {
 	private static final long serialVersionUID = -5691640592560930351L;
 
@@ -48,6 +51,12 @@ public class MDItem extends MDMessageInfo implements MDFeedEvent
 	private String feedName;
 	private int itemIndex = 0;
 	
+	private static final AtomicIntegerFieldUpdater<MDItem> REFERENCES = 
+			AtomicIntegerFieldUpdater.newUpdater(MDItem.class, "references");
+	
+	private transient volatile int references;
+	private transient MDItemPool<?> pool;
+	
 	public MDItem() {
 		super();
 	}
@@ -272,4 +281,106 @@ public class MDItem extends MDMessageInfo implements MDFeedEvent
 	{
 		this.pointsInOne = pointsInOne;
 	}
+	
+	/**
+	 * @return <code>true</code> if the item was taken from a {@link MDItemPool} and
+	 * will be reused once the last holder releases it
+	 */
+	public boolean isPooled()
+	{
+		return pool != null;
+	}
+	
+	@Override
+	public void retain()
+	{
+		if (pool != null)
+			REFERENCES.incrementAndGet(this);
+	}
+	
+	@Override
+	public void release()
+	{
+		MDItemPool<?> owner = pool;
+		
+		if (owner != null && REFERENCES.decrementAndGet(this) == 0)
+			owner.recycle(this);
+	}
+	
+	/**
+	 * @return a copy that is not pooled for a pooled item, the item itself otherwise.
+	 * Consumers keeping items for an unknown time (e.g. in CEP windows) have to detach them.
+	 */
+	public MDItem detach()
+	{
+		if (pool == null)
+			return this;
+		
+		try
+		{
+			MDItem copy = (MDItem) super.clone();
+			copy.pool = null;
+			copy.references = 0;
+			return copy;
+		}
+		catch (CloneNotSupportedException e)
+		{
+			throw new IllegalStateException(e);
+		}
+	}
+	
+	/**
+	 * Copies all values of the item into this one, subclasses copy their own values
+	 * from items of their type. The copy is not pooled.
+	 */
+	public void copyFrom(MDItem item)
+	{
+		setTimestamp(item.getTimestamp());
+		setReceivedNanos(item.receivedNanos());
+		setMessageId(item.getMessageId());
+		setMessageType(item.getMessageType());
+		setSourceName(item.getSourceName());
+		setSourceTimestamp(item.getSourceTimestamp());
+		setItemCount(item.getItemCount());
+		setMessageLatency(item.getMessageLatency());
+		mdItemId = item.mdItemId;
+		mdItemType = item.mdItemType;
+		symbol = item.symbol;
+		feedId = item.feedId;
+		instrumentId = item.instrumentId;
+		pointsInOne = item.pointsInOne;
+		feedGroupId = item.feedGroupId;
+		feedName = item.feedName;
+		itemIndex = item.itemIndex;
+	}
+	
+	/**
+	 * Restores defaults of a recycled item before it is handed out again.
+	 */
+	protected void reset()
+	{
+		setTimestamp(getCurrentTime());
+		setReceivedNanos(0);
+		setMessageId(DEFAULT_MESSAGE_ID);
+		setMessageType(MDMessageType.UNKNOWN);
+		setSourceName("");
+		setSourceTimestamp(0);
+		setItemCount(0);
+		setMessageLatency(0);
+		mdItemId = DEFAULT_MDITEM_ID;
+		mdItemType = MDItemType.UNKNOWN;
+		symbol = null;
+		feedId = 0;
+		instrumentId = null;
+		pointsInOne = 0;
+		feedGroupId = 0;
+		feedName = null;
+		itemIndex = 0;
+	}
+	
+	void attachPool(MDItemPool<?> pool)
+	{
+		this.pool = pool;
+		this.references = 1;
+	}
 }
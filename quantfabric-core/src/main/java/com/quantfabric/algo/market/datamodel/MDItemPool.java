@@ -0,0 +1,100 @@
+/*
+ * Copyright 2022-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.quantfabric.algo.market.datamodel;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.function.Supplier;
+
+/**
+ * Bounded pool of reusable market data items, connectors take the items of feeds
+ * with pooled items enabled ({@link com.quantfabric.algo.market.gateway.feed.MarketDataFeed#isPooledItems()})
+ * from it instead of allocating them per update. The order book differ of the XChange
+ * connectors is the only producer so far, feeds don't enable pooled items by default.
+ * <p>
+ * An acquired item holds one reference owned by the producer. Publishing the item
+ * through a market adapter hands this reference over: the adapter releases it once
+ * all subscribers were updated. Holders keeping the item beyond the update (order
+ * book caches, buffered subscribers) retain it and release it when dropping it, the
+ * last release resets the item and returns it to the pool.
+ * <p>
+ * Items are handed out with references to the producer's strings, producers should
+ * pass interned handles (e.g. the instrument's symbol and the adapter's source name)
+ * and not build new strings per update.
+ */
+public class MDItemPool<T extends MDItem>
+{
+	public static final int DEFAULT_CAPACITY = 4096;
+	
+	private final Supplier<T> factory;
+	private final ArrayBlockingQueue<T> items;
+	
+	public MDItemPool(Supplier<T> factory)
+	{
+		this(factory, DEFAULT_CAPACITY);
+	}
+	
+	public MDItemPool(Supplier<T> factory, int capacity)
+	{
+		this.factory = factory;
+		this.items = new ArrayBlockingQueue<T>(capacity);
+	}
+	
+	public static MDItemPool<MDPrice> forPrices(int capacity)
+	{
+		return new MDItemPool<MDPrice>(MDPrice::new, capacity);
+	}
+	
+	public static MDItemPool<MDDelete> forDeletes(int capacity)
+	{
+		return new MDItemPool<MDDelete>(MDDelete::new, capacity);
+	}
+	
+	public static MDItemPool<MDTrade> forTrades(int capacity)
+	{
+		return new MDItemPool<MDTrade>(MDTrade::new, capacity);
+	}
+	
+	/**
+	 * @return a reset item with a single reference, a new one if the pool is empty
+	 */
+	public T acquire()
+	{
+		T item = items.poll();
+		
+		if (item == null)
+			item = factory.get();
+		
+		item.attachPool(this);
+		
+		return item;
+	}
+	
+	/**
+	 * @return number of idle items
+	 */
+	public int size()
+	{
+		return items.size();
+	}
+	
+	@SuppressWarnings("unchecked")
+	void recycle(MDItem item)
+	{
+		item.reset();
+		// items not fitting the pool are left to the garbage collector
+		items.offer((T) item);
+	}
+}
@@ -16,6 +16,7 @@
 package com.quantfabric.algo.market.datamodel;
 
 import com.quantfabric.algo.market.dataprovider.orderbook.OrderBookView;
+import com.quantfabric.algo.market.dataprovider.orderbook.SharedOrderBookView;
 
 public class MDOrderBook extends BaseMDFeedEvent implements Cloneable
 {
@@ -40,8 +41,17 @@ public class MDOrderBook extends BaseMDFeedEvent implements Cloneable
 		super(book);
 		this.snapshotId = book.snapshotId;
 		this.sourceTimestamp = book.sourceTimestamp;
-		this.bids =	book.bids.clone();
-		this.offers = book.offers.clone();
+		this.bids =	copyOf(book.bids);
+		this.offers = copyOf(book.offers);
+	}
+	
+	private static OrderBookView copyOf(OrderBookView view)
+	{
+		// immutable views are shared between copies instead of being cloned
+		if (view == null || view instanceof SharedOrderBookView)
+			return view;
+		
+		return view.clone();
 	}
 	
 	public OrderBookView getBids()
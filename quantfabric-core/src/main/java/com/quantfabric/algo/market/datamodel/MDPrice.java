@@ -321,6 +321,35 @@ public class MDPrice extends MDItem implements Cloneable
 		this.depthLevel = depthLevel;
 	}
 
+	@Override
+	protected void reset()
+	{
+		super.reset();
+		price = 0;
+		size = 0;
+		priceType = PriceType.UNKNOWN;
+		isAggregated = false;
+		amountOrders = DEFAULT_AMOUNT_ORDERS;
+		depthLevel = 0;
+	}
+
+	@Override
+	public void copyFrom(MDItem item)
+	{
+		super.copyFrom(item);
+		
+		if (item instanceof MDPrice)
+		{
+			MDPrice other = (MDPrice) item;
+			price = other.price;
+			size = other.size;
+			priceType = other.priceType;
+			isAggregated = other.isAggregated;
+			amountOrders = other.amountOrders;
+			depthLevel = other.depthLevel;
+		}
+	}
+
 	private void init(long price, double size, PriceType priceType, boolean isAggregated)
 	{
 		setPrice(price);
@@ -354,6 +383,7 @@ public class MDPrice extends MDItem implements Cloneable
 		copy.setPointsInOne(getPointsInOne());		
 		copy.setDepthLevel(depthLevel);		
 		copy.setMessageLatency(getMessageLatency());
+		copy.setReceivedNanos(receivedNanos());
 			
 		return copy;
 	}
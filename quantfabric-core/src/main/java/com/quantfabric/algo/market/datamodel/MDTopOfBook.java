@@ -106,6 +106,16 @@ public class MDTopOfBook extends MDItem {
         setAskSize(askSize);
     }
 
+    @Override
+    public void copyFrom(MDItem item) {
+        super.copyFrom(item);
+
+        if (item instanceof MDTopOfBook) {
+            MDTopOfBook other = (MDTopOfBook) item;
+            init(other.snapshotId, other.currency, other.bidPrice, other.bidSize, other.askPrice, other.askSize);
+        }
+    }
+
     public long getBidPrice() {
         return bidPrice;
     }
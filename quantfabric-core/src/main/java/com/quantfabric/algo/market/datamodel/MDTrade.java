@@ -121,6 +121,32 @@ public class MDTrade extends MDItem {
 		this.sellerOrderId = sellerOrderId;
 	}
 
+	@Override
+	protected void reset() {
+		super.reset();
+		buyerMarketMaker = false;
+		buyerOrderId = 0;
+		sellerOrderId = 0;
+		price = 0;
+		currency = NOT_SET;
+		tradeSide = MDTradeSide.NA;
+	}
+
+	@Override
+	public void copyFrom(MDItem item) {
+		super.copyFrom(item);
+
+		if (item instanceof MDTrade) {
+			MDTrade other = (MDTrade) item;
+			buyerMarketMaker = other.buyerMarketMaker;
+			buyerOrderId = other.buyerOrderId;
+			sellerOrderId = other.sellerOrderId;
+			price = other.price;
+			currency = other.currency;
+			tradeSide = other.tradeSide;
+		}
+	}
+
 	@Override
 	public boolean equals(Object obj) {
 		if (obj instanceof MDTrade) {
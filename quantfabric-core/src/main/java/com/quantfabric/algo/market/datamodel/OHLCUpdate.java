@@ -80,7 +80,9 @@ public class OHLCUpdate extends BaseMDFeedEvent implements Cloneable
 	@Override
 	public OHLCUpdate clone() throws CloneNotSupportedException
 	{
-		return new OHLCUpdate(this.getTimeframe(), this.getOHLC().clone(), this.topQuote.clone());
+		OHLCUpdate copy = new OHLCUpdate(this.getTimeframe(), this.getOHLC().clone(), this.topQuote.clone());
+		copy.setReceivedNanos(receivedNanos());
+		return copy;
 	}
 
 	@Override
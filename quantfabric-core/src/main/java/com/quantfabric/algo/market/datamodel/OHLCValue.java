@@ -116,7 +116,10 @@ public class OHLCValue implements Cloneable, Serializable
 		clearTradeData();
 	}
 	
-	protected OHLCValue(long barId, int timeFrameInSeconds, long open,
+	/**
+	 * Restores a bar with all its values, used by history storages.
+	 */
+	public OHLCValue(long barId, int timeFrameInSeconds, long open,
 			long openSourceTimestamp, long high, long highSourceTimestamp,
 			long low, long lowSourceTimestamp, long close,
 			long closeSourceTimestamp, long typical, long barSize,
@@ -360,10 +363,18 @@ public class OHLCValue implements Cloneable, Serializable
 	}
 	
 	public void close (boolean timeoutExpired)
+	{
+		close(timeoutExpired, MDEvent.getCurrentTime());
+	}
+	
+	/**
+	 * @param closeTimestamp time of the closing, e.g. the time of the replayed events in a replay
+	 */
+	public void close (boolean timeoutExpired, long closeTimestamp)
 	{
 		closed = true;
 		closeByTimeout = timeoutExpired;
-		closeTimestamp = System.currentTimeMillis();
+		this.closeTimestamp = closeTimestamp;
 	}
 	
 	private void clearTradeData() {
@@ -32,6 +32,11 @@ public interface MarketDataPipeline extends Publisher<NamedMapSubscriber<Object>
 
 	boolean isSingleThreadModel();
 	void setSingleThreadModel(boolean singleThreadModel) ;
+	boolean isPartitionedThreadModel();
+	/**
+	 * Hashes feeds onto the given number of lanes, each with its own CEP runtime and input thread.
+	 */
+	void setPartitionedThreadModel(int laneCount);
 	boolean addFeedListener(FeedReference feed);
 	boolean removeFeedListener(FeedReference feed);
 	void addDataViews(List<DataView> views) throws Exception;
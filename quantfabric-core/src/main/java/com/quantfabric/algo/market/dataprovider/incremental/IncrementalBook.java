@@ -0,0 +1,167 @@
+/*
+ * Copyright 2022-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.quantfabric.algo.market.dataprovider.incremental;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.quantfabric.algo.market.datamodel.IncrementalUpdate;
+
+/**
+ * Book state carried by a stream of {@link IncrementalUpdate}s: price levels of both sides
+ * keyed by their ids. The producer side keeps it to send full snapshots, the consumer
+ * side rebuilds it by applying the updates.
+ */
+public class IncrementalBook {
+	
+	public static class Level {
+		
+		private final int id;
+		private long price;
+		private int size;
+		
+		private Level(int id) {
+			this.id = id;
+		}
+		
+		public int getId() {
+			return id;
+		}
+		
+		public long getPrice() {
+			return price;
+		}
+		
+		public int getSize() {
+			return size;
+		}
+		
+		@Override
+		public String toString() {
+			return id + ":" + price + "x" + size;
+		}
+	}
+	
+	private final Map<Integer, Level> bids = new HashMap<>();
+	private final Map<Integer, Level> asks = new HashMap<>();
+	
+	public void putBid(int id, long price, int size) {
+		
+		put(bids, id, price, size);
+	}
+	
+	public void putAsk(int id, long price, int size) {
+		
+		put(asks, id, price, size);
+	}
+	
+	/**
+	 * Deleted ids are not bound to a side.
+	 */
+	public void delete(int id) {
+		
+		if (bids.remove(id) == null)
+			asks.remove(id);
+	}
+	
+	public void clear() {
+		
+		bids.clear();
+		asks.clear();
+	}
+	
+	/**
+	 * Applies the update, a snapshot replaces the whole book.
+	 */
+	public void apply(IncrementalUpdate update) {
+		
+		if (update.isNewSnapshot())
+			clear();
+		
+		int[] deletedIds = update.getDeletedIds();
+		if (deletedIds != null)
+			for (int i = 0; i < deletedIds.length; i++)
+				delete(deletedIds[i]);
+		
+		put(bids, update.getBidIds(), update.getBidPrices(), update.getBidVolumes());
+		put(asks, update.getAskIds(), update.getAskPrices(), update.getAskVolumes());
+	}
+	
+	/**
+	 * @return the whole book as an update flagged as a new snapshot
+	 */
+	public IncrementalUpdate toSnapshot(long snapshotId, String productCode) {
+		
+		int[] bidIds = new int[bids.size()];
+		long[] bidPrices = new long[bids.size()];
+		int[] bidSizes = new int[bids.size()];
+		int[] askIds = new int[asks.size()];
+		long[] askPrices = new long[asks.size()];
+		int[] askSizes = new int[asks.size()];
+		
+		copy(bids, bidIds, bidPrices, bidSizes);
+		copy(asks, askIds, askPrices, askSizes);
+		
+		IncrementalUpdate snapshot = new IncrementalUpdate(snapshotId, bidIds, bidPrices, bidSizes, 
+				askIds, askPrices, askSizes, new int[0], productCode);
+		snapshot.setNewSnapshot(true);
+		
+		return snapshot;
+	}
+	
+	public Collection<Level> getBids() {
+		
+		return Collections.unmodifiableCollection(bids.values());
+	}
+	
+	public Collection<Level> getAsks() {
+		
+		return Collections.unmodifiableCollection(asks.values());
+	}
+	
+	private static void put(Map<Integer, Level> side, int id, long price, int size) {
+		
+		Level level = side.get(id);
+		
+		if (level == null) {
+			level = new Level(id);
+			side.put(id, level);
+		}
+		
+		level.price = price;
+		level.size = size;
+	}
+	
+	private static void put(Map<Integer, Level> side, int[] ids, long[] prices, int[] sizes) {
+		
+		if (ids != null)
+			for (int i = 0; i < ids.length; i++)
+				put(side, ids[i], prices[i], sizes[i]);
+	}
+	
+	private static void copy(Map<Integer, Level> side, int[] ids, long[] prices, int[] sizes) {
+		
+		int i = 0;
+		for (Level level : side.values()) {
+			ids[i] = level.id;
+			prices[i] = level.price;
+			sizes[i] = level.size;
+			i++;
+		}
+	}
+}
@@ -15,63 +15,109 @@
  */
 package com.quantfabric.algo.market.dataprovider.incremental;
 
-import java.util.LinkedList;
-import java.util.List;
-
-import org.apache.commons.lang.ArrayUtils;
+import java.util.Arrays;
 
 import com.quantfabric.algo.market.datamodel.IncrementalUpdate;
 import com.quantfabric.algo.market.datamodel.MDItem.MDItemType;
 
+/**
+ * Collects the changes of a message and creates sequenced {@link IncrementalUpdate}s of them.
+ * Every <code>snapshotInterval</code> updates, and on a new snapshot of the feed, the whole
+ * book is sent instead so consumers which lost an update can resynchronize.
+ */
 public class IncrementalUpdatesCreator {
 	
-	private final List<Long> bidPrices = new LinkedList<>();
-	private final List<Integer> bidSizes = new LinkedList<>();
-	private final List<Integer> bidIds = new LinkedList<>();
+	public static final int DEFAULT_SNAPSHOT_INTERVAL = 1000;
+	
+	/**
+	 * Growable primitive arrays of the levels of a message, reused between messages.
+	 */
+	private static class LevelBuffer {
+		
+		private int[] ids = new int[16];
+		private long[] prices = new long[16];
+		private int[] sizes = new int[16];
+		private int count;
+		
+		void add(int id, long price, int size) {
+			
+			if (count == ids.length) {
+				ids = Arrays.copyOf(ids, count * 2);
+				prices = Arrays.copyOf(prices, count * 2);
+				sizes = Arrays.copyOf(sizes, count * 2);
+			}
+			
+			ids[count] = id;
+			prices[count] = price;
+			sizes[count] = size;
+			count++;
+		}
+		
+		boolean isEmpty() {
+			return count == 0;
+		}
+		
+		void clear() {
+			count = 0;
+		}
+	}
 	
-	private final List<Long> askPrices = new LinkedList<>();
-	private final List<Integer> askSizes = new LinkedList<>();
-	private final List<Integer> askIds = new LinkedList<>();
+	private final LevelBuffer bids = new LevelBuffer();
+	private final LevelBuffer asks = new LevelBuffer();
+	private int[] deletedIds = new int[16];
+	private int deletedCount;
 	
-	private final List<Integer> deletedIds = new LinkedList<>();
+	private final IncrementalBook book = new IncrementalBook();
+	private final int snapshotInterval;
+	private int updatesSinceSnapshot;
+	private long sequence;
 	
 	private boolean isAskCommited;
 	private boolean isBidCommited;
 	
-	private boolean bidPriceChanged = false;
-	private boolean askPriceChanged = false;
-	private boolean deletedPriceChanged = false;
-	
 	private boolean isNewSnapshot = false;
 	
+	public IncrementalUpdatesCreator() {
+		
+		this(DEFAULT_SNAPSHOT_INTERVAL);
+	}
+	
+	/**
+	 * @param snapshotInterval number of updates between two snapshots, <code>0</code> to send
+	 * snapshots only on new snapshots of the feed
+	 */
+	public IncrementalUpdatesCreator(int snapshotInterval) {
+		
+		this.snapshotInterval = snapshotInterval;
+	}
+	
 	public void setNewSnapshot(boolean isNewSnapshot) {
 		
-		this.isNewSnapshot = isNewSnapshot;  
+		this.isNewSnapshot = isNewSnapshot;
+		
+		if (isNewSnapshot)
+			book.clear();
 	}
 
 	public void addBidPrice(int id, long price, int size) {
 		
-		bidIds.add(id);
-		bidPrices.add(price);
-		bidSizes.add(size);
-		
-		bidPriceChanged = true;
+		bids.add(id, price, size);
+		book.putBid(id, price, size);
 	}
 	
 	public void addAskPrice(int id, long price, int size) {
 		
-		askIds.add(id);
-		askPrices.add(price);
-		askSizes.add(size);		
-		
-		askPriceChanged = true;
+		asks.add(id, price, size);
+		book.putAsk(id, price, size);
 	}
 	
 	public void deletePrice(int id) {
 		
-		deletedIds.add(id);
+		if (deletedCount == deletedIds.length)
+			deletedIds = Arrays.copyOf(deletedIds, deletedCount * 2);
 		
-		deletedPriceChanged = true;
+		deletedIds[deletedCount++] = id;
+		book.delete(id);
 	}
 	
 	public IncrementalUpdate commit(String productCode, long messageId, MDItemType monitoredMdItemType) {
@@ -87,47 +133,47 @@ public class IncrementalUpdatesCreator {
 			return null;
 	}
 	
+	/**
+	 * @return sequence of the last created update
+	 */
+	public long getSequence() {
+		
+		return sequence;
+	}
+	
 	private IncrementalUpdate createIncrementalUpdate(String productCode, long messageId) {
 
-		IncrementalUpdate update = new IncrementalUpdate(messageId, convert(bidIds), convertLong(bidPrices), convert(bidSizes), convert(askIds), convertLong(askPrices),
-				convert(askSizes), convert(deletedIds), productCode);
+		IncrementalUpdate update;
 		
-		update.setNewSnapshot(isNewSnapshot);
-
+		if (isNewSnapshot || (snapshotInterval > 0 && ++updatesSinceSnapshot >= snapshotInterval)) {
+			update = book.toSnapshot(messageId, productCode);
+			updatesSinceSnapshot = 0;
+		}
+		else
+			update = new IncrementalUpdate(messageId, 
+					Arrays.copyOf(bids.ids, bids.count), Arrays.copyOf(bids.prices, bids.count), Arrays.copyOf(bids.sizes, bids.count), 
+					Arrays.copyOf(asks.ids, asks.count), Arrays.copyOf(asks.prices, asks.count), Arrays.copyOf(asks.sizes, asks.count),
+					Arrays.copyOf(deletedIds, deletedCount), productCode);
+		
+		update.setSequence(++sequence);
+		
+		isNewSnapshot = false;
 		clear();
 		return update;
 	}
 	
 	public void clear() {
 		
-		bidPrices.clear();
-		bidIds.clear();
-		bidSizes.clear();
-		
-		askPrices.clear();
-		askIds.clear();
-		askSizes.clear();
-		
-		deletedIds.clear();
+		bids.clear();
+		asks.clear();
+		deletedCount = 0;
 		
 		isBidCommited = false;
 		isAskCommited = false;
-
-		bidPriceChanged = false;
-		askPriceChanged = false;
-		deletedPriceChanged = false;
 	}
 	
 	private boolean priceChanged() {
 		
-		return (bidPriceChanged || askPriceChanged || deletedPriceChanged);
-	}
-	
-	private int[] convert(List<Integer> list) {
-		return ArrayUtils.toPrimitive(list.toArray(new Integer[list.size()]));
-	}
-
-	private int[] convertLong(List<Long> list) {
-		return ArrayUtils.toPrimitive(list.toArray(new Integer[list.size()]));
+		return isNewSnapshot || !bids.isEmpty() || !asks.isEmpty() || deletedCount > 0;
 	}
 }
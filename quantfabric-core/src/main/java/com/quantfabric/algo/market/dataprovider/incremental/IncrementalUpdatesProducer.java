@@ -36,12 +36,12 @@ public class IncrementalUpdatesProducer implements FeedHandler {
 	private final MarketFeeder marketFeeder;
 	private final FeedName feedName;
 	
-	private IncrementalUpdatesProducer(MarketFeeder marketFeeder, FeedName feedName, Publisher publisher) {
+	private IncrementalUpdatesProducer(MarketFeeder marketFeeder, FeedName feedName, Publisher publisher, int snapshotInterval) {
 		
 		this.marketFeeder = marketFeeder;
 		this.feedName = feedName;
 		
-		creator = new IncrementalUpdatesCreator();
+		creator = new IncrementalUpdatesCreator(snapshotInterval);
 		
 		askHandler = new IncrementalUpdatesHandler(marketFeeder, feedName, MDItemType.OFFER, publisher, creator);
 		bidHandler = new IncrementalUpdatesHandler(marketFeeder, feedName, MDItemType.BID, publisher, creator);
@@ -98,7 +98,10 @@ public class IncrementalUpdatesProducer implements FeedHandler {
 		Publisher publisher = gateway.getPublishersManager(settings.getProperty("publishersManager")).getPublisher(settings.getProperty("productCode"),
 				ContentType.valueOf(settings.getProperty("contentTypes")));
 				
-		IncrementalUpdatesProducer producer = new IncrementalUpdatesProducer(feeder, feed, publisher);
+		int snapshotInterval = Integer.parseInt(settings.getProperty("snapshotInterval", 
+				String.valueOf(IncrementalUpdatesCreator.DEFAULT_SNAPSHOT_INTERVAL)));
+				
+		IncrementalUpdatesProducer producer = new IncrementalUpdatesProducer(feeder, feed, publisher, snapshotInterval);
 		
 		return producer;
 	}
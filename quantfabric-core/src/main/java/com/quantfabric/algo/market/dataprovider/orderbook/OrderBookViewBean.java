@@ -40,9 +40,14 @@ public class OrderBookViewBean implements OrderBookView
 		List<MDPrice> levels = orderBookView.getAllLevels();		
 		this.allLevels = new ArrayList<MDPrice>(levels.size());		
 		for (MDPrice sourcePrice : levels)
-			this.allLevels.add(sourcePrice.clone());
+		{
+			MDPrice price = sourcePrice.clone();
+			price.setDepthLevel(this.allLevels.size());
+			this.allLevels.add(price);
+		}
 		
-		this.trade = orderBookView.getTrade();
+		MDTrade sourceTrade = orderBookView.getTrade();
+		this.trade = sourceTrade == null ? null : (MDTrade) sourceTrade.detach();
 		this.feedName = orderBookView.getFeedName();
 		this.orderBookType = orderBookView.getOrderBookType();
 		this.sourceTimestamp = orderBookView.getSourceTimestamp();
@@ -106,6 +111,11 @@ public class OrderBookViewBean implements OrderBookView
 		return this.trade;
 	}
 
+	public void setTrade(MDTrade trade)
+	{
+		this.trade = trade;
+	}
+
 	@Override
 	public List<MDPrice> getAllLevels()
 	{
@@ -132,6 +142,11 @@ public class OrderBookViewBean implements OrderBookView
 		return sourceTimestamp;
 	}
 
+	public void setSourceTimestamp(long sourceTimestamp)
+	{
+		this.sourceTimestamp = sourceTimestamp;
+	}
+
 	@Override
 	public OrderBookView clone()
 	{
@@ -0,0 +1,246 @@
+/*
+ * Copyright 2022-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.quantfabric.algo.market.dataprovider.orderbook;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.KryoSerializable;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.quantfabric.algo.market.datamodel.MDPrice;
+import com.quantfabric.algo.market.datamodel.MDTrade;
+import com.quantfabric.algo.market.dataprovider.FeedName;
+import com.quantfabric.util.Converter;
+
+/**
+ * Immutable order book view which shares its levels with the order book
+ * cache that produced it and with other snapshots of the same book.
+ * <p>
+ * Levels are kept in chunks of {@link #CHUNK_SIZE}. The producing cache never
+ * modifies a chunk or the array of chunks once they were handed to a view
+ * (copy-on-write), and the level objects themselves are private copies which
+ * are never changed after they were put into a chunk, so snapshots can be
+ * published without copying the whole book. The depth of a level is its
+ * position in {@link #getAllLevels()}.
+ * <p>
+ * Only the levels of the view are serialized, not the shared chunks.
+ * <p>
+ * {@link #clone()} still returns a detached mutable {@link OrderBookViewBean}
+ * for consumers which need to change the book.
+ */
+public class SharedOrderBookView implements OrderBookView, KryoSerializable
+{
+	public static final int CHUNK_SHIFT = 5;
+	public static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+	public static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+	private FeedName feedName;
+	private OrderBookTypes orderBookType;
+	private long sourceTimestamp;
+	private MDTrade trade;
+
+	private MDPrice[][] chunks;
+	private int topIndex;
+	private int step;
+	private int depth;
+
+	private transient List<MDPrice> levelsList;
+
+	public SharedOrderBookView()
+	{
+		// used by serialization
+	}
+
+	/**
+	 * @param chunks level chunks shared with the producer, must not be modified afterwards
+	 * @param topIndex index of the best level, chunk number times {@link #CHUNK_SIZE}
+	 * plus the position in the chunk
+	 * @param depth number of levels in the view
+	 * @param bestFirst {@code true} when levels follow from the best one towards
+	 * the end of the array, {@code false} when they follow towards its beginning
+	 */
+	public SharedOrderBookView(FeedName feedName, OrderBookTypes orderBookType,
+			long sourceTimestamp, MDTrade trade,
+			MDPrice[][] chunks, int topIndex, int depth, boolean bestFirst)
+	{
+		this.feedName = feedName;
+		this.orderBookType = orderBookType;
+		this.sourceTimestamp = sourceTimestamp;
+		this.trade = trade;
+		this.chunks = chunks;
+		this.topIndex = topIndex;
+		this.step = bestFirst ? 1 : -1;
+		this.depth = depth;
+	}
+
+	private SharedOrderBookView(SharedOrderBookView source, int depth)
+	{
+		this.feedName = source.feedName;
+		this.orderBookType = source.orderBookType;
+		this.sourceTimestamp = source.sourceTimestamp;
+		this.trade = source.trade;
+		this.chunks = source.chunks;
+		this.topIndex = source.topIndex;
+		this.step = source.step;
+		this.depth = depth;
+	}
+
+	/**
+	 * Returns a view of the best {@code depth} levels of this book sharing
+	 * the same level chunks.
+	 */
+	public SharedOrderBookView limitDepth(int depth)
+	{
+		if (depth >= this.depth)
+			return this;
+
+		return new SharedOrderBookView(this, Math.max(depth, 0));
+	}
+
+	@Override
+	public FeedName getFeedName()
+	{
+		return feedName;
+	}
+
+	@Override
+	public OrderBookTypes getOrderBookType()
+	{
+		return orderBookType;
+	}
+
+	@Override
+	public MDPrice getTop()
+	{
+		return getLevel(0);
+	}
+
+	@Override
+	public MDTrade getTrade()
+	{
+		return trade;
+	}
+
+	@Override
+	public MDPrice getLevel2()
+	{
+		return getLevel(1);
+	}
+
+	@Override
+	public MDPrice getLevel3()
+	{
+		return getLevel(2);
+	}
+
+	public int getDepth()
+	{
+		return depth;
+	}
+
+	/**
+	 * @return unmodifiable list of levels ordered from the best one
+	 */
+	@Override
+	public List<MDPrice> getAllLevels()
+	{
+		if (levelsList == null)
+			levelsList = new LevelsList();
+
+		return levelsList;
+	}
+
+	@Override
+	public long getSourceTimestamp()
+	{
+		return sourceTimestamp;
+	}
+
+	@Override
+	public OrderBookView clone()
+	{
+		return new OrderBookViewBean(this);
+	}
+
+	@Override
+	public String toString()
+	{
+		StringBuilder ret = new StringBuilder();
+		for (MDPrice price : getAllLevels())
+			ret.append(Converter.toString(price)).append("\n");
+		return ret.toString();
+	}
+
+	private MDPrice getLevel(int depthLevel)
+	{
+		return depthLevel < depth ? levelAt(topIndex + step * depthLevel) : null;
+	}
+
+	private MDPrice levelAt(int index)
+	{
+		return chunks[index >>> CHUNK_SHIFT][index & CHUNK_MASK];
+	}
+
+	@Override
+	public void write(Kryo kryo, Output output)
+	{
+		kryo.writeClassAndObject(output, feedName);
+		kryo.writeClassAndObject(output, orderBookType);
+		output.writeLong(sourceTimestamp);
+		kryo.writeClassAndObject(output, trade);
+		output.writeInt(depth, true);
+
+		for (int i = 0; i < depth; i++)
+			kryo.writeObject(output, getLevel(i));
+	}
+
+	@Override
+	public void read(Kryo kryo, Input input)
+	{
+		feedName = (FeedName) kryo.readClassAndObject(input);
+		orderBookType = (OrderBookTypes) kryo.readClassAndObject(input);
+		sourceTimestamp = input.readLong();
+		trade = (MDTrade) kryo.readClassAndObject(input);
+		depth = input.readInt(true);
+		chunks = new MDPrice[(depth + CHUNK_MASK) >>> CHUNK_SHIFT][CHUNK_SIZE];
+		topIndex = 0;
+		step = 1;
+
+		for (int i = 0; i < depth; i++)
+			chunks[i >>> CHUNK_SHIFT][i & CHUNK_MASK] = kryo.readObject(input, MDPrice.class);
+	}
+
+	private class LevelsList extends AbstractList<MDPrice> implements RandomAccess
+	{
+		@Override
+		public MDPrice get(int index)
+		{
+			if (index < 0 || index >= depth)
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + depth);
+
+			return levelAt(topIndex + step * index);
+		}
+
+		@Override
+		public int size()
+		{
+			return depth;
+		}
+	}
+}
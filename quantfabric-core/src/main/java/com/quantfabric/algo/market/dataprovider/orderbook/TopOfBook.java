@@ -0,0 +1,130 @@
+/*
+ * Copyright 2022-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.quantfabric.algo.market.dataprovider.orderbook;
+
+import java.util.Collections;
+import java.util.List;
+
+import com.quantfabric.algo.market.datamodel.MDPrice;
+import com.quantfabric.algo.market.datamodel.MDTrade;
+import com.quantfabric.algo.market.dataprovider.FeedName;
+
+/**
+ * Level 1 view of an order book, published instead of a copy of the whole book to
+ * listeners that only read the top ({@link com.quantfabric.algo.market.dataprovider.orderbook.processor.OrderBookSnapshotListener#isTopOfBookOnly()}).
+ * Pooled items are detached, so the view stays valid after the book moves on.
+ */
+public class TopOfBook implements OrderBookView
+{
+	private final FeedName feedName;
+	private final OrderBookTypes orderBookType;
+	private final long sourceTimestamp;
+	private final MDPrice top;
+	private final MDTrade trade;
+
+	public TopOfBook(OrderBookView orderBookView)
+	{
+		MDPrice sourceTop = orderBookView.getTop();
+		MDTrade sourceTrade = orderBookView.getTrade();
+
+		this.feedName = orderBookView.getFeedName();
+		this.orderBookType = orderBookView.getOrderBookType();
+		this.sourceTimestamp = orderBookView.getSourceTimestamp();
+		this.top = sourceTop == null ? null : (MDPrice) sourceTop.detach();
+		this.trade = sourceTrade == null ? null : (MDTrade) sourceTrade.detach();
+	}
+
+	@Override
+	public FeedName getFeedName()
+	{
+		return feedName;
+	}
+
+	@Override
+	public OrderBookTypes getOrderBookType()
+	{
+		return orderBookType;
+	}
+
+	public boolean isEmpty()
+	{
+		return top == null;
+	}
+
+	/**
+	 * @return price of the best level, 0 for an empty book
+	 */
+	public long getPrice()
+	{
+		return top == null ? 0 : top.getPrice();
+	}
+
+	/**
+	 * @return size of the best level, 0 for an empty book
+	 */
+	public double getSize()
+	{
+		return top == null ? 0. : top.getSize();
+	}
+
+	@Override
+	public MDPrice getTop()
+	{
+		return top;
+	}
+
+	@Override
+	public MDTrade getTrade()
+	{
+		return trade;
+	}
+
+	@Override
+	public MDPrice getLevel2()
+	{
+		return null;
+	}
+
+	@Override
+	public MDPrice getLevel3()
+	{
+		return null;
+	}
+
+	@Override
+	public List<MDPrice> getAllLevels()
+	{
+		return top == null ? Collections.<MDPrice>emptyList() : Collections.singletonList(top);
+	}
+
+	@Override
+	public long getSourceTimestamp()
+	{
+		return sourceTimestamp;
+	}
+
+	@Override
+	public OrderBookView clone()
+	{
+		return new OrderBookViewBean(this);
+	}
+
+	@Override
+	public String toString()
+	{
+		return orderBookType + " " + (top == null ? "empty" : top.getPrice() + " x " + top.getSize());
+	}
+}
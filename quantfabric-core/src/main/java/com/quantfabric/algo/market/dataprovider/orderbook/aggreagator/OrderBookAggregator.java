@@ -15,14 +15,12 @@
  */
 package com.quantfabric.algo.market.dataprovider.orderbook.aggreagator;
 
-import java.util.Collection;
-import java.util.Iterator;
-
 import com.quantfabric.algo.market.dataprovider.FeedName;
 import com.quantfabric.algo.market.dataprovider.orderbook.processor.OrderBookSnapshotListener;
 import com.quantfabric.algo.market.gateway.MarketFeeder;
 import com.quantfabric.messaging.BasePublisher;
 import com.quantfabric.messaging.Subscriber;
+import com.quantfabric.messaging.SubscriberArray;
 
 public abstract class OrderBookAggregator
 	extends BasePublisher<Subscriber<Object>,FeedName,Object>
@@ -76,17 +74,10 @@ public abstract class OrderBookAggregator
 	public void publish(Object data)
 			throws PublisherException
 	{
-		Collection<Subscriber<Object>> subscribers = getSubscribers();
+		SubscriberArray<Subscriber<Object>> subscribers = getSubscribers();
 		
-		if (subscribers != null)
-		{					
-			synchronized(subscribers)
-			{
-				for (Iterator<Subscriber<Object>> subscriber = subscribers.iterator(); 
-						subscriber.hasNext();) 
-					subscriber.next().sendUpdate(data);
-			}				
-		}	
+		for (int i = 0; i < subscribers.size(); i++)
+			subscribers.get(i).sendUpdate(data);
 	}
 	
 	@Override
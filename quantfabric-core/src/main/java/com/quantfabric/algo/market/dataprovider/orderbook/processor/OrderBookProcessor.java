@@ -30,6 +30,7 @@ import com.quantfabric.algo.market.dataprovider.orderbook.OrderBookInfo;
 import com.quantfabric.algo.market.dataprovider.orderbook.storage.OrderBookStorageWriter;
 import com.quantfabric.algo.market.dataprovider.orderbook.storage.OrderBookStorageWriter.OrderBookStorageWriterException;
 import com.quantfabric.algo.market.gateway.MarketFeeder;
+import com.quantfabric.util.latency.LatencyStage;
 
 public class OrderBookProcessor extends BaseMarketDataItemsHandler
 {
@@ -88,6 +89,7 @@ public class OrderBookProcessor extends BaseMarketDataItemsHandler
 	@Override
 	public void handleEndUpdate(EndUpdate event, boolean isMine) throws FeedHandlerException
 	{	
+		long start = LatencyStage.start();
 		try
 		{
 			orderBookUpdater.endUpdate(event, isMine);
@@ -96,10 +98,27 @@ public class OrderBookProcessor extends BaseMarketDataItemsHandler
 		{
 			throw new FeedHandlerException(e);
 		}	
+		finally
+		{
+			LatencyStage.ORDER_BOOK.recordSince(start);
+		}
 	}
 
 	@Override
 	public void handleMdItem(MDFeedEvent mdItem) throws FeedHandlerException
+	{
+		long start = LatencyStage.start();
+		try
+		{
+			applyMdItem(mdItem);
+		}
+		finally
+		{
+			LatencyStage.ORDER_BOOK.recordSince(start);
+		}
+	}
+
+	private void applyMdItem(MDFeedEvent mdItem) throws FeedHandlerException
 	{
 		if (mdItem instanceof MDTrade) {
 			try	{
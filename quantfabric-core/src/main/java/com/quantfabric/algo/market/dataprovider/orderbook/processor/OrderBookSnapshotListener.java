@@ -53,4 +53,14 @@ public interface OrderBookSnapshotListener extends Named
 	void onEndUpdate(OrderBookInfo orderBookInfo, long updateId, boolean isBookModified);
 	
 	void onNoUpdate(long snapshotId);
+	
+	/**
+	 * @return <code>true</code> if the listener reads only the best level, it is then
+	 * given {@link com.quantfabric.algo.market.dataprovider.orderbook.TopOfBook} views
+	 * instead of copies of the whole book
+	 */
+	default boolean isTopOfBookOnly()
+	{
+		return false;
+	}
 }
\ No newline at end of file
@@ -63,6 +63,6 @@ class OrderBookUpdater
 	public void sourceIsBroken() throws OrderBookStorageWriterException
 	{
 		orderBookStorage.clear();
-		orderBookStorage.commit(-1, System.currentTimeMillis());
+		orderBookStorage.commit(-1, orderBookStorage.getClock().currentTimeMillis());
 	}
 } 
\ No newline at end of file
@@ -20,28 +20,44 @@ import java.util.HashMap;
 import java.util.Map;
 
 import com.quantfabric.algo.market.datamodel.EndUpdate;
+import com.quantfabric.algo.market.datamodel.MDItem;
 import com.quantfabric.algo.market.dataprovider.FeedName;
 import com.quantfabric.algo.market.dataprovider.orderbook.OrderBookInfo;
 import com.quantfabric.algo.market.dataprovider.orderbook.OrderBookSnapshot;
+import com.quantfabric.algo.market.dataprovider.orderbook.OrderBookView;
+import com.quantfabric.algo.market.dataprovider.orderbook.TopOfBook;
 import com.quantfabric.algo.market.dataprovider.orderbook.processor.OrderBookSnapshotListener;
 import com.quantfabric.algo.market.dataprovider.orderbook.processor.OrderBookSnapshotListener.OrderBookSnapshotListenerException;
+import com.quantfabric.util.timer.Clock;
 
 public abstract class BaseOrderBookCache
 	implements	OrderBookInfo, OrderBookCacheReader, OrderBookStorageWriter
 {
 	private final FeedName monitoredFeedName;
 	private final OrderBookTypes orderBookType;
+	private final Clock clock;
 	
 	private final Map<String, OrderBookSnapshotListener> orderBookSnapshotListeners =
 		new HashMap<String, OrderBookSnapshotListener>();
 
 	private OrderBookSnapshot currentSnapshot = null;
+	private long pendingSnapshotId;
+	private boolean snapshotPending;
 	private boolean bookModified;	
 	
 	public BaseOrderBookCache(OrderBookTypes orderBookType, FeedName monitoredFeedName)
+	{
+		this(orderBookType, monitoredFeedName, Clock.SYSTEM);
+	}
+	
+	/**
+	 * @param clock time of clearing the book, the replay clock when the data is replayed
+	 */
+	public BaseOrderBookCache(OrderBookTypes orderBookType, FeedName monitoredFeedName, Clock clock)
 	{
 		this.monitoredFeedName = monitoredFeedName;
 		this.orderBookType = orderBookType;
+		this.clock = clock;
 	}
 	
 	@Override
@@ -49,6 +65,12 @@ public abstract class BaseOrderBookCache
 	{
 		return monitoredFeedName;
 	}
+	@Override
+	public Clock getClock()
+	{
+		return clock;
+	}
+	
 	@Override
 	public OrderBookTypes getOrderBookType()
 	{
@@ -79,11 +101,48 @@ public abstract class BaseOrderBookCache
 
 	
 	
+	/**
+	 * Takes a reference to an item kept by the cache, pooled items are not reused until
+	 * the cache drops them.
+	 */
+	protected static <T extends MDItem> T hold(T item)
+	{
+		if (item != null)
+			item.retain();
+		return item;
+	}
+	
+	protected static void drop(MDItem item)
+	{
+		if (item != null)
+			item.release();
+	}
+	
 	protected abstract OrderBookSnapshot createShapshot(long snapshotId);
 	
+	/**
+	 * Level 1 snapshot for listeners that read only the top of the book.
+	 */
+	protected OrderBookSnapshot createTopOfBookSnapshot(long snapshotId)
+	{
+		if (this instanceof OrderBookView)
+			return new OrderBookSnapshot(new TopOfBook((OrderBookView) this), snapshotId);
+		
+		return createShapshot(snapshotId);
+	}
+	
+	/**
+	 * Full snapshots are built at commit only if some listener needs the depth, otherwise
+	 * on the first request, from the book as it is at that moment.
+	 */
 	@Override
 	public OrderBookSnapshot getOrderBookSnapshot()
 	{
+		if (snapshotPending)
+		{
+			currentSnapshot = createShapshot(pendingSnapshotId);
+			snapshotPending = false;
+		}
 		return currentSnapshot;
 	}
 	
@@ -94,9 +153,10 @@ public abstract class BaseOrderBookCache
 		
 		if (bookWasModified)
 		{				
-			currentSnapshot = createShapshot(snapshotId);
+			pendingSnapshotId = snapshotId;
+			snapshotPending = true;
 			setBookModified(false);
-			publishSnapshotToListeners(currentSnapshot);			
+			publishSnapshotToListeners(snapshotId);			
 		}
 		
 		notifyListenersAboutEndUpdate(snapshotId, bookWasModified);
@@ -120,14 +180,27 @@ public abstract class BaseOrderBookCache
 		return orderBookSnapshotListeners.values();
 	}
 	
-	protected void publishSnapshotToListeners(OrderBookSnapshot currentSnapshot) 
+	protected void publishSnapshotToListeners(long snapshotId) 
 		throws OrderBookStorageWriterException
 	{
+		OrderBookSnapshot topOfBookSnapshot = null;
+		
 		for (OrderBookSnapshotListener listener : getOrderBookSnapshotListeners())
 		{
+			OrderBookSnapshot snapshot;
+			
+			if (listener.isTopOfBookOnly())
+			{
+				if (topOfBookSnapshot == null)
+					topOfBookSnapshot = createTopOfBookSnapshot(snapshotId);
+				snapshot = topOfBookSnapshot;
+			}
+			else
+				snapshot = getOrderBookSnapshot();
+			
 			try
 			{
-				listener.onNewSnapshot(currentSnapshot);
+				listener.onNewSnapshot(snapshot);
 			}
 			catch (OrderBookSnapshotListenerException e)
 			{
@@ -20,6 +20,7 @@ import com.quantfabric.algo.market.datamodel.MDDelete;
 import com.quantfabric.algo.market.datamodel.MDPrice;
 import com.quantfabric.algo.market.datamodel.MDTrade;
 import com.quantfabric.algo.market.dataprovider.orderbook.OrderBookInfo;
+import com.quantfabric.util.timer.Clock;
 
 public interface OrderBookStorageWriter extends OrderBookInfo
 {
@@ -55,4 +56,12 @@ public interface OrderBookStorageWriter extends OrderBookInfo
 	void commit(long snapshotId, long sourceTimestamp) throws OrderBookStorageWriterException;
 	void commit(EndUpdate endUpdate) throws OrderBookStorageWriterException;
 	void noUpdates(EndUpdate endUpdate) throws OrderBookStorageWriterException;
+	
+	/**
+	 * @return clock stamping the commits of a cleared book
+	 */
+	default Clock getClock()
+	{
+		return Clock.SYSTEM;
+	}
 }
\ No newline at end of file
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2022-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.quantfabric.algo.market.dataprovider.orderbook.storage;
+
+import static com.quantfabric.algo.market.dataprovider.orderbook.SharedOrderBookView.CHUNK_MASK;
+import static com.quantfabric.algo.market.dataprovider.orderbook.SharedOrderBookView.CHUNK_SHIFT;
+import static com.quantfabric.algo.market.dataprovider.orderbook.SharedOrderBookView.CHUNK_SIZE;
+
+import java.util.Arrays;
+
+import com.quantfabric.algo.market.datamodel.MDPrice;
+import com.quantfabric.algo.market.dataprovider.orderbook.SharedOrderBookView;
+
+/**
+ * Copy-on-write array of level copies chunked for {@link SharedOrderBookView}.
+ * <p>
+ * {@link #publish()} hands the current chunks over to snapshots. After that the
+ * first write to a chunk copies that chunk only (and once the array of chunk
+ * references), so a change near one end of the ladder costs a chunk instead of
+ * the whole book.
+ */
+class SharedLevelChunks
+{
+	private MDPrice[][] chunks = new MDPrice[1][];
+	private int[] chunkGenerations = new int[1];
+	private int spineGeneration;
+	private int generation = 1;
+
+	/**
+	 * @return the chunks to be shared, they are not modified any more
+	 */
+	MDPrice[][] publish()
+	{
+		generation++;
+		return chunks;
+	}
+
+	void set(int index, MDPrice level)
+	{
+		writableChunk(index >>> CHUNK_SHIFT)[index & CHUNK_MASK] = level;
+	}
+
+	/**
+	 * Inserts a level at {@code index} shifting the levels from {@code index}
+	 * to {@code size} by one position up.
+	 */
+	void insert(int index, int size, MDPrice level)
+	{
+		ensureCapacity(size + 1);
+
+		MDPrice carried = level;
+		int position = index & CHUNK_MASK;
+
+		for (int chunkIndex = index >>> CHUNK_SHIFT; chunkIndex <= size >>> CHUNK_SHIFT; chunkIndex++)
+		{
+			MDPrice[] chunk = writableChunk(chunkIndex);
+			MDPrice pushedOut = chunk[CHUNK_MASK];
+
+			System.arraycopy(chunk, position, chunk, position + 1, CHUNK_MASK - position);
+			chunk[position] = carried;
+			carried = pushedOut;
+			position = 0;
+		}
+	}
+
+	/**
+	 * Removes the level at {@code index} shifting the levels above it down.
+	 */
+	void remove(int index, int size)
+	{
+		int lastChunk = (size - 1) >>> CHUNK_SHIFT;
+		int position = index & CHUNK_MASK;
+
+		for (int chunkIndex = index >>> CHUNK_SHIFT; chunkIndex <= lastChunk; chunkIndex++)
+		{
+			MDPrice[] chunk = writableChunk(chunkIndex);
+
+			System.arraycopy(chunk, position + 1, chunk, position, CHUNK_MASK - position);
+			chunk[CHUNK_MASK] = chunkIndex < lastChunk ? chunks[chunkIndex + 1][0] : null;
+			position = 0;
+		}
+	}
+
+	/**
+	 * Replaces all levels with the given ones.
+	 */
+	void reset(MDPrice[] levels, int size)
+	{
+		chunks = new MDPrice[Math.max(1, (size + CHUNK_MASK) >>> CHUNK_SHIFT)][];
+		chunkGenerations = new int[chunks.length];
+		spineGeneration = generation;
+
+		for (int i = 0; i < size; i++)
+			set(i, levels[i]);
+	}
+
+	void clear()
+	{
+		chunks = new MDPrice[1][];
+		chunkGenerations = new int[1];
+		spineGeneration = generation;
+	}
+
+	private void ensureCapacity(int size)
+	{
+		int required = (size + CHUNK_MASK) >>> CHUNK_SHIFT;
+
+		if (required > chunks.length)
+		{
+			chunks = Arrays.copyOf(chunks, Math.max(required, chunks.length << 1));
+			chunkGenerations = Arrays.copyOf(chunkGenerations, chunks.length);
+			spineGeneration = generation;
+		}
+	}
+
+	private MDPrice[] writableChunk(int chunkIndex)
+	{
+		if (spineGeneration != generation)
+		{
+			chunks = chunks.clone();
+			spineGeneration = generation;
+		}
+
+		MDPrice[] chunk = chunks[chunkIndex];
+
+		if (chunk == null)
+		{
+			chunk = chunks[chunkIndex] = new MDPrice[CHUNK_SIZE];
+			chunkGenerations[chunkIndex] = generation;
+		}
+		else if (chunkGenerations[chunkIndex] != generation)
+		{
+			chunk = chunks[chunkIndex] = chunk.clone();
+			chunkGenerations[chunkIndex] = generation;
+		}
+
+		return chunk;
+	}
+}
@@ -29,8 +29,17 @@ import com.quantfabric.algo.market.dataprovider.FeedName;
 import com.quantfabric.algo.market.dataprovider.orderbook.OrderBookSnapshot;
 import com.quantfabric.algo.market.dataprovider.orderbook.OrderBookView;
 import com.quantfabric.algo.market.dataprovider.orderbook.OrderBookViewBean;
+import com.quantfabric.algo.market.dataprovider.orderbook.SharedOrderBookView;
 import com.quantfabric.util.Converter;
+import com.quantfabric.util.timer.Clock;
 
+/**
+ * Order book cache keyed by item id which sorts the book on read.
+ * <p>
+ * Snapshots are {@link SharedOrderBookView}s over private copies of the levels.
+ * A level is copied once, at the first snapshot after it changed, and the copy
+ * is shared by every following snapshot until the level changes again.
+ */
 public class SimpleOrderBookCache
 	extends BaseOrderBookCache
 	implements OrderBookView
@@ -40,6 +49,11 @@ public class SimpleOrderBookCache
 	
 	private final Map<Long, String> uniqPrices =
 		new ConcurrentHashMap<>();
+	
+	private final Map<String, MDPrice> levelCopies =
+		new ConcurrentHashMap<>();
+	
+	private final SharedLevelChunks sharedLevels = new SharedLevelChunks();
 
 	private MDTrade trade =  null;
 	
@@ -47,14 +61,20 @@ public class SimpleOrderBookCache
 	
 	public SimpleOrderBookCache(OrderBookTypes orderBookType, FeedName monitoredFeedName)
 	{
-		super(orderBookType, monitoredFeedName);
+		this(orderBookType, monitoredFeedName, Clock.SYSTEM);
+	}
+
+	public SimpleOrderBookCache(OrderBookTypes orderBookType, FeedName monitoredFeedName, Clock clock)
+	{
+		super(orderBookType, monitoredFeedName, clock);
 		clear();
 	}
 	
 	@Override
 	public void addTrade(MDTrade mdTrade) {
 		
-		trade = mdTrade;
+		drop(trade);
+		trade = hold(mdTrade);
 		setBookModified(true);
 		sourceTimestamp = mdTrade.getSourceTimestamp();
 	}
@@ -69,10 +89,17 @@ public class SimpleOrderBookCache
 	public void addPrice(MDPrice mdPrice)
 	{		
 		//System.out.println(getOrderBookType() + " <- " + mdPrice.getMdItemType());
+		hold(mdPrice);
+		
 		if (uniqPrices.containsKey(mdPrice.getPrice()))
-			book.remove(uniqPrices.get(mdPrice.getPrice()));
+		{
+			String replacedId = uniqPrices.get(mdPrice.getPrice());
+			levelCopies.remove(replacedId);
+			drop(book.remove(replacedId));
+		}
 			
-		book.put(mdPrice.getMdItemId(), mdPrice);
+		levelCopies.remove(mdPrice.getMdItemId());
+		drop(book.put(mdPrice.getMdItemId(), mdPrice));
 		uniqPrices.put(mdPrice.getPrice(), mdPrice.getMdItemId());
 		
 		setBookModified(true);
@@ -86,9 +113,13 @@ public class SimpleOrderBookCache
 		//System.out.println(getOrderBookType() + " <- X " + mdDelete.getMdItemType());
 		
 		MDPrice removedPrice = book.remove(mdDelete.getMdItemId());
+		levelCopies.remove(mdDelete.getMdItemId());
 		
 		if (removedPrice != null)
+		{
 			uniqPrices.remove(removedPrice.getPrice());
+			drop(removedPrice);
+		}
 		
 		setBookModified(true);
 		//if (mdDelete.getSourceTimestamp() > sourceTimestamp)
@@ -98,21 +129,27 @@ public class SimpleOrderBookCache
 	@Override
 	public void clear()
 	{
+		for (MDPrice price : book.values())
+			drop(price);
 		book.clear();
 		uniqPrices.clear();
+		levelCopies.clear();
+		drop(trade);
 		trade = null;
 		setBookModified(true);
-		sourceTimestamp = System.currentTimeMillis();
+		sourceTimestamp = getClock().currentTimeMillis();
 	}
 
 	@Override
 	public MDPrice getTop()
 	{	
-		List<MDPrice> prices = getAllLevels();
-		if (prices != null && prices.size() > 0)
-			return prices.get(0);
+		// a single pass, the top of book path doesn't sort the whole book
+		MDPrice top = null;
+		for (MDPrice price : book.values())
+			if (top == null || priceComparator.compare(price, top) < 0)
+				top = price;
 		
-		return null;
+		return top;
 	}
 	
 	private final Comparator<MDPrice> priceComparator =  new Comparator<MDPrice>()
@@ -174,7 +211,28 @@ public class SimpleOrderBookCache
 	@Override
 	protected OrderBookSnapshot createShapshot(long snapshotId)
 	{
-		return new OrderBookSnapshot(this.clone(), snapshotId);
+		List<MDPrice> levels = getAllLevels();
+		MDPrice[] copies = new MDPrice[levels.size()];
+		
+		for (int i = 0; i < copies.length; i++)
+		{
+			MDPrice level = levels.get(i);
+			MDPrice copy = levelCopies.get(level.getMdItemId());
+			
+			if (copy == null)
+			{
+				copy = level.clone();
+				levelCopies.put(level.getMdItemId(), copy);
+			}
+			copies[i] = copy;
+		}
+		sharedLevels.reset(copies, copies.length);
+		
+		return new OrderBookSnapshot(
+				new SharedOrderBookView(getFeedName(), getOrderBookType(), sourceTimestamp,
+						trade == null ? null : (MDTrade) trade.detach(),
+						sharedLevels.publish(), 0, copies.length, true),
+				snapshotId);
 	}
 	
 	@Override
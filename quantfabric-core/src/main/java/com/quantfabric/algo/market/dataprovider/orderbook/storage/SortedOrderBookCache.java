@@ -0,0 +1,303 @@
+/*
+ * Copyright 2022-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.quantfabric.algo.market.dataprovider.orderbook.storage;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+
+import com.quantfabric.algo.market.datamodel.MDDelete;
+import com.quantfabric.algo.market.datamodel.MDPrice;
+import com.quantfabric.algo.market.datamodel.MDTrade;
+import com.quantfabric.algo.market.dataprovider.FeedName;
+import com.quantfabric.algo.market.dataprovider.orderbook.OrderBookSnapshot;
+import com.quantfabric.algo.market.dataprovider.orderbook.OrderBookView;
+import com.quantfabric.algo.market.dataprovider.orderbook.OrderBookViewBean;
+import com.quantfabric.algo.market.dataprovider.orderbook.SharedOrderBookView;
+import com.quantfabric.util.Converter;
+import com.quantfabric.util.timer.Clock;
+
+/**
+ * Order book cache which keeps its levels permanently sorted in a primitive
+ * price ladder instead of sorting the whole book on every read.
+ * <p>
+ * Levels are stored in ascending order of a side-dependent key (price for bids,
+ * negated price for offers), so the best level is always the last element of the
+ * ladder. Updates arriving near the top of the book therefore shift only a few
+ * elements, top of book is O(1), lookup on add/delete is a binary search and
+ * {@link #getAllLevels()} returns a reusable view without copying.
+ * <p>
+ * Snapshots are {@link SharedOrderBookView}s over copy-on-write chunks of
+ * private level copies: a level is copied once when it changes and then shared
+ * by every following snapshot, and after a snapshot was taken a modification
+ * copies only the chunks it touches, which are the last ones for changes near
+ * the top of the book.
+ * <p>
+ * The cache is written and read by the owning {@code OrderBookProcessor} thread
+ * only, other threads must work with published {@link OrderBookSnapshot}s.
+ */
+public class SortedOrderBookCache
+	extends BaseOrderBookCache
+	implements OrderBookView
+{
+	private static final int INITIAL_CAPACITY = 64;
+
+	private final boolean bidBook;
+
+	private long[] keys = new long[INITIAL_CAPACITY];
+	private MDPrice[] levels = new MDPrice[INITIAL_CAPACITY];
+	private int size = 0;
+
+	private final SharedLevelChunks sharedLevels = new SharedLevelChunks();
+
+	private final Map<String, MDPrice> pricesById = new HashMap<>();
+	private final LevelsView levelsView = new LevelsView();
+
+	private MDTrade trade = null;
+
+	private long sourceTimestamp;
+
+	public SortedOrderBookCache(OrderBookTypes orderBookType, FeedName monitoredFeedName)
+	{
+		this(orderBookType, monitoredFeedName, Clock.SYSTEM);
+	}
+
+	public SortedOrderBookCache(OrderBookTypes orderBookType, FeedName monitoredFeedName, Clock clock)
+	{
+		super(orderBookType, monitoredFeedName, clock);
+		this.bidBook = orderBookType == OrderBookTypes.BID_BOOK;
+		clear();
+	}
+
+	@Override
+	public void addTrade(MDTrade mdTrade)
+	{
+		drop(trade);
+		trade = hold(mdTrade);
+		setBookModified(true);
+		sourceTimestamp = mdTrade.getSourceTimestamp();
+	}
+
+	@Override
+	public MDTrade getTrade()
+	{
+		return trade;
+	}
+
+	@Override
+	public void addPrice(MDPrice mdPrice)
+	{
+		hold(mdPrice);
+
+		MDPrice previous = pricesById.remove(mdPrice.getMdItemId());
+		if (previous != null)
+		{
+			removeLevel(previous);
+			drop(previous);
+		}
+
+		long key = toKey(mdPrice.getPrice());
+		int index = Arrays.binarySearch(keys, 0, size, key);
+
+		if (index >= 0)
+		{
+			pricesById.remove(levels[index].getMdItemId());
+			drop(levels[index]);
+			levels[index] = mdPrice;
+			sharedLevels.set(index, mdPrice.clone());
+		}
+		else
+			insertLevel(-(index + 1), key, mdPrice);
+
+		pricesById.put(mdPrice.getMdItemId(), mdPrice);
+
+		setBookModified(true);
+		sourceTimestamp = mdPrice.getSourceTimestamp();
+	}
+
+	@Override
+	public void deletePrice(MDDelete mdDelete)
+	{
+		MDPrice removedPrice = pricesById.remove(mdDelete.getMdItemId());
+
+		if (removedPrice != null)
+		{
+			removeLevel(removedPrice);
+			drop(removedPrice);
+		}
+
+		setBookModified(true);
+		sourceTimestamp = mdDelete.getSourceTimestamp();
+	}
+
+	@Override
+	public void clear()
+	{
+		for (int i = 0; i < size; i++)
+			drop(levels[i]);
+		Arrays.fill(levels, 0, size, null);
+		sharedLevels.clear();
+		size = 0;
+		pricesById.clear();
+		drop(trade);
+		trade = null;
+		setBookModified(true);
+		sourceTimestamp = getClock().currentTimeMillis();
+	}
+
+	@Override
+	public MDPrice getTop()
+	{
+		return getLevel(0);
+	}
+
+	@Override
+	public MDPrice getLevel2()
+	{
+		return getLevel(1);
+	}
+
+	@Override
+	public MDPrice getLevel3()
+	{
+		return getLevel(2);
+	}
+
+	/**
+	 * Returns a live view of the book ordered from the best level down.
+	 * The view reflects subsequent updates of the cache, use {@link #clone()}
+	 * to obtain a stable copy.
+	 */
+	@Override
+	public List<MDPrice> getAllLevels()
+	{
+		return levelsView;
+	}
+
+	public int getDepth()
+	{
+		return size;
+	}
+
+	@Override
+	public long getSourceTimestamp()
+	{
+		return sourceTimestamp;
+	}
+
+	@Override
+	protected OrderBookSnapshot createShapshot(long snapshotId)
+	{
+		return new OrderBookSnapshot(
+				new SharedOrderBookView(getFeedName(), getOrderBookType(), sourceTimestamp,
+						trade == null ? null : (MDTrade) trade.detach(),
+						sharedLevels.publish(), size - 1, size, false),
+				snapshotId);
+	}
+
+	@Override
+	public String toString()
+	{
+		StringBuilder ret = new StringBuilder();
+		for (MDPrice price : getAllLevels())
+			ret.append(Converter.toString(price)).append("\n");
+		return ret.toString();
+	}
+
+	@Override
+	public OrderBookView clone()
+	{
+		return new OrderBookViewBean(this);
+	}
+
+	private MDPrice getLevel(int depthLevel)
+	{
+		if (depthLevel >= size)
+			return null;
+
+		MDPrice price = levels[size - 1 - depthLevel];
+		price.setDepthLevel(depthLevel);
+
+		return price;
+	}
+
+	private long toKey(long price)
+	{
+		return bidBook ? price : -price;
+	}
+
+	private void insertLevel(int index, long key, MDPrice mdPrice)
+	{
+		if (size == keys.length)
+		{
+			int capacity = keys.length << 1;
+			keys = Arrays.copyOf(keys, capacity);
+			levels = Arrays.copyOf(levels, capacity);
+		}
+
+		int moved = size - index;
+		if (moved > 0)
+		{
+			System.arraycopy(keys, index, keys, index + 1, moved);
+			System.arraycopy(levels, index, levels, index + 1, moved);
+		}
+
+		keys[index] = key;
+		levels[index] = mdPrice;
+		sharedLevels.insert(index, size, mdPrice.clone());
+		size++;
+	}
+
+	private void removeLevel(MDPrice mdPrice)
+	{
+		int index = Arrays.binarySearch(keys, 0, size, toKey(mdPrice.getPrice()));
+
+		if (index < 0 || levels[index] != mdPrice)
+			return;
+
+		sharedLevels.remove(index, size);
+
+		int moved = size - index - 1;
+		if (moved > 0)
+		{
+			System.arraycopy(keys, index + 1, keys, index, moved);
+			System.arraycopy(levels, index + 1, levels, index, moved);
+		}
+
+		levels[--size] = null;
+	}
+
+	private class LevelsView extends AbstractList<MDPrice> implements RandomAccess
+	{
+		@Override
+		public MDPrice get(int index)
+		{
+			if (index < 0 || index >= size)
+				throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size);
+
+			return getLevel(index);
+		}
+
+		@Override
+		public int size()
+		{
+			return size;
+		}
+	}
+}
@@ -26,6 +26,7 @@ import com.quantfabric.algo.market.dataprovider.orderbook.OrderBookSnapshot;
 import com.quantfabric.algo.market.dataprovider.orderbook.OrderBookView;
 import com.quantfabric.algo.market.dataprovider.orderbook.OrderBookViewBean;
 import com.quantfabric.util.Converter;
+import com.quantfabric.util.timer.Clock;
 
 public class TopGatewayOderBookCache
 	extends BaseOrderBookCache
@@ -38,7 +39,13 @@ public class TopGatewayOderBookCache
 	public TopGatewayOderBookCache(OrderBookTypes orderBookType,
 								   FeedName monitoredFeedName)
 	{
-		super(orderBookType, monitoredFeedName);
+		this(orderBookType, monitoredFeedName, Clock.SYSTEM);
+	}
+
+	public TopGatewayOderBookCache(OrderBookTypes orderBookType,
+								   FeedName monitoredFeedName, Clock clock)
+	{
+		super(orderBookType, monitoredFeedName, clock);
 		clear();
 	}
 
@@ -75,7 +82,8 @@ public class TopGatewayOderBookCache
 	@Override
 	public void addPrice(MDPrice mdPrice)
 	{
-		topPrice = mdPrice;
+		drop(topPrice);
+		topPrice = hold(mdPrice);
 		setBookModified(true);
 		//if (mdPrice.getSourceTimestamp() > sourceTimestamp)
 			sourceTimestamp = mdPrice.getSourceTimestamp();
@@ -94,9 +102,10 @@ public class TopGatewayOderBookCache
 	@Override
 	public void clear()
 	{
+		drop(topPrice);
 		topPrice = null;	
 		setBookModified(true);
-		sourceTimestamp = System.currentTimeMillis();
+		sourceTimestamp = getClock().currentTimeMillis();
 	}
 
 	@Override
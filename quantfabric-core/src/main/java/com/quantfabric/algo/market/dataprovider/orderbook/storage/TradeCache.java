@@ -26,6 +26,7 @@ import com.quantfabric.algo.market.dataprovider.orderbook.OrderBookSnapshot;
 import com.quantfabric.algo.market.dataprovider.orderbook.OrderBookView;
 import com.quantfabric.algo.market.dataprovider.orderbook.OrderBookViewBean;
 import com.quantfabric.util.Converter;
+import com.quantfabric.util.timer.Clock;
 
 public class TradeCache
 	extends BaseOrderBookCache
@@ -38,7 +39,13 @@ public class TradeCache
 	public TradeCache(OrderBookTypes orderBookType,
                       FeedName monitoredFeedName)
 	{
-		super(orderBookType, monitoredFeedName);
+		this(orderBookType, monitoredFeedName, Clock.SYSTEM);
+	}
+
+	public TradeCache(OrderBookTypes orderBookType,
+                      FeedName monitoredFeedName, Clock clock)
+	{
+		super(orderBookType, monitoredFeedName, clock);
 		clear();
 	}
 
@@ -62,7 +69,8 @@ public class TradeCache
 	@Override
 	public void addTrade(MDTrade mdTrade) {
 		
-		trade = mdTrade;
+		drop(trade);
+		trade = hold(mdTrade);
 		setBookModified(true);
 		sourceTimestamp = mdTrade.getSourceTimestamp();
 	}
@@ -80,9 +88,10 @@ public class TradeCache
 	@Override
 	public void clear()
 	{
+		drop(trade);
 		trade = null;
 		setBookModified(true);
-		sourceTimestamp = System.currentTimeMillis();
+		sourceTimestamp = getClock().currentTimeMillis();
 	}
 
 	@Override
@@ -15,7 +15,6 @@
  */
 package com.quantfabric.algo.market.gateway;
 
-import java.util.Collection;
 import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
@@ -31,6 +30,7 @@ import com.quantfabric.algo.commands.CommandFactory;
 import com.quantfabric.algo.commands.CommandFactory.CommandFactoryException;
 import com.quantfabric.algo.instrument.InstrumentProvider;
 import com.quantfabric.algo.market.datamodel.LatencyOffset;
+import com.quantfabric.algo.market.datamodel.MDEvent;
 import com.quantfabric.algo.market.datamodel.MDFeedEvent;
 import com.quantfabric.algo.market.datamodel.MDItem;
 import com.quantfabric.algo.market.datamodel.MDMessageInfo;
@@ -43,6 +43,7 @@ import com.quantfabric.algo.market.dataprovider.orderbook.processor.OrderBookSna
 import com.quantfabric.algo.market.dataprovider.orderbook.storage.BaseOrderBookCache;
 import com.quantfabric.algo.market.dataprovider.orderbook.storage.OrderBookCacheReaderPair;
 import com.quantfabric.algo.market.dataprovider.orderbook.storage.SimpleOrderBookCache;
+import com.quantfabric.algo.market.dataprovider.orderbook.storage.SortedOrderBookCache;
 import com.quantfabric.algo.market.dataprovider.orderbook.storage.TopGatewayOderBookCache;
 import com.quantfabric.algo.market.dataprovider.orderbook.storage.TradeProcessorCacheReaderPair;
 import com.quantfabric.algo.market.dataprovider.orderbook.storage.TradeCache;
@@ -53,7 +54,10 @@ import com.quantfabric.algo.market.gateway.feed.MarketDataFeed;
 import com.quantfabric.algo.market.gateway.feed.MarketDataFeed.MarketDataType;
 import com.quantfabric.algo.order.report.OrderExecutionReport;
 import com.quantfabric.messaging.BasePublisher;
+import com.quantfabric.messaging.Recyclable;
 import com.quantfabric.messaging.Subscriber;
+import com.quantfabric.messaging.SubscriberArray;
+import com.quantfabric.util.latency.LatencyStage;
 
 
 public abstract class BaseMarketAdapter extends BasePublisher<Subscriber<Object>,FeedName,Object>
@@ -66,6 +70,7 @@ public abstract class BaseMarketAdapter extends BasePublisher<Subscriber<Object>
 	private final List<LogonListener> logonListeners = new LinkedList<LogonListener>();
 	private FeedProvider feedProvider = null;
 	private InstrumentProvider instrumentProvider = null;
+	private volatile MarketDataDispatcher dispatcher = null;
 	
 	private final Map<FeedName, OrderBookProcessorPair> orderBookProcessorPairs =	new HashMap<FeedName, OrderBookProcessorPair>();
 	
@@ -187,15 +192,17 @@ public abstract class BaseMarketAdapter extends BasePublisher<Subscriber<Object>
 	{		
 		
 		if (feed.getMarketDepth() == MarketDataFeed.TOP_MARKET_DEPTH)
-			return new TopGatewayOderBookCache(orderBookType, feed.getFeedName());
+			return new TopGatewayOderBookCache(orderBookType, feed.getFeedName(), getTimerWheel().getClock());
+		else if (feed.getOrderBookCacheType() == MarketDataFeed.OrderBookCacheType.SORTED)
+			return new SortedOrderBookCache(orderBookType, feed.getFeedName(), getTimerWheel().getClock());
 		else
-			return new SimpleOrderBookCache(orderBookType, feed.getFeedName());
+			return new SimpleOrderBookCache(orderBookType, feed.getFeedName(), getTimerWheel().getClock());
 	}
 	
 	protected BaseOrderBookCache getTradeCache(OrderBookTypes orderBookType, MarketDataFeed feed) throws MarketAdapterException {
 		
 		if (feed.getMarketDataType() == MarketDataType.PRICES_AND_TRADES || feed.getMarketDataType() == MarketDataType.TRADES)
-			return new TradeCache(orderBookType, feed.getFeedName());
+			return new TradeCache(orderBookType, feed.getFeedName(), getTimerWheel().getClock());
 		else 
 			return null;
 	}
@@ -267,6 +274,28 @@ public abstract class BaseMarketAdapter extends BasePublisher<Subscriber<Object>
 		return log;
 	}
 		
+	public MarketDataDispatcher getDispatcher()
+	{
+		return dispatcher;
+	}
+
+	/**
+	 * Moves updating of the subscribers to the dispatcher's threads, with no dispatcher
+	 * they are updated by the publishing thread. The previous dispatcher is stopped.
+	 */
+	public synchronized void setDispatcher(MarketDataDispatcher dispatcher)
+	{
+		MarketDataDispatcher previous = this.dispatcher;
+		
+		if (dispatcher != null)
+			dispatcher.start();
+		
+		this.dispatcher = dispatcher;
+		
+		if (previous != null && previous != dispatcher)
+			previous.stop();
+	}
+
 	protected long getMarketLatencyOffset()
 	{
 		return marketLatencyOffset;
@@ -325,6 +354,7 @@ public abstract class BaseMarketAdapter extends BasePublisher<Subscriber<Object>
 			try
 			{
 				marketDataCacheProvider.newContext();
+				marketDataCacheProvider.startRecording();
 			}
 			catch (MarketDataCacheProviderException e)
 			{
@@ -360,8 +390,31 @@ public abstract class BaseMarketAdapter extends BasePublisher<Subscriber<Object>
 			mdMessageInfo.getSourceTimestamp() - getMarketLatencyOffset();
 	}
 
+	/**
+	 * Publishes the data to the feed's subscribers. The publisher's reference to
+	 * {@link Recyclable} data (e.g. pooled market data items) is released
+	 * once all subscribers were updated.
+	 */
 	@Override
 	public void publish(Object data) throws PublisherException 
+	{
+		if (LatencyStage.ENABLED && data instanceof MDEvent)
+			LatencyStage.CONNECTOR_RECEIVE.recordSince(((MDEvent) data).receivedNanos());
+
+		long start = LatencyStage.start();
+		try
+		{
+			dispatch(data);
+		}
+		finally
+		{
+			LatencyStage.ADAPTER_DISPATCH.recordSince(start);
+			if (data instanceof Recyclable)
+				((Recyclable) data).release();
+		}
+	}
+	
+	private void dispatch(Object data) throws PublisherException 
 	{
 		FeedName feedName = null;
 		MarketDataFeed mdFeed = null;
@@ -398,7 +451,7 @@ public abstract class BaseMarketAdapter extends BasePublisher<Subscriber<Object>
 				if (mdFeed.isSaveData() && marketDataCacheProvider != null)
 					try
 					{
-						marketDataCacheProvider.save(feedName, mdItem);
+						marketDataCacheProvider.record(mdFeed, mdItem);
 					}
 					catch (MarketDataCacheProviderException e)
 					{
@@ -413,20 +466,24 @@ public abstract class BaseMarketAdapter extends BasePublisher<Subscriber<Object>
 				feedName = exFeed.getFeedName();
 		}
 			
-		Collection<Subscriber<Object>> subscribers = null;
+		SubscriberArray<Subscriber<Object>> subscribers = null;
 		
 		if (feedName != null)
 			subscribers = getSubscribers(feedName);
 		else
 			subscribers = getSubscribers();
 		
-		if (subscribers != null)
-		{					
-			synchronized(subscribers)
-			{
-				subscribers.parallelStream().forEach(s -> s.sendUpdate(data));
-			}				
-		}
+		if (subscribers == null || subscribers.isEmpty())
+			return;
+		
+		// immutable snapshot of the registry, no locking needed
+		MarketDataDispatcher dispatcher = this.dispatcher;
+		
+		if (dispatcher != null)
+			dispatcher.dispatch(data, feedName, subscribers);
+		else
+			for (int i = 0; i < subscribers.size(); i++)
+				subscribers.get(i).sendUpdate(data);
 	}
 
 	@Override
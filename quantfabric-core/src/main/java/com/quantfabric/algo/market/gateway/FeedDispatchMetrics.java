@@ -0,0 +1,90 @@
+/*
+ * Copyright 2022-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.quantfabric.algo.market.gateway;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Dispatch counters of one feed. Queue depth counts deliveries handed to the dispatcher
+ * lanes and not completed yet, latency is measured from publishing to delivery.
+ */
+public class FeedDispatchMetrics
+{
+	private final String feedName;
+	private final AtomicLong queued = new AtomicLong();
+	private final AtomicLong delivered = new AtomicLong();
+	private final AtomicLong totalLatency = new AtomicLong();
+	private final AtomicLong maxLatency = new AtomicLong();
+	private final AtomicLong measured = new AtomicLong();
+
+	FeedDispatchMetrics(String feedName)
+	{
+		this.feedName = feedName;
+	}
+
+	void onQueued(int deliveries)
+	{
+		queued.addAndGet(deliveries);
+	}
+
+	void onDelivered(long latencyNanos)
+	{
+		delivered.incrementAndGet();
+		measured.incrementAndGet();
+		totalLatency.addAndGet(latencyNanos);
+		maxLatency.accumulateAndGet(latencyNanos, Math::max);
+	}
+
+	public String getFeedName()
+	{
+		return feedName;
+	}
+
+	public long getQueueDepth()
+	{
+		return queued.get() - delivered.get();
+	}
+
+	public long getDeliveredCount()
+	{
+		return delivered.get();
+	}
+
+	public long getMeanLatencyMicros()
+	{
+		long count = measured.get();
+		return count == 0 ? 0 : totalLatency.get() / count / 1000;
+	}
+
+	public long getMaxLatencyMicros()
+	{
+		return maxLatency.get() / 1000;
+	}
+
+	public void resetLatencies()
+	{
+		measured.set(0);
+		totalLatency.set(0);
+		maxLatency.set(0);
+	}
+
+	@Override
+	public String toString()
+	{
+		return feedName + " (depth " + getQueueDepth() + ", mean " + getMeanLatencyMicros() 
+				+ "us, max " + getMaxLatencyMicros() + "us)";
+	}
+}
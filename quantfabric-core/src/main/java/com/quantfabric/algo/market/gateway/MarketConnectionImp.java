@@ -57,6 +57,7 @@ import com.quantfabric.algo.order.report.Trade;
 import com.quantfabric.algo.runtime.QuantfabricRuntime;
 import com.quantfabric.messaging.Subscriber;
 import com.quantfabric.util.PropertiesViewer;
+import com.quantfabric.util.timer.TimerWheel;
 
 import static com.quantfabric.algo.configuration.QuantfabricConstants.*;
 
@@ -446,6 +447,12 @@ public abstract class MarketConnectionImp
 		getCurrentMarketAdapter().removeOrderBookSnapshotListener(feedName, listenerName);
 	}
 
+	@Override
+	public TimerWheel getTimerWheel()
+	{
+		return getAdapter().getTimerWheel();
+	}
+
 	@Override
 	public void addStatusChangedListener(StatusChangedListener listener)
 	{
@@ -583,6 +590,12 @@ public abstract class MarketConnectionImp
 	{
 		this.setAdapter(adapter);
 		this.getAdapter().addLogonListerner(new AdapterLogonListener());
+
+		int dispatchThreads = settings == null ? 0
+				: Integer.parseInt(PropertiesViewer.getProperty(settings, DISPATCH_THREADS, "0").trim());
+
+		if (dispatchThreads > 0 && adapter instanceof BaseMarketAdapter)
+			((BaseMarketAdapter) adapter).setDispatcher(new MarketDataDispatcher(getName(), dispatchThreads));
 	}
 
 	public void setName(String name) {
@@ -0,0 +1,319 @@
+/*
+ * Copyright 2022-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.quantfabric.algo.market.gateway;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.quantfabric.algo.market.datamodel.EndUpdate;
+import com.quantfabric.algo.market.datamodel.MDItem;
+import com.quantfabric.algo.market.dataprovider.FeedName;
+import com.quantfabric.messaging.NativeSubscriberBuffer;
+import com.quantfabric.messaging.Recyclable;
+import com.quantfabric.messaging.Subscriber;
+import com.quantfabric.messaging.SubscriberArray;
+import com.quantfabric.messaging.SubscriberBufferPool;
+import com.quantfabric.messaging.SubscriberBufferSettings;
+
+/**
+ * Dispatch stage of a market adapter, subscribers are updated by the dispatcher's lane
+ * threads instead of the publishing thread.
+ * <p>
+ * Every subscriber is pinned to one lane, so it receives events in publishing order and
+ * feeds are never reordered, while different subscribers are updated in parallel.
+ * {@link MDItem}s are collected up to the {@link EndUpdate} (or any other event) closing
+ * them and the whole group is handed off to the lanes at once.
+ * <p>
+ * Lane threads are configured like other subscriber buffers, through system properties
+ * of the buffers named <code>&lt;name&gt;-dispatch-&lt;lane&gt;</code>.
+ */
+public class MarketDataDispatcher implements MarketDataDispatcherMXBean
+{
+	public static final int MAX_LANES = Long.SIZE;
+	public static final int MAX_GROUP_SIZE = 1024;
+	public static final String BROADCAST = "broadcast";
+
+	private static final Logger log = LoggerFactory.getLogger(MarketDataDispatcher.class);
+
+	private static class Delivery
+	{
+		private final Object data;
+		private final SubscriberArray<Subscriber<Object>> subscribers;
+		private final long lanes;
+		private final FeedDispatchMetrics metrics;
+		private final long queuedAt;
+
+		Delivery(Object data, SubscriberArray<Subscriber<Object>> subscribers, long lanes,
+				FeedDispatchMetrics metrics, long queuedAt)
+		{
+			this.data = data;
+			this.subscribers = subscribers;
+			this.lanes = lanes;
+			this.metrics = metrics;
+			this.queuedAt = queuedAt;
+		}
+	}
+
+	/**
+	 * Group of deliveries shared by the lanes it was handed to, the last lane done
+	 * with it releases the pooled items.
+	 */
+	private static class Batch
+	{
+		private final Delivery[] deliveries;
+		private final AtomicInteger pendingLanes;
+
+		Batch(Delivery[] deliveries, int laneCount)
+		{
+			this.deliveries = deliveries;
+			this.pendingLanes = new AtomicInteger(laneCount);
+		}
+
+		void release()
+		{
+			if (pendingLanes.decrementAndGet() == 0)
+				for (Delivery delivery : deliveries)
+					if (delivery.data instanceof Recyclable)
+						((Recyclable) delivery.data).release();
+		}
+	}
+
+	private class Lane implements Subscriber<Object>
+	{
+		private final int index;
+		private final long mask;
+		private final NativeSubscriberBuffer buffer;
+
+		Lane(int index, String bufferName)
+		{
+			this.index = index;
+			this.mask = 1L << index;
+			this.buffer = new NativeSubscriberBuffer(bufferName, this, 
+					SubscriberBufferSettings.forBuffer(bufferName), pool);
+		}
+
+		@Override
+		public void sendUpdate(Object data)
+		{
+			Batch batch = (Batch) data;
+
+			try
+			{
+				for (Delivery delivery : batch.deliveries)
+					if ((delivery.lanes & mask) != 0)
+						deliver(delivery);
+			}
+			finally
+			{
+				batch.release();
+			}
+		}
+
+		@Override
+		public void sendUpdate(Object[] data)
+		{
+			for (int i = 0; i < data.length; i++)
+				sendUpdate(data[i]);
+		}
+
+		private void deliver(Delivery delivery)
+		{
+			SubscriberArray<Subscriber<Object>> subscribers = delivery.subscribers;
+
+			for (int i = 0; i < subscribers.size(); i++)
+			{
+				Subscriber<Object> subscriber = subscribers.get(i);
+
+				if (getLaneIndex(subscriber) == index)
+					try
+					{
+						subscriber.sendUpdate(delivery.data);
+					}
+					catch (RuntimeException e)
+					{
+						log.error("Dispatching to subscriber failed (" + name + ", feed " 
+								+ delivery.metrics.getFeedName() + ")", e);
+					}
+			}
+
+			delivery.metrics.onDelivered(System.nanoTime() - delivery.queuedAt);
+		}
+	}
+
+	private final String name;
+	private final SubscriberBufferPool pool;
+	private final Lane[] lanes;
+	private final ConcurrentMap<String, FeedDispatchMetrics> feedMetrics = new ConcurrentHashMap<>();
+
+	// group under construction, guarded by this
+	private final List<Delivery> group = new ArrayList<>();
+	private long groupLanes;
+
+	private ObjectName objectName;
+
+	public MarketDataDispatcher(String name, int laneCount)
+	{
+		if (laneCount < 1 || laneCount > MAX_LANES)
+			throw new IllegalArgumentException("Lane count has to be from 1 to " + MAX_LANES);
+
+		this.name = name;
+		this.pool = new SubscriberBufferPool(name + "-dispatch", SubscriberBufferPool.UNBOUNDED);
+		this.lanes = new Lane[laneCount];
+
+		for (int i = 0; i < laneCount; i++)
+			lanes[i] = new Lane(i, name + "-dispatch-" + i);
+	}
+
+	@Override
+	public String getName()
+	{
+		return name;
+	}
+
+	@Override
+	public int getLaneCount()
+	{
+		return lanes.length;
+	}
+
+	public int getLaneIndex(Subscriber<?> subscriber)
+	{
+		return Math.floorMod(System.identityHashCode(subscriber), lanes.length);
+	}
+
+	public synchronized void start()
+	{
+		for (Lane lane : lanes)
+			lane.buffer.start();
+
+		if (objectName == null)
+			try
+			{
+				objectName = new ObjectName("com.quantfabric:type=MarketDataDispatcher,name=" + ObjectName.quote(name));
+				ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+			}
+			catch (JMException e)
+			{
+				log.warn("Can't register JMX bean of market data dispatcher (" + name + ")", e);
+				objectName = null;
+			}
+	}
+
+	/**
+	 * Hands off the pending group and stops the lanes, events still queued in the lanes
+	 * are dropped.
+	 */
+	public synchronized void stop()
+	{
+		flush();
+
+		for (Lane lane : lanes)
+			lane.buffer.stop();
+
+		if (objectName != null)
+			try
+			{
+				ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+			}
+			catch (JMException e)
+			{
+				log.warn("Can't unregister JMX bean of market data dispatcher (" + name + ")", e);
+			}
+			finally
+			{
+				objectName = null;
+			}
+	}
+
+	/**
+	 * Queues the data for the given subscribers. {@link Recyclable} data is retained
+	 * until all the subscribers were updated.
+	 */
+	public synchronized void dispatch(Object data, FeedName feedName, SubscriberArray<Subscriber<Object>> subscribers)
+	{
+		long mask = 0;
+
+		for (int i = 0; i < subscribers.size(); i++)
+			mask |= 1L << getLaneIndex(subscribers.get(i));
+
+		if (mask != 0)
+		{
+			if (data instanceof Recyclable)
+				((Recyclable) data).retain();
+
+			FeedDispatchMetrics metrics = getMetrics(feedName == null ? BROADCAST : feedName.getName());
+			metrics.onQueued(Long.bitCount(mask));
+
+			group.add(new Delivery(data, subscribers, mask, metrics, System.nanoTime()));
+			groupLanes |= mask;
+		}
+
+		if (!(data instanceof MDItem) || group.size() >= MAX_GROUP_SIZE)
+			flush();
+	}
+
+	/**
+	 * Hands off the pending group to the lanes.
+	 */
+	public synchronized void flush()
+	{
+		if (group.isEmpty())
+			return;
+
+		Batch batch = new Batch(group.toArray(new Delivery[group.size()]), Long.bitCount(groupLanes));
+
+		for (Lane lane : lanes)
+			if ((groupLanes & lane.mask) != 0)
+				lane.buffer.sendUpdate(batch);
+
+		group.clear();
+		groupLanes = 0;
+	}
+
+	private FeedDispatchMetrics getMetrics(String feedName)
+	{
+		FeedDispatchMetrics metrics = feedMetrics.get(feedName);
+		return metrics != null ? metrics : feedMetrics.computeIfAbsent(feedName, FeedDispatchMetrics::new);
+	}
+
+	public FeedDispatchMetrics getFeedMetrics(String feedName)
+	{
+		return feedMetrics.get(feedName);
+	}
+
+	@Override
+	public List<FeedDispatchMetrics> getFeedMetrics()
+	{
+		return new ArrayList<>(feedMetrics.values());
+	}
+
+	@Override
+	public void resetLatencies()
+	{
+		for (FeedDispatchMetrics metrics : feedMetrics.values())
+			metrics.resetLatencies();
+	}
+}
@@ -17,9 +17,18 @@ package com.quantfabric.algo.market.gateway;
 
 import com.quantfabric.algo.market.dataprovider.FeedName;
 import com.quantfabric.algo.market.dataprovider.orderbook.processor.OrderBookSnapshotListener;
+import com.quantfabric.util.timer.TimerWheel;
 
 public interface OrderBookSnapshotsProvider
 {
 	void addOrderBookSnapshotListener (FeedName feedName, OrderBookSnapshotListener listener); 
 	void removeOrderBookSnapshotListener (FeedName feedName, String listenerName); 
+	
+	/**
+	 * @return wheel following the time of the snapshots, the shared one unless they are replayed
+	 */
+	default TimerWheel getTimerWheel()
+	{
+		return TimerWheel.getShared();
+	}
 }
@@ -18,6 +18,7 @@ package com.quantfabric.algo.market.gateway.access.product.publisher;
 import java.io.Serializable;
 
 import com.quantfabric.algo.market.gateway.access.product.ContentType;
+import com.quantfabric.algo.market.gateway.access.product.WireFormat;
 
 public class PublisherAddress implements Serializable
 {
@@ -26,13 +27,20 @@ public class PublisherAddress implements Serializable
 	private final String host;
 	private final int port;
 	private final ContentType contentType;
+	private final WireFormat wireFormat;
 		
 	public PublisherAddress(String host, int port, ContentType contentType)
+	{
+		this(host, port, contentType, WireFormat.KRYO);
+	}
+	
+	public PublisherAddress(String host, int port, ContentType contentType, WireFormat wireFormat)
 	{
 		super();
 		this.host = host;
 		this.port = port;
 		this.contentType = contentType;
+		this.wireFormat = wireFormat;
 	}
 	
 	public String getHost()
@@ -46,5 +54,12 @@ public class PublisherAddress implements Serializable
 	public ContentType getContentType()
 	{
 		return contentType;
-	}		
+	}
+	/**
+	 * @return the encoding of the publisher's stream, Kryo for addresses of older publishers
+	 */
+	public WireFormat getWireFormat()
+	{
+		return wireFormat == null ? WireFormat.KRYO : wireFormat;
+	}
 }
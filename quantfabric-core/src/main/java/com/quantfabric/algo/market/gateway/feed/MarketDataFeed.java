@@ -28,11 +28,18 @@ public interface MarketDataFeed extends Feed
 		PRICES_AND_TRADES
 	}
 
+	enum OrderBookCacheType {
+		SIMPLE,
+		SORTED
+	}
+
 	int FULL_MARKET_DEPTH = 0;
 	int TOP_MARKET_DEPTH = 1;
 	int DEFAULT_MARKET_DEPTH = FULL_MARKET_DEPTH;
 	String DEFAULT_CHANNEL = "DEFAULT";
 	MarketDataType DEFAULT_MARKET_DATA_TYPE = MarketDataType.DEALABLE_PRICE;
+	OrderBookCacheType DEFAULT_ORDER_BOOK_CACHE_TYPE = OrderBookCacheType.SIMPLE;
+	boolean DEFAULT_POOLED_ITEMS = false;
 
 
 	String getChannel();
@@ -41,6 +48,14 @@ public interface MarketDataFeed extends Feed
 	void setMarketDepth(int depth);
 	MarketDataType getMarketDataType();
 	void setMarketDataType(MarketDataType type);
+	OrderBookCacheType getOrderBookCacheType();
+	void setOrderBookCacheType(OrderBookCacheType type);
+	/**
+	 * @return <code>true</code> if the connector takes the feed's items from a
+	 * {@link com.quantfabric.algo.market.datamodel.MDItemPool} instead of allocating them
+	 */
+	boolean isPooledItems();
+	void setPooledItems(boolean pooledItems);
 	long nextSeqId();
 
 }
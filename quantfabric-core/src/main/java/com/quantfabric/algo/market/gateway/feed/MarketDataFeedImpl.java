@@ -33,6 +33,8 @@ public class MarketDataFeedImpl extends AbstractFeed implements MarketDataFeed
 	private int marketDepth = DEFAULT_MARKET_DEPTH;
 	private String channel = DEFAULT_CHANNEL;
 	private MarketDataType marketDataType = DEFAULT_MARKET_DATA_TYPE;
+	private OrderBookCacheType orderBookCacheType = DEFAULT_ORDER_BOOK_CACHE_TYPE;
+	private boolean pooledItems = DEFAULT_POOLED_ITEMS;
 	private static final AtomicLong  seqId = new AtomicLong(0);
 	private Disposable disposable;
 
@@ -90,6 +92,26 @@ public class MarketDataFeedImpl extends AbstractFeed implements MarketDataFeed
 		this.marketDataType = marketDataType;
 	}
 
+	@Override
+	public OrderBookCacheType getOrderBookCacheType() {
+
+		return orderBookCacheType;
+	}
+	@Override
+	public void setOrderBookCacheType(OrderBookCacheType orderBookCacheType) {
+		this.orderBookCacheType = orderBookCacheType;
+	}
+
+	@Override
+	public boolean isPooledItems() {
+		return pooledItems;
+	}
+
+	@Override
+	public void setPooledItems(boolean pooledItems) {
+		this.pooledItems = pooledItems;
+	}
+
 	@Override
 	public long nextSeqId(){
 		return seqId.incrementAndGet();
@@ -112,6 +134,7 @@ public class MarketDataFeedImpl extends AbstractFeed implements MarketDataFeed
 				+ getInstrumentProvider() + ", cachingInstrument="
 				+ isCachingInstrument() + ", marketDepth=" + marketDepth
 				+ ", channel=" + channel + ", marketDataType=" + marketDataType
+				+ ", orderBookCacheType=" + orderBookCacheType
 				+ ", toString()=" + super.toString() + "]";
 	}
 
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2022-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.quantfabric.algo.market.history.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+
+import com.quantfabric.algo.market.history.MultiTimeFrameHistoryProvider;
+import com.quantfabric.algo.market.history.MultiTimeFrameHistoryProviderDefinition;
+import com.quantfabric.algo.market.history.TimeFrame;
+import com.quantfabric.algo.market.history.TimeFrameHistoryTable;
+
+/**
+ * History of one feed for every {@link TimeFrame}, each time frame is kept
+ * in its own {@link MappedTimeFrameHistoryTable} file in the feed directory.
+ */
+public class MappedMultiTimeFrameHistoryProvider implements MultiTimeFrameHistoryProvider
+{
+	private static final String FILE_EXTENSION = ".bars";
+
+	private final MultiTimeFrameHistoryProviderDefinition definition;
+	private final Map<TimeFrame, MappedTimeFrameHistoryTable> tables = new EnumMap<>(TimeFrame.class);
+
+	public MappedMultiTimeFrameHistoryProvider(MultiTimeFrameHistoryProviderDefinition definition,
+			File directory, int capacity) throws IOException
+	{
+		this.definition = definition;
+
+		if (!directory.isDirectory() && !directory.mkdirs())
+			throw new IOException(String.format("Can't create history directory (%s)", directory));
+
+		try
+		{
+			for (TimeFrame timeFrame : TimeFrame.values())
+				tables.put(timeFrame, new MappedTimeFrameHistoryTable(
+						new File(directory, timeFrame.name() + FILE_EXTENSION), timeFrame, capacity));
+		}
+		catch (IOException e)
+		{
+			close();
+			throw e;
+		}
+	}
+
+	@Override
+	public TimeFrameHistoryTable getTimeFrameHandler(TimeFrame tf)
+	{
+		return tables.get(tf);
+	}
+
+	@Override
+	public MultiTimeFrameHistoryProviderDefinition getDefinition()
+	{
+		return definition;
+	}
+
+	@Override
+	public void close() throws IOException
+	{
+		IOException failure = null;
+
+		for (MappedTimeFrameHistoryTable table : tables.values())
+			try
+			{
+				table.close();
+			}
+			catch (IOException e)
+			{
+				if (failure == null)
+					failure = e;
+				else
+					failure.addSuppressed(e);
+			}
+
+		if (failure != null)
+			throw failure;
+	}
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2022-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.quantfabric.algo.market.history.storage;
+
+import java.io.File;
+
+import com.quantfabric.algo.market.history.MultiTimeFrameHistoryProvider;
+import com.quantfabric.algo.market.history.MultiTimeFrameHistoryProviderDefinition;
+import com.quantfabric.algo.market.history.MultiTimeFrameHistoryProviderFactory;
+
+/**
+ * Creates {@link MappedMultiTimeFrameHistoryProvider}s keeping history of a
+ * feed in {@code <storage>/<feedName>}, the number of bars kept per time frame
+ * is set by the "historyCapacity" setting (1000 by default).
+ */
+public class MappedMultiTimeFrameHistoryProviderFactory implements MultiTimeFrameHistoryProviderFactory
+{
+	public static final String HISTORY_CAPACITY_SETTING = "historyCapacity";
+	public static final int DEFAULT_HISTORY_CAPACITY = 1000;
+
+	@Override
+	public MultiTimeFrameHistoryProvider create(
+			MultiTimeFrameHistoryProviderDefinition multiTimeFrameHistoryProviderDefinition, String name)
+		throws Exception
+	{
+		int capacity = DEFAULT_HISTORY_CAPACITY;
+
+		if (multiTimeFrameHistoryProviderDefinition.getProperties() != null)
+			capacity = Integer.parseInt(multiTimeFrameHistoryProviderDefinition.getProperties().getProperty(
+					HISTORY_CAPACITY_SETTING, String.valueOf(DEFAULT_HISTORY_CAPACITY)));
+
+		if (capacity <= 0)
+			throw new IllegalArgumentException(HISTORY_CAPACITY_SETTING + " must be positive");
+
+		return new MappedMultiTimeFrameHistoryProvider(multiTimeFrameHistoryProviderDefinition,
+				new File(multiTimeFrameHistoryProviderDefinition.getStorage(), name), capacity);
+	}
+}
@@ -0,0 +1,398 @@
+/*
+ * Copyright 2022-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.quantfabric.algo.market.history.storage;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.quantfabric.algo.market.datamodel.OHLCValue;
+import com.quantfabric.algo.market.history.TimeFrame;
+import com.quantfabric.algo.market.history.TimeFrameHistoryTable;
+
+/**
+ * History of one time frame kept in a fixed size ring of fixed width bar
+ * records inside a memory-mapped file.
+ * <p>
+ * Adding or replacing a bar writes its values straight into the mapped
+ * record, so recording allocates nothing and the history survives restarts:
+ * reopening the file only maps it again. Bars are kept in the order of their
+ * time frame periods, a bar for a period which is already stored replaces it.
+ * <p>
+ * Gaps - bars which don't follow the period of the previous bar directly -
+ * are tracked in a bitmap over the ring positions.
+ */
+public class MappedTimeFrameHistoryTable implements TimeFrameHistoryTable
+{
+	private static final Logger log = LoggerFactory.getLogger(MappedTimeFrameHistoryTable.class);
+
+	private static final long MAGIC = 0x5146484953544F52L;
+	private static final int VERSION = 1;
+
+	private static final int HEADER_SIZE = 64;
+	private static final int HEADER_MAGIC = 0;
+	private static final int HEADER_VERSION = 8;
+	private static final int HEADER_TIME_FRAME = 12;
+	private static final int HEADER_CAPACITY = 16;
+	private static final int HEADER_COUNT = 24;
+
+	private static final int RECORD_SIZE = 128;
+	private static final int BAR_ID = 0;
+	private static final int OPEN = 8;
+	private static final int OPEN_SOURCE_TIMESTAMP = 16;
+	private static final int HIGH = 24;
+	private static final int HIGH_SOURCE_TIMESTAMP = 32;
+	private static final int LOW = 40;
+	private static final int LOW_SOURCE_TIMESTAMP = 48;
+	private static final int CLOSE = 56;
+	private static final int CLOSE_SOURCE_TIMESTAMP = 64;
+	private static final int CLOSE_TIMESTAMP = 72;
+	private static final int AVG_BUY = 80;
+	private static final int AVG_SELL = 88;
+	private static final int BUY_SELL_RATIO = 96;
+	private static final int FLAGS = 104;
+	private static final int TRADE_COUNT = 108;
+	private static final int BUY_COUNT = 112;
+	private static final int SELL_COUNT = 116;
+
+	private static final int CLOSED_FLAG = 1;
+	private static final int CLOSE_BY_TIMEOUT_FLAG = 2;
+	private static final int JUST_OPENED_FLAG = 4;
+
+	private final TimeFrame timeFrame;
+	private final long periodMillis;
+	private final File file;
+	private final FileChannel channel;
+	private final MappedByteBuffer buffer;
+	private final int capacity;
+	private final long[] gaps;
+
+	private long count;
+
+	public MappedTimeFrameHistoryTable(File file, TimeFrame timeFrame, int capacity) throws IOException
+	{
+		this.file = file;
+		this.timeFrame = timeFrame;
+		this.periodMillis = timeFrame.getSeconds() * 1000L;
+
+		boolean exists = file.exists() && file.length() >= HEADER_SIZE;
+		channel = FileChannel.open(file.toPath(),
+				StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+
+		try
+		{
+			if (exists)
+			{
+				MappedByteBuffer header = channel.map(MapMode.READ_ONLY, 0, HEADER_SIZE);
+
+				if (header.getLong(HEADER_MAGIC) != MAGIC || header.getInt(HEADER_VERSION) != VERSION
+						|| header.getInt(HEADER_TIME_FRAME) != timeFrame.getSeconds())
+					throw new IOException(String.format("File (%s) isn't a %s history", file, timeFrame));
+
+				int storedCapacity = (int) header.getLong(HEADER_CAPACITY);
+				if (storedCapacity != capacity)
+					log.warn("History (" + file + ") was created with capacity " + storedCapacity
+							+ ", configured capacity " + capacity + " is ignored");
+
+				capacity = storedCapacity;
+			}
+
+			this.capacity = capacity;
+			buffer = channel.map(MapMode.READ_WRITE, 0, HEADER_SIZE + (long) capacity * RECORD_SIZE);
+		}
+		catch (IOException | RuntimeException e)
+		{
+			channel.close();
+			throw e;
+		}
+
+		if (!exists)
+		{
+			buffer.putLong(HEADER_MAGIC, MAGIC);
+			buffer.putInt(HEADER_VERSION, VERSION);
+			buffer.putInt(HEADER_TIME_FRAME, timeFrame.getSeconds());
+			buffer.putLong(HEADER_CAPACITY, capacity);
+			buffer.putLong(HEADER_COUNT, 0L);
+		}
+
+		count = buffer.getLong(HEADER_COUNT);
+		gaps = new long[(capacity + 63) >>> 6];
+
+		for (long sequence = getFirstSequence() + 1; sequence < count; sequence++)
+			updateGap(sequence);
+	}
+
+	public TimeFrame getTimeFrame()
+	{
+		return timeFrame;
+	}
+
+	public int getCapacity()
+	{
+		return capacity;
+	}
+
+	public synchronized int size()
+	{
+		return (int) Math.min(count, capacity);
+	}
+
+	@Override
+	public synchronized void addBar(int open, long openSourceTimestamp,
+			int high, long highSourceTimestamp,
+			int low, long lowSourceTimestamp,
+			int close, long closeSourceTimestamp,
+			boolean closed)
+	{
+		long sequence = findSequence(openSourceTimestamp);
+		if (sequence < 0)
+			return;
+
+		int offset = offset(sequence);
+
+		buffer.putLong(offset + BAR_ID, 0L);
+		buffer.putLong(offset + OPEN, open);
+		buffer.putLong(offset + OPEN_SOURCE_TIMESTAMP, openSourceTimestamp);
+		buffer.putLong(offset + HIGH, high);
+		buffer.putLong(offset + HIGH_SOURCE_TIMESTAMP, highSourceTimestamp);
+		buffer.putLong(offset + LOW, low);
+		buffer.putLong(offset + LOW_SOURCE_TIMESTAMP, lowSourceTimestamp);
+		buffer.putLong(offset + CLOSE, close);
+		buffer.putLong(offset + CLOSE_SOURCE_TIMESTAMP, closeSourceTimestamp);
+		buffer.putLong(offset + CLOSE_TIMESTAMP, 0L);
+		buffer.putLong(offset + AVG_BUY, 0L);
+		buffer.putLong(offset + AVG_SELL, 0L);
+		buffer.putDouble(offset + BUY_SELL_RATIO, 0.0);
+		buffer.putInt(offset + FLAGS, closed ? CLOSED_FLAG : 0);
+		buffer.putInt(offset + TRADE_COUNT, 0);
+		buffer.putInt(offset + BUY_COUNT, 0);
+		buffer.putInt(offset + SELL_COUNT, 0);
+
+		commit(sequence);
+	}
+
+	@Override
+	public synchronized void addBar(OHLCValue ohlcValue)
+	{
+		write(ohlcValue);
+	}
+
+	/**
+	 * Replaces the stored bar of the same period, a bar of a period following
+	 * the last stored one is added.
+	 */
+	@Override
+	public synchronized void replaceBar(OHLCValue ohlcValue)
+	{
+		write(ohlcValue);
+	}
+
+	private void write(OHLCValue ohlcValue)
+	{
+		long sequence = findSequence(ohlcValue.getOpenSourceTimestamp());
+		if (sequence < 0)
+			return;
+
+		int offset = offset(sequence);
+
+		buffer.putLong(offset + BAR_ID, ohlcValue.getBarId());
+		buffer.putLong(offset + OPEN, ohlcValue.getOpen());
+		buffer.putLong(offset + OPEN_SOURCE_TIMESTAMP, ohlcValue.getOpenSourceTimestamp());
+		buffer.putLong(offset + HIGH, ohlcValue.getHigh());
+		buffer.putLong(offset + HIGH_SOURCE_TIMESTAMP, ohlcValue.getHighSourceTimestamp());
+		buffer.putLong(offset + LOW, ohlcValue.getLow());
+		buffer.putLong(offset + LOW_SOURCE_TIMESTAMP, ohlcValue.getLowSourceTimestamp());
+		buffer.putLong(offset + CLOSE, ohlcValue.getClose());
+		buffer.putLong(offset + CLOSE_SOURCE_TIMESTAMP, ohlcValue.getCloseSourceTimestamp());
+		buffer.putLong(offset + CLOSE_TIMESTAMP, ohlcValue.getCloseTimestamp());
+		buffer.putLong(offset + AVG_BUY, ohlcValue.getAvgBuy());
+		buffer.putLong(offset + AVG_SELL, ohlcValue.getAvgSell());
+		buffer.putDouble(offset + BUY_SELL_RATIO, ohlcValue.getBuySellRatio());
+		buffer.putInt(offset + FLAGS, (ohlcValue.isClosed() ? CLOSED_FLAG : 0)
+				| (ohlcValue.isCloseByTimeout() ? CLOSE_BY_TIMEOUT_FLAG : 0)
+				| (ohlcValue.isJustOpened() ? JUST_OPENED_FLAG : 0));
+		buffer.putInt(offset + TRADE_COUNT, ohlcValue.getTradeCount());
+		buffer.putInt(offset + BUY_COUNT, ohlcValue.getBuyCount());
+		buffer.putInt(offset + SELL_COUNT, ohlcValue.getSellCount());
+
+		commit(sequence);
+	}
+
+	/**
+	 * Returns sequence number the bar opened at the given time must be
+	 * written to, or -1 when its period is older than the stored history.
+	 */
+	private long findSequence(long openSourceTimestamp)
+	{
+		long period = toPeriod(openSourceTimestamp);
+		long first = getFirstSequence();
+
+		for (long sequence = count - 1; sequence >= first; sequence--)
+		{
+			long storedPeriod = toPeriod(buffer.getLong(offset(sequence) + OPEN_SOURCE_TIMESTAMP));
+
+			if (storedPeriod == period)
+				return sequence;
+
+			if (storedPeriod < period)
+			{
+				if (sequence == count - 1)
+					return count;
+
+				break;
+			}
+		}
+
+		if (count == 0)
+			return 0;
+
+		log.warn("Bar opened at " + openSourceTimestamp + " doesn't fit " + timeFrame
+				+ " history (" + file + ") and is ignored");
+
+		return -1;
+	}
+
+	private void commit(long sequence)
+	{
+		if (sequence == count)
+		{
+			count++;
+			buffer.putLong(HEADER_COUNT, count);
+		}
+
+		if (sequence > getFirstSequence())
+			updateGap(sequence);
+		if (sequence + 1 < count)
+			updateGap(sequence + 1);
+	}
+
+	private void updateGap(long sequence)
+	{
+		int position = (int) (sequence % capacity);
+		long previousPeriod = toPeriod(buffer.getLong(offset(sequence - 1) + OPEN_SOURCE_TIMESTAMP));
+		long period = toPeriod(buffer.getLong(offset(sequence) + OPEN_SOURCE_TIMESTAMP));
+
+		if (period - previousPeriod > 1)
+			gaps[position >>> 6] |= 1L << position;
+		else
+			gaps[position >>> 6] &= ~(1L << position);
+	}
+
+	private long getFirstSequence()
+	{
+		return Math.max(0, count - capacity);
+	}
+
+	private long toPeriod(long timestamp)
+	{
+		return Math.floorDiv(timestamp, periodMillis);
+	}
+
+	private int offset(long sequence)
+	{
+		return HEADER_SIZE + (int) (sequence % capacity) * RECORD_SIZE;
+	}
+
+	/**
+	 * @return up to {@code depth} latest bars, the oldest one first
+	 */
+	@Override
+	public synchronized OHLCValue[] getBars(int depth)
+	{
+		int size = Math.max(0, Math.min(depth, size()));
+		OHLCValue[] bars = new OHLCValue[size];
+
+		for (int i = 0; i < size; i++)
+			bars[i] = read(count - size + i);
+
+		return bars;
+	}
+
+	/**
+	 * @return the last bar when it isn't closed yet
+	 */
+	@Override
+	public synchronized OHLCValue getOpenBar()
+	{
+		if (count == 0 || (buffer.getInt(offset(count - 1) + FLAGS) & CLOSED_FLAG) != 0)
+			return null;
+
+		return read(count - 1);
+	}
+
+	/**
+	 * @return indexes of bars preceded by a gap, in the order of {@link #getBars(int)}
+	 * called with the full depth
+	 */
+	@Override
+	public synchronized Collection<Long> getGapIndexes()
+	{
+		Collection<Long> indexes = new ArrayList<>();
+		long first = getFirstSequence();
+
+		for (long sequence = first + 1; sequence < count; sequence++)
+		{
+			int position = (int) (sequence % capacity);
+			if ((gaps[position >>> 6] & 1L << position) != 0)
+				indexes.add(sequence - first);
+		}
+
+		return indexes;
+	}
+
+	private OHLCValue read(long sequence)
+	{
+		int offset = offset(sequence);
+
+		long open = buffer.getLong(offset + OPEN);
+		long high = buffer.getLong(offset + HIGH);
+		long low = buffer.getLong(offset + LOW);
+		long close = buffer.getLong(offset + CLOSE);
+		int flags = buffer.getInt(offset + FLAGS);
+
+		return new OHLCValue(buffer.getLong(offset + BAR_ID), timeFrame.getSeconds(),
+				open, buffer.getLong(offset + OPEN_SOURCE_TIMESTAMP),
+				high, buffer.getLong(offset + HIGH_SOURCE_TIMESTAMP),
+				low, buffer.getLong(offset + LOW_SOURCE_TIMESTAMP),
+				close, buffer.getLong(offset + CLOSE_SOURCE_TIMESTAMP),
+				(high + low + close) / 3, close - open,
+				(flags & CLOSED_FLAG) != 0, buffer.getLong(offset + CLOSE_TIMESTAMP),
+				(flags & CLOSE_BY_TIMEOUT_FLAG) != 0, (flags & JUST_OPENED_FLAG) != 0,
+				buffer.getInt(offset + TRADE_COUNT), buffer.getInt(offset + BUY_COUNT),
+				buffer.getInt(offset + SELL_COUNT), buffer.getDouble(offset + BUY_SELL_RATIO),
+				buffer.getLong(offset + AVG_BUY), buffer.getLong(offset + AVG_SELL));
+	}
+
+	public synchronized void flush()
+	{
+		buffer.force();
+	}
+
+	@Override
+	public synchronized void close() throws IOException
+	{
+		buffer.force();
+		channel.close();
+	}
+}
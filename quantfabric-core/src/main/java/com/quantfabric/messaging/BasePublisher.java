@@ -16,36 +16,45 @@
 package com.quantfabric.messaging;
 
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.HashMap;
-import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.commons.lang.NotImplementedException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 
-
+/**
+ * Subscription registry of a publisher. Changes are serialized on a lock and replace
+ * the immutable {@link SubscriberArray}s, publishing reads them without any locking.
+ */
 public class BasePublisher<TS extends Subscriber<TD>,
 							T extends TargetSubject,
 							TD> implements Publisher<TS,T,TD>{
 
 	private static final Logger log = LoggerFactory.getLogger(BasePublisher.class);
 	 
-	private final LinkedHashMap<Integer,TS> subscribers = new LinkedHashMap<>();
-	private final Map<Integer,ArrayList<T>> subscriptions = new HashMap<>();
-	private final Map<Long, ArrayList<TS>> subscribersByTargetObject =
-			new HashMap<>(); //T.getId(), Array of subscribers
+	private final Object registryLock = new Object();
+	//guarded by registryLock
+	private final Map<Integer,TS> subscribers = new HashMap<>();
+	private final Map<Integer,List<T>> subscriptions = new HashMap<>();
+	//published copies, read without locking
+	private volatile SubscriberArray<TS> allSubscribers = SubscriberArray.empty();
+	private final ConcurrentMap<Long, SubscriberArray<TS>> subscribersByTargetObject =
+			new ConcurrentHashMap<>(); //T.getId(), Array of subscribers
 
 	//region Interface Publisher
 	@Override
 	public void registerSubscriber(TS subscriber) {
-		synchronized(subscribers){
+		synchronized(registryLock){
 			int key = subscriber.hashCode();
 			if(!subscribers.containsKey(key)){
 				subscribers.put(key,subscriber);
 				subscriptions.put(key, new ArrayList<>());
+				allSubscribers = allSubscribers.with(subscriber);
 			}
 			else
 				log.warn("Subscriber is already registered");
@@ -53,10 +62,11 @@ public class BasePublisher<TS extends Subscriber<TD>,
 	}
 	@Override
 	public void unregisterSubscriber(TS subscriber) {
-		synchronized(subscribers){
+		synchronized(registryLock){
 			int key = subscriber.hashCode();
-			if(subscribers.containsKey(key))
-				subscribers.remove(key);
+			TS registered = subscribers.remove(key);
+			if(registered != null)
+				allSubscribers = allSubscribers.without(registered);
 			else {
 				log.warn("Subscriber isn't registered");
 			}
@@ -81,15 +91,18 @@ public class BasePublisher<TS extends Subscriber<TD>,
 	@Override
 	public void subscribe(int subscriberId, T subject) throws PublisherException {
 		try {
-			if(subscriptions.containsKey(subscriberId)){
-				subscriptions.get(subscriberId).add(subject);
+			synchronized(registryLock){
+				if(subscriptions.containsKey(subscriberId)){
+					subscriptions.get(subscriberId).add(subject);
 
-				TS subscriber = subscribers.get(subscriberId);
+					TS subscriber = subscribers.get(subscriberId);
 
-				registerSubject(subject);
-				subscribersByTargetObject.get(subject.getId()).add(subscriber);
+					subscribersByTargetObject.merge(subject.getId(), 
+							SubscriberArray.<TS>empty().with(subscriber), 
+							(current, added) -> current.with(subscriber));
 
-				initSubscription(subscriber, subject);
+					initSubscription(subscriber, subject);
+				}
 			}
 		}
 		catch(Exception ex) {
@@ -103,14 +116,17 @@ public class BasePublisher<TS extends Subscriber<TD>,
 	}
 	@Override
 	public void unSubscribe(int subscriberId, T subject) {
-		if(subscriptions.containsKey(subscriberId)){
-			subscriptions.get(subscriberId).remove(subject);
+		synchronized(registryLock){
+			if(subscriptions.containsKey(subscriberId)){
+				subscriptions.get(subscriberId).remove(subject);
 
-			TS subscriber = subscribers.get(subscriberId);
+				TS subscriber = subscribers.get(subscriberId);
 
-			subscribersByTargetObject.get(subject.getId()).remove(subscriber);
+				subscribersByTargetObject.computeIfPresent(subject.getId(), 
+						(id, current) -> current.without(subscriber));
 
-			destroySubscription(subscriber, subject);
+				destroySubscription(subscriber, subject);
+			}
 		}
 	}
 	@Override
@@ -118,18 +134,21 @@ public class BasePublisher<TS extends Subscriber<TD>,
 		throw new NotImplementedException();
 	}
 	//endregion Interface Publisher
-	private void registerSubject(T subject)
-	{
-		if (!subscribersByTargetObject.containsKey(subject.getId()))
-			subscribersByTargetObject.put(subject.getId(), new ArrayList<>());
-	}
 	protected void initSubscription(TS subscriber, T subject) throws Exception{}
 	protected void destroySubscription(TS subscriber, T subject){}
-	protected  Collection<TS> getSubscribers(){
-		return subscribers.values();
+	/**
+	 * @return registered subscribers, an immutable snapshot safe to iterate while the
+	 * registry changes
+	 */
+	protected  SubscriberArray<TS> getSubscribers(){
+		return allSubscribers;
 	}
-	public Collection<TS> getSubscribers(T subject)
+	/**
+	 * @return immutable snapshot of the subject's subscribers, <code>null</code> if 
+	 * the subject has never been subscribed to
+	 */
+	public SubscriberArray<TS> getSubscribers(T subject)
 	{
 		return subscribersByTargetObject.get(subject.getId());
 	}
-}
\ No newline at end of file
+}
@@ -0,0 +1,179 @@
+/*
+ * Copyright 2022-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.quantfabric.messaging;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.quantfabric.messaging.SubscriberBufferSettings.WaitStrategy;
+
+/**
+ * Thread consuming one or several {@link SubscriberRingBuffer}s and waiting
+ * for new events according to its {@link WaitStrategy}.
+ */
+final class BufferWorker implements Runnable
+{
+	private static final Logger log = LoggerFactory.getLogger(BufferWorker.class);
+
+	private static final int SPIN_TRIES = 100;
+	private static final long PARK_NANOS = 1_000_000L;
+
+	private final Thread thread;
+	private final WaitStrategy waitStrategy;
+	private final int affinity;
+	private final SubscriberBufferPool.AffinityBinder affinityBinder;
+
+	private volatile SubscriberRingBuffer[] buffers = new SubscriberRingBuffer[0];
+	private volatile boolean running = true;
+	private volatile boolean sleeping;
+
+	BufferWorker(String name, WaitStrategy waitStrategy, int affinity,
+			SubscriberBufferPool.AffinityBinder affinityBinder)
+	{
+		this.waitStrategy = waitStrategy;
+		this.affinity = affinity;
+		this.affinityBinder = affinityBinder;
+
+		thread = new Thread(this, affinity == SubscriberBufferSettings.NO_AFFINITY ? name : name + "-cpu" + affinity);
+		thread.setDaemon(true);
+	}
+
+	void start()
+	{
+		thread.start();
+	}
+
+	WaitStrategy getWaitStrategy()
+	{
+		return waitStrategy;
+	}
+
+	int getAffinity()
+	{
+		return affinity;
+	}
+
+	int getBufferCount()
+	{
+		return buffers.length;
+	}
+
+	/**
+	 * Called by the pool only, under its lock.
+	 */
+	void add(SubscriberRingBuffer buffer)
+	{
+		SubscriberRingBuffer[] current = buffers;
+		SubscriberRingBuffer[] updated = Arrays.copyOf(current, current.length + 1);
+		updated[current.length] = buffer;
+		buffers = updated;
+	}
+
+	/**
+	 * Called by the pool only, under its lock.
+	 */
+	void remove(SubscriberRingBuffer buffer)
+	{
+		SubscriberRingBuffer[] current = buffers;
+		SubscriberRingBuffer[] updated = new SubscriberRingBuffer[current.length];
+		int size = 0;
+
+		for (SubscriberRingBuffer item : current)
+			if (item != buffer)
+				updated[size++] = item;
+
+		buffers = Arrays.copyOf(updated, size);
+	}
+
+	void stop()
+	{
+		running = false;
+		LockSupport.unpark(thread);
+	}
+
+	void signal()
+	{
+		if (sleeping)
+			LockSupport.unpark(thread);
+	}
+
+	@Override
+	public void run()
+	{
+		if (affinity != SubscriberBufferSettings.NO_AFFINITY && affinityBinder != null)
+			try
+			{
+				affinityBinder.bind(affinity);
+			}
+			catch (Exception e)
+			{
+				log.warn("Can't bind " + thread.getName() + " to CPU " + affinity, e);
+			}
+
+		int idleCount = 0;
+
+		while (running)
+		{
+			boolean processed = false;
+
+			for (SubscriberRingBuffer buffer : buffers)
+				processed |= buffer.poll();
+
+			if (processed)
+				idleCount = 0;
+			else
+				idle(++idleCount);
+		}
+	}
+
+	private void idle(int idleCount)
+	{
+		switch (waitStrategy)
+		{
+			case BUSY_SPIN:
+				Thread.onSpinWait();
+				break;
+			case YIELDING:
+				if (idleCount < SPIN_TRIES)
+					Thread.onSpinWait();
+				else
+					Thread.yield();
+				break;
+			default:
+				if (idleCount < SPIN_TRIES)
+					Thread.onSpinWait();
+				else
+				{
+					sleeping = true;
+					if (!hasBacklog())
+						LockSupport.parkNanos(this, PARK_NANOS);
+					sleeping = false;
+				}
+		}
+	}
+
+	private boolean hasBacklog()
+	{
+		for (SubscriberRingBuffer buffer : buffers)
+			if (buffer.hasBacklog())
+				return true;
+
+		return !running;
+	}
+}
@@ -15,63 +15,70 @@
  */
 package com.quantfabric.messaging;
 
-import java.util.concurrent.Executor;
-
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.lmax.disruptor.EventHandler;
-import com.lmax.disruptor.RingBuffer;
-import com.lmax.disruptor.wizard.DisruptorWizard;
 
+/**
+ * Asynchronous subscriber which hands updates over to the wrapped subscriber
+ * on a thread of a {@link SubscriberBufferPool}.
+ * <p>
+ * Updates are written into preallocated ring slots, so sending an update
+ * doesn't allocate. A {@link BatchAwareSubscriber} is notified after the last
+ * update of every delivered batch.
+ */
 public class NativeSubscriberBuffer implements Subscriber<Object>
 {
 	private static final Logger log = LoggerFactory.getLogger(NativeSubscriberBuffer.class);
 	
 	private final Subscriber<Object> subscriber;
-	private final Executor executor;
-	private final DisruptorWizard<ObjectValueEvent> disruptorWizard;
-	private RingBuffer<ObjectValueEvent> ringBuffer;
+	private final SubscriberRingBuffer ringBuffer;
 	
 	public NativeSubscriberBuffer(String name, Subscriber<Object> subscriber)
 	{
-		this(name, subscriber, 
-				Integer.parseInt(System.getProperty("com.quantfabric.fwk.pubsub.subscriber-buffer-size",
-						"1000")));
+		this(name, subscriber, SubscriberBufferSettings.forBuffer(name));
+	}
+	
+	public NativeSubscriberBuffer(String name, Subscriber<Object> subscriber, int queueCapacity)
+	{
+		this(name, subscriber, withCapacity(SubscriberBufferSettings.forBuffer(name), queueCapacity));
 	}
 	
-	@SuppressWarnings("unchecked")
-	public NativeSubscriberBuffer(final String name, Subscriber<Object> subscriber, final int queueCapacity)
+	public NativeSubscriberBuffer(String name, Subscriber<Object> subscriber, SubscriberBufferSettings settings)
+	{
+		this(name, subscriber, settings, SubscriberBufferPool.getDefault());
+	}
+	
+	public NativeSubscriberBuffer(String name, Subscriber<Object> subscriber, 
+			SubscriberBufferSettings settings, SubscriberBufferPool pool)
 	{				
 		this.subscriber = subscriber;
 		
-		executor = new Executor() {
-			
-			@Override
-			public void execute(Runnable r)
-			{
-				Thread t = new Thread(r, String.format("SubscriberBufferThread%s-%s",
-						(queueCapacity == Integer.MAX_VALUE ? "" : "-" + queueCapacity), name));
-				t.setDaemon(true);
-				t.start();				
-			}
-		}; 
-		
-		disruptorWizard = new DisruptorWizard<ObjectValueEvent>(
-					ObjectValueEvent.EVENT_FACTORY, queueCapacity, executor);
+		final BatchAwareSubscriber<?> batchAwareSubscriber = subscriber instanceof BatchAwareSubscriber 
+				? (BatchAwareSubscriber<?>) subscriber : null;
 		
-		disruptorWizard.handleEventsWith(
+		ringBuffer = new SubscriberRingBuffer(name, settings, pool, 
 				new EventHandler<ObjectValueEvent>()
 				{
 					@Override
 					public void onEvent(ObjectValueEvent event,
 							boolean endOfBatch) throws Exception
 					{
-						publish(event.getValue());						
+						publish(event.getValue());
+						
+						if (endOfBatch && batchAwareSubscriber != null)
+							batchAwareSubscriber.onEndOfBatch();
 					}			
 				});		
 	}
 	
+	private static SubscriberBufferSettings withCapacity(SubscriberBufferSettings settings, int capacity)
+	{
+		settings.setCapacity(capacity);
+		return settings;
+	}
+	
 	@Override
 	protected void finalize() throws Throwable
 	{
@@ -86,24 +93,24 @@ public class NativeSubscriberBuffer implements Subscriber<Object>
 	
 	public void start()
 	{
-		ringBuffer = disruptorWizard.start();
+		ringBuffer.start();
 	}
 	
 	public void stop()
 	{
-		disruptorWizard.halt();
-		ringBuffer = null;
+		ringBuffer.stop();
+	}
+	
+	public boolean isStarted()
+	{
+		return ringBuffer.isStarted();
 	}
 	
 	@Override
 	public void sendUpdate(Object data)
 	{
-		if (ringBuffer != null)
-		{
-			ObjectValueEvent event = ringBuffer.nextEvent();
-			event.setValue(data);
-			ringBuffer.publish(event);
-		}
+		if (ringBuffer.isStarted())
+			ringBuffer.publish(data, null);
 		else
 			log.error("SubscriberBuffer doesn't started");
 	}
@@ -111,10 +118,10 @@ public class NativeSubscriberBuffer implements Subscriber<Object>
 	@Override
 	public void sendUpdate(Object[] data)
 	{
-		if (ringBuffer != null)
+		if (ringBuffer.isStarted())
 		{
 			for (int i = 0; i < data.length; i++)
-				sendUpdate(data[i]);
+				ringBuffer.publish(data[i], null);
 		}
 		else
 			log.error("SubscriberBuffer doesn't started");
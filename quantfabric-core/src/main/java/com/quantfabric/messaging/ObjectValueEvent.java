@@ -18,9 +18,14 @@ package com.quantfabric.messaging;
 import com.lmax.disruptor.AbstractEvent;
 import com.lmax.disruptor.EventFactory;
 
+/**
+ * Preallocated ring buffer slot, producers fill it in place instead of
+ * allocating a wrapper per update.
+ */
 public class ObjectValueEvent extends AbstractEvent
 {
 	private Object value;
+	private String typeName;
 		
 	public Object getValue()
 	{
@@ -32,6 +37,28 @@ public class ObjectValueEvent extends AbstractEvent
 		this.value = value;
 	}	
 	
+	/**
+	 * @return name of the data type for map updates, {@code null} for beans
+	 */
+	public String getTypeName()
+	{
+		return typeName;
+	}
+
+	public void setTypeName(final String typeName)
+	{
+		this.typeName = typeName;
+	}
+	
+	/**
+	 * Releases references held by the slot after it was consumed.
+	 */
+	public void clear()
+	{
+		value = null;
+		typeName = null;
+	}
+	
 	public final static EventFactory<ObjectValueEvent> EVENT_FACTORY = new EventFactory<ObjectValueEvent>()
     {
         public ObjectValueEvent create()
@@ -0,0 +1,27 @@
+/*
+ * Copyright 2022-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.quantfabric.messaging;
+
+/**
+ * Reference counted value taken from an object pool. Holders keeping the
+ * value beyond a synchronous {@link Subscriber#sendUpdate} call retain it
+ * and release it when done, the last release returns the value to its pool.
+ */
+public interface Recyclable
+{
+	void retain();
+	void release();
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2022-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.quantfabric.messaging;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.RandomAccess;
+
+/**
+ * Immutable array of subscribers. Registries replace the whole array on every change,
+ * so publishers iterate over it without locking and never see a partial update.
+ */
+public final class SubscriberArray<TS> extends AbstractList<TS> implements RandomAccess
+{
+	private static final SubscriberArray<?> EMPTY = new SubscriberArray<Object>(new Object[0]);
+
+	private final Object[] subscribers;
+
+	private SubscriberArray(Object[] subscribers)
+	{
+		this.subscribers = subscribers;
+	}
+
+	@SuppressWarnings("unchecked")
+	public static <TS> SubscriberArray<TS> empty()
+	{
+		return (SubscriberArray<TS>) EMPTY;
+	}
+
+	/**
+	 * @return an array with the subscriber appended, or this array if it already contains it
+	 */
+	public SubscriberArray<TS> with(TS subscriber)
+	{
+		if (indexOf(subscriber) >= 0)
+			return this;
+
+		Object[] copy = Arrays.copyOf(subscribers, subscribers.length + 1);
+		copy[subscribers.length] = subscriber;
+		return new SubscriberArray<TS>(copy);
+	}
+
+	/**
+	 * @return an array without the subscriber, or this array if it doesn't contain it
+	 */
+	public SubscriberArray<TS> without(Object subscriber)
+	{
+		int index = indexOf(subscriber);
+
+		if (index < 0)
+			return this;
+		if (subscribers.length == 1)
+			return empty();
+
+		Object[] copy = new Object[subscribers.length - 1];
+		System.arraycopy(subscribers, 0, copy, 0, index);
+		System.arraycopy(subscribers, index + 1, copy, index, copy.length - index);
+		return new SubscriberArray<TS>(copy);
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public TS get(int index)
+	{
+		return (TS) subscribers[index];
+	}
+
+	@Override
+	public int size()
+	{
+		return subscribers.length;
+	}
+
+	@Override
+	public Object[] toArray()
+	{
+		return subscribers.clone();
+	}
+}
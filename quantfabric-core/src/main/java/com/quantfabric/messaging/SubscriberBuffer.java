@@ -20,84 +20,61 @@ import java.util.Map;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.lmax.disruptor.EventHandler;
+
+/**
+ * Asynchronous {@link NamedMapSubscriber} which delivers beans and named map
+ * updates to the wrapped subscriber on a thread of a {@link SubscriberBufferPool}.
+ * Updates are written directly into preallocated ring slots.
+ */
 public class SubscriberBuffer<T> implements NamedMapSubscriber<T>
 {
-	private static class DataItem<T>
-	{
-		private final boolean isBean;
-		private T dataBean;
-		private Map<?, ?> dataMap;
-		private String mapTypeName;
-		
-		public boolean isBean() {
-			return isBean;
-		}
-		public T getDataBean() {
-			return dataBean;
-		}
-		public Map<?, ?> getDataMap() {
-			return dataMap;
-		}
-		public String getMapTypeName() {
-			return mapTypeName;
-		}
-				
-		public DataItem(Map<?, ?> dataMap, String mapTypeName) {
-			this.isBean=false;
-			this.dataMap = dataMap;
-			this.mapTypeName = mapTypeName;
-		}
-		
-		public DataItem(T dataBean) {
-			this.isBean=true;
-			this.dataBean = dataBean;
-		}		
-	}
-	
 	private static final Logger log = LoggerFactory.getLogger(SubscriberBuffer.class);
 	
-	private final NativeSubscriberBuffer buffer;
+	private final SubscriberRingBuffer buffer;
 	private final Subscriber<T> subscriber;
 	
 	private final String name;
 	
 	public SubscriberBuffer(String name, Subscriber<T> subscriber) 
+	{
+		this(name, subscriber, SubscriberBufferSettings.forBuffer(name));
+	}
+	
+	public SubscriberBuffer(String name, Subscriber<T> subscriber, SubscriberBufferSettings settings) 
+	{
+		this(name, subscriber, settings, SubscriberBufferPool.getDefault());
+	}
+	
+	public SubscriberBuffer(String name, Subscriber<T> subscriber, 
+			SubscriberBufferSettings settings, SubscriberBufferPool pool) 
 	{
 		this.name = name;
-		
-		int queueCapacity = 
-			Integer.parseInt(System.getProperty("com.quantfabric.fwk.pubsub.subscriber-buffer-size",
-					"1000"));
-		
 		this.subscriber = subscriber;
 		
-		Subscriber<Object> objectSubscriber = new Subscriber<Object>() 
-		{			
-			@SuppressWarnings("unchecked")
-			@Override
-			public void sendUpdate(Object data)
-			{
-				publish((DataItem<T>) data);				
-			}
-			
-			@Override
-			public void sendUpdate(Object[] data)
-			{
-				for (Object obj : data)
-					sendUpdate(obj);
-			}			
-		};
+		final BatchAwareSubscriber<?> batchAwareSubscriber = subscriber instanceof BatchAwareSubscriber 
+				? (BatchAwareSubscriber<?>) subscriber : null;
 		
-		buffer = new NativeSubscriberBuffer(name, objectSubscriber, queueCapacity);
+		buffer = new SubscriberRingBuffer(name, settings, pool, 
+				new EventHandler<ObjectValueEvent>()
+				{
+					@Override
+					public void onEvent(ObjectValueEvent event, boolean endOfBatch) throws Exception
+					{
+						publish(event.getValue(), event.getTypeName());
+						
+						if (endOfBatch && batchAwareSubscriber != null)
+							batchAwareSubscriber.onEndOfBatch();
+					}
+				});
 		
 		buffer.start();
 	}
 	
-	
 	@Override
 	public void sendUpdate(T data) 
 	{
-		enqueue(new DataItem<T>(data));
+		buffer.publish(data, null);
 	}
 	
 	@Override
@@ -105,13 +82,13 @@ public class SubscriberBuffer<T> implements NamedMapSubscriber<T>
 	{
 		for (int i = 0; i < data.length; i++) 
 		{
-			enqueue(new DataItem<T>(data[i]));
+			buffer.publish(data[i], null);
 		}
 	}
 	@Override
 	public void update(@SuppressWarnings("rawtypes") Map data, String dataTypeName) 
 	{
-		enqueue(new DataItem<T>(data,dataTypeName));
+		buffer.publish(data, dataTypeName);
 	}
 	
 	@Override
@@ -119,25 +96,21 @@ public class SubscriberBuffer<T> implements NamedMapSubscriber<T>
 	{
 		for (int i = 0; i < data.length; i++) 
 		{
-			enqueue(new DataItem<T>(data[i],dataTypeName));
+			buffer.publish(data[i], dataTypeName);
 		}
 		
 	}	
 	
-	private void enqueue(DataItem<T> eventBean)
-	{
-		buffer.sendUpdate(eventBean);
-	}
-	
-	private void publish(DataItem<T> item)
+	@SuppressWarnings("unchecked")
+	private void publish(Object data, String typeName)
 	{
 		try
 		{
-			if(item.isBean())
-				subscriber.sendUpdate(item.getDataBean());
+			if (typeName == null)
+				subscriber.sendUpdate((T) data);
 			else
 				((NamedMapSubscriber<T>)subscriber).update(
-						item.getDataMap(), item.getMapTypeName());
+						(Map<?, ?>) data, typeName);
 		}
 		catch (Exception e)
 		{
@@ -156,7 +129,7 @@ public class SubscriberBuffer<T> implements NamedMapSubscriber<T>
 
 	public void dispose()
 	{
-		buffer.dispose();
+		buffer.stop();
 	}
 	
 }
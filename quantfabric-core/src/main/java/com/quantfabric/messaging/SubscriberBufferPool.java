@@ -0,0 +1,142 @@
+/*
+ * Copyright 2022-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.quantfabric.messaging;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Threads consuming subscriber buffers.
+ * <p>
+ * Without a limit every buffer gets its own thread. With a limit, buffers
+ * started after it was reached share the least loaded thread with the same
+ * wait strategy and CPU affinity, which bounds the thread count of gateways
+ * with many feeds. A buffer whose wait strategy or affinity no thread has yet
+ * gets a new thread even past the limit, so a busy spinning thread never
+ * serves a blocking buffer and the other way round.
+ */
+public class SubscriberBufferPool
+{
+	/**
+	 * Binds the calling thread to a CPU, e.g. through a native affinity library.
+	 */
+	public interface AffinityBinder
+	{
+		void bind(int cpu) throws Exception;
+	}
+
+	public static final String MAX_THREADS_PROPERTY =
+			SubscriberBufferSettings.PROPERTY_PREFIX + "subscriber-buffer-max-threads";
+
+	public static final int UNBOUNDED = 0;
+
+	private static final Logger log = LoggerFactory.getLogger(SubscriberBufferPool.class);
+
+	private static final SubscriberBufferPool defaultPool =
+			new SubscriberBufferPool("SubscriberBufferThread", Integer.getInteger(MAX_THREADS_PROPERTY, UNBOUNDED));
+
+	private static volatile AffinityBinder affinityBinder;
+
+	private final String name;
+	private final int maxThreads;
+	private final List<BufferWorker> workers = new ArrayList<>();
+	private int sharedWorkerCount = 0;
+
+	public SubscriberBufferPool(String name, int maxThreads)
+	{
+		this.name = name;
+		this.maxThreads = maxThreads;
+	}
+
+	public static SubscriberBufferPool getDefault()
+	{
+		return defaultPool;
+	}
+
+	/**
+	 * Sets binder used by threads started later to apply
+	 * {@link SubscriberBufferSettings#getAffinity()}, CPU affinity hints are
+	 * only reflected in thread names without it.
+	 */
+	public static void setAffinityBinder(AffinityBinder binder)
+	{
+		affinityBinder = binder;
+	}
+
+	public int getMaxThreads()
+	{
+		return maxThreads;
+	}
+
+	public synchronized int getThreadCount()
+	{
+		return workers.size();
+	}
+
+	synchronized void attach(SubscriberRingBuffer buffer)
+	{
+		SubscriberBufferSettings settings = buffer.getSettings();
+		BufferWorker worker = null;
+
+		if (maxThreads > UNBOUNDED && workers.size() >= maxThreads)
+			worker = findWorker(settings);
+
+		if (worker == null)
+		{
+			String threadName = maxThreads > UNBOUNDED
+					? name + "-" + ++sharedWorkerCount
+					: name + "-" + buffer.getName();
+
+			worker = new BufferWorker(threadName, settings.getWaitStrategy(), settings.getAffinity(), affinityBinder);
+			workers.add(worker);
+			worker.start();
+		}
+
+		worker.add(buffer);
+		buffer.setWorker(worker);
+
+		log.debug("Subscriber buffer (" + buffer.getName() + ") attached to its thread, " + settings);
+	}
+
+	synchronized void detach(SubscriberRingBuffer buffer)
+	{
+		for (BufferWorker worker : workers)
+		{
+			worker.remove(buffer);
+
+			if (worker.getBufferCount() == 0)
+				worker.stop();
+		}
+
+		workers.removeIf(worker -> worker.getBufferCount() == 0);
+		buffer.setWorker(null);
+	}
+
+	private BufferWorker findWorker(SubscriberBufferSettings settings)
+	{
+		BufferWorker sameStrategy = null;
+
+		for (BufferWorker worker : workers)
+			if (worker.getWaitStrategy() == settings.getWaitStrategy() && worker.getAffinity() == settings.getAffinity()
+					&& (sameStrategy == null || worker.getBufferCount() < sameStrategy.getBufferCount()))
+				sameStrategy = worker;
+
+		return sameStrategy;
+	}
+}
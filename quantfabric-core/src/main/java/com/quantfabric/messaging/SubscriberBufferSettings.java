@@ -0,0 +1,161 @@
+/*
+ * Copyright 2022-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.quantfabric.messaging;
+
+/**
+ * Settings of a subscriber buffer.
+ * <p>
+ * Defaults are taken from system properties, every property can be
+ * overridden for a single buffer by inserting its name:
+ * {@code com.quantfabric.fwk.pubsub.subscriber-buffer.<name>.wait-strategy}.
+ */
+public class SubscriberBufferSettings
+{
+	public enum WaitStrategy
+	{
+		/**
+		 * Consumer thread spins on the ring, lowest latency, burns a core.
+		 */
+		BUSY_SPIN,
+		/**
+		 * Consumer thread spins for a while and then yields.
+		 */
+		YIELDING,
+		/**
+		 * Consumer thread parks when idle and is woken up by producers.
+		 */
+		BLOCKING
+	}
+
+	public static final int NO_AFFINITY = -1;
+
+	public static final String PROPERTY_PREFIX = "com.quantfabric.fwk.pubsub.";
+	public static final String BUFFER_SIZE_PROPERTY = "subscriber-buffer-size";
+	public static final String WAIT_STRATEGY_PROPERTY = "subscriber-buffer-wait-strategy";
+	public static final String MULTI_PRODUCER_PROPERTY = "subscriber-buffer-multi-producer";
+	public static final String AFFINITY_PROPERTY = "subscriber-buffer-affinity";
+
+	public static final int DEFAULT_CAPACITY = 1000;
+	public static final WaitStrategy DEFAULT_WAIT_STRATEGY = WaitStrategy.BLOCKING;
+
+	private int capacity = DEFAULT_CAPACITY;
+	private WaitStrategy waitStrategy = DEFAULT_WAIT_STRATEGY;
+	private boolean multiProducer = true;
+	private int affinity = NO_AFFINITY;
+
+	public SubscriberBufferSettings()
+	{
+	}
+
+	public SubscriberBufferSettings(int capacity, WaitStrategy waitStrategy)
+	{
+		setCapacity(capacity);
+		setWaitStrategy(waitStrategy);
+	}
+
+	/**
+	 * Reads settings of the named buffer from system properties.
+	 */
+	public static SubscriberBufferSettings forBuffer(String name)
+	{
+		SubscriberBufferSettings settings = new SubscriberBufferSettings();
+
+		String capacity = getProperty(name, BUFFER_SIZE_PROPERTY);
+		if (capacity != null)
+			settings.setCapacity(Integer.parseInt(capacity));
+
+		String waitStrategy = getProperty(name, WAIT_STRATEGY_PROPERTY);
+		if (waitStrategy != null)
+			settings.setWaitStrategy(WaitStrategy.valueOf(waitStrategy.trim().toUpperCase()));
+
+		String multiProducer = getProperty(name, MULTI_PRODUCER_PROPERTY);
+		if (multiProducer != null)
+			settings.setMultiProducer(Boolean.parseBoolean(multiProducer));
+
+		String affinity = getProperty(name, AFFINITY_PROPERTY);
+		if (affinity != null)
+			settings.setAffinity(Integer.parseInt(affinity));
+
+		return settings;
+	}
+
+	private static String getProperty(String bufferName, String property)
+	{
+		String value = bufferName == null ? null
+				: System.getProperty(PROPERTY_PREFIX + "subscriber-buffer." + bufferName + "."
+						+ property.substring("subscriber-buffer-".length()));
+
+		return value != null ? value : System.getProperty(PROPERTY_PREFIX + property);
+	}
+
+	public int getCapacity()
+	{
+		return capacity;
+	}
+
+	public void setCapacity(int capacity)
+	{
+		if (capacity <= 0)
+			throw new IllegalArgumentException("Subscriber buffer capacity must be positive");
+
+		this.capacity = capacity;
+	}
+
+	public WaitStrategy getWaitStrategy()
+	{
+		return waitStrategy;
+	}
+
+	public void setWaitStrategy(WaitStrategy waitStrategy)
+	{
+		this.waitStrategy = waitStrategy == null ? DEFAULT_WAIT_STRATEGY : waitStrategy;
+	}
+
+	/**
+	 * @return {@code false} when updates are sent from a single thread only,
+	 * which allows a cheaper claim of ring slots
+	 */
+	public boolean isMultiProducer()
+	{
+		return multiProducer;
+	}
+
+	public void setMultiProducer(boolean multiProducer)
+	{
+		this.multiProducer = multiProducer;
+	}
+
+	/**
+	 * @return CPU the consumer thread should be bound to, {@link #NO_AFFINITY} if any
+	 * @see SubscriberBufferPool#setAffinityBinder(SubscriberBufferPool.AffinityBinder)
+	 */
+	public int getAffinity()
+	{
+		return affinity;
+	}
+
+	public void setAffinity(int affinity)
+	{
+		this.affinity = affinity < 0 ? NO_AFFINITY : affinity;
+	}
+
+	@Override
+	public String toString()
+	{
+		return "capacity=" + capacity + "; waitStrategy=" + waitStrategy
+				+ "; multiProducer=" + multiProducer + "; affinity=" + affinity;
+	}
+}
@@ -0,0 +1,252 @@
+/*
+ * Copyright 2022-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.quantfabric.messaging;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.lmax.disruptor.ClaimStrategy;
+import com.lmax.disruptor.EventHandler;
+import com.lmax.disruptor.EventProcessor;
+import com.lmax.disruptor.RingBuffer;
+import com.lmax.disruptor.Sequence;
+import com.lmax.disruptor.WaitStrategy;
+
+/**
+ * Ring of preallocated {@link ObjectValueEvent} slots consumed by a
+ * {@link BufferWorker} of a {@link SubscriberBufferPool}.
+ * <p>
+ * The ring tracks this consumer's sequence, so producers never overrun
+ * unconsumed slots. Waiting for data is done by the worker thread, the
+ * ring itself is created with a non-signalling wait strategy so publishing
+ * takes no locks.
+ * <p>
+ * {@link Recyclable} values are retained while they wait in the ring, values
+ * left in it when the buffer is stopped are released.
+ */
+final class SubscriberRingBuffer
+{
+	private static final Logger log = LoggerFactory.getLogger(SubscriberRingBuffer.class);
+
+	private final String name;
+	private final SubscriberBufferSettings settings;
+	private final SubscriberBufferPool pool;
+	private final EventHandler<ObjectValueEvent> handler;
+	private final RingBuffer<ObjectValueEvent> ringBuffer;
+	private final Sequence sequence = new Sequence(RingBuffer.INITIAL_CURSOR_VALUE);
+	private final AtomicBoolean consuming = new AtomicBoolean();
+
+	private volatile BufferWorker worker;
+	private volatile boolean stopped;
+
+	SubscriberRingBuffer(String name, SubscriberBufferSettings settings,
+			SubscriberBufferPool pool, EventHandler<ObjectValueEvent> handler)
+	{
+		this.name = name;
+		this.settings = settings;
+		this.pool = pool;
+		this.handler = handler;
+
+		ringBuffer = new RingBuffer<ObjectValueEvent>(ObjectValueEvent.EVENT_FACTORY, settings.getCapacity(),
+				settings.isMultiProducer() ? ClaimStrategy.Option.MULTI_THREADED : ClaimStrategy.Option.SINGLE_THREADED,
+				WaitStrategy.Option.BUSY_SPIN);
+		ringBuffer.setTrackedProcessors(new ConsumerProgress());
+	}
+
+	String getName()
+	{
+		return name;
+	}
+
+	SubscriberBufferSettings getSettings()
+	{
+		return settings;
+	}
+
+	void start()
+	{
+		if (worker == null)
+		{
+			stopped = false;
+			pool.attach(this);
+		}
+	}
+
+	/**
+	 * Detaches the buffer from its worker and releases values it didn't deliver.
+	 */
+	void stop()
+	{
+		if (worker != null)
+			pool.detach(this);
+
+		stopped = true;
+		discardIfStopped();
+	}
+
+	boolean isStarted()
+	{
+		return worker != null;
+	}
+
+	void setWorker(BufferWorker worker)
+	{
+		this.worker = worker;
+	}
+
+	void publish(Object value, String typeName)
+	{
+		if (value instanceof Recyclable)
+			((Recyclable) value).retain();
+
+		ObjectValueEvent event = ringBuffer.nextEvent();
+		event.setValue(value);
+		event.setTypeName(typeName);
+		ringBuffer.publish(event);
+
+		BufferWorker currentWorker = worker;
+		if (currentWorker != null)
+			currentWorker.signal();
+		else if (stopped)
+			discardIfStopped();
+	}
+
+	/**
+	 * Processes all published events, the last of them with {@code endOfBatch} set.
+	 *
+	 * @return {@code true} if there was anything to process
+	 */
+	boolean poll()
+	{
+		if (!consuming.compareAndSet(false, true))
+			return false;
+
+		try
+		{
+			return process();
+		}
+		finally
+		{
+			consuming.set(false);
+
+			// a stop which came while events were being processed left the rest to us
+			if (stopped)
+				discardIfStopped();
+		}
+	}
+
+	private boolean process()
+	{
+		long next = sequence.get() + 1;
+		long available = ringBuffer.getCursor();
+
+		if (available < next)
+			return false;
+
+		for (long current = next; current <= available; current++)
+		{
+			ObjectValueEvent event = ringBuffer.getEvent(current);
+
+			try
+			{
+				handler.onEvent(event, current == available);
+			}
+			catch (Exception e)
+			{
+				log.error("Subscriber buffer (" + name + ") event handling failed", e);
+			}
+
+			if (event.getValue() instanceof Recyclable)
+				((Recyclable) event.getValue()).release();
+
+			event.clear();
+		}
+
+		sequence.set(available);
+
+		return true;
+	}
+
+	boolean hasBacklog()
+	{
+		return ringBuffer.getCursor() > sequence.get();
+	}
+
+	/**
+	 * Releases and clears undelivered events unless the consumer is processing
+	 * them right now, in which case it discards them when it is done.
+	 */
+	private void discardIfStopped()
+	{
+		if (!consuming.compareAndSet(false, true))
+			return;
+
+		try
+		{
+			long available = ringBuffer.getCursor();
+
+			for (long current = sequence.get() + 1; current <= available; current++)
+			{
+				ObjectValueEvent event = ringBuffer.getEvent(current);
+
+				if (event.getValue() instanceof Recyclable)
+					((Recyclable) event.getValue()).release();
+
+				event.clear();
+			}
+
+			sequence.set(available);
+		}
+		finally
+		{
+			consuming.set(false);
+		}
+	}
+
+	/**
+	 * Reports the consumer's sequence to the ring, which keeps producers from
+	 * overrunning unconsumed slots. Processing is driven by the pool workers,
+	 * run here consumes the ring on the calling thread until halted.
+	 */
+	private final class ConsumerProgress implements EventProcessor
+	{
+		private volatile boolean running;
+
+		@Override
+		public Sequence getSequence()
+		{
+			return sequence;
+		}
+
+		@Override
+		public void halt()
+		{
+			running = false;
+		}
+
+		@Override
+		public void run()
+		{
+			running = true;
+
+			while (running)
+				if (!poll())
+					Thread.yield();
+		}
+	}
+}
@@ -16,55 +16,265 @@
 package com.quantfabric.net;
 
 import java.io.IOException;
-import java.net.ServerSocket;
-import java.net.Socket;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class TcpServer extends Thread
+/**
+ * Multi-client TCP server. A selector thread accepts the clients and does all socket I/O,
+ * requests are handled on worker threads as soon as a client sends something, so clients
+ * don't wait for each other. Sessions are persistent: a session is closed when the client
+ * ends its output and the response is sent, or when the handler fails.
+ */
+public class TcpServer extends Thread implements TcpServerMXBean
 {
 	private static final Logger logger = LoggerFactory.getLogger(TcpServer.class);
+
+	public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
 	private final RequestHandler requestHandler;
 	private final int port;
-	
+	private final int inputBufferSize;
+	private final int outputBufferSize;
+
+	private final Set<TcpSession> sessions = ConcurrentHashMap.newKeySet();
+	private final Queue<TcpSession> pendingUpdates = new ConcurrentLinkedQueue<TcpSession>();
+	private final AtomicLong acceptedSessions = new AtomicLong();
+	private final AtomicLong failedRequests = new AtomicLong();
+	private final ExecutorService workers;
+	private volatile Selector selector;
+
 	public TcpServer(int severPort, RequestHandler requestHandler)
+	{
+		this(severPort, requestHandler, DEFAULT_BUFFER_SIZE, DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * @param inputBufferSize bytes buffered per session before reading from the client stops
+	 * @param outputBufferSize bytes buffered per session before the handler waits for the client
+	 */
+	public TcpServer(int severPort, RequestHandler requestHandler, int inputBufferSize, int outputBufferSize)
 	{
 		super(String.format("TcpServer(%d)", severPort));
 		this.requestHandler = requestHandler;
 		this.port = severPort;
+		this.inputBufferSize = inputBufferSize;
+		this.outputBufferSize = outputBufferSize;
+
+		final AtomicInteger workerCount = new AtomicInteger();
+		this.workers = Executors.newCachedThreadPool(runnable -> {
+			Thread worker = new Thread(runnable, getName() + "-worker-" + workerCount.incrementAndGet());
+			worker.setDaemon(true);
+			return worker;
+		});
 	}
 
 	@Override
 	public void run() {
 
-		try {
-			
-			ServerSocket serverSocket = new ServerSocket(port);
-			
-			try {
-				serverSocket.setReuseAddress(true);
-
-				while (!isInterrupted()) {
-					logger.info("Listening...");
-					Socket connectionSocket = serverSocket.accept();
-					logger.info("Client connected (" + connectionSocket.toString() + ").");
-					if (!requestHandler.handle(connectionSocket.getInputStream(), connectionSocket.getOutputStream()))
-						logger.error("Request does not handled");
-
-					connectionSocket.shutdownInput();
-					connectionSocket.shutdownOutput();
-					connectionSocket.close();
-					logger.info("Session closed.");
+		ObjectName objectName = registerMBean();
+
+		try (Selector selector = Selector.open(); ServerSocketChannel serverChannel = ServerSocketChannel.open()) {
+
+			this.selector = selector;
+
+			serverChannel.socket().setReuseAddress(true);
+			serverChannel.bind(new InetSocketAddress(port));
+			serverChannel.configureBlocking(false);
+			serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+			logger.info("Listening...");
+
+			while (!isInterrupted()) {
+
+				selector.select();
+
+				TcpSession pending;
+				while ((pending = pendingUpdates.poll()) != null)
+					update(pending);
+
+				Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+				while (keys.hasNext()) {
+					SelectionKey key = keys.next();
+					keys.remove();
+
+					if (!key.isValid())
+						continue;
+
+					if (key.isAcceptable())
+						accept(serverChannel.accept());
+					else
+						handle(key);
 				}
 			}
-			
-			finally {
-				serverSocket.close();
-			}
 		}
 		catch (IOException e) {
 			logger.error("Server crashed.", e);
 		}
+		finally {
+			for (TcpSession session : sessions)
+				session.close();
+
+			workers.shutdownNow();
+			unregisterMBean(objectName);
+		}
+	}
+
+	@Override
+	public void interrupt()
+	{
+		super.interrupt();
+
+		Selector selector = this.selector;
+		if (selector != null)
+			selector.wakeup();
+	}
+
+	@Override
+	public int getPort()
+	{
+		return port;
+	}
+
+	@Override
+	public int getActiveSessionCount()
+	{
+		return sessions.size();
+	}
+
+	@Override
+	public long getAcceptedSessionCount()
+	{
+		return acceptedSessions.get();
+	}
+
+	@Override
+	public long getFailedRequestCount()
+	{
+		return failedRequests.get();
+	}
+
+	@Override
+	public List<TcpSessionMetrics> getSessions()
+	{
+		List<TcpSessionMetrics> metrics = new ArrayList<TcpSessionMetrics>(sessions.size());
+
+		for (TcpSession session : sessions)
+			metrics.add(session.getMetrics());
+
+		return metrics;
+	}
+
+	/**
+	 * Asks the selector thread to update the interest of the session's channel.
+	 */
+	void requestUpdate(TcpSession session)
+	{
+		pendingUpdates.offer(session);
+
+		Selector selector = this.selector;
+		if (selector != null)
+			selector.wakeup();
+	}
+
+	void onFailedRequest()
+	{
+		failedRequests.incrementAndGet();
+	}
+
+	void onClosed(TcpSession session)
+	{
+		if (sessions.remove(session))
+			logger.info("Session closed (" + session.getMetrics().getRemoteAddress() + ").");
+	}
+
+	private void accept(SocketChannel channel) throws IOException
+	{
+		if (channel == null)
+			return;
+
+		channel.configureBlocking(false);
+		channel.socket().setTcpNoDelay(true);
+
+		SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+		TcpSession session = new TcpSession(this, channel, key, inputBufferSize, outputBufferSize);
+		key.attach(session);
+
+		sessions.add(session);
+		acceptedSessions.incrementAndGet();
+
+		logger.info("Client connected (" + session.getMetrics().getRemoteAddress() + ").");
+	}
+
+	private void handle(SelectionKey key)
+	{
+		TcpSession session = (TcpSession) key.attachment();
+
+		try {
+			if (key.isWritable())
+				session.writeToChannel();
+
+			if (key.isValid() && key.isReadable() && session.readFromChannel())
+				workers.execute(() -> session.process(requestHandler));
+		}
+		catch (IOException e) {
+			logger.warn("Connection failed (" + session.getMetrics().getRemoteAddress() + ").", e);
+			session.close();
+		}
+	}
+
+	private void update(TcpSession session)
+	{
+		try {
+			session.updateInterest();
+		}
+		catch (IOException e) {
+			logger.warn("Connection failed (" + session.getMetrics().getRemoteAddress() + ").", e);
+			session.close();
+		}
+	}
+
+	private ObjectName registerMBean()
+	{
+		try {
+			ObjectName objectName = new ObjectName("com.quantfabric:type=TcpServer,name=" + port);
+			ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+			return objectName;
+		}
+		catch (JMException e) {
+			logger.warn("Can't register JMX bean of tcp server (" + port + ")", e);
+			return null;
+		}
+	}
+
+	private static void unregisterMBean(ObjectName objectName)
+	{
+		if (objectName != null)
+			try {
+				ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+			}
+			catch (JMException e) {
+				logger.warn("Can't unregister JMX bean of tcp server", e);
+			}
 	}
 }
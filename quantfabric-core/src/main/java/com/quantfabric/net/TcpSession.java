@@ -0,0 +1,303 @@
+/*
+ * Copyright 2022-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.quantfabric.net;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A client connection of {@link TcpServer}. The selector thread moves bytes between the
+ * channel and bounded session buffers, the request handler works on blocking streams
+ * over these buffers on a worker thread. A full input buffer stops reading from the
+ * client, a full output buffer blocks the handler until the client takes the bytes.
+ */
+class TcpSession
+{
+	private static final Logger logger = LoggerFactory.getLogger(TcpSession.class);
+
+	private final TcpServer server;
+	private final SocketChannel channel;
+	private final SelectionKey key;
+	private final TcpSessionMetrics metrics;
+
+	private final ByteBuffer in;
+	private final ByteBuffer out;
+
+	private boolean inputEnded;
+	private boolean running;
+	private boolean closing;
+	private boolean closed;
+
+	private final InputStream input = new InputStream()
+	{
+		@Override
+		public int read() throws IOException
+		{
+			byte[] b = new byte[1];
+			return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException
+		{
+			return readInput(b, off, len);
+		}
+
+		@Override
+		public int available()
+		{
+			synchronized (TcpSession.this)
+			{
+				return in.position();
+			}
+		}
+	};
+
+	private final OutputStream output = new OutputStream()
+	{
+		@Override
+		public void write(int b) throws IOException
+		{
+			write(new byte[] { (byte) b }, 0, 1);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException
+		{
+			writeOutput(b, off, len);
+		}
+	};
+
+	TcpSession(TcpServer server, SocketChannel channel, SelectionKey key, int inputBufferSize, int outputBufferSize)
+	{
+		this.server = server;
+		this.channel = channel;
+		this.key = key;
+		this.metrics = new TcpSessionMetrics(String.valueOf(channel.socket().getRemoteSocketAddress()));
+		this.in = ByteBuffer.allocate(inputBufferSize);
+		this.out = ByteBuffer.allocate(outputBufferSize);
+	}
+
+	TcpSessionMetrics getMetrics()
+	{
+		return metrics;
+	}
+
+	/**
+	 * Called by the selector thread when the channel is readable.
+	 *
+	 * @return <code>true</code> when the session has to be handed to a worker
+	 */
+	synchronized boolean readFromChannel() throws IOException
+	{
+		int count = channel.read(in);
+
+		if (count < 0)
+			inputEnded = true;
+		else
+			metrics.onReceived(count);
+
+		notifyAll();
+		updateInterest();
+
+		if (running)
+			return false;
+
+		if (in.position() > 0)
+			return running = true;
+
+		if (inputEnded)
+			closeWhenSent();
+		return false;
+	}
+
+	/**
+	 * Called by the selector thread when the channel is writable.
+	 */
+	synchronized void writeToChannel() throws IOException
+	{
+		out.flip();
+		metrics.onSent(channel.write(out));
+		out.compact();
+
+		notifyAll();
+		updateInterest();
+	}
+
+	/**
+	 * Called by the selector thread, sets the interest of the channel to the state of the buffers.
+	 */
+	synchronized void updateInterest() throws IOException
+	{
+		if (closed)
+			return;
+
+		if (closing && out.position() == 0)
+		{
+			close();
+			return;
+		}
+
+		int ops = 0;
+		if (!inputEnded && in.hasRemaining())
+			ops |= SelectionKey.OP_READ;
+		if (out.position() > 0)
+			ops |= SelectionKey.OP_WRITE;
+
+		key.interestOps(ops);
+	}
+
+	/**
+	 * Runs the handler on a worker thread as long as the client has sent something.
+	 * The session is closed once the client ended its output and all requests are handled,
+	 * or when the handler fails.
+	 */
+	void process(RequestHandler requestHandler)
+	{
+		while (true)
+		{
+			synchronized (this)
+			{
+				if (closed)
+				{
+					running = false;
+					return;
+				}
+				if (in.position() == 0)
+				{
+					running = false;
+					if (inputEnded)
+						closeWhenSent();
+					return;
+				}
+			}
+
+			metrics.onRequest();
+
+			if (!requestHandler.handle(input, output))
+			{
+				logger.error("Request does not handled (" + metrics.getRemoteAddress() + ").");
+				server.onFailedRequest();
+
+				synchronized (this)
+				{
+					running = false;
+					closeWhenSent();
+				}
+				return;
+			}
+		}
+	}
+
+	synchronized void close()
+	{
+		if (closed)
+			return;
+
+		closed = true;
+		notifyAll();
+
+		try
+		{
+			channel.close();
+		}
+		catch (IOException e)
+		{
+			logger.warn("Can't close session (" + metrics.getRemoteAddress() + ").", e);
+		}
+
+		server.onClosed(this);
+	}
+
+	private synchronized void closeWhenSent()
+	{
+		closing = true;
+		server.requestUpdate(this);
+	}
+
+	private synchronized int readInput(byte[] b, int off, int len) throws IOException
+	{
+		if (len == 0)
+			return 0;
+
+		try
+		{
+			while (in.position() == 0 && !inputEnded && !closed)
+				wait();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IOException("Reading is interrupted.", e);
+		}
+
+		if (in.position() == 0)
+			return -1;
+
+		boolean wasFull = !in.hasRemaining();
+
+		in.flip();
+		int count = Math.min(len, in.remaining());
+		in.get(b, off, count);
+		in.compact();
+
+		if (wasFull)
+			server.requestUpdate(this);
+
+		return count;
+	}
+
+	private synchronized void writeOutput(byte[] b, int off, int len) throws IOException
+	{
+		try
+		{
+			while (len > 0)
+			{
+				if (!out.hasRemaining())
+				{
+					metrics.onOutputStall();
+					while (!out.hasRemaining() && !closed)
+						wait();
+				}
+
+				if (closed)
+					throw new IOException("Session is closed.");
+
+				int count = Math.min(len, out.remaining());
+				boolean wasEmpty = out.position() == 0;
+
+				out.put(b, off, count);
+				off += count;
+				len -= count;
+
+				if (wasEmpty)
+					server.requestUpdate(this);
+			}
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IOException("Writing is interrupted.", e);
+		}
+	}
+}
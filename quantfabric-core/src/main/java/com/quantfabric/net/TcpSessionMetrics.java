@@ -0,0 +1,89 @@
+/*
+ * Copyright 2022-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.quantfabric.net;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counters of one client connection of {@link TcpServer}.
+ */
+public class TcpSessionMetrics
+{
+	private final String remoteAddress;
+	private final long connectedAt = System.currentTimeMillis();
+	private final AtomicLong bytesReceived = new AtomicLong();
+	private final AtomicLong bytesSent = new AtomicLong();
+	private final AtomicLong requests = new AtomicLong();
+	private final AtomicLong outputStalls = new AtomicLong();
+
+	TcpSessionMetrics(String remoteAddress)
+	{
+		this.remoteAddress = remoteAddress;
+	}
+
+	void onReceived(int bytes)
+	{
+		bytesReceived.addAndGet(bytes);
+	}
+
+	void onSent(int bytes)
+	{
+		bytesSent.addAndGet(bytes);
+	}
+
+	void onRequest()
+	{
+		requests.incrementAndGet();
+	}
+
+	void onOutputStall()
+	{
+		outputStalls.incrementAndGet();
+	}
+
+	public String getRemoteAddress()
+	{
+		return remoteAddress;
+	}
+
+	public long getConnectedAt()
+	{
+		return connectedAt;
+	}
+
+	public long getBytesReceived()
+	{
+		return bytesReceived.get();
+	}
+
+	public long getBytesSent()
+	{
+		return bytesSent.get();
+	}
+
+	public long getRequests()
+	{
+		return requests.get();
+	}
+
+	/**
+	 * @return how many times the handler waited for the client to take the output
+	 */
+	public long getOutputStalls()
+	{
+		return outputStalls.get();
+	}
+}
@@ -0,0 +1,60 @@
+/*
+ * Copyright 2022-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.quantfabric.net.stream;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Passes the instances of the given types (their subtypes included). The decision is made
+ * once per concrete class and kept in a class index, so filtering an event costs a map lookup
+ * instead of a chain of <code>instanceof</code> checks.
+ */
+public class TypeDataFilter extends DataFilter
+{
+	private final Class<?>[] acceptedTypes;
+	private final Map<Class<?>, Boolean> decisions = new ConcurrentHashMap<Class<?>, Boolean>();
+
+	public TypeDataFilter(DataStreamer streamer, Class<?>... acceptedTypes)
+	{
+		super(streamer);
+		this.acceptedTypes = acceptedTypes.clone();
+	}
+
+	@Override
+	protected boolean filter(Object data)
+	{
+		if (data == null)
+			return false;
+
+		Boolean accepted = decisions.get(data.getClass());
+
+		if (accepted == null)
+		{
+			accepted = isAccepted(data.getClass());
+			decisions.put(data.getClass(), accepted);
+		}
+		return accepted;
+	}
+
+	private boolean isAccepted(Class<?> type)
+	{
+		for (Class<?> acceptedType : acceptedTypes)
+			if (acceptedType.isAssignableFrom(type))
+				return true;
+		return false;
+	}
+}
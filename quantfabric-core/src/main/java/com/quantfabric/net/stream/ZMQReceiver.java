@@ -21,15 +21,24 @@ import java.io.InputStream;
 
 import org.zeromq.ZMQ;
 
+import zmq.Msg;
+
 import com.quantfabric.net.Receiver;
 
 public class ZMQReceiver implements Receiver
 {
+	/**
+	 * Reads whole messages: {@link #read(byte[])} returns one message, byte-wise reads
+	 * return the bytes of a message followed by -1.
+	 */
 	public static class ZMQInputStream extends InputStream
 	{
+		private static final int INITIAL_BUFFER_SIZE = 40980;
+		
 		private final ZMQ.Socket socket;
 		
 		private ByteArrayInputStream inputStream;
+		private byte[] buffer = new byte[INITIAL_BUFFER_SIZE];
 		
 		private ZMQInputStream(ZMQ.Socket socket)
 		{			
@@ -43,8 +52,16 @@ public class ZMQReceiver implements Receiver
 		{
 			if (inputStream == null)
 			{				
-				byte[] buffer = new byte[40980];
-				int bufferSize = read(buffer);
+				Msg message = socket.base().recv(0);
+				
+				if (message == null)
+					return -1;
+				
+				// the buffer grows to the largest message received
+				if (message.size() > buffer.length)
+					buffer = new byte[message.size()];
+				
+				int bufferSize = message.getBytes(0, buffer, 0, message.size());
 				inputStream = new ByteArrayInputStream(buffer,0, bufferSize);				
 			}
 			
@@ -63,15 +80,40 @@ public class ZMQReceiver implements Receiver
 		{
 			if (inputStream != null)
 			{
+				if (inputStream.available() > clBuf.length)
+					throw tooLarge(inputStream.available(), clBuf);
+				
 				int size = inputStream.read(clBuf);
 				inputStream.close();
 				inputStream = null;
 				return size;
 			}
-			byte[] buf = socket.recv(0);
-            System.arraycopy(buf, 0, clBuf, 0, buf.length);
+			Msg message = socket.base().recv(0);
+			
+			if (message == null)
+				return -1;
 			
-			return buf.length;
+			if (message.size() > clBuf.length)
+				throw tooLarge(message.size(), clBuf);
+			
+			// received straight into the caller's buffer
+			return message.getBytes(0, clBuf, 0, message.size());
+		}
+		
+		/**
+		 * @return bytes left of the message being read, channels over the stream
+		 * read a whole message at once
+		 */
+		@Override
+		public int available() throws IOException
+		{
+			return inputStream == null ? 0 : inputStream.available();
+		}
+		
+		private static IOException tooLarge(int size, byte[] clBuf)
+		{
+			return new IOException("ZMQ message of " + size 
+					+ " bytes doesn't fit the read buffer of " + clBuf.length + " bytes");
 		}
 	}
 	
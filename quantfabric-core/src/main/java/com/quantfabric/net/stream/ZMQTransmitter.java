@@ -47,6 +47,12 @@ public class ZMQTransmitter implements Transmitter
 			socket.send(b, 0);
 		}
 
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException
+		{
+			socket.send(b, off, len, 0);
+		}
+
 		@Override
 		public void close() throws IOException
 		{
@@ -0,0 +1,31 @@
+/*
+ * Copyright 2022-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.quantfabric.net.stream.binary;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Fixed layout encoding of one type of stream beans. Encoding writes the fields at the
+ * buffer's position without allocating, decoding reads them back in the same order.
+ */
+public interface BinaryCodec<T>
+{
+	Class<T> getType();
+
+	void encode(T value, ByteBuffer buffer);
+
+	T decode(ByteBuffer buffer);
+}
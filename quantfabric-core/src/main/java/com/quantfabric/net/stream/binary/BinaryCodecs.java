@@ -0,0 +1,204 @@
+/*
+ * Copyright 2022-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.quantfabric.net.stream.binary;
+
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.quantfabric.net.stream.Event;
+
+/**
+ * Registry of {@link BinaryCodec}s and the frame layout of binary streams.
+ * <p>
+ * A frame is a header followed by the bean's fields:
+ * <pre>
+ * byte  magic ('Q')
+ * byte  schema version
+ * short type id
+ * long  creation time
+ * long  sending time
+ * string source
+ * ...   fields written by the type's codec
+ * </pre>
+ * Strings are written as a short length (-1 for <code>null</code>) followed by chars,
+ * arrays as an int length (-1 for <code>null</code>) followed by the elements. Readers
+ * reject frames of another schema version, type ids must be kept stable across releases.
+ */
+public class BinaryCodecs
+{
+	public static final byte MAGIC = 'Q';
+	public static final byte SCHEMA_VERSION = 1;
+
+	private final Map<Class<?>, Short> typeIds = new HashMap<>();
+	private final Map<Short, BinaryCodec<?>> codecs = new HashMap<>();
+
+	public synchronized <T> void register(int typeId, BinaryCodec<T> codec)
+	{
+		if (typeId < 0 || typeId > Short.MAX_VALUE)
+			throw new IllegalArgumentException("Type id out of range (" + typeId + ")");
+
+		BinaryCodec<?> registered = codecs.get((short) typeId);
+		if (registered != null && registered.getType() != codec.getType())
+			throw new IllegalArgumentException("Type id " + typeId + " is already used by " + registered.getType().getName());
+
+		typeIds.put(codec.getType(), (short) typeId);
+		codecs.put((short) typeId, codec);
+	}
+
+	public synchronized boolean isRegistered(Class<?> type)
+	{
+		return typeIds.containsKey(type);
+	}
+
+	/**
+	 * Writes the event as one frame at the buffer's position.
+	 *
+	 * @throws IllegalArgumentException if there is no codec for the event's bean
+	 * @throws java.nio.BufferOverflowException if the frame doesn't fit into the buffer
+	 */
+	@SuppressWarnings("unchecked")
+	public void encode(Event event, ByteBuffer buffer)
+	{
+		Object bean = event.getEventBean();
+		Short typeId = bean == null ? null : typeIds.get(bean.getClass());
+
+		if (typeId == null)
+			throw new IllegalArgumentException("No binary codec for " 
+					+ (bean == null ? "null" : bean.getClass().getName()));
+
+		buffer.put(MAGIC);
+		buffer.put(SCHEMA_VERSION);
+		buffer.putShort(typeId);
+		buffer.putLong(event.getCreationTime());
+		buffer.putLong(event.getSendingTime());
+		putString(buffer, event.getSource());
+
+		((BinaryCodec<Object>) codecs.get(typeId)).encode(bean, buffer);
+	}
+
+	/**
+	 * Reads one frame from the buffer's position.
+	 */
+	public Event decode(ByteBuffer buffer)
+	{
+		byte magic = buffer.get();
+		byte version = buffer.get();
+
+		if (magic != MAGIC)
+			throw new IllegalStateException("Not a binary stream frame");
+		if (version != SCHEMA_VERSION)
+			throw new IllegalStateException("Unsupported binary stream schema version (" + version + ")");
+
+		short typeId = buffer.getShort();
+		BinaryCodec<?> codec = codecs.get(typeId);
+
+		if (codec == null)
+			throw new IllegalStateException("No binary codec for type id " + typeId);
+
+		Event event = new Event();
+		event.setCreationTime(buffer.getLong());
+		event.setSendingTime(buffer.getLong());
+		event.setSource(getString(buffer));
+		event.setEventBean(codec.decode(buffer));
+
+		return event;
+	}
+
+	public static void putString(ByteBuffer buffer, String value)
+	{
+		if (value == null)
+		{
+			buffer.putShort((short) -1);
+			return;
+		}
+
+		if (value.length() > Short.MAX_VALUE)
+			throw new IllegalArgumentException("String is too long for binary stream");
+
+		buffer.putShort((short) value.length());
+		for (int i = 0; i < value.length(); i++)
+			buffer.putChar(value.charAt(i));
+	}
+
+	public static String getString(ByteBuffer buffer)
+	{
+		int length = buffer.getShort();
+
+		if (length < 0)
+			return null;
+
+		char[] chars = new char[length];
+		for (int i = 0; i < length; i++)
+			chars[i] = buffer.getChar();
+
+		return new String(chars);
+	}
+
+	public static void putLongs(ByteBuffer buffer, long[] values)
+	{
+		if (values == null)
+		{
+			buffer.putInt(-1);
+			return;
+		}
+
+		buffer.putInt(values.length);
+		for (long value : values)
+			buffer.putLong(value);
+	}
+
+	public static long[] getLongs(ByteBuffer buffer)
+	{
+		int length = buffer.getInt();
+
+		if (length < 0)
+			return null;
+
+		long[] values = new long[length];
+		for (int i = 0; i < length; i++)
+			values[i] = buffer.getLong();
+
+		return values;
+	}
+
+	public static void putInts(ByteBuffer buffer, int[] values)
+	{
+		if (values == null)
+		{
+			buffer.putInt(-1);
+			return;
+		}
+
+		buffer.putInt(values.length);
+		for (int value : values)
+			buffer.putInt(value);
+	}
+
+	public static int[] getInts(ByteBuffer buffer)
+	{
+		int length = buffer.getInt();
+
+		if (length < 0)
+			return null;
+
+		int[] values = new int[length];
+		for (int i = 0; i < length; i++)
+			values[i] = buffer.getInt();
+
+		return values;
+	}
+}
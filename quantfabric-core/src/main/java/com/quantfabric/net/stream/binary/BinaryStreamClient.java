@@ -0,0 +1,74 @@
+/*
+ * Copyright 2022-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.quantfabric.net.stream.binary;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+import com.quantfabric.net.Receiver;
+import com.quantfabric.net.stream.InputStreamObjectReader;
+import com.quantfabric.net.stream.StreamClient;
+
+/**
+ * Stream client reading frames written by {@link BinaryStreamServer}. Every read of the
+ * input has to return one whole frame, as message based receivers do.
+ */
+public class BinaryStreamClient extends StreamClient
+{
+	public static class BinaryInputStreamObjectReader implements InputStreamObjectReader
+	{
+		public static final int MAX_FRAME_SIZE = 1 << 20;
+
+		private final BinaryCodecs codecs;
+		private final InputStream input;
+		private final byte[] frame = new byte[MAX_FRAME_SIZE];
+		private final ByteBuffer buffer = ByteBuffer.wrap(frame);
+
+		public BinaryInputStreamObjectReader(BinaryCodecs codecs, InputStream input)
+		{
+			this.codecs = codecs;
+			this.input = input;
+		}
+
+		/**
+		 * Codecs are registered with {@link BinaryCodecs}.
+		 */
+		@Override
+		public void registerType(String name, Class<?> type)
+		{
+		}
+
+		@Override
+		public Object read() throws IOException
+		{
+			int length = input.read(frame);
+
+			if (length < 0)
+				return null;
+
+			buffer.clear();
+			buffer.limit(length);
+
+			return codecs.decode(buffer);
+		}
+	}
+
+	public BinaryStreamClient(BinaryCodecs codecs, Receiver receiver)
+	{
+		super(input -> new BinaryInputStreamObjectReader(codecs, input), receiver);
+	}
+}
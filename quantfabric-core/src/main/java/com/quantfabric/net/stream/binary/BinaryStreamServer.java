@@ -0,0 +1,130 @@
+/*
+ * Copyright 2022-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.quantfabric.net.stream.binary;
+
+import java.io.OutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.quantfabric.net.Transmitter;
+import com.quantfabric.net.stream.Event;
+import com.quantfabric.net.stream.Serializer;
+import com.quantfabric.net.stream.StreamServer;
+
+/**
+ * Stream server writing events in the fixed layout of {@link BinaryCodecs}. Frames are
+ * encoded into one reusable buffer and written straight from it.
+ */
+public class BinaryStreamServer extends StreamServer
+{
+	private static final Logger log = LoggerFactory.getLogger(BinaryStreamServer.class);
+
+	public static class BinarySerializer implements Serializer
+	{
+		public static final int INITIAL_FRAME_SIZE = 4096;
+
+		private final BinaryCodecs codecs;
+		private ByteBuffer buffer = ByteBuffer.allocate(INITIAL_FRAME_SIZE);
+
+		public BinarySerializer(BinaryCodecs codecs)
+		{
+			this.codecs = codecs;
+		}
+
+		/**
+		 * @return the frame, valid until the next call
+		 */
+		public ByteBuffer encode(Event event)
+		{
+			while (true)
+			{
+				buffer.clear();
+				try
+				{
+					codecs.encode(event, buffer);
+					buffer.flip();
+					return buffer;
+				}
+				catch (BufferOverflowException e)
+				{
+					buffer = ByteBuffer.allocate(buffer.capacity() * 2);
+				}
+			}
+		}
+
+		@Override
+		public byte[] serialize(Object bean)
+		{
+			ByteBuffer frame = encode(bean instanceof Event ? (Event) bean : new Event(null, bean));
+			byte[] result = new byte[frame.remaining()];
+			frame.get(result);
+
+			return result;
+		}
+
+		/**
+		 * Codecs are registered with {@link BinaryCodecs}.
+		 */
+		@Override
+		public void registerType(String name, Class<?> type)
+		{
+		}
+	}
+
+	private final BinarySerializer serializer;
+	private final Transmitter transmitter;
+
+	public BinaryStreamServer(BinaryCodecs codecs, Transmitter transmitter)
+	{
+		this(new BinarySerializer(codecs), transmitter);
+	}
+
+	private BinaryStreamServer(BinarySerializer serializer, Transmitter transmitter)
+	{
+		super(serializer, transmitter);
+		this.serializer = serializer;
+		this.transmitter = transmitter;
+	}
+
+	@Override
+	public void send(Event event) throws Exception
+	{
+		synchronized (transmitter)
+		{
+			if (transmitter.isReadyToTransmit()) try
+			{
+				event.setSendingTime(System.currentTimeMillis());
+				ByteBuffer frame = serializer.encode(event);
+
+				OutputStream output = transmitter.getOutput();
+				output.write(frame.array(), frame.arrayOffset(), frame.limit());
+				output.flush();
+			}
+			catch (IllegalArgumentException e)
+			{
+				log.error("Can't encode event of " + event.getSource(), e);
+			}
+			catch (Exception e)
+			{
+				log.error("Can't send event of " + event.getSource(), e);
+				transmitter.endOutput();
+			}
+		}
+	}
+}
@@ -80,7 +80,7 @@ public class KryoStreamClient extends StreamClient
 		private final KryoDeserializer deserializer = new KryoDeserializer();
 		private final ReadableByteChannel channel;
 		private final InputStream input;
-		private final ByteBuffer buffer;
+		private ByteBuffer buffer;
 		
 		public KryoInputStreamObjectReader(InputStream input)
 		{
@@ -98,7 +98,14 @@ public class KryoStreamClient extends StreamClient
 		@Override
 		public Object read() throws IOException
 		{
-			channel.read(buffer);
+			// a full buffer may hold part of a message only, it grows until the message fits
+			while (channel.read(buffer) > 0 && !buffer.hasRemaining())
+			{
+				ByteBuffer grown = ByteBuffer.allocateDirect(buffer.capacity() * 2);
+				buffer.flip();
+				grown.put(buffer);
+				buffer = grown;
+			}
 			
 			buffer.flip();
 			Object obj = deserializer.deserialize(buffer);
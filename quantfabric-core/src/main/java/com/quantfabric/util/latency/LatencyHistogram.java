@@ -0,0 +1,162 @@
+/*
+ * Copyright 2022-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.quantfabric.util.latency;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Preallocated log-linear histogram of nanosecond latencies, in the manner of HdrHistogram.
+ * Values below 128 ns are counted exactly, above that every power of two is split into 64
+ * buckets, so a percentile is reported within 1.6% of the recorded value. Values above
+ * {@link #MAX_VALUE} are counted as {@link #MAX_VALUE}.
+ * <p>
+ * Recording is lock-free and allocation-free. Percentiles read while values are recorded
+ * are approximate.
+ */
+public class LatencyHistogram implements LatencyHistogramMXBean
+{
+	public static final long MAX_VALUE = (1L << 40) - 1;
+
+	private static final int LINEAR_BUCKETS = 128;
+	private static final int SUB_BUCKETS = 64;
+	private static final int BUCKET_COUNT = index(MAX_VALUE) + 1;
+
+	private final String stage;
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong total = new AtomicLong();
+	private final AtomicLong max = new AtomicLong();
+
+	public LatencyHistogram(String stage)
+	{
+		this.stage = stage;
+	}
+
+	public void record(long nanos)
+	{
+		long value = nanos < 0 ? 0 : Math.min(nanos, MAX_VALUE);
+
+		counts.incrementAndGet(index(value));
+		count.incrementAndGet();
+		total.addAndGet(value);
+		max.accumulateAndGet(value, Math::max);
+	}
+
+	/**
+	 * @return the highest value equivalent to the given percentile of the recorded values,
+	 * <code>0</code> when nothing is recorded
+	 */
+	public long getValueAtPercentile(double percentile)
+	{
+		long recorded = count.get();
+
+		if (recorded == 0)
+			return 0;
+
+		long target = Math.max(1, (long) Math.ceil(percentile / 100.0 * recorded));
+		long cumulative = 0;
+
+		for (int i = 0; i < BUCKET_COUNT; i++)
+		{
+			cumulative += counts.get(i);
+			if (cumulative >= target)
+				return Math.min(highestEquivalentValue(i), max.get());
+		}
+		return max.get();
+	}
+
+	@Override
+	public String getStage()
+	{
+		return stage;
+	}
+
+	@Override
+	public long getCount()
+	{
+		return count.get();
+	}
+
+	@Override
+	public double getMeanMicros()
+	{
+		long recorded = count.get();
+		return recorded == 0 ? 0 : total.get() / 1000.0 / recorded;
+	}
+
+	@Override
+	public double getMaxMicros()
+	{
+		return max.get() / 1000.0;
+	}
+
+	@Override
+	public double getP50Micros()
+	{
+		return getValueAtPercentile(50) / 1000.0;
+	}
+
+	@Override
+	public double getP90Micros()
+	{
+		return getValueAtPercentile(90) / 1000.0;
+	}
+
+	@Override
+	public double getP99Micros()
+	{
+		return getValueAtPercentile(99) / 1000.0;
+	}
+
+	@Override
+	public double getP999Micros()
+	{
+		return getValueAtPercentile(99.9) / 1000.0;
+	}
+
+	@Override
+	public void reset()
+	{
+		for (int i = 0; i < BUCKET_COUNT; i++)
+			counts.set(i, 0);
+		count.set(0);
+		total.set(0);
+		max.set(0);
+	}
+
+	static int index(long value)
+	{
+		if (value < LINEAR_BUCKETS)
+			return (int) value;
+
+		int shift = 63 - Long.numberOfLeadingZeros(value) - 6;
+		int subBucket = (int) (value >>> shift);
+
+		return LINEAR_BUCKETS + (shift - 1) * SUB_BUCKETS + (subBucket - SUB_BUCKETS);
+	}
+
+	static long highestEquivalentValue(int index)
+	{
+		if (index < LINEAR_BUCKETS)
+			return index;
+
+		int shift = (index - LINEAR_BUCKETS) / SUB_BUCKETS + 1;
+		long subBucket = (index - LINEAR_BUCKETS) % SUB_BUCKETS + SUB_BUCKETS;
+
+		return ((subBucket + 1) << shift) - 1;
+	}
+}
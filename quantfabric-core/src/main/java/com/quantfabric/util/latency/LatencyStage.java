@@ -0,0 +1,93 @@
+/*
+ * Copyright 2022-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.quantfabric.util.latency;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Stages of the tick-to-order path with a latency histogram each. Instrumentation is enabled
+ * with the <code>quantfabric.latency</code> system property, the histograms are then exported
+ * as <code>com.quantfabric:type=Latency,name=&lt;stage&gt;</code>. When disabled
+ * {@link #start()} returns <code>0</code> without reading the clock and nothing is recorded.
+ */
+public enum LatencyStage
+{
+	/** from receive of a market data event by a connector to its publishing by the adapter */
+	CONNECTOR_RECEIVE,
+	/** delivery of an event to the subscribers of the market adapter */
+	ADAPTER_DISPATCH,
+	/** an event applied to an order book, the book listeners included at the end of an update */
+	ORDER_BOOK,
+	/** an order book update processed by an aggregator, its products included */
+	AGGREGATOR,
+	/** from receive of a market data event by a connector to its arrival at a strategy */
+	MARKET_DATA_TO_STRATEGY,
+	/** an update processed by a strategy */
+	STRATEGY_UPDATE,
+	/** an order of a strategy registered and handed to the execution point */
+	ORDER_SUBMIT,
+	/** from submitting an order to its acceptance by the venue */
+	VENUE_ACK;
+
+	public static final boolean ENABLED = Boolean.getBoolean("quantfabric.latency");
+
+	private static final Logger log = LoggerFactory.getLogger(LatencyStage.class);
+
+	static
+	{
+		if (ENABLED)
+			for (LatencyStage stage : values())
+				try
+				{
+					ManagementFactory.getPlatformMBeanServer().registerMBean(stage.histogram,
+							new ObjectName("com.quantfabric:type=Latency,name=" + stage.name()));
+				}
+				catch (JMException e)
+				{
+					log.warn("Can't register JMX bean of latency stage (" + stage + ")", e);
+				}
+	}
+
+	private final LatencyHistogram histogram = new LatencyHistogram(name());
+
+	/**
+	 * @return start of a measurement, <code>0</code> when instrumentation is disabled
+	 */
+	public static long start()
+	{
+		return ENABLED ? System.nanoTime() : 0;
+	}
+
+	/**
+	 * Records the time elapsed since the given start, starts of <code>0</code> are ignored.
+	 */
+	public void recordSince(long start)
+	{
+		if (ENABLED && start != 0)
+			histogram.record(System.nanoTime() - start);
+	}
+
+	public LatencyHistogram getHistogram()
+	{
+		return histogram;
+	}
+}
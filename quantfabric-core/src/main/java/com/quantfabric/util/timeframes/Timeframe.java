@@ -28,16 +28,45 @@ public abstract class Timeframe
 	
 	public Interval interval(Date referenceDate, int timeOffset) {
 		
-		long startDt = (referenceDate.getTime() / (getLengthInSeconds() * 1000L) * (getLengthInSeconds() * 1000L));
+		long startDt = intervalStart(referenceDate.getTime(), timeOffset);
 
-		startDt += timeOffset * 1000L;
-		if (referenceDate.getTime() < startDt)
-			startDt = startDt - (getLengthInSeconds() * 1000L);
+		return new Interval(new Date(startDt), new Date(startDt + getLengthInMillis()));
+	}
+
+	/**
+	 * @return start (epoch millis) of the interval that contains the given time
+	 */
+	public long intervalStart(long referenceTime)
+	{
+		return intervalStart(referenceTime, 0);
+	}
+
+	/**
+	 * @param timeOffset shift of the intervals, in seconds
+	 * @return start (epoch millis) of the interval that contains the given time
+	 */
+	public long intervalStart(long referenceTime, int timeOffset)
+	{
+		long length = getLengthInMillis();
+		long startDt = referenceTime / length * length + timeOffset * 1000L;
 
-		Date startDate = new Date(startDt);
-		Date endDate = new Date(startDt + (getLengthInSeconds() * 1000L));
+		if (referenceTime < startDt)
+			startDt -= length;
 
-		return new Interval(startDate, endDate);
+		return startDt;
+	}
+
+	/**
+	 * @return end (epoch millis, exclusive) of the interval that contains the given time
+	 */
+	public long intervalEnd(long referenceTime, int timeOffset)
+	{
+		return intervalStart(referenceTime, timeOffset) + getLengthInMillis();
+	}
+
+	public long getLengthInMillis()
+	{
+		return getLengthInSeconds() * 1000L;
 	}
 
 	public abstract int getLengthInSeconds();
@@ -0,0 +1,30 @@
+/*
+ * Copyright 2022-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.quantfabric.util.timer;
+
+/**
+ * Source of the current time for the components which have to follow the recorded time
+ * of a replay instead of the wall clock.
+ */
+public interface Clock
+{
+	Clock SYSTEM = System::currentTimeMillis;
+
+	/**
+	 * @return current time in milliseconds since the epoch
+	 */
+	long currentTimeMillis();
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2022-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.quantfabric.util.timer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Clock of a replay: its time is the time of the last replayed event and its
+ * {@link TimerWheel} runs the tasks due by that time on the replaying thread, before the
+ * following event is played. The replay is paced to the given speed, a multiple of the
+ * real time, or isn't paced at all with {@link #MAX_SPEED}.
+ * <p>
+ * The time goes back on {@link #reset()} only, events older than the clock only wait for
+ * their turn.
+ */
+public class ReplayClock implements Clock
+{
+	public static final double REAL_TIME = 1;
+	public static final double MAX_SPEED = Double.POSITIVE_INFINITY;
+
+	private static final long NOT_ANCHORED = Long.MIN_VALUE;
+
+	private final TimerWheel timerWheel;
+	private volatile double speed;
+	private volatile long time;
+	/** event time and wall time (nanos) the pacing is measured from */
+	private long anchorTime = NOT_ANCHORED;
+	private long anchorNanos;
+
+	public ReplayClock()
+	{
+		this(REAL_TIME);
+	}
+
+	public ReplayClock(double speed)
+	{
+		setSpeed(speed);
+		this.timerWheel = new TimerWheel("ReplayTimerWheel",
+				TimerWheel.DEFAULT_TICK_MILLIS, TimerWheel.DEFAULT_WHEEL_SIZE, this);
+	}
+
+	@Override
+	public long currentTimeMillis()
+	{
+		return time;
+	}
+
+	public TimerWheel getTimerWheel()
+	{
+		return timerWheel;
+	}
+
+	public double getSpeed()
+	{
+		return speed;
+	}
+
+	/**
+	 * @param speed multiple of the real time, {@link #MAX_SPEED} to replay without pauses
+	 */
+	public synchronized void setSpeed(double speed)
+	{
+		if (!(speed > 0))
+			throw new IllegalArgumentException("Replay speed must be positive");
+
+		this.speed = speed;
+		restart();
+	}
+
+	public boolean isMaxSpeed()
+	{
+		return speed == MAX_SPEED;
+	}
+
+	/**
+	 * The pacing starts over from the next event, e.g. after a pause between tracks.
+	 */
+	public synchronized void restart()
+	{
+		anchorTime = NOT_ANCHORED;
+	}
+
+	/**
+	 * Moves the time back to the start, e.g. to replay the tracks once more. The tasks pending
+	 * on the wheel belong to the replay before and are dropped.
+	 */
+	public synchronized void reset()
+	{
+		time = 0;
+		anchorTime = NOT_ANCHORED;
+		timerWheel.reset();
+	}
+
+	/**
+	 * Waits until the event is due by the replay speed, moves the time to it and runs
+	 * the tasks which are due by then.
+	 */
+	public void advanceTo(long eventTime) throws InterruptedException
+	{
+		long waitNanos = 0;
+
+		synchronized (this)
+		{
+			if (anchorTime == NOT_ANCHORED)
+			{
+				anchorTime = eventTime;
+				anchorNanos = System.nanoTime();
+			}
+			else if (!isMaxSpeed())
+				waitNanos = anchorNanos + (long) ((eventTime - anchorTime) * 1e6 / speed) - System.nanoTime();
+		}
+
+		if (waitNanos > 0)
+			TimeUnit.NANOSECONDS.sleep(waitNanos);
+
+		synchronized (this)
+		{
+			if (eventTime <= time)
+				return;
+			time = eventTime;
+		}
+
+		timerWheel.advance();
+	}
+}
@@ -0,0 +1,409 @@
+/*
+ * Copyright 2022-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.quantfabric.util.timer;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Hashed timing wheel: a single daemon thread that runs scheduled tasks with the precision of
+ * a tick. Tasks due in more than one revolution of the wheel wait in their bucket for the
+ * remaining rounds, so scheduling and cancelling cost O(1) whatever the delay.
+ * <p>
+ * Tasks run on the wheel's thread and are expected to be short, long work delays the tasks
+ * of the following ticks.
+ * <p>
+ * A wheel created with a {@link Clock} has no thread, it runs the tasks due by the clock's time
+ * when {@link #advance()} is called, e.g. by a {@link ReplayClock} moved by recorded events.
+ * Components working in the recorded time are given such a wheel instead of the shared one.
+ */
+public class TimerWheel
+{
+	public static final long DEFAULT_TICK_MILLIS = 10;
+	public static final int DEFAULT_WHEEL_SIZE = 1024;
+
+	private static final Logger log = LoggerFactory.getLogger(TimerWheel.class);
+
+	private static class SharedWheelHolder
+	{
+		private static final TimerWheel SHARED = new TimerWheel("SharedTimerWheel", DEFAULT_TICK_MILLIS, DEFAULT_WHEEL_SIZE);
+	}
+
+	/**
+	 * @return the wheel following the system time shared by the whole process, started on first use
+	 */
+	public static TimerWheel getShared()
+	{
+		return SharedWheelHolder.SHARED;
+	}
+
+	private final long tickNanos;
+	private final Timeout[] buckets;
+	private final int mask;
+	private final Queue<Timeout> scheduled = new ConcurrentLinkedQueue<Timeout>();
+	private final AtomicInteger pendingCount = new AtomicInteger();
+	private final Clock clock;
+	private final Thread worker;
+	private final long startTime;
+	private volatile boolean stopped;
+	private long tick;
+	/** timeouts in the buckets */
+	private long bucketedCount;
+
+	public TimerWheel(String name, long tickMillis, int wheelSize)
+	{
+		this(name, tickMillis, wheelSize, null);
+	}
+
+	/**
+	 * @param clock time of the wheel moved by {@link #advance()}, <code>null</code> for a wheel
+	 * with a thread of its own following the system time
+	 */
+	public TimerWheel(String name, long tickMillis, int wheelSize, Clock clock)
+	{
+		if (tickMillis <= 0)
+			throw new IllegalArgumentException("tickMillis must be positive");
+		if (wheelSize <= 0 || (wheelSize & (wheelSize - 1)) != 0)
+			throw new IllegalArgumentException("wheelSize must be a power of two");
+
+		this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+		this.buckets = new Timeout[wheelSize];
+		this.mask = wheelSize - 1;
+		this.clock = clock;
+
+		if (clock == null)
+		{
+			this.startTime = System.nanoTime();
+			this.worker = new Thread(this::run, name);
+			this.worker.setDaemon(true);
+			this.worker.start();
+		}
+		else
+		{
+			this.startTime = 0;
+			this.worker = null;
+		}
+	}
+
+	public Clock getClock()
+	{
+		return clock != null ? clock : Clock.SYSTEM;
+	}
+
+	/**
+	 * Schedules the task to run once after the given delay.
+	 */
+	public Timeout schedule(Runnable task, long delayMillis)
+	{
+		if (stopped)
+			throw new IllegalStateException("TimerWheel is stopped");
+
+		Timeout timeout = new Timeout(task, now() + TimeUnit.MILLISECONDS.toNanos(Math.max(0, delayMillis)));
+
+		pendingCount.incrementAndGet();
+		scheduled.add(timeout);
+		return timeout;
+	}
+
+	/**
+	 * Stops the wheel, the tasks not run yet are dropped.
+	 */
+	public void stop()
+	{
+		stopped = true;
+		if (worker != null)
+			worker.interrupt();
+	}
+
+	/**
+	 * Runs the tasks due by the time of the wheel's clock on the calling thread. Over gaps longer
+	 * than a round of the wheel it jumps to the tick of the earliest task, so the clock may move
+	 * over long gaps at the cost of one pass over the buckets per task.
+	 */
+	public synchronized void advance()
+	{
+		if (worker != null)
+			throw new IllegalStateException("TimerWheel follows the system time");
+
+		long currentTick = now() / tickNanos;
+
+		while (!stopped && tick < currentTick)
+		{
+			if (currentTick - tick > buckets.length)
+			{
+				transferScheduled();
+
+				long nextTick = Math.min(getEarliestDueTick(), currentTick);
+
+				if (nextTick > tick)
+				{
+					moveTo(nextTick);
+					continue;
+				}
+			}
+
+			processTick();
+		}
+	}
+
+	private long getEarliestDueTick()
+	{
+		long earliest = Long.MAX_VALUE;
+
+		if (bucketedCount > 0)
+			for (Timeout bucket : buckets)
+				for (Timeout timeout = bucket; timeout != null; timeout = timeout.next)
+					if (timeout.state.get() == Timeout.PENDING)
+						earliest = Math.min(earliest, timeout.deadline / tickNanos);
+
+		return earliest;
+	}
+
+	/**
+	 * Moves the wheel to a later tick with no task due before it, the timeouts are put into
+	 * the buckets again relative to the new tick.
+	 */
+	private void moveTo(long nextTick)
+	{
+		Timeout timeouts = null;
+
+		for (int i = 0; i < buckets.length; i++)
+		{
+			for (Timeout timeout = buckets[i]; timeout != null; )
+			{
+				Timeout next = timeout.next;
+				timeout.next = timeouts;
+				timeouts = timeout;
+				timeout = next;
+			}
+			buckets[i] = null;
+		}
+
+		bucketedCount = 0;
+		tick = nextTick;
+
+		while (timeouts != null)
+		{
+			Timeout next = timeouts.next;
+			timeouts.next = null;
+
+			if (timeouts.state.get() == Timeout.PENDING)
+				bucket(timeouts);
+
+			timeouts = next;
+		}
+	}
+
+	/**
+	 * Drops the tasks not run yet and moves the wheel to the time of its clock, which may be
+	 * earlier than before.
+	 */
+	synchronized void reset()
+	{
+		if (worker != null)
+			throw new IllegalStateException("TimerWheel follows the system time");
+
+		Timeout timeout;
+
+		while ((timeout = scheduled.poll()) != null)
+			timeout.cancel();
+
+		for (int i = 0; i < buckets.length; i++)
+		{
+			for (timeout = buckets[i]; timeout != null; )
+			{
+				Timeout next = timeout.next;
+				timeout.cancel();
+				timeout.next = null;
+				timeout = next;
+			}
+			buckets[i] = null;
+		}
+
+		bucketedCount = 0;
+		tick = now() / tickNanos;
+	}
+
+	/**
+	 * @return number of scheduled tasks not run or cancelled yet
+	 */
+	public int getPendingCount()
+	{
+		return pendingCount.get();
+	}
+
+	private void run()
+	{
+		while (!stopped)
+		{
+			long deadline = tickNanos * (tick + 1);
+			long sleepNanos = deadline - (System.nanoTime() - startTime);
+
+			if (sleepNanos > 0)
+			{
+				try
+				{
+					TimeUnit.NANOSECONDS.sleep(sleepNanos);
+				}
+				catch (InterruptedException e)
+				{
+					continue;
+				}
+			}
+
+			processTick();
+		}
+	}
+
+	private long now()
+	{
+		if (clock == null)
+			return System.nanoTime() - startTime;
+		return TimeUnit.MILLISECONDS.toNanos(clock.currentTimeMillis());
+	}
+
+	private void processTick()
+	{
+		transferScheduled();
+		expireBucket((int) (tick & mask), tickNanos * (tick + 1));
+		tick++;
+	}
+
+	private void transferScheduled()
+	{
+		Timeout timeout;
+
+		while ((timeout = scheduled.poll()) != null)
+		{
+			if (timeout.state.get() == Timeout.PENDING)
+				bucket(timeout);
+		}
+	}
+
+	private void bucket(Timeout timeout)
+	{
+		long dueTick = Math.max(timeout.deadline / tickNanos, tick);
+
+		timeout.remainingRounds = (dueTick - tick) / buckets.length;
+
+		int index = (int) (dueTick & mask);
+		timeout.next = buckets[index];
+		buckets[index] = timeout;
+		bucketedCount++;
+	}
+
+	private void expireBucket(int index, long deadline)
+	{
+		Timeout previous = null;
+		Timeout timeout = buckets[index];
+
+		while (timeout != null)
+		{
+			Timeout next = timeout.next;
+			boolean remove = true;
+
+			if (timeout.state.get() == Timeout.PENDING)
+			{
+				if (timeout.remainingRounds <= 0 && timeout.deadline <= deadline)
+					timeout.expire();
+				else
+				{
+					timeout.remainingRounds--;
+					remove = false;
+				}
+			}
+
+			if (remove)
+			{
+				if (previous == null)
+					buckets[index] = next;
+				else
+					previous.next = next;
+				timeout.next = null;
+				bucketedCount--;
+			}
+			else
+				previous = timeout;
+
+			timeout = next;
+		}
+	}
+
+	/**
+	 * Handle of a scheduled task.
+	 */
+	public class Timeout
+	{
+		private static final int PENDING = 0;
+		private static final int CANCELLED = 1;
+		private static final int EXPIRED = 2;
+
+		private final Runnable task;
+		private final long deadline;
+		private final AtomicInteger state = new AtomicInteger(PENDING);
+		private long remainingRounds;
+		private Timeout next;
+
+		private Timeout(Runnable task, long deadline)
+		{
+			this.task = task;
+			this.deadline = deadline;
+		}
+
+		/**
+		 * @return <code>false</code> when the task has already run or was cancelled
+		 */
+		public boolean cancel()
+		{
+			if (!state.compareAndSet(PENDING, CANCELLED))
+				return false;
+
+			pendingCount.decrementAndGet();
+			return true;
+		}
+
+		public boolean isCancelled()
+		{
+			return state.get() == CANCELLED;
+		}
+
+		public boolean isExpired()
+		{
+			return state.get() == EXPIRED;
+		}
+
+		private void expire()
+		{
+			if (!state.compareAndSet(PENDING, EXPIRED))
+				return;
+
+			pendingCount.decrementAndGet();
+			try
+			{
+				task.run();
+			}
+			catch (Throwable e)
+			{
+				log.error("Timer task failed", e);
+			}
+		}
+	}
+}
@@ -38,6 +38,7 @@ module quantfabric.core {
     exports com.quantfabric.persistence.esper;
     exports com.quantfabric.net;
     exports com.quantfabric.net.stream.kryo;
+    exports com.quantfabric.net.stream.binary;
     exports com.quantfabric.algo.market.dataprovider.orderbook;
     exports com.quantfabric.persistence;
     exports com.quantfabric.algo.backtesting.eventbus;
@@ -57,11 +58,14 @@ module quantfabric.core {
     exports com.quantfabric.algo.market.dataprovider.incremental;
     exports com.quantfabric.algo.market.gateway.access.product.subscriber;
     exports com.quantfabric.algo.market.history.manager;
+    exports com.quantfabric.algo.market.history.storage;
     exports com.quantfabric.algo.market.history.manager.jmx;
     exports com.quantfabric.algo.market.gateway.access.subscription;
     exports com.quantfabric.net.rmi;
     exports com.quantfabric.algo.market.dataprovider.orderbook.processor;
     exports com.quantfabric.util.timeframes;
+    exports com.quantfabric.util.latency;
+    exports com.quantfabric.util.timer;
     exports com.quantfabric.algo.market.connector;
     exports com.quantfabric.algo.market.connector.commands;
     exports com.quantfabric.algo.configuration;
@@ -0,0 +1,386 @@
+/*
+ * Copyright 2022-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.quantfabric.algo.backtesting.storage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.quantfabric.algo.backtesting.storage.MarketDataCacheProvider.MarketDataCacheProviderException;
+
+import com.quantfabric.algo.market.datamodel.MDDelete;
+import com.quantfabric.algo.market.datamodel.MDFeedEvent;
+import com.quantfabric.algo.market.datamodel.MDItem;
+import com.quantfabric.algo.market.datamodel.MDItem.MDItemType;
+import com.quantfabric.algo.market.datamodel.MDMessageInfo.MDMessageType;
+import com.quantfabric.algo.market.datamodel.MDPrice;
+import com.quantfabric.algo.market.datamodel.MDPrice.PriceType;
+import com.quantfabric.algo.market.dataprovider.FeedNameImpl;
+import com.quantfabric.algo.market.gateway.feed.MarketDataFeed;
+import com.quantfabric.algo.market.gateway.feed.MarketDataFeedImpl;
+
+public class MappedMarketDataCacheProviderTest
+{
+	private static final long DAY = 86_400_000L;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private MappedMarketDataCacheProvider createProvider() throws Exception
+	{
+		Properties settings = new Properties();
+		settings.setProperty(MappedMarketDataCacheProvider.PATH_SETTING, folder.getRoot().getPath());
+		settings.setProperty(MappedMarketDataCacheProvider.INITIAL_ROWS_SETTING, "16");
+
+		return new MappedMarketDataCacheProvider(null, settings);
+	}
+
+	private static MarketDataFeed feed(String name)
+	{
+		return new MarketDataFeedImpl(new FeedNameImpl(name), null, "BTCUSDT", false);
+	}
+
+	private static MDPrice price(long sourceTimestamp, String id, long price, double size)
+	{
+		return new MDPrice(sourceTimestamp, sourceTimestamp, MDMessageType.INCREMENTAL_REFRESH, "test",
+				sourceTimestamp, 1, 0, MDItemType.BID, id, "BTCUSDT", 7, price, size, PriceType.BID, false, 3);
+	}
+
+	@Test
+	public void testRoundTripWithinRange() throws Exception
+	{
+		MappedMarketDataCacheProvider provider = createProvider();
+		MarketDataFeed feed = feed("feed");
+		int context = provider.newContext();
+
+		long start = 10 * DAY - 5000;
+		for (int i = 0; i < 10000; i++)
+			provider.save(feed, price(start + i, "id" + (i % 10), 1000 + i, i * 0.5));
+		provider.save(feed, new MDDelete(start + 10000, 1L, "test", start + 10000, 1, 0,
+				MDItemType.BID, "id1", "BTCUSDT", 7));
+		provider.close();
+
+		Iterator<MDItem> items = provider.deferredLoad(context, feed,
+				new Date(start + 4000), new Date(start + 6000));
+
+		for (int i = 4000; i <= 6000; i++)
+		{
+			assertTrue(items.hasNext());
+			MDPrice price = (MDPrice) items.next();
+			assertEquals(start + i, price.getSourceTimestamp());
+			assertEquals(1000 + i, price.getPrice());
+			assertEquals(i * 0.5, price.getSize(), 0.0);
+			assertEquals("id" + (i % 10), price.getMdItemId());
+			assertEquals(PriceType.BID, price.getPriceType());
+			assertEquals(3, price.getAmountOrders());
+			assertEquals("feed", price.getFeedName());
+			assertEquals("BTCUSDT", price.getSymbol());
+		}
+		assertFalse(items.hasNext());
+
+		assertEquals(10001, provider.load(context, feed).size());
+	}
+
+	@Test
+	public void testRecordedItemsAreSavedBehind() throws Exception
+	{
+		MappedMarketDataCacheProvider provider = createProvider();
+		MarketDataFeed feed = feed("feed");
+		int context = provider.newContext();
+		provider.startRecording();
+
+		for (int i = 0; i < 5000; i++)
+			provider.record(feed, price(DAY + i, "id", i, 1));
+		provider.close();
+
+		assertEquals(0, provider.getRecorder().getBacklog());
+		assertEquals(0, provider.getRecorder().getDroppedCount());
+
+		long expected = 0;
+		Iterator<MDItem> items = provider.deferredLoad(context, feed);
+		while (items.hasNext())
+			assertEquals(expected++, ((MDPrice) items.next()).getPrice());
+		assertEquals(5000, expected);
+	}
+
+	@Test
+	public void testSpilledItemsKeepFeedOrder() throws Exception
+	{
+		Properties settings = new Properties();
+		settings.setProperty(MappedMarketDataCacheProvider.PATH_SETTING, folder.getRoot().getPath());
+		settings.setProperty(WriteBehindRecorder.CAPACITY_SETTING, "4");
+		settings.setProperty(WriteBehindRecorder.POLICY_SETTING, "spill");
+
+		MappedMarketDataCacheProvider provider = new MappedMarketDataCacheProvider(null, settings);
+		MarketDataFeed feed = feed("feed");
+		int context = provider.newContext();
+		provider.startRecording();
+
+		for (int i = 0; i < 5000; i++)
+			provider.record(feed, price(DAY + i, "id", i, 1));
+		provider.close();
+
+		long expected = 0;
+		Iterator<MDItem> items = provider.deferredLoad(context, feed);
+		while (items.hasNext())
+			assertEquals(expected++, ((MDPrice) items.next()).getPrice());
+		assertEquals(5000, expected);
+	}
+
+	@Test
+	public void testRecordedItemsAreCopied() throws Exception
+	{
+		CountDownLatch saving = new CountDownLatch(1);
+		MappedMarketDataCacheProvider provider = createBlockedProvider(new Properties(), saving);
+		MarketDataFeed feed = feed("feed");
+		int context = provider.newContext();
+		provider.startRecording();
+
+		MDPrice reused = price(DAY, "id", 1, 1);
+		for (int i = 0; i < 3; i++)
+		{
+			reused.setPrice(i);
+			provider.record(feed, reused);
+		}
+		reused.setPrice(-1);
+		saving.countDown();
+		provider.close();
+
+		long expected = 0;
+		Iterator<MDItem> items = provider.deferredLoad(context, feed);
+		while (items.hasNext())
+			assertEquals(expected++, ((MDPrice) items.next()).getPrice());
+		assertEquals(3, expected);
+	}
+
+	@Test
+	public void testSpillIsBoundedPerFeed() throws Exception
+	{
+		Properties settings = new Properties();
+		settings.setProperty(WriteBehindRecorder.CAPACITY_SETTING, "4");
+		settings.setProperty(WriteBehindRecorder.SPILL_CAPACITY_SETTING, "4");
+		settings.setProperty(WriteBehindRecorder.POLICY_SETTING, "spill");
+		settings.setProperty(WriteBehindRecorder.POLICY_SETTING + ".other", "drop");
+
+		CountDownLatch saving = new CountDownLatch(1);
+		MappedMarketDataCacheProvider provider = createBlockedProvider(settings, saving);
+		MarketDataFeed feed = feed("feed");
+		MarketDataFeed other = feed("other");
+		int context = provider.newContext();
+		provider.startRecording();
+
+		for (int i = 0; i < 20; i++)
+			provider.record(feed, price(DAY + i, "id", i, 1));
+		for (int i = 0; i < 6; i++)
+			provider.record(other, price(DAY + i, "id", i, 1));
+
+		WriteBehindRecorder recorder = provider.getRecorder();
+		assertEquals(4, recorder.getSpilledCount());
+		assertEquals(12 + 2, recorder.getDroppedCount());
+
+		saving.countDown();
+		provider.close();
+
+		long expected = 0;
+		Iterator<MDItem> items = provider.deferredLoad(context, feed);
+		while (items.hasNext())
+			assertEquals(expected++, ((MDPrice) items.next()).getPrice());
+		assertEquals(8, expected);
+		assertEquals(4, provider.load(context, other).size());
+	}
+
+	private MappedMarketDataCacheProvider createBlockedProvider(Properties settings, CountDownLatch saving)
+		throws Exception
+	{
+		settings.setProperty(MappedMarketDataCacheProvider.PATH_SETTING, folder.getRoot().getPath());
+
+		return new MappedMarketDataCacheProvider(null, settings) {
+
+			@Override
+			public void save(MarketDataFeed feed, MDFeedEvent mdItem) throws MarketDataCacheProviderException
+			{
+				try
+				{
+					saving.await();
+				}
+				catch (InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+				}
+				super.save(feed, mdItem);
+			}
+		};
+	}
+
+	@Test
+	public void testRecordingIsStartedExplicitly() throws Exception
+	{
+		MappedMarketDataCacheProvider provider = createProvider();
+		MarketDataFeed feed = feed("feed");
+		int context = provider.newContext();
+
+		try
+		{
+			provider.record(feed, price(DAY, "id", 0, 1));
+			fail("recorded before start");
+		}
+		catch (MarketDataCacheProviderException e)
+		{
+		}
+
+		provider.startRecording();
+		provider.record(feed, price(DAY + 1, "id", 1, 1));
+		provider.close();
+
+		try
+		{
+			provider.record(feed, price(DAY + 2, "id", 2, 1));
+			fail("recorded after stop");
+		}
+		catch (MarketDataCacheProviderException e)
+		{
+		}
+
+		assertEquals(1, provider.load(context, feed).size());
+	}
+
+	@Test
+	public void testFeedsAreMergedBySourceTimestamp() throws Exception
+	{
+		MappedMarketDataCacheProvider provider = createProvider();
+		MarketDataFeed first = feed("first");
+		MarketDataFeed second = feed("second");
+		int context = provider.newContext();
+
+		for (int i = 0; i < 100; i++)
+			provider.save(i % 3 == 0 ? first : second, price(i, "id", i, 1));
+		provider.close();
+
+		long previous = Long.MIN_VALUE;
+		int count = 0;
+		Iterator<MDItem> items = provider.deferredLoad(context, Arrays.asList(first, second));
+		while (items.hasNext())
+		{
+			MDItem item = items.next();
+			assertTrue(item.getSourceTimestamp() >= previous);
+			previous = item.getSourceTimestamp();
+			count++;
+		}
+		assertEquals(100, count);
+	}
+
+	@Test
+	public void testRangeEndsAtTheFirstTickPastIt() throws Exception
+	{
+		MappedMarketDataCacheProvider provider = createProvider();
+		MarketDataFeed feed = feed("feed");
+		int context = provider.newContext();
+
+		provider.save(feed, price(DAY + 100, "id", 1, 1));
+		provider.save(feed, price(DAY + 300, "id", 2, 1));
+		provider.save(feed, price(DAY + 200, "id", 3, 1));
+		provider.save(feed, price(2 * DAY + 100, "id", 4, 1));
+		provider.close();
+
+		Iterator<MDItem> items = provider.deferredLoad(context, feed, new Date(DAY), new Date(DAY + 250));
+
+		assertEquals(1, ((MDPrice) items.next()).getPrice());
+		assertFalse(items.hasNext());
+	}
+
+	@Test
+	public void testPooledFeedsReuseDecodedItems() throws Exception
+	{
+		Properties settings = new Properties();
+		settings.setProperty(MappedMarketDataCacheProvider.PATH_SETTING, folder.getRoot().getPath());
+		settings.setProperty(MappedMarketDataCacheProvider.PREFETCH_BATCH_SIZE_SETTING, "0");
+		MappedMarketDataCacheProvider provider = new MappedMarketDataCacheProvider(null, settings);
+		MarketDataFeed feed = feed("feed");
+		feed.setPooledItems(true);
+		int context = provider.newContext();
+
+		provider.save(feed, price(DAY + 100, "id1", 1, 1));
+		provider.save(feed, price(DAY + 200, "id2", 2, 2));
+		provider.close();
+
+		Iterator<MDItem> items = provider.deferredLoad(context, feed);
+
+		MDPrice first = (MDPrice) items.next();
+		assertTrue(first.isPooled());
+		assertEquals(1, first.getPrice());
+		first.release();
+
+		MDPrice second = (MDPrice) items.next();
+		assertSame(first, second);
+		assertEquals(2, second.getPrice());
+		assertEquals(2.0, second.getSize(), 0.0);
+		assertEquals("id2", second.getMdItemId());
+		assertEquals(DAY + 200, second.getSourceTimestamp());
+
+		assertFalse(provider.load(context, feed).iterator().next().isPooled());
+	}
+
+	@Test
+	public void testLateTicksAfterMidnightGoToThePreviousDay() throws Exception
+	{
+		MappedMarketDataCacheProvider provider = createProvider();
+		MarketDataFeed feed = feed("feed");
+		int context = provider.newContext();
+
+		provider.save(feed, price(2 * DAY - 10, "id", 1, 1));
+		provider.save(feed, price(2 * DAY + 10, "id", 2, 1));
+		provider.save(feed, price(2 * DAY - 5, "id", 3, 1));
+		provider.save(feed, price(2 * DAY + 20, "id", 4, 1));
+		provider.close();
+
+		assertEquals(2, provider.load(context, feed, new Date(DAY), new Date(2 * DAY - 1)).size());
+		assertEquals(2, provider.load(context, feed, new Date(2 * DAY), new Date(3 * DAY - 1)).size());
+		assertEquals(2, folder.getRoot().listFiles()[0].listFiles()[0].list().length);
+	}
+
+	@Test
+	public void testInstrumentOfTheFeedIsKept() throws Exception
+	{
+		MappedMarketDataCacheProvider provider = createProvider();
+		MarketDataFeed feed = feed("feed");
+		int context = provider.newContext();
+
+		MDPrice price = price(DAY, "id", 1, 1);
+		price.setInstrumentId("BTC/USDT");
+		price.setPointsInOne(100);
+		price.setFeedGroupId(5);
+		provider.save(feed, price);
+		provider.close();
+
+		MDItem item = provider.load(context, feed).iterator().next();
+
+		assertEquals("BTC/USDT", item.getInstrumentId());
+		assertEquals(100, item.getPointsInOne());
+		assertEquals(5, item.getFeedGroupId());
+	}
+}
@@ -0,0 +1,141 @@
+/*
+ * Copyright 2022-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.quantfabric.algo.backtesting.storage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+public class PrefetchingIteratorTest
+{
+	private static class CountingIterator implements Iterator<Integer>
+	{
+		private final int count;
+		private final int failAt;
+		private final AtomicInteger read = new AtomicInteger();
+
+		CountingIterator(int count, int failAt)
+		{
+			this.count = count;
+			this.failAt = failAt;
+		}
+
+		@Override
+		public boolean hasNext()
+		{
+			return read.get() < count;
+		}
+
+		@Override
+		public Integer next()
+		{
+			if (read.get() == failAt)
+				throw new IllegalStateException("broken segment");
+			return read.getAndIncrement();
+		}
+	}
+
+	@Test
+	public void keepsOrderAcrossBatchesAndRethrowsFailure()
+	{
+		PrefetchingIterator<Integer> items = new PrefetchingIterator<Integer>(
+				new CountingIterator(100, 95), "test", 7, 2);
+
+		for (int i = 0; i < 95; i++)
+		{
+			assertTrue(items.hasNext());
+			assertEquals(i, (int) items.next());
+		}
+
+		try
+		{
+			items.hasNext();
+			fail();
+		}
+		catch (IllegalStateException e)
+		{
+			assertEquals("broken segment", e.getMessage());
+		}
+	}
+
+	@Test
+	public void readsAheadBoundedAndStopsWhenClosed() throws Exception
+	{
+		CountingIterator source = new CountingIterator(1_000_000, -1);
+		PrefetchingIterator<Integer> items = new PrefetchingIterator<Integer>(source, "test", 10, 3);
+
+		assertEquals(0, (int) items.next());
+		Thread.sleep(100);
+
+		// the batch taken, the buffered ones and the one waiting to be buffered
+		assertTrue("read " + source.read.get(), source.read.get() <= 50);
+
+		items.close();
+		assertFalse(items.hasNext());
+		Thread.sleep(100);
+
+		int read = source.read.get();
+		Thread.sleep(100);
+		assertEquals(read, source.read.get());
+	}
+
+	@Test
+	public void interruptedConsumerSeesTheEnd() throws Exception
+	{
+		Iterator<Integer> stalled = new Iterator<Integer>()
+		{
+			@Override
+			public boolean hasNext()
+			{
+				try
+				{
+					Thread.sleep(60_000);
+				}
+				catch (InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+				}
+				return false;
+			}
+
+			@Override
+			public Integer next()
+			{
+				throw new IllegalStateException();
+			}
+		};
+		PrefetchingIterator<Integer> items = new PrefetchingIterator<Integer>(stalled, "test");
+		AtomicInteger result = new AtomicInteger(-1);
+
+		Thread consumer = new Thread(() -> {
+			boolean hasNext = items.hasNext();
+			result.set(!hasNext && Thread.currentThread().isInterrupted() ? 1 : 0);
+		});
+		consumer.start();
+		Thread.sleep(100);
+		consumer.interrupt();
+		consumer.join(5000);
+		items.close();
+
+		assertEquals(1, result.get());
+	}
+}
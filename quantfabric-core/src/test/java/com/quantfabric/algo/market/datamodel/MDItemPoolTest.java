@@ -0,0 +1,89 @@
+/*
+ * Copyright 2022-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.quantfabric.algo.market.datamodel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.quantfabric.algo.market.datamodel.MDItem.MDItemType;
+import com.quantfabric.algo.market.datamodel.MDPrice.PriceType;
+import com.quantfabric.algo.market.dataprovider.FeedNameImpl;
+import com.quantfabric.algo.market.dataprovider.orderbook.OrderBookInfo.OrderBookTypes;
+import com.quantfabric.algo.market.dataprovider.orderbook.storage.SimpleOrderBookCache;
+
+public class MDItemPoolTest
+{
+	private static MDPrice acquirePrice(MDItemPool<MDPrice> pool, String id, long price)
+	{
+		MDPrice item = pool.acquire();
+		item.setMdItemType(MDItemType.BID);
+		item.setMdItemId(id);
+		item.setSymbol("BTCUSDT");
+		item.setPrice(price);
+		item.setSize(1);
+		item.setPriceType(PriceType.BID);
+		return item;
+	}
+
+	@Test
+	public void testItemIsRecycledAfterLastRelease()
+	{
+		MDItemPool<MDPrice> pool = MDItemPool.forPrices(16);
+		SimpleOrderBookCache cache = new SimpleOrderBookCache(OrderBookTypes.BID_BOOK, new FeedNameImpl("feed"));
+
+		MDPrice first = acquirePrice(pool, "a", 100);
+		cache.addPrice(first);
+		first.release();
+
+		assertEquals(0, pool.size());
+		assertSame(first, cache.getTop());
+		assertEquals(100, cache.getTop().getPrice());
+
+		MDPrice second = acquirePrice(pool, "a", 101);
+		cache.addPrice(second);
+		second.release();
+
+		assertEquals(1, pool.size());
+		assertEquals(0, first.getPrice());
+		assertEquals(MDItem.DEFAULT_MDITEM_ID, first.getMdItemId());
+
+		MDPrice reused = pool.acquire();
+		assertSame(first, reused);
+		assertTrue(reused.isPooled());
+	}
+
+	@Test
+	public void testDetachedCopyIsNotPooled()
+	{
+		MDItemPool<MDPrice> pool = MDItemPool.forPrices(16);
+		MDPrice item = acquirePrice(pool, "a", 100);
+
+		MDPrice copy = (MDPrice) item.detach();
+		item.release();
+
+		assertFalse(copy.isPooled());
+		assertEquals(100, copy.getPrice());
+		assertEquals("a", copy.getMdItemId());
+		assertEquals(1, pool.size());
+
+		copy.release();
+		assertEquals(1, pool.size());
+	}
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2022-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.quantfabric.algo.market.dataprovider.incremental;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+import com.quantfabric.algo.market.datamodel.IncrementalUpdate;
+import com.quantfabric.algo.market.datamodel.MDItem.MDItemType;
+import com.quantfabric.algo.market.dataprovider.incremental.IncrementalBook.Level;
+
+public class IncrementalUpdatesCreatorTest
+{
+	private static IncrementalUpdate commit(IncrementalUpdatesCreator creator, long messageId)
+	{
+		assertNull(creator.commit("P", messageId, MDItemType.BID));
+		return creator.commit("P", messageId, MDItemType.OFFER);
+	}
+
+	private static Map<Integer, String> levels(Iterable<Level> side)
+	{
+		Map<Integer, String> levels = new TreeMap<Integer, String>();
+		for (Level level : side)
+			levels.put(level.getId(), level.getPrice() + "x" + level.getSize());
+		return levels;
+	}
+
+	@Test
+	public void sequencesUpdatesAndSendsSnapshots()
+	{
+		IncrementalUpdatesCreator creator = new IncrementalUpdatesCreator(3);
+		IncrementalBook source = new IncrementalBook();
+		IncrementalBook rebuilt = new IncrementalBook();
+
+		for (int m = 1; m <= 7; m++)
+		{
+			creator.addBidPrice(m, 100 - m, m);
+			source.putBid(m, 100 - m, m);
+			creator.addAskPrice(100 + m, 100 + m, m);
+			source.putAsk(100 + m, 100 + m, m);
+			if (m > 2)
+			{
+				creator.deletePrice(m - 2);
+				source.delete(m - 2);
+			}
+
+			IncrementalUpdate update = commit(creator, m);
+
+			assertEquals(m, update.getSequence());
+			assertEquals(m % 3 == 0, update.isNewSnapshot());
+			if (!update.isNewSnapshot())
+			{
+				assertArrayEquals(new int[] { m }, update.getBidIds());
+				assertArrayEquals(new long[] { 100 - m }, update.getBidPrices());
+			}
+
+			rebuilt.apply(update);
+			assertEquals(levels(source.getBids()), levels(rebuilt.getBids()));
+			assertEquals(levels(source.getAsks()), levels(rebuilt.getAsks()));
+		}
+	}
+
+	@Test
+	public void newSnapshotReplacesBook()
+	{
+		IncrementalUpdatesCreator creator = new IncrementalUpdatesCreator(0);
+
+		creator.addBidPrice(1, 99, 1);
+		assertFalse(commit(creator, 1).isNewSnapshot());
+
+		creator.setNewSnapshot(true);
+		creator.addAskPrice(2, 101, 1);
+		IncrementalUpdate snapshot = commit(creator, 2);
+
+		assertTrue(snapshot.isNewSnapshot());
+		assertEquals(0, snapshot.getBidIds().length);
+		assertArrayEquals(new int[] { 2 }, snapshot.getAskIds());
+		assertEquals(2, snapshot.getSequence());
+
+		creator.addAskPrice(2, 102, 1);
+		assertFalse(commit(creator, 3).isNewSnapshot());
+	}
+}
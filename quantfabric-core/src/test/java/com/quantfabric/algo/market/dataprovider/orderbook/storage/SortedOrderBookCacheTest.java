@@ -0,0 +1,300 @@
+/*
+ * Copyright 2022-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.quantfabric.algo.market.dataprovider.orderbook.storage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+import com.quantfabric.algo.market.datamodel.MDDelete;
+import com.quantfabric.algo.market.datamodel.MDItem.MDItemType;
+import com.quantfabric.algo.market.datamodel.MDMessageInfo.MDMessageType;
+import com.quantfabric.algo.market.datamodel.MDPrice;
+import com.quantfabric.algo.market.datamodel.MDPrice.PriceType;
+import com.quantfabric.algo.market.dataprovider.FeedNameImpl;
+import com.quantfabric.algo.market.dataprovider.orderbook.OrderBookInfo.OrderBookTypes;
+import com.quantfabric.algo.market.dataprovider.orderbook.OrderBookView;
+import com.quantfabric.algo.market.dataprovider.orderbook.SharedOrderBookView;
+import com.quantfabric.util.timer.ReplayClock;
+
+public class SortedOrderBookCacheTest
+{
+	private static MDPrice price(String id, long price, double size)
+	{
+		return new MDPrice(1L, MDMessageType.INCREMENTAL_REFRESH, "test", 1L, 1, 0,
+				MDItemType.BID, id, "BTCUSDT", 0, price, size, PriceType.BID, false);
+	}
+
+	private static MDDelete delete(String id)
+	{
+		return new MDDelete(1L, 1L, "test", 1L, 1, 0, MDItemType.BID, id, "BTCUSDT", 0);
+	}
+
+	@Test
+	public void testBidLevelsAreSortedFromBest()
+	{
+		SortedOrderBookCache cache =
+			new SortedOrderBookCache(OrderBookTypes.BID_BOOK, new FeedNameImpl("feed"));
+
+		cache.addPrice(price("a", 100, 1));
+		cache.addPrice(price("b", 102, 1));
+		cache.addPrice(price("c", 101, 1));
+
+		List<MDPrice> levels = cache.getAllLevels();
+		assertEquals(3, levels.size());
+		assertEquals(102, levels.get(0).getPrice());
+		assertEquals(101, levels.get(1).getPrice());
+		assertEquals(100, levels.get(2).getPrice());
+		assertEquals(2, levels.get(2).getDepthLevel());
+		assertEquals(102, cache.getTop().getPrice());
+	}
+
+	@Test
+	public void testOfferLevelsAreSortedFromBest()
+	{
+		SortedOrderBookCache cache =
+			new SortedOrderBookCache(OrderBookTypes.OFFER_BOOK, new FeedNameImpl("feed"));
+
+		cache.addPrice(price("a", 100, 1));
+		cache.addPrice(price("b", 102, 1));
+		cache.addPrice(price("c", 101, 1));
+
+		assertEquals(100, cache.getTop().getPrice());
+		assertEquals(101, cache.getLevel2().getPrice());
+		assertEquals(102, cache.getLevel3().getPrice());
+	}
+
+	@Test
+	public void testReplaceAndDelete()
+	{
+		SortedOrderBookCache cache =
+			new SortedOrderBookCache(OrderBookTypes.BID_BOOK, new FeedNameImpl("feed"));
+
+		cache.addPrice(price("a", 100, 1));
+		cache.addPrice(price("b", 100, 2));
+		assertEquals(1, cache.getDepth());
+		assertEquals(2.0, cache.getTop().getSize(), 0.0);
+
+		cache.deletePrice(delete("a"));
+		assertEquals(1, cache.getDepth());
+
+		cache.addPrice(price("b", 99, 3));
+		assertEquals(1, cache.getDepth());
+		assertEquals(99, cache.getTop().getPrice());
+
+		cache.deletePrice(delete("b"));
+		assertEquals(0, cache.getDepth());
+		assertNull(cache.getTop());
+	}
+
+	@Test
+	public void testClearIsStampedByCacheClock() throws Exception
+	{
+		ReplayClock clock = new ReplayClock(ReplayClock.MAX_SPEED);
+		clock.advanceTo(5000);
+		SortedOrderBookCache cache =
+			new SortedOrderBookCache(OrderBookTypes.BID_BOOK, new FeedNameImpl("feed"), clock);
+
+		cache.addPrice(price("a", 100, 1));
+		clock.advanceTo(7000);
+		cache.clear();
+		cache.commit(-1, clock.currentTimeMillis());
+
+		assertEquals(7000, cache.getSourceTimestamp());
+		assertEquals(0, cache.getDepth());
+	}
+
+	@Test
+	public void testMatchesSimpleOrderBookCache()
+	{
+		FeedNameImpl feedName = new FeedNameImpl("feed");
+		SortedOrderBookCache sorted = new SortedOrderBookCache(OrderBookTypes.OFFER_BOOK, feedName);
+		SimpleOrderBookCache simple = new SimpleOrderBookCache(OrderBookTypes.OFFER_BOOK, feedName);
+		Random random = new Random(42);
+
+		for (int i = 0; i < 5000; i++)
+		{
+			String id = String.valueOf(1000 + random.nextInt(300));
+			if (random.nextInt(4) == 0)
+			{
+				sorted.deletePrice(delete(id));
+				simple.deletePrice(delete(id));
+			}
+			else
+			{
+				long level = Long.parseLong(id);
+				sorted.addPrice(price(id, level, i));
+				simple.addPrice(price(id, level, i));
+			}
+		}
+
+		List<MDPrice> expected = simple.getAllLevels();
+		List<MDPrice> actual = sorted.getAllLevels();
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++)
+		{
+			assertEquals(expected.get(i).getPrice(), actual.get(i).getPrice());
+			assertEquals(expected.get(i).getSize(), actual.get(i).getSize(), 0.0);
+		}
+	}
+
+	@Test
+	public void testSnapshotsShareUnchangedLevels() throws Exception
+	{
+		SortedOrderBookCache cache =
+			new SortedOrderBookCache(OrderBookTypes.BID_BOOK, new FeedNameImpl("feed"));
+
+		cache.addPrice(price("a", 100, 1));
+		cache.addPrice(price("b", 101, 1));
+		cache.commit(1L, 1L);
+		OrderBookView first = cache.getOrderBookSnapshot().getOrderBookView();
+
+		cache.addPrice(price("c", 102, 1));
+		cache.deletePrice(delete("a"));
+		cache.commit(2L, 2L);
+		OrderBookView second = cache.getOrderBookSnapshot().getOrderBookView();
+
+		assertEquals(2, first.getAllLevels().size());
+		assertEquals(101, first.getTop().getPrice());
+		assertEquals(100, first.getLevel2().getPrice());
+
+		assertEquals(2, second.getAllLevels().size());
+		assertEquals(102, second.getTop().getPrice());
+		assertSame(first.getTop(), second.getLevel2());
+	}
+
+	@Test
+	public void testDeepBookSnapshotsStayUnchanged() throws Exception
+	{
+		SortedOrderBookCache cache =
+			new SortedOrderBookCache(OrderBookTypes.BID_BOOK, new FeedNameImpl("feed"));
+		Random random = new Random(7);
+		List<OrderBookView> snapshots = new ArrayList<OrderBookView>();
+		List<List<Long>> expected = new ArrayList<List<Long>>();
+
+		for (int i = 0; i < 2000; i++)
+		{
+			String id = String.valueOf(random.nextInt(200));
+			if (random.nextInt(3) == 0)
+				cache.deletePrice(delete(id));
+			else
+				cache.addPrice(price(id, 1000 + random.nextInt(200), i));
+
+			if (i % 50 == 49)
+			{
+				cache.commit(i, i);
+				snapshots.add(cache.getOrderBookSnapshot().getOrderBookView());
+				expected.add(prices(cache.getAllLevels()));
+			}
+		}
+
+		for (int i = 0; i < snapshots.size(); i++)
+			assertEquals(expected.get(i), prices(snapshots.get(i).getAllLevels()));
+	}
+
+	@Test
+	public void testSimpleCacheSnapshotsShareUnchangedLevels() throws Exception
+	{
+		SimpleOrderBookCache cache =
+			new SimpleOrderBookCache(OrderBookTypes.OFFER_BOOK, new FeedNameImpl("feed"));
+
+		cache.addPrice(price("a", 100, 1));
+		cache.addPrice(price("b", 101, 1));
+		cache.commit(1L, 1L);
+		OrderBookView first = cache.getOrderBookSnapshot().getOrderBookView();
+
+		cache.addPrice(price("a", 99, 2));
+		cache.commit(2L, 2L);
+		OrderBookView second = cache.getOrderBookSnapshot().getOrderBookView();
+
+		assertEquals(100, first.getTop().getPrice());
+		assertEquals(99, second.getTop().getPrice());
+		assertSame(first.getLevel2(), second.getLevel2());
+	}
+
+	@Test
+	public void testSerializedSnapshotHoldsItsLevelsOnly() throws Exception
+	{
+		SortedOrderBookCache cache =
+			new SortedOrderBookCache(OrderBookTypes.BID_BOOK, new FeedNameImpl("feed"));
+
+		for (int i = 0; i < 40; i++)
+			cache.addPrice(price(String.valueOf(i), 100 + i, 1));
+		cache.commit(1L, 1L);
+		SharedOrderBookView view = ((SharedOrderBookView) cache.getOrderBookSnapshot().getOrderBookView()).limitDepth(3);
+
+		Kryo kryo = new Kryo();
+		kryo.register(FeedNameImpl.class, new Serializer<FeedNameImpl>() {
+
+			@Override
+			public void write(Kryo kryo, Output output, FeedNameImpl feedName)
+			{
+				output.writeString(feedName.getName());
+			}
+
+			@Override
+			public FeedNameImpl read(Kryo kryo, Input input, Class<FeedNameImpl> type)
+			{
+				return new FeedNameImpl(input.readString());
+			}
+		});
+		kryo.register(MDPrice.class, new Serializer<MDPrice>() {
+
+			@Override
+			public void write(Kryo kryo, Output output, MDPrice price)
+			{
+				output.writeString(price.getMdItemId());
+				output.writeLong(price.getPrice());
+			}
+
+			@Override
+			public MDPrice read(Kryo kryo, Input input, Class<MDPrice> type)
+			{
+				return price(input.readString(), input.readLong(), 1);
+			}
+		});
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		Output output = new Output(bytes);
+		kryo.writeClassAndObject(output, view);
+		output.close();
+
+		OrderBookView copy = (OrderBookView) kryo.readClassAndObject(new Input(bytes.toByteArray()));
+
+		assertEquals(prices(view.getAllLevels()), prices(copy.getAllLevels()));
+		assertEquals(OrderBookTypes.BID_BOOK, copy.getOrderBookType());
+		assertEquals("feed", copy.getFeedName().getName());
+	}
+
+	private static List<Long> prices(List<MDPrice> levels)
+	{
+		List<Long> prices = new ArrayList<Long>(levels.size());
+		for (MDPrice level : levels)
+			prices.add(level.getPrice());
+		return prices;
+	}
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright 2022-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.quantfabric.algo.market.dataprovider.orderbook.storage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.quantfabric.algo.market.datamodel.MDDelete;
+import com.quantfabric.algo.market.datamodel.MDItem.MDItemType;
+import com.quantfabric.algo.market.datamodel.MDMessageInfo.MDMessageType;
+import com.quantfabric.algo.market.datamodel.MDPrice;
+import com.quantfabric.algo.market.datamodel.MDPrice.PriceType;
+import com.quantfabric.algo.market.dataprovider.FeedNameImpl;
+import com.quantfabric.algo.market.dataprovider.orderbook.OrderBookInfo;
+import com.quantfabric.algo.market.dataprovider.orderbook.OrderBookInfo.OrderBookTypes;
+import com.quantfabric.algo.market.dataprovider.orderbook.OrderBookSnapshot;
+import com.quantfabric.algo.market.dataprovider.orderbook.TopOfBook;
+import com.quantfabric.algo.market.dataprovider.orderbook.processor.OrderBookSnapshotListener;
+import com.quantfabric.algo.market.dataprovider.orderbook.storage.OrderBookStorageWriter.OrderBookStorageWriterException;
+
+public class TopOfBookPublishingTest
+{
+	private static class RecordingListener implements OrderBookSnapshotListener
+	{
+		private final String name;
+		private final boolean topOfBookOnly;
+		private final List<OrderBookSnapshot> snapshots = new ArrayList<OrderBookSnapshot>();
+
+		RecordingListener(String name, boolean topOfBookOnly)
+		{
+			this.name = name;
+			this.topOfBookOnly = topOfBookOnly;
+		}
+
+		@Override
+		public String getName()
+		{
+			return name;
+		}
+
+		@Override
+		public boolean isTopOfBookOnly()
+		{
+			return topOfBookOnly;
+		}
+
+		@Override
+		public void onNewSnapshot(OrderBookSnapshot orderBookSnapshot)
+		{
+			snapshots.add(orderBookSnapshot);
+		}
+
+		@Override
+		public void onEndUpdate(OrderBookInfo orderBookInfo, long updateId, boolean isBookModified)
+		{
+		}
+
+		@Override
+		public void onNoUpdate(long snapshotId)
+		{
+		}
+	}
+
+	private static MDPrice price(String id, long price, double size)
+	{
+		return new MDPrice(1L, MDMessageType.INCREMENTAL_REFRESH, "test", 1L, 1, 0,
+				MDItemType.OFFER, id, "BTCUSDT", 0, price, size, PriceType.OFFER, false);
+	}
+
+	@Test
+	public void testTopOfBookListenersGetLevelOne() throws OrderBookStorageWriterException
+	{
+		SimpleOrderBookCache cache =
+			new SimpleOrderBookCache(OrderBookTypes.OFFER_BOOK, new FeedNameImpl("feed"));
+		RecordingListener top = new RecordingListener("top", true);
+		RecordingListener depth = new RecordingListener("depth", false);
+		cache.addOrderBookSnapshotListener(top);
+		cache.addOrderBookSnapshotListener(depth);
+
+		cache.addPrice(price("a", 102, 1));
+		cache.addPrice(price("b", 100, 2));
+		cache.addPrice(price("c", 101, 3));
+		cache.commit(7, 1L);
+
+		TopOfBook topOfBook = (TopOfBook) top.snapshots.get(0).getOrderBookView();
+		assertEquals(7, top.snapshots.get(0).getSnapshotId());
+		assertEquals(100, topOfBook.getPrice());
+		assertEquals(2., topOfBook.getSize(), 0.);
+		assertEquals(1, topOfBook.getAllLevels().size());
+		assertEquals(OrderBookTypes.OFFER_BOOK, topOfBook.getOrderBookType());
+
+		assertEquals(3, depth.snapshots.get(0).getOrderBookView().getAllLevels().size());
+		assertEquals(100, depth.snapshots.get(0).getOrderBookView().getTop().getPrice());
+	}
+
+	@Test
+	public void testFullSnapshotIsBuiltOnRequest() throws OrderBookStorageWriterException
+	{
+		SimpleOrderBookCache cache =
+			new SimpleOrderBookCache(OrderBookTypes.OFFER_BOOK, new FeedNameImpl("feed"));
+		RecordingListener top = new RecordingListener("top", true);
+		cache.addOrderBookSnapshotListener(top);
+
+		cache.addPrice(price("a", 102, 1));
+		cache.commit(1, 1L);
+		cache.deletePrice(new MDDelete(2L, 1L, "test", 1L, 1, 0,
+				MDItemType.OFFER, "a", "BTCUSDT", 0));
+		cache.commit(2, 1L);
+
+		assertFalse(((TopOfBook) top.snapshots.get(0).getOrderBookView()).isEmpty());
+		assertTrue(((TopOfBook) top.snapshots.get(1).getOrderBookView()).isEmpty());
+
+		OrderBookSnapshot snapshot = cache.getOrderBookSnapshot();
+		assertEquals(2, snapshot.getSnapshotId());
+		assertTrue(snapshot.getOrderBookView().getAllLevels().isEmpty());
+	}
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2022-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.quantfabric.algo.market.gateway;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.quantfabric.algo.market.datamodel.EndUpdate;
+import com.quantfabric.algo.market.datamodel.MDMessageInfo.MDMessageType;
+import com.quantfabric.algo.market.datamodel.MDPrice;
+import com.quantfabric.algo.market.dataprovider.FeedNameImpl;
+import com.quantfabric.messaging.Subscriber;
+import com.quantfabric.messaging.SubscriberArray;
+
+public class MarketDataDispatcherTest
+{
+	private static class Recorder implements Subscriber<Object>
+	{
+		private final List<Object> received = new ArrayList<>();
+		private final CountDownLatch endUpdates;
+
+		Recorder(int expectedEndUpdates)
+		{
+			endUpdates = new CountDownLatch(expectedEndUpdates);
+		}
+
+		@Override
+		public void sendUpdate(Object data)
+		{
+			synchronized (received)
+			{
+				received.add(data);
+			}
+			if (data instanceof EndUpdate)
+				endUpdates.countDown();
+		}
+
+		@Override
+		public void sendUpdate(Object[] data)
+		{
+			for (Object item : data)
+				sendUpdate(item);
+		}
+
+		List<Object> getReceived()
+		{
+			synchronized (received)
+			{
+				return new ArrayList<>(received);
+			}
+		}
+	}
+
+	private final MarketDataDispatcher dispatcher = new MarketDataDispatcher("dispatcher-test", 4);
+
+	@After
+	public void stop()
+	{
+		dispatcher.stop();
+	}
+
+	@Test
+	public void itemsAreHeldUntilEndUpdate() throws InterruptedException
+	{
+		dispatcher.start();
+
+		Recorder recorder = new Recorder(1);
+		SubscriberArray<Subscriber<Object>> subscribers = SubscriberArray.<Subscriber<Object>>empty().with(recorder);
+
+		dispatcher.dispatch(new MDPrice(), new FeedNameImpl("EURUSD"), subscribers);
+		Thread.sleep(50);
+
+		assertTrue(recorder.getReceived().isEmpty());
+		assertEquals(1, dispatcher.getFeedMetrics("EURUSD").getQueueDepth());
+
+		dispatcher.dispatch(new EndUpdate(1, MDMessageType.INCREMENTAL_REFRESH, "test", 0, 1), null, subscribers);
+
+		assertTrue(recorder.endUpdates.await(5, TimeUnit.SECONDS));
+		assertEquals(2, recorder.getReceived().size());
+		assertEquals(0, dispatcher.getFeedMetrics("EURUSD").getQueueDepth());
+		assertEquals(1, dispatcher.getFeedMetrics("EURUSD").getDeliveredCount());
+	}
+
+	@Test
+	public void everySubscriberReceivesPublishingOrder() throws InterruptedException
+	{
+		dispatcher.start();
+
+		final int messages = 200;
+		List<Recorder> recorders = new ArrayList<>();
+		SubscriberArray<Subscriber<Object>> subscribers = SubscriberArray.empty();
+
+		for (int i = 0; i < 16; i++)
+		{
+			Recorder recorder = new Recorder(messages);
+			recorders.add(recorder);
+			subscribers = subscribers.with(recorder);
+		}
+
+		List<Object> published = new ArrayList<>();
+
+		for (int m = 0; m < messages; m++)
+		{
+			for (int i = 0; i < 3; i++)
+			{
+				MDPrice price = new MDPrice();
+				published.add(price);
+				dispatcher.dispatch(price, new FeedNameImpl(i % 2 == 0 ? "EURUSD" : "GBPUSD"), subscribers);
+			}
+
+			EndUpdate endUpdate = new EndUpdate(m, MDMessageType.INCREMENTAL_REFRESH, "test", 0, 3);
+			published.add(endUpdate);
+			dispatcher.dispatch(endUpdate, null, subscribers);
+		}
+
+		for (Recorder recorder : recorders)
+		{
+			assertTrue(recorder.endUpdates.await(5, TimeUnit.SECONDS));
+
+			List<Object> received = recorder.getReceived();
+			assertEquals(published.size(), received.size());
+
+			for (int i = 0; i < published.size(); i++)
+				assertSame(published.get(i), received.get(i));
+		}
+	}
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2022-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.quantfabric.algo.market.history.storage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.quantfabric.algo.market.datamodel.OHLCValue;
+import com.quantfabric.algo.market.history.TimeFrame;
+
+public class MappedTimeFrameHistoryTableTest
+{
+	private static final long MINUTE = 60_000L;
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private static OHLCValue bar(long minute, long close, boolean closed)
+	{
+		return new OHLCValue(60, 100, minute * MINUTE, 120, minute * MINUTE + 1,
+				90, minute * MINUTE + 2, close, minute * MINUTE + 3, closed, !closed);
+	}
+
+	@Test
+	public void testBarsSurviveReopen() throws Exception
+	{
+		File file = new File(folder.getRoot(), "M1.bars");
+
+		try (MappedTimeFrameHistoryTable table = new MappedTimeFrameHistoryTable(file, TimeFrame.M1, 4))
+		{
+			table.addBar(bar(1, 101, true));
+			table.addBar(bar(2, 102, false));
+			table.replaceBar(bar(2, 103, false));
+		}
+
+		try (MappedTimeFrameHistoryTable table = new MappedTimeFrameHistoryTable(file, TimeFrame.M1, 4))
+		{
+			OHLCValue[] bars = table.getBars(10);
+			assertEquals(2, bars.length);
+			assertEquals(101, bars[0].getClose());
+			assertTrue(bars[0].isClosed());
+			assertEquals(103, bars[1].getClose());
+			assertEquals(120, bars[1].getHigh());
+			assertEquals(2 * MINUTE + 2, bars[1].getLowSourceTimestamp());
+			assertEquals(103, table.getOpenBar().getClose());
+		}
+	}
+
+	@Test
+	public void testRingKeepsLatestBarsAndTracksGaps() throws Exception
+	{
+		try (MappedTimeFrameHistoryTable table =
+				new MappedTimeFrameHistoryTable(new File(folder.getRoot(), "M1.bars"), TimeFrame.M1, 4))
+		{
+			for (long minute : new long[] { 1, 2, 3, 5, 6, 7 })
+				table.addBar(bar(minute, minute, true));
+
+			OHLCValue[] bars = table.getBars(4);
+			assertEquals(4, bars.length);
+			assertEquals(3, bars[0].getClose());
+			assertEquals(7, bars[3].getClose());
+			assertEquals(Collections.singletonList(1L), table.getGapIndexes());
+			assertEquals(Arrays.asList(6L, 7L),
+					Arrays.asList(table.getBars(2)[0].getClose(), table.getBars(2)[1].getClose()));
+			assertNull(table.getOpenBar());
+
+			table.addBar(bar(8, 8, true));
+			table.addBar(bar(9, 9, true));
+			assertFalse(table.getGapIndexes().iterator().hasNext());
+
+			table.addBar(bar(2, 2, true));
+			assertEquals(6, table.getBars(4)[0].getClose());
+		}
+	}
+}
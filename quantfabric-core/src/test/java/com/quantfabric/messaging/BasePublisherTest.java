@@ -0,0 +1,98 @@
+/*
+ * Copyright 2022-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.quantfabric.messaging;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.quantfabric.messaging.Publisher.PublisherException;
+
+public class BasePublisherTest
+{
+	private static class Subject implements TargetSubject
+	{
+		private final long id;
+
+		Subject(long id)
+		{
+			this.id = id;
+		}
+
+		@Override
+		public long getId()
+		{
+			return id;
+		}
+	}
+
+	private static class NullSubscriber implements Subscriber<Object>
+	{
+		@Override
+		public void sendUpdate(Object data)
+		{
+		}
+
+		@Override
+		public void sendUpdate(Object[] data)
+		{
+		}
+	}
+
+	private final BasePublisher<Subscriber<Object>, Subject, Object> publisher = new BasePublisher<>();
+
+	@Test
+	public void subscriptionsReplaceSnapshots() throws PublisherException
+	{
+		Subject subject = new Subject(1);
+		Subscriber<Object> first = new NullSubscriber();
+		Subscriber<Object> second = new NullSubscriber();
+
+		assertNull(publisher.getSubscribers(subject));
+
+		publisher.subscribe(first, subject);
+		SubscriberArray<Subscriber<Object>> snapshot = publisher.getSubscribers(subject);
+		publisher.subscribe(second, subject);
+		publisher.subscribe(second, subject);
+
+		assertEquals(1, snapshot.size());
+		assertSame(first, snapshot.get(0));
+		assertEquals(2, publisher.getSubscribers(subject).size());
+		assertEquals(2, publisher.getSubscribers().size());
+
+		publisher.unSubscribe(first, subject);
+
+		assertEquals(1, snapshot.size());
+		assertSame(second, publisher.getSubscribers(subject).get(0));
+		assertNull(publisher.getSubscribers(new Subject(2)));
+	}
+
+	@Test
+	public void unregisterRemovesFromAllSubscribers() throws PublisherException
+	{
+		Subscriber<Object> subscriber = new NullSubscriber();
+
+		publisher.registerSubscriber(subscriber);
+		publisher.registerSubscriber(subscriber);
+		assertEquals(1, publisher.getSubscribers().size());
+
+		publisher.unregisterSubscriber(subscriber);
+		assertTrue(publisher.getSubscribers().isEmpty());
+	}
+}
@@ -0,0 +1,216 @@
+/*
+ * Copyright 2022-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.quantfabric.messaging;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import com.quantfabric.messaging.SubscriberBufferSettings.WaitStrategy;
+
+public class NativeSubscriberBufferTest
+{
+	private static final int UPDATES = 20000;
+
+	private static class CollectingSubscriber implements BatchAwareSubscriber<Object>
+	{
+		final List<Object> received = new ArrayList<>();
+		final AtomicInteger batches = new AtomicInteger();
+		final CountDownLatch done = new CountDownLatch(1);
+
+		@Override
+		public void sendUpdate(Object data)
+		{
+			received.add(data);
+			if (received.size() == UPDATES)
+				done.countDown();
+		}
+
+		@Override
+		public void sendUpdate(Object[] data)
+		{
+			for (Object item : data)
+				sendUpdate(item);
+		}
+
+		@Override
+		public void onEndOfBatch()
+		{
+			batches.incrementAndGet();
+		}
+	}
+
+	private static void assertDelivered(CollectingSubscriber subscriber) throws InterruptedException
+	{
+		assertTrue(subscriber.done.await(30, TimeUnit.SECONDS));
+		for (int i = 0; i < UPDATES; i++)
+			assertEquals(i, subscriber.received.get(i));
+		assertTrue(subscriber.batches.get() > 0);
+	}
+
+	@Test
+	public void testDeliversInOrderWithEveryWaitStrategy() throws Exception
+	{
+		for (WaitStrategy waitStrategy : WaitStrategy.values())
+		{
+			CollectingSubscriber subscriber = new CollectingSubscriber();
+			NativeSubscriberBuffer buffer = new NativeSubscriberBuffer("test-" + waitStrategy, subscriber,
+					new SubscriberBufferSettings(64, waitStrategy));
+			buffer.start();
+
+			for (int i = 0; i < UPDATES; i++)
+				buffer.sendUpdate(i);
+
+			assertDelivered(subscriber);
+			buffer.dispose();
+		}
+	}
+
+	@Test
+	public void testBoundedPoolSharesThreads() throws Exception
+	{
+		SubscriberBufferPool pool = new SubscriberBufferPool("test", 2);
+		List<NativeSubscriberBuffer> buffers = new ArrayList<>();
+		List<CollectingSubscriber> subscribers = new ArrayList<>();
+
+		for (int i = 0; i < 5; i++)
+		{
+			CollectingSubscriber subscriber = new CollectingSubscriber();
+			NativeSubscriberBuffer buffer = new NativeSubscriberBuffer("test-" + i, subscriber,
+					new SubscriberBufferSettings(128, WaitStrategy.BLOCKING), pool);
+			buffer.start();
+			buffers.add(buffer);
+			subscribers.add(subscriber);
+		}
+
+		assertEquals(2, pool.getThreadCount());
+
+		for (int i = 0; i < UPDATES; i++)
+			for (NativeSubscriberBuffer buffer : buffers)
+				buffer.sendUpdate(i);
+
+		for (CollectingSubscriber subscriber : subscribers)
+			assertDelivered(subscriber);
+
+		for (NativeSubscriberBuffer buffer : buffers)
+			buffer.dispose();
+
+		assertEquals(0, pool.getThreadCount());
+	}
+
+	@Test
+	public void testBoundedPoolDoesNotMixWaitStrategies() throws Exception
+	{
+		SubscriberBufferPool pool = new SubscriberBufferPool("test", 1);
+
+		NativeSubscriberBuffer blocking = new NativeSubscriberBuffer("test-blocking", new CollectingSubscriber(),
+				new SubscriberBufferSettings(64, WaitStrategy.BLOCKING), pool);
+		NativeSubscriberBuffer yielding = new NativeSubscriberBuffer("test-yielding", new CollectingSubscriber(),
+				new SubscriberBufferSettings(64, WaitStrategy.YIELDING), pool);
+		NativeSubscriberBuffer sharing = new NativeSubscriberBuffer("test-sharing", new CollectingSubscriber(),
+				new SubscriberBufferSettings(64, WaitStrategy.BLOCKING), pool);
+
+		blocking.start();
+		yielding.start();
+		sharing.start();
+
+		assertEquals(2, pool.getThreadCount());
+
+		blocking.dispose();
+		yielding.dispose();
+		sharing.dispose();
+
+		assertEquals(0, pool.getThreadCount());
+	}
+
+	private static class CountedValue implements Recyclable
+	{
+		final AtomicInteger references = new AtomicInteger();
+
+		@Override
+		public void retain()
+		{
+			references.incrementAndGet();
+		}
+
+		@Override
+		public void release()
+		{
+			references.decrementAndGet();
+		}
+	}
+
+	@Test
+	public void testStopReleasesUndeliveredValues() throws Exception
+	{
+		final CountDownLatch entered = new CountDownLatch(1);
+		final CountDownLatch proceed = new CountDownLatch(1);
+		final List<Object> received = new ArrayList<>();
+
+		NativeSubscriberBuffer buffer = new NativeSubscriberBuffer("test-stop", new Subscriber<Object>() {
+
+			@Override
+			public void sendUpdate(Object data)
+			{
+				received.add(data);
+				entered.countDown();
+				try
+				{
+					proceed.await();
+				}
+				catch (InterruptedException e)
+				{
+					Thread.currentThread().interrupt();
+				}
+			}
+
+			@Override
+			public void sendUpdate(Object[] data)
+			{
+			}
+		}, new SubscriberBufferSettings(64, WaitStrategy.BLOCKING), new SubscriberBufferPool("test", 0));
+		buffer.start();
+
+		List<CountedValue> values = new ArrayList<>();
+		for (int i = 0; i < 10; i++)
+			values.add(new CountedValue());
+
+		buffer.sendUpdate(values.get(0));
+		assertTrue(entered.await(30, TimeUnit.SECONDS));
+
+		for (int i = 1; i < values.size(); i++)
+			buffer.sendUpdate(values.get(i));
+
+		buffer.stop();
+		proceed.countDown();
+
+		long deadline = System.currentTimeMillis() + 30_000;
+		for (CountedValue value : values)
+			while (value.references.get() != 0 && System.currentTimeMillis() < deadline)
+				Thread.sleep(1);
+
+		for (CountedValue value : values)
+			assertEquals(0, value.references.get());
+		assertEquals(1, received.size());
+	}
+}
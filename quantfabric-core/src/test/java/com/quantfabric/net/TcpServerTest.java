@@ -0,0 +1,137 @@
+/*
+ * Copyright 2022-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.quantfabric.net;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class TcpServerTest
+{
+	private TcpServer server;
+
+	private static int freePort() throws IOException
+	{
+		try (ServerSocket socket = new ServerSocket(0))
+		{
+			return socket.getLocalPort();
+		}
+	}
+
+	private static String readAll(InputStream input) throws IOException
+	{
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		byte[] buffer = new byte[256];
+		int count;
+		while ((count = input.read(buffer)) != -1)
+			bytes.write(buffer, 0, count);
+		return bytes.toString("UTF-8");
+	}
+
+	private static String request(int port, String request) throws IOException
+	{
+		try (Socket socket = new Socket())
+		{
+			socket.connect(new InetSocketAddress("localhost", port), 5000);
+			socket.setSoTimeout(5000);
+			socket.getOutputStream().write(request.getBytes("UTF-8"));
+			socket.shutdownOutput();
+			return readAll(socket.getInputStream());
+		}
+	}
+
+	private void start(RequestHandler handler, int outputBufferSize) throws Exception
+	{
+		int port = freePort();
+		server = new TcpServer(port, handler, 16, outputBufferSize);
+		server.start();
+
+		for (int attempt = 0; attempt < 100; attempt++)
+			try (Socket socket = new Socket("localhost", port))
+			{
+				return;
+			}
+			catch (IOException e)
+			{
+				Thread.sleep(20);
+			}
+	}
+
+	@After
+	public void stop() throws Exception
+	{
+		server.interrupt();
+		server.join(5000);
+	}
+
+	@Test
+	public void slowRequestDoesNotHoldOtherClients() throws Exception
+	{
+		final CountDownLatch release = new CountDownLatch(1);
+
+		start((input, output) -> {
+			try
+			{
+				String request = readAll(input);
+				if (request.equals("slow"))
+					release.await(5, TimeUnit.SECONDS);
+				output.write(("echo:" + request).getBytes("UTF-8"));
+				return true;
+			}
+			catch (Exception e)
+			{
+				return false;
+			}
+		}, 16);
+
+		final AtomicReference<String> slowResponse = new AtomicReference<String>();
+		Thread slowClient = new Thread(() -> {
+			try
+			{
+				slowResponse.set(request(server.getPort(), "slow"));
+			}
+			catch (IOException e)
+			{
+				slowResponse.set(e.toString());
+			}
+		});
+		slowClient.start();
+
+		StringBuilder large = new StringBuilder();
+		for (int i = 0; i < 1000; i++)
+			large.append(i);
+
+		assertEquals("echo:fast", request(server.getPort(), "fast"));
+		assertEquals("echo:" + large, request(server.getPort(), large.toString()));
+
+		release.countDown();
+		slowClient.join(5000);
+
+		assertEquals("echo:slow", slowResponse.get());
+		assertEquals(0, server.getFailedRequestCount());
+	}
+}
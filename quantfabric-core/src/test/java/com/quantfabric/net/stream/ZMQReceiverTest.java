@@ -0,0 +1,122 @@
+/*
+ * Copyright 2022-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.quantfabric.net.stream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.ServerSocket;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.zeromq.ZContext;
+import org.zeromq.ZMQ;
+
+public class ZMQReceiverTest
+{
+	private ZContext context;
+	private ZMQ.Socket sender;
+	private ZMQReceiver receiver;
+
+	@Before
+	public void setUp() throws Exception
+	{
+		int port;
+		try (ServerSocket socket = new ServerSocket(0))
+		{
+			port = socket.getLocalPort();
+		}
+
+		context = new ZContext();
+		sender = context.createSocket(ZMQ.PUSH);
+		sender.bind("tcp://127.0.0.1:" + port);
+		receiver = new ZMQReceiver("127.0.0.1", port);
+	}
+
+	@After
+	public void tearDown() throws Exception
+	{
+		receiver.endInput();
+		context.close();
+	}
+
+	private static byte[] message(int size, int seed)
+	{
+		byte[] message = new byte[size];
+		for (int i = 0; i < size; i++)
+			message[i] = (byte) (i * 31 + seed);
+		return message;
+	}
+
+	@Test
+	public void testMessageIsReadIntoCallersBuffer() throws Exception
+	{
+		byte[] message = message(100, 1);
+		sender.send(message, 0);
+
+		byte[] buffer = new byte[1024];
+		int size = receiver.getInput().read(buffer);
+
+		assertEquals(100, size);
+		assertArrayEquals(message, Arrays.copyOf(buffer, size));
+	}
+
+	@Test
+	public void testMessageLargerThanCallersBufferFails() throws Exception
+	{
+		sender.send(message(2048, 1), 0);
+
+		try
+		{
+			receiver.getInput().read(new byte[1024]);
+			fail("message was truncated");
+		}
+		catch (IOException e)
+		{
+		}
+	}
+
+	@Test
+	public void testByteReadsReturnWholeLargeMessages() throws Exception
+	{
+		byte[] large = message(100000, 1);
+		byte[] small = message(10, 2);
+		sender.send(large, 0);
+		sender.send(small, 0);
+
+		InputStream input = receiver.getInput();
+
+		assertArrayEquals(large, readMessage(input));
+		assertArrayEquals(small, readMessage(input));
+	}
+
+	private static byte[] readMessage(InputStream input) throws IOException
+	{
+		byte[] buffer = new byte[200000];
+		int size = 0;
+		int value;
+
+		while ((value = input.read()) != -1)
+			buffer[size++] = (byte) value;
+
+		return Arrays.copyOf(buffer, size);
+	}
+}
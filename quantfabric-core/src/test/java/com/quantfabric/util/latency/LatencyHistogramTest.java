@@ -0,0 +1,75 @@
+/*
+ * Copyright 2022-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.quantfabric.util.latency;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class LatencyHistogramTest
+{
+	@Test
+	public void percentilesAreWithinBucketPrecision()
+	{
+		LatencyHistogram histogram = new LatencyHistogram("test");
+
+		for (long value = 1; value <= 100_000; value++)
+			histogram.record(value * 10);
+
+		assertEquals(100_000, histogram.getCount());
+		assertEquals(1_000_000, histogram.getValueAtPercentile(100));
+		assertWithin(500_000, histogram.getValueAtPercentile(50));
+		assertWithin(990_000, histogram.getValueAtPercentile(99));
+		assertWithin(999_000, histogram.getValueAtPercentile(99.9));
+		assertEquals(500.005, histogram.getMeanMicros(), 0.001);
+	}
+
+	@Test
+	public void smallValuesAreExactAndLargeOnesClamped()
+	{
+		LatencyHistogram histogram = new LatencyHistogram("test");
+
+		histogram.record(-5);
+		histogram.record(100);
+		histogram.record(Long.MAX_VALUE);
+
+		assertEquals(0, histogram.getValueAtPercentile(0));
+		assertEquals(100, histogram.getValueAtPercentile(50));
+		assertEquals(LatencyHistogram.MAX_VALUE, histogram.getValueAtPercentile(100));
+
+		histogram.reset();
+		assertEquals(0, histogram.getCount());
+		assertEquals(0, histogram.getValueAtPercentile(99));
+	}
+
+	@Test
+	public void bucketsCoverEveryValue()
+	{
+		for (long value = 0; value < 1 << 20; value++)
+		{
+			int index = LatencyHistogram.index(value);
+			assertTrue(value <= LatencyHistogram.highestEquivalentValue(index));
+			assertTrue(index == 0 || value > LatencyHistogram.highestEquivalentValue(index - 1));
+		}
+	}
+
+	private static void assertWithin(long expected, long actual)
+	{
+		assertTrue("expected " + expected + " but was " + actual,
+				actual >= expected && actual <= expected + expected / 64);
+	}
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2022-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.quantfabric.util.timer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class ReplayClockTest
+{
+	private static final long START = 1_600_000_000_000L;
+
+	@Test
+	public void runsTasksInRecordedTimeAtMaxSpeed() throws InterruptedException
+	{
+		final ReplayClock clock = new ReplayClock(ReplayClock.MAX_SPEED);
+		final List<Long> runTimes = new ArrayList<Long>();
+		Runnable task = new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				runTimes.add(clock.currentTimeMillis());
+			}
+		};
+
+		clock.advanceTo(START);
+		clock.getTimerWheel().schedule(task, 60_000);
+		clock.getTimerWheel().schedule(task, 24 * 3600_000L);
+
+		long wallStart = System.nanoTime();
+
+		clock.advanceTo(START + 59_000);
+		assertTrue(runTimes.isEmpty());
+
+		clock.advanceTo(START + 61_000);
+		assertEquals(1, runTimes.size());
+		assertEquals(START + 61_000, (long) runTimes.get(0));
+
+		// going back is ignored
+		clock.advanceTo(START);
+		assertEquals(START + 61_000, clock.currentTimeMillis());
+
+		clock.advanceTo(START + 2 * 24 * 3600_000L);
+		assertEquals(2, runTimes.size());
+		assertEquals(0, clock.getTimerWheel().getPendingCount());
+		assertTrue(TimeUnit.NANOSECONDS.toSeconds(System.nanoTime() - wallStart) < 5);
+	}
+
+	@Test
+	public void resetMovesTimeBackAndDropsPendingTasks() throws InterruptedException
+	{
+		final ReplayClock clock = new ReplayClock(ReplayClock.MAX_SPEED);
+		final List<Long> runTimes = new ArrayList<Long>();
+		Runnable task = new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				runTimes.add(clock.currentTimeMillis());
+			}
+		};
+
+		clock.advanceTo(START + 10_000);
+		clock.getTimerWheel().schedule(task, 60_000);
+
+		clock.reset();
+		assertEquals(0, clock.currentTimeMillis());
+		assertEquals(0, clock.getTimerWheel().getPendingCount());
+
+		clock.advanceTo(START);
+		assertEquals(START, clock.currentTimeMillis());
+
+		clock.getTimerWheel().schedule(task, 1_000);
+		clock.advanceTo(START + 500);
+		assertTrue(runTimes.isEmpty());
+
+		clock.advanceTo(START + 2_000);
+		assertEquals(1, runTimes.size());
+		assertEquals(START + 2_000, (long) runTimes.get(0));
+
+		clock.advanceTo(START + 100_000);
+		assertEquals(1, runTimes.size());
+	}
+
+	@Test
+	public void jumpsOverGapsWithPendingTasks() throws InterruptedException
+	{
+		final ReplayClock clock = new ReplayClock(ReplayClock.MAX_SPEED);
+		final List<Integer> runOrder = new ArrayList<Integer>();
+		long day = 24 * 3600_000L;
+
+		clock.advanceTo(START);
+		for (int i = 3; i >= 1; i--)
+		{
+			final int id = i;
+			clock.getTimerWheel().schedule(new Runnable()
+			{
+				@Override
+				public void run()
+				{
+					runOrder.add(id);
+				}
+			}, i * day);
+		}
+		clock.getTimerWheel().schedule(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				runOrder.add(0);
+			}
+		}, 365 * day);
+
+		long wallStart = System.nanoTime();
+
+		clock.advanceTo(START + 10 * day);
+		assertEquals(Arrays.asList(1, 2, 3), runOrder);
+		assertEquals(1, clock.getTimerWheel().getPendingCount());
+
+		clock.advanceTo(START + 364 * day);
+		assertEquals(3, runOrder.size());
+
+		clock.advanceTo(START + 366 * day);
+		assertEquals(4, runOrder.size());
+		assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - wallStart) < 1000);
+	}
+
+	@Test
+	public void pacesEventsBySpeed() throws InterruptedException
+	{
+		ReplayClock clock = new ReplayClock(10);
+		long wallStart = System.nanoTime();
+
+		for (long time = START; time <= START + 2000; time += 100)
+			clock.advanceTo(time);
+
+		assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - wallStart) >= 190);
+	}
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2022-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.quantfabric.util.timer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class TimerWheelTest
+{
+	private final TimerWheel wheel = new TimerWheel("TimerWheelTest", 5, 8);
+
+	@After
+	public void tearDown()
+	{
+		wheel.stop();
+	}
+
+	@Test
+	public void runsTasksAfterTheirDelayBeyondOneRevolution() throws InterruptedException
+	{
+		final CountDownLatch ran = new CountDownLatch(2);
+		final long start = System.nanoTime();
+		final long[] elapsed = new long[2];
+
+		wheel.schedule(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				elapsed[0] = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+				ran.countDown();
+			}
+		}, 20);
+		wheel.schedule(new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				elapsed[1] = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+				ran.countDown();
+			}
+		}, 130);
+
+		assertTrue(ran.await(5, TimeUnit.SECONDS));
+		assertTrue("ran after " + elapsed[0], elapsed[0] >= 20);
+		assertTrue("ran after " + elapsed[1], elapsed[1] >= 130);
+		assertEquals(0, wheel.getPendingCount());
+	}
+
+	@Test
+	public void cancelledTasksDoNotRun() throws InterruptedException
+	{
+		final AtomicInteger runs = new AtomicInteger();
+		Runnable task = new Runnable()
+		{
+			@Override
+			public void run()
+			{
+				runs.incrementAndGet();
+			}
+		};
+
+		TimerWheel.Timeout cancelled = wheel.schedule(task, 30);
+		TimerWheel.Timeout expired = wheel.schedule(task, 10);
+
+		assertTrue(cancelled.cancel());
+		assertEquals(1, wheel.getPendingCount());
+
+		Thread.sleep(200);
+
+		assertEquals(1, runs.get());
+		assertTrue(expired.isExpired());
+		assertTrue(cancelled.isCancelled());
+		assertFalse(expired.cancel());
+		assertEquals(0, wheel.getPendingCount());
+	}
+}
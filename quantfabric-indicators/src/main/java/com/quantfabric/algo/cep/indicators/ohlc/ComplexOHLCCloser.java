@@ -16,11 +16,10 @@
 package com.quantfabric.algo.cep.indicators.ohlc;
 
 import java.util.Date;
-import java.util.Timer;
-import java.util.TimerTask;
 
 import com.quantfabric.algo.market.datamodel.ComplexAccumulatedOHLC;
 import com.quantfabric.algo.market.datamodel.OHLCUpdate;
+import com.quantfabric.util.timer.TimerWheel;
 
 public class ComplexOHLCCloser extends OHLCCalculator {
 
@@ -36,26 +35,29 @@ public class ComplexOHLCCloser extends OHLCCalculator {
 		super(period, timeOffSet);
 	}
 	
-	public synchronized void update(Date timestamp, OHLCUpdate ohlcUpdate) throws Exception {
+	public ComplexOHLCCloser(String period, int timeOffSet, TimerWheel timerWheel) {
+		
+		super(period, timeOffSet, timerWheel);
+	}
+	
+	public void update(Date timestamp, OHLCUpdate ohlcUpdate) throws Exception {
+
+		update(timestamp.getTime(), ohlcUpdate);
+	}
+
+	public synchronized void update(long timestamp, OHLCUpdate ohlcUpdate) throws Exception {
 
 		if (complexOHLC == null) {
 			init(timestamp, ohlcUpdate.getSnapshotId());
 		}
 
-		if (timestamp.compareTo(this.currentTimeframeInterval.getEnd()) >= 0) {
+		if (timestamp >= currentIntervalEnd) {
 
-			complexOHLC.close(false);
+			complexOHLC.close(false, currentTime());
 			postCurrentState();
 
 			init(timestamp, ohlcUpdate.getSnapshotId());
-
-			try {
-				setupTimeout(calculateDelay(currentTimeframeInterval.getEnd(), timestamp));
-			}
-			catch (Exception e) {
-				System.out.printf("ERROR (TF %s). Inconsistency in time intervals [%s, %s]. Exception message: %s%n", timeframe,
-						currentTimeframeInterval.getEnd(), timestamp, e.getMessage());
-			}
+			setupTimeout(timestamp);
 		}
 
 		complexOHLC.update(ohlcUpdate);
@@ -64,27 +66,17 @@ public class ComplexOHLCCloser extends OHLCCalculator {
 	}
 	
 	@Override
-	protected void setupTimeout(long delay)
+	protected void closeOnTimeout()
 	{
-		if (timer != null)
-			timer.cancel();
+		if (complexOHLC == null)
+			return;
 
-		timer = new Timer(true);
-		
-		timer.schedule(
-				new TimerTask() 
-				{
-					@Override
-					public void run()
-					{
-						complexOHLC.close(true);
-						postCurrentState();
-						complexOHLC = null;
-					}
-				}, delay);
+		complexOHLC.close(true, currentTime());
+		postCurrentState();
+		complexOHLC = null;
 	}
 	
-	protected void init(Date timestamp, long snapshotId) {
+	protected void init(long timestamp, long snapshotId) {
 		
 		super.init(timestamp);
 		complexOHLC = new ComplexAccumulatedOHLC(snapshotId);
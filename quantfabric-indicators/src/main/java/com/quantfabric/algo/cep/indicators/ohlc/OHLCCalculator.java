@@ -16,13 +16,12 @@
 package com.quantfabric.algo.cep.indicators.ohlc;
 
 import java.util.Date;
-import java.util.Timer;
-import java.util.TimerTask;
 
+import com.quantfabric.algo.market.datamodel.MDEvent;
 import com.quantfabric.algo.market.datamodel.OHLCValue;
-import com.quantfabric.util.timeframes.Interval;
 import com.quantfabric.util.timeframes.Timeframe;
 import com.quantfabric.util.timeframes.TimeframeFactory;
+import com.quantfabric.util.timer.TimerWheel;
 
 
 
@@ -30,11 +29,14 @@ public class OHLCCalculator
 {
 	protected OHLCValue currentOhlcValue = null;
 	protected Timeframe timeframe;
-	protected Interval currentTimeframeInterval = null;
-	protected Timer timer;
+	/** end (epoch millis) of the current bar */
+	protected long currentIntervalEnd;
+	protected TimerWheel.Timeout timeout;
+	private long timeoutId;
 	protected final static int LATE_EVENT_SLACK_MILLS = 30000;
 	protected volatile OHLCUpdateListener listener; 
 	protected int timeOffset;
+	private final TimerWheel timerWheel;
 	
 	public OHLCCalculator(String period) {
 		
@@ -42,11 +44,33 @@ public class OHLCCalculator
 	}
 	
 	public OHLCCalculator(String period, int timeOffSet)
+	{
+		this(period, timeOffSet, null);
+	}
+	
+	/**
+	 * @param timerWheel wheel closing the bars by timeout, <code>null</code> for the shared one
+	 */
+	public OHLCCalculator(String period, int timeOffSet, TimerWheel timerWheel)
 	{
 		this.timeframe = TimeframeFactory.getTimeframe(period);
 		this.timeOffset = timeOffSet;	
+		this.timerWheel = timerWheel;
 	}		
 	
+	protected TimerWheel getTimerWheel()
+	{
+		return timerWheel != null ? timerWheel : TimerWheel.getShared();
+	}
+	
+	/**
+	 * @return time of the wheel's clock, bars are closed at this time
+	 */
+	protected long currentTime()
+	{
+		return timerWheel != null ? timerWheel.getClock().currentTimeMillis() : MDEvent.getCurrentTime();
+	}
+	
 	public int getTimeOffset() {
 		return timeOffset;
 	}
@@ -60,21 +84,21 @@ public class OHLCCalculator
 		return timeframe;
 	}
 
-	public void update(long timestamp, long price) throws Exception
+	public void update(Date timestamp, long price) throws Exception
 	{
-		update(new Date(timestamp), price);
+		update(timestamp.getTime(), price);
 	}
 	
-	public synchronized void update(Date timestamp, long price) throws Exception
+	public synchronized void update(long timestamp, long price) throws Exception
 	{
 		if (currentOhlcValue == null)
 		{
 			init(timestamp);
 		}
 					
-		if (timestamp.compareTo(this.currentTimeframeInterval.getEnd()) >= 0)
+		if (timestamp >= currentIntervalEnd)
 		{
-			currentOhlcValue.close(false);
+			currentOhlcValue.close(false, currentTime());
 			postCurrentState();
 			init(timestamp);
 			/*when the history provider includes the data on a intersection of summer and winter time
@@ -87,15 +111,10 @@ public class OHLCCalculator
 			  ...... 
 			 * 
 			 * */
-			try {
-				setupTimeout(calculateDelay(currentTimeframeInterval.getEnd(), timestamp));
-			} catch (Exception e) {
-				System.out.printf("ERROR (TF %s). Inconsistency in time intervals [%s, %s]. Exception message: %s%n",
-						timeframe, currentTimeframeInterval.getEnd(), timestamp, e.getMessage());
-			}
+			setupTimeout(timestamp);
 		}
 		
-		currentOhlcValue.update(timestamp.getTime(), price);
+		currentOhlcValue.update(timestamp, price);
 		
 		postCurrentState();
 	}	
@@ -124,41 +143,68 @@ public class OHLCCalculator
 		}
 	}
 
-	protected void setupTimeout(long delay)
+	/**
+	 * Registers the deadline of the current bar with the timer wheel, a bar without
+	 * updates is closed once its interval (and the slack for late events) is over.
+	 */
+	protected void setupTimeout(long lastUpdateTime)
 	{
-		if (timer != null)
-			timer.cancel();
+		if (timeout != null)
+			timeout.cancel();
 
-		timer = new Timer(true);
+		final long id = ++timeoutId;
+		long delay = calculateDelay(currentIntervalEnd, lastUpdateTime);
+		
+		if (delay < 0)
+		{
+			System.out.printf("ERROR (TF %s). Inconsistency in time intervals [%s, %s].%n",
+					timeframe, new Date(currentIntervalEnd), new Date(lastUpdateTime));
+			return;
+		}
 		
-		timer.schedule(
-				new TimerTask() 
+		timeout = getTimerWheel().schedule(
+				new Runnable() 
 				{
 					@Override
 					public void run()
 					{
-						currentOhlcValue.close(true);
-						postCurrentState();
-						currentOhlcValue = null;
+						onTimeout(id);
 					}
 				}, delay);
 	}
+	
+	private synchronized void onTimeout(long id)
+	{
+		// a bar rolled over meanwhile has a timeout of its own
+		if (id == timeoutId)
+			closeOnTimeout();
+	}
+	
+	protected void closeOnTimeout()
+	{
+		if (currentOhlcValue == null)
+			return;
+		
+		currentOhlcValue.close(true, currentTime());
+		postCurrentState();
+		currentOhlcValue = null;
+	}
 
 	public void init(OHLCValue value)
 	{
-		currentTimeframeInterval = this.timeframe.interval(new Date(value.getOpenSourceTimestamp()), this.timeOffset);
+		currentIntervalEnd = this.timeframe.intervalEnd(value.getOpenSourceTimestamp(), this.timeOffset);
 		currentOhlcValue = value;
 	}
 	
-	protected void init(Date timestamp)
+	protected void init(long timestamp)
 	{
-		currentTimeframeInterval = this.timeframe.interval(timestamp, this.timeOffset);
+		currentIntervalEnd = this.timeframe.intervalEnd(timestamp, this.timeOffset);
 		currentOhlcValue = new OHLCValue(this.timeframe.getLengthInSeconds());
 	}
 	
-	protected static long calculateDelay(Date endIntervalTime, Date lastUpdateTime)
+	protected static long calculateDelay(long endIntervalTime, long lastUpdateTime)
 	{
-		return endIntervalTime.getTime() - lastUpdateTime.getTime() + LATE_EVENT_SLACK_MILLS; // leave some time for late comers
+		return endIntervalTime - lastUpdateTime + LATE_EVENT_SLACK_MILLS; // leave some time for late comers
 	}
 	
 	public boolean isInitialized()
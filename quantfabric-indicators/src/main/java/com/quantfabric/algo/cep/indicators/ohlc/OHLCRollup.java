@@ -0,0 +1,313 @@
+/*
+ * Copyright 2022-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.quantfabric.algo.cep.indicators.ohlc;
+
+import java.util.Arrays;
+import java.util.Comparator;
+
+import com.quantfabric.algo.market.datamodel.MDEvent;
+import com.quantfabric.algo.market.datamodel.OHLCValue;
+import com.quantfabric.util.timeframes.Timeframe;
+import com.quantfabric.util.timeframes.TimeframeFactory;
+import com.quantfabric.util.timer.TimerWheel;
+
+/**
+ * Bars of several timeframes of one feed built from a single tick stream. A tick updates
+ * the finest bar, the coarser bars are derived from it: the close propagates to all of them,
+ * a new high or low only as long as it's new for the finer bar too, and boundaries are checked
+ * only when the finest bar rolls over. Only the bars a tick changes are posted, so a tick that
+ * doesn't move any price isn't posted at all and a rollover posts the closed bars only, not
+ * the untouched coarser ones.
+ * <p>
+ * Timeframes must be multiples of the finest one, so every boundary of a coarser bar is
+ * a boundary of the finest bar. Bars without updates are closed by timeout the way
+ * {@link OHLCCalculator} closes them.
+ */
+public class OHLCRollup
+{
+	private final Timeframe[] timeframes;
+	private final int timeOffset;
+	private final OHLCValue[] bars;
+	private final long[] intervalEnds;
+	private final TimerWheel timerWheel;
+	private volatile OHLCUpdateListener listener;
+	private TimerWheel.Timeout timeout;
+	private long timeoutId;
+	/** some bars are still missing after {@link #init(OHLCValue)} */
+	private boolean incomplete;
+
+	public OHLCRollup(String[] periods)
+	{
+		this(periods, 0);
+	}
+
+	public OHLCRollup(String[] periods, int timeOffset)
+	{
+		this(periods, timeOffset, null);
+	}
+
+	/**
+	 * @param timerWheel wheel closing the bars by timeout, <code>null</code> for the shared one
+	 */
+	public OHLCRollup(String[] periods, int timeOffset, TimerWheel timerWheel)
+	{
+		Timeframe[] sorted = new Timeframe[periods.length];
+
+		for (int i = 0; i < periods.length; i++)
+			sorted[i] = TimeframeFactory.getTimeframe(periods[i]);
+
+		Arrays.sort(sorted, Comparator.comparingInt(Timeframe::getLengthInSeconds));
+
+		for (Timeframe timeframe : sorted)
+			if (timeframe.getLengthInSeconds() % sorted[0].getLengthInSeconds() != 0)
+				throw new IllegalArgumentException("Timeframe of " + timeframe.getLengthInSeconds()
+						+ " s isn't a multiple of the finest one (" + sorted[0].getLengthInSeconds() + " s)");
+
+		this.timeframes = sorted;
+		this.timeOffset = timeOffset;
+		this.bars = new OHLCValue[sorted.length];
+		this.intervalEnds = new long[sorted.length];
+		this.timerWheel = timerWheel;
+	}
+
+	/**
+	 * @return timeframes from the finest to the coarsest one
+	 */
+	public Timeframe[] getTimeframes()
+	{
+		return timeframes.clone();
+	}
+
+	/**
+	 * @return index of the timeframe of the given length, <code>-1</code> when it isn't rolled up
+	 */
+	public int indexOf(int lengthInSeconds)
+	{
+		for (int i = 0; i < timeframes.length; i++)
+			if (timeframes[i].getLengthInSeconds() == lengthInSeconds)
+				return i;
+		return -1;
+	}
+
+	public void setListener(OHLCUpdateListener listener)
+	{
+		this.listener = listener;
+	}
+
+	public void removeListener()
+	{
+		setListener(null);
+	}
+
+	public synchronized boolean isInitialized(int index)
+	{
+		return bars[index] != null;
+	}
+
+	/**
+	 * Continues the given (open) bar, e.g. the last bar of a history table.
+	 */
+	public synchronized void init(OHLCValue value)
+	{
+		int index = indexOf(value.getTimeFrameInSeconds());
+
+		if (index < 0)
+			throw new IllegalArgumentException("Timeframe of " + value.getTimeFrameInSeconds() + " s isn't rolled up");
+
+		bars[index] = value;
+		intervalEnds[index] = timeframes[index].intervalEnd(value.getOpenSourceTimestamp(), timeOffset);
+		incomplete = true;
+	}
+
+	public synchronized void update(long timestamp, long price) throws Exception
+	{
+		if (bars[0] == null || timestamp >= intervalEnds[0] || incomplete)
+			rollOver(timestamp);
+
+		OHLCValue finest = bars[0];
+		boolean isNewHigh = finest.getHigh() == 0 || price > finest.getHigh();
+		boolean isNewLow = finest.getLow() == 0 || price < finest.getLow();
+		boolean isNewClose = price != finest.getClose() || finest.getOpenSourceTimestamp() == 0;
+
+		if (!isNewHigh && !isNewLow && !isNewClose)
+		{
+			// nothing to publish, the bars are just no longer new
+			for (int i = 0; i < bars.length; i++)
+			{
+				bars[i].setJustOpened(false);
+				bars[i].setCloseSourceTimestamp(timestamp);
+			}
+			return;
+		}
+
+		finest.update(timestamp, price);
+		post(finest);
+
+		for (int i = 1; i < bars.length; i++)
+		{
+			OHLCValue bar = bars[i];
+
+			if (bar.getOpenSourceTimestamp() == 0)
+			{
+				bar.update(timestamp, price);
+				post(bar);
+				continue;
+			}
+
+			boolean isChanged = price != bar.getClose();
+
+			bar.setJustOpened(false);
+			bar.setClose(price);
+			bar.setCloseSourceTimestamp(timestamp);
+
+			// a price that isn't a new extreme of a finer bar isn't one of a coarser bar either
+			if (isNewHigh && (isNewHigh = price > bar.getHigh()))
+			{
+				bar.setHigh(price);
+				bar.setHighSourceTimestamp(timestamp);
+				isChanged = true;
+			}
+			if (isNewLow && (isNewLow = price < bar.getLow()))
+			{
+				bar.setLow(price);
+				bar.setLowSourceTimestamp(timestamp);
+				isChanged = true;
+			}
+
+			// e.g. a new high of the finest bar within the range of a coarser one
+			if (!isChanged)
+				continue;
+
+			bar.setTypical((bar.getHigh() + bar.getLow() + price) / 3);
+			bar.setBarSize(price - bar.getOpen());
+			post(bar);
+		}
+	}
+
+	/**
+	 * Closes the bars whose intervals are over and opens the new ones.
+	 */
+	private void rollOver(long timestamp)
+	{
+		for (int i = 0; i < bars.length; i++)
+		{
+			if (bars[i] != null && timestamp < intervalEnds[i])
+				continue;
+
+			if (bars[i] != null)
+			{
+				close(bars[i], false);
+			}
+
+			bars[i] = new OHLCValue(timeframes[i].getLengthInSeconds());
+			intervalEnds[i] = timeframes[i].intervalEnd(timestamp, timeOffset);
+		}
+
+		incomplete = false;
+		setupTimeout(timestamp);
+	}
+
+	/**
+	 * Schedules closing of the bars ending first, the slack for late events is the one
+	 * of {@link OHLCCalculator}.
+	 */
+	private void setupTimeout(long lastUpdateTime)
+	{
+		if (timeout != null)
+			timeout.cancel();
+
+		final long id = ++timeoutId;
+		long end = nearestIntervalEnd();
+
+		if (end == Long.MAX_VALUE)
+			return;
+
+		long delay = OHLCCalculator.calculateDelay(end, lastUpdateTime);
+
+		if (delay < 0)
+			return;
+
+		timeout = getTimerWheel().schedule(
+				new Runnable()
+				{
+					@Override
+					public void run()
+					{
+						onTimeout(id);
+					}
+				}, delay);
+	}
+
+	/**
+	 * Closes the bars ending first and waits for the next ones, a coarser bar is closed
+	 * in time even if the ticks stopped in the middle of it.
+	 */
+	private synchronized void onTimeout(long id)
+	{
+		if (id != timeoutId)
+			return;
+
+		long end = nearestIntervalEnd();
+
+		for (int i = 0; i < bars.length; i++)
+			if (bars[i] != null && intervalEnds[i] == end)
+			{
+				close(bars[i], true);
+				bars[i] = null;
+			}
+
+		// the timeout fired once the slack after the end was over
+		setupTimeout(end + OHLCCalculator.LATE_EVENT_SLACK_MILLS);
+	}
+
+	private TimerWheel getTimerWheel()
+	{
+		return timerWheel != null ? timerWheel : TimerWheel.getShared();
+	}
+
+	private long currentTime()
+	{
+		return timerWheel != null ? timerWheel.getClock().currentTimeMillis() : MDEvent.getCurrentTime();
+	}
+
+	private long nearestIntervalEnd()
+	{
+		long end = Long.MAX_VALUE;
+
+		for (int i = 0; i < bars.length; i++)
+			if (bars[i] != null && intervalEnds[i] < end)
+				end = intervalEnds[i];
+		return end;
+	}
+
+	/**
+	 * A closed bar is the last state of a bar, never a new one.
+	 */
+	private void close(OHLCValue bar, boolean timeoutExpired)
+	{
+		bar.setJustOpened(false);
+		bar.close(timeoutExpired, currentTime());
+		post(bar);
+	}
+
+	private void post(OHLCValue bar)
+	{
+		OHLCUpdateListener currentListener = listener;
+
+		if (currentListener != null)
+			currentListener.update(bar.clone());
+	}
+}
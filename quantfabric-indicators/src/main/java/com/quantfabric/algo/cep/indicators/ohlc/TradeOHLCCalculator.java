@@ -18,6 +18,7 @@ package com.quantfabric.algo.cep.indicators.ohlc;
 import java.util.Date;
 
 import com.quantfabric.algo.market.datamodel.MDTrade.MDTradeSide;
+import com.quantfabric.util.timer.TimerWheel;
 
 
 public class TradeOHLCCalculator extends OHLCCalculator {
@@ -33,27 +34,32 @@ public class TradeOHLCCalculator extends OHLCCalculator {
 		super(period, timeOffSet);
 	}	
 	
-	public synchronized void update(Date timestamp, long price, MDTradeSide tradeSide) throws Exception
+	public TradeOHLCCalculator(String period, int timeOffSet, TimerWheel timerWheel)
+	{
+		super(period, timeOffSet, timerWheel);
+	}	
+	
+	public void update(Date timestamp, long price, MDTradeSide tradeSide) throws Exception
+	{
+		update(timestamp.getTime(), price, tradeSide);
+	}
+	
+	public synchronized void update(long timestamp, long price, MDTradeSide tradeSide) throws Exception
 	{	
 		if (currentOhlcValue == null)
 		{
 			init(timestamp);
 		}
 					
-		if (timestamp.compareTo(this.currentTimeframeInterval.getEnd()) >= 0)
+		if (timestamp >= currentIntervalEnd)
 		{
-			currentOhlcValue.close(false);
+			currentOhlcValue.close(false, currentTime());
 			postCurrentState();
 			init(timestamp);
-			try {
-				setupTimeout(calculateDelay(currentTimeframeInterval.getEnd(), timestamp));
-			} catch (Exception e) {
-				System.out.printf("ERROR (TF %s). Inconsistency in time intervals [%s, %s]. Exception message: %s%n",
-                        timeframe, currentTimeframeInterval.getEnd(), timestamp, e.getMessage());
-			}
+			setupTimeout(timestamp);
 		}
 		
-		currentOhlcValue.update(timestamp.getTime(), price, tradeSide);	
+		currentOhlcValue.update(timestamp, price, tradeSide);	
 		
 		postCurrentState();
 	}
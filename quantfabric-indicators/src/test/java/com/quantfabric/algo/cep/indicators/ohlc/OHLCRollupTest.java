@@ -0,0 +1,214 @@
+/*
+ * Copyright 2022-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.quantfabric.algo.cep.indicators.ohlc;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.quantfabric.algo.market.datamodel.ComplexAccumulatedOHLC;
+import com.quantfabric.algo.market.datamodel.OHLCValue;
+import com.quantfabric.util.timer.ReplayClock;
+
+public class OHLCRollupTest
+{
+	/** start of a 5 minutes interval */
+	private static final long START = 1700000100000L;
+	private static final long MINUTE = 60000L;
+
+	private final List<OHLCValue> posted = new ArrayList<OHLCValue>();
+	private ReplayClock clock;
+	private OHLCRollup rollup;
+
+	@Before
+	public void setUp()
+	{
+		posted.clear();
+		clock = new ReplayClock(ReplayClock.MAX_SPEED);
+		rollup = new OHLCRollup(new String[] { "5 m", "1 m" }, 0, clock.getTimerWheel());
+		rollup.setListener(new OHLCUpdateListener()
+		{
+			@Override
+			public void update(OHLCValue value)
+			{
+				posted.add(value);
+			}
+
+			@Override
+			public void update(ComplexAccumulatedOHLC value)
+			{
+			}
+		});
+	}
+
+	private void tick(long timestamp, long price) throws Exception
+	{
+		clock.advanceTo(timestamp);
+		rollup.update(timestamp, price);
+	}
+
+	private List<OHLCValue> takePosted()
+	{
+		List<OHLCValue> values = new ArrayList<OHLCValue>(posted);
+		posted.clear();
+		return values;
+	}
+
+	private static void assertBar(OHLCValue bar, int minutes, long open, long high, long low, long close, boolean closed)
+	{
+		assertEquals(minutes * 60, bar.getTimeFrameInSeconds());
+		assertEquals(open, bar.getOpen());
+		assertEquals(high, bar.getHigh());
+		assertEquals(low, bar.getLow());
+		assertEquals(close, bar.getClose());
+		assertEquals(closed, bar.isClosed());
+	}
+
+	@Test
+	public void testTimeframesAreSortedFromTheFinest()
+	{
+		assertEquals(60, rollup.getTimeframes()[0].getLengthInSeconds());
+		assertEquals(1, rollup.indexOf(300));
+		assertEquals(-1, rollup.indexOf(3600));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testTimeframeNotMultipleOfFinestIsRejected()
+	{
+		new OHLCRollup(new String[] { "2 m", "3 m" });
+	}
+
+	@Test
+	public void testRolloverOfMultipleTimeframes() throws Exception
+	{
+		tick(START + 1000, 100);
+		List<OHLCValue> values = takePosted();
+		assertEquals(2, values.size());
+		assertBar(values.get(0), 1, 100, 100, 100, 100, false);
+		assertBar(values.get(1), 5, 100, 100, 100, 100, false);
+
+		tick(START + 2000, 105);
+		assertEquals(2, takePosted().size());
+
+		tick(START + MINUTE + 1000, 103);
+		values = takePosted();
+		assertEquals(3, values.size());
+		assertBar(values.get(0), 1, 100, 105, 100, 105, true);
+		assertFalse(values.get(0).isCloseByTimeout());
+		assertEquals(START + MINUTE + 1000, values.get(0).getCloseTimestamp());
+		assertBar(values.get(1), 1, 103, 103, 103, 103, false);
+		assertBar(values.get(2), 5, 100, 105, 100, 103, false);
+
+		tick(START + 5 * MINUTE + 1000, 110);
+		values = takePosted();
+		assertEquals(4, values.size());
+		assertBar(values.get(0), 1, 103, 103, 103, 103, true);
+		assertBar(values.get(1), 5, 100, 105, 100, 103, true);
+		assertBar(values.get(2), 1, 110, 110, 110, 110, false);
+		assertBar(values.get(3), 5, 110, 110, 110, 110, false);
+	}
+
+	@Test
+	public void testOnlyChangedBarsArePosted() throws Exception
+	{
+		tick(START + 1000, 100);
+		tick(START + 2000, 110);
+		tick(START + MINUTE + 1000, 105);
+		takePosted();
+
+		// no price moved
+		tick(START + MINUTE + 2000, 105);
+		assertEquals(0, takePosted().size());
+
+		// a new high of the 1 m bar within the range of the 5 m bar, with the same close
+		tick(START + MINUTE + 3000, 107);
+		tick(START + MINUTE + 4000, 105);
+		takePosted();
+		tick(START + 2 * MINUTE + 1000, 105);
+		List<OHLCValue> values = takePosted();
+		assertEquals(2, values.size());
+		assertBar(values.get(0), 1, 105, 107, 105, 105, true);
+		assertBar(values.get(1), 1, 105, 105, 105, 105, false);
+
+		tick(START + 2 * MINUTE + 2000, 108);
+		values = takePosted();
+		assertEquals(2, values.size());
+		assertBar(values.get(0), 1, 105, 108, 105, 108, false);
+		assertBar(values.get(1), 5, 100, 110, 100, 108, false);
+	}
+
+	@Test
+	public void testBarsAreClosedByTimeout() throws Exception
+	{
+		tick(START + 1000, 100);
+		takePosted();
+
+		clock.advanceTo(START + MINUTE + OHLCCalculator.LATE_EVENT_SLACK_MILLS + 1000);
+		List<OHLCValue> values = takePosted();
+		assertEquals(1, values.size());
+		assertBar(values.get(0), 1, 100, 100, 100, 100, true);
+		assertTrue(values.get(0).isCloseByTimeout());
+		assertEquals(clock.currentTimeMillis(), values.get(0).getCloseTimestamp());
+		assertFalse(rollup.isInitialized(0));
+		assertTrue(rollup.isInitialized(1));
+
+		clock.advanceTo(START + 5 * MINUTE + OHLCCalculator.LATE_EVENT_SLACK_MILLS + 2000);
+		values = takePosted();
+		assertEquals(1, values.size());
+		assertBar(values.get(0), 5, 100, 100, 100, 100, true);
+		assertTrue(values.get(0).isCloseByTimeout());
+		assertFalse(rollup.isInitialized(1));
+
+		tick(START + 6 * MINUTE, 90);
+		values = takePosted();
+		assertEquals(2, values.size());
+		assertBar(values.get(0), 1, 90, 90, 90, 90, false);
+		assertBar(values.get(1), 5, 90, 90, 90, 90, false);
+	}
+
+	@Test
+	public void testTimeoutIsPostponedByRollover() throws Exception
+	{
+		tick(START + 1000, 100);
+		tick(START + MINUTE + 1000, 101);
+		takePosted();
+
+		clock.advanceTo(START + MINUTE + OHLCCalculator.LATE_EVENT_SLACK_MILLS + 1000);
+		assertEquals(0, takePosted().size());
+		assertTrue(rollup.isInitialized(0));
+	}
+
+	@Test
+	public void testResumeOfHistoryBar() throws Exception
+	{
+		rollup.init(new OHLCValue(300, 100, START, 120, START + 1000, 90, START + 2000, 110, START + 3000, false, false));
+		assertFalse(rollup.isInitialized(0));
+		assertTrue(rollup.isInitialized(1));
+
+		tick(START + MINUTE + 1000, 125);
+		List<OHLCValue> values = takePosted();
+		assertEquals(2, values.size());
+		assertBar(values.get(0), 1, 125, 125, 125, 125, false);
+		assertBar(values.get(1), 5, 100, 125, 90, 125, false);
+		assertEquals(START, values.get(1).getOpenSourceTimestamp());
+	}
+}
@@ -37,6 +37,8 @@ import com.quantfabric.algo.market.gate.access.MarketDataServiceHostFactory;
 import com.quantfabric.algo.market.gate.access.product.ProductManager;
 import com.quantfabric.algo.market.gate.access.product.SimpleProduct;
 import com.quantfabric.algo.market.gate.access.product.publisher.PublishersContainer;
+import com.quantfabric.algo.market.gate.access.product.publisher.ConflatingPublisher;
+import com.quantfabric.algo.market.gateway.access.product.publisher.Publisher;
 import com.quantfabric.algo.market.gate.access.product.publisher.ZMQPublisher;
 import com.quantfabric.algo.market.gateway.InstrumentsManager;
 import com.quantfabric.algo.market.gateway.MarketConnection;
@@ -71,6 +73,7 @@ import com.quantfabric.algo.market.gateway.feed.MarketDataFeed.MarketDataType;
 import com.quantfabric.persistence.esper.PersistingUpdateListenerConfig;
 import com.quantfabric.util.ConfigurationException;
 import com.quantfabric.util.XMLConfigParser;
+import com.quantfabric.util.timer.ReplayClock;
 
 import static com.quantfabric.algo.configuration.QuantfabricConstants.*;
 
@@ -248,8 +251,14 @@ public class ConfigProvider {
                     if (contentTypeStr != null)
                         contentType = ContentType.valueOf(contentTypeStr.trim());
 
-                    if (publisherType.equals("zmq"))
-                        publishersContainer.addPublisher(productCode, contentType, ZMQPublisher.fromXml(element, endpointAddress));
+                    if (publisherType.equals("zmq")) {
+                        Publisher publisher = ZMQPublisher.fromXml(element, endpointAddress);
+
+                        if (Boolean.parseBoolean(element.getAttribute("conflate")))
+                            publisher = ConflatingPublisher.fromXml(element, publisher);
+
+                        publishersContainer.addPublisher(productCode, contentType, publisher);
+                    }
                 }
             }
         }
@@ -373,6 +382,16 @@ public class ConfigProvider {
                             feed.setChannel(attrs.get(CHANNEL).toString());
                         }
 
+                        if (attrs.containsKey(ORDER_BOOK_CACHE)) {
+
+                            String orderBookCacheStr = attrs.get(ORDER_BOOK_CACHE).toString();
+
+                            feed.setOrderBookCacheType(MarketDataFeed.OrderBookCacheType.valueOf(orderBookCacheStr.toUpperCase()));
+                        }
+
+                        if (attrs.containsKey(POOLED_ITEMS))
+                            feed.setPooledItems(Boolean.parseBoolean(attrs.get(POOLED_ITEMS).toString()));
+
                         feed.setFeedGroupId((Integer) attrs.get(FEED_GROUP_ID));
                         connection.addFeed(feed);
                     }
@@ -486,6 +505,13 @@ public class ConfigProvider {
                     task.setExecuteDelay(executeDelay);
                 }
 
+                Node replaySpeedNode = element.getAttributes().getNamedItem("replaySpeed");
+                if (replaySpeedNode != null) {
+                    String replaySpeed = replaySpeedNode.getTextContent().trim();
+                    task.setReplaySpeed("max".equalsIgnoreCase(replaySpeed) ?
+                            ReplayClock.MAX_SPEED : Double.parseDouble(replaySpeed));
+                }
+
                 Node startTimeNode = element.getAttributes().getNamedItem("startTime");
                 if (startTimeNode != null) {
                     SimpleDateFormat dateFormat = (SimpleDateFormat) SimpleDateFormat.getDateInstance();
@@ -642,6 +668,14 @@ public class ConfigProvider {
             if (channel != null)
                 attrs.put(CHANNEL, channel.getTextContent());
 
+            Node orderBookCache = element.getAttributes().getNamedItem(ORDER_BOOK_CACHE);
+            if (orderBookCache != null)
+                attrs.put(ORDER_BOOK_CACHE, orderBookCache.getTextContent());
+
+            Node pooledItems = element.getAttributes().getNamedItem(POOLED_ITEMS);
+            if (pooledItems != null)
+                attrs.put(POOLED_ITEMS, pooledItems.getTextContent());
+
             DOMElementIterator feedNodeIterator = new DOMElementIterator(element.getChildNodes());
             Map<String, Double> creditLimits = new HashMap<String, Double>();
             while (feedNodeIterator.hasNext()) {
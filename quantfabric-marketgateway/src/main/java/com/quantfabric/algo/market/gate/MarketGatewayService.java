@@ -25,6 +25,7 @@ import java.util.Properties;
 import java.util.concurrent.ConcurrentHashMap;
 
 import com.quantfabric.algo.market.gate.access.MarketDataServiceHost;
+import com.quantfabric.algo.market.gate.access.product.publisher.PublishersContainer;
 import com.quantfabric.algo.market.gate.jmx.MGatewayJMXProvider;
 import com.quantfabric.algo.market.gateway.*;
 import org.slf4j.Logger;
@@ -80,6 +81,7 @@ public class MarketGatewayService extends QuantfabricRuntimeService implements M
 		disconnectAll();
 		stopAllPiplines();
 		stopAllFeedHandlers();
+		closeAllPublishers();
 	}
 	
 	private static final String DEFAULT_PIPPELINE = "default";
@@ -153,6 +155,13 @@ public class MarketGatewayService extends QuantfabricRuntimeService implements M
 		return publisherManagers.get(pubManagerName);
 	}
 	
+	private void closeAllPublishers()
+	{
+		for (PublishersManager pubManager : publisherManagers.values())
+			if (pubManager instanceof PublishersContainer)
+				((PublishersContainer) pubManager).close();
+	}
+	
 	public Configuration getCepConfig() {
 		return cepConfig;
 	}
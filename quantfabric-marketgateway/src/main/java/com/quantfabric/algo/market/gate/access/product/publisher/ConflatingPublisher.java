@@ -0,0 +1,300 @@
+/*
+ * Copyright 2022-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.quantfabric.algo.market.gate.access.product.publisher;
+
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.w3c.dom.Node;
+
+import com.quantfabric.algo.market.gate.access.product.producer.FullBook;
+import com.quantfabric.algo.market.gate.access.product.producer.OHLC;
+import com.quantfabric.algo.market.gate.access.product.producer.TopOfBook;
+import com.quantfabric.algo.market.gate.access.product.producer.TradeOHLC;
+import com.quantfabric.algo.market.gateway.access.product.publisher.Publisher;
+import com.quantfabric.algo.market.gateway.access.product.publisher.PublisherAddress;
+
+/**
+ * Publisher decorator which never blocks the producing thread on a consumer. Book states
+ * ({@link TopOfBook}, {@link FullBook}) and open bars are kept in a slot per product,
+ * so the states published in between two sends are coalesced into the latest one. Other
+ * beans (incremental updates, closed bars) are queued in order up to the given capacity
+ * and dropped beyond it.
+ * <p>
+ * A sender thread drains the slots and the queue at the pace of the underlying publisher,
+ * optionally limited to the given rate. Every product is expected to be published from
+ * a single thread.
+ * <p>
+ * Closing the publisher stops the sender, beans still waiting are discarded, and closes
+ * the underlying publisher if it is {@link AutoCloseable}.
+ */
+public class ConflatingPublisher implements Publisher, AutoCloseable
+{
+	private static final Logger log = LoggerFactory.getLogger(ConflatingPublisher.class);
+
+	public static final int DEFAULT_CAPACITY = 4096;
+
+	private static class Slot
+	{
+		private final AtomicReference<Object> value = new AtomicReference<Object>();
+	}
+
+	private final Publisher publisher;
+	private final int capacity;
+	private final long sendIntervalNanos;
+
+	private final ConcurrentHashMap<Class<?>, Map<String, Slot>> slots = 
+			new ConcurrentHashMap<Class<?>, Map<String, Slot>>();
+	private final BlockingQueue<Object> pending = new LinkedBlockingQueue<Object>();
+	private final AtomicInteger queued = new AtomicInteger();
+
+	private final AtomicLong conflatedCount = new AtomicLong();
+	private final AtomicLong droppedCount = new AtomicLong();
+
+	private final Thread sender;
+	private volatile boolean closed;
+
+	/**
+	 * @param maxRate the maximum of beans sent per second, <code>0</code> for the pace
+	 * of the underlying publisher
+	 */
+	public ConflatingPublisher(Publisher publisher, int capacity, int maxRate)
+	{
+		if (capacity <= 0)
+			throw new IllegalArgumentException("capacity must be positive");
+
+		this.publisher = publisher;
+		this.capacity = capacity;
+		this.sendIntervalNanos = maxRate > 0 ? TimeUnit.SECONDS.toNanos(1) / maxRate : 0;
+
+		this.sender = new Thread(this::send, "ConflatingPublisher[" + publisher.getAddress().getPort() + "]");
+		this.sender.setDaemon(true);
+		this.sender.start();
+	}
+
+	public ConflatingPublisher(Publisher publisher)
+	{
+		this(publisher, DEFAULT_CAPACITY, 0);
+	}
+
+	@Override
+	public PublisherAddress getAddress()
+	{
+		return publisher.getAddress();
+	}
+
+	@Override
+	public void publish(Object dataBean) throws Exception
+	{
+		if (closed)
+			throw new IllegalStateException("Publisher is closed.");
+
+		String key = conflationKey(dataBean);
+
+		if (key != null)
+		{
+			Map<String, Slot> typeSlots = getSlots(dataBean.getClass());
+			Slot slot = typeSlots.get(key);
+
+			if (slot == null)
+			{
+				slot = new Slot();
+				typeSlots.put(key, slot);
+				slot.value.set(dataBean);
+				pending.offer(slot);
+			}
+			else if (slot.value.getAndSet(dataBean) != null)
+				conflatedCount.incrementAndGet();
+			else
+				pending.offer(slot);
+
+			return;
+		}
+
+		// a closed bar supersedes the pending state of the bar, the next bar gets a new slot
+		if (dataBean instanceof OHLC || dataBean instanceof TradeOHLC)
+		{
+			Slot slot = getSlots(dataBean.getClass()).remove(productCode(dataBean));
+
+			if (slot != null && slot.value.getAndSet(null) != null)
+				conflatedCount.incrementAndGet();
+		}
+
+		if (queued.incrementAndGet() > capacity)
+		{
+			queued.decrementAndGet();
+			if (droppedCount.getAndIncrement() == 0)
+				log.warn("Queue of " + getAddress().getPort() + " is full, beans are dropped.");
+			return;
+		}
+
+		pending.offer(dataBean);
+	}
+
+	@Override
+	public void close()
+	{
+		closed = true;
+		sender.interrupt();
+
+		try
+		{
+			sender.join();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+
+		if (publisher instanceof AutoCloseable)
+			try
+			{
+				((AutoCloseable) publisher).close();
+			}
+			catch (Exception e)
+			{
+				log.error("Can't close publisher (port=" + getAddress().getPort() + ").", e);
+			}
+	}
+
+	/**
+	 * @return number of beans replaced by a later state before they were sent
+	 */
+	public long getConflatedCount()
+	{
+		return conflatedCount.get();
+	}
+
+	/**
+	 * @return number of beans dropped because the queue was full
+	 */
+	public long getDroppedCount()
+	{
+		return droppedCount.get();
+	}
+
+	/**
+	 * @return number of slots and beans waiting for the sender
+	 */
+	public int getBacklog()
+	{
+		return pending.size();
+	}
+
+	private Map<String, Slot> getSlots(Class<?> type)
+	{
+		Map<String, Slot> typeSlots = slots.get(type);
+
+		return typeSlots != null ? typeSlots 
+				: slots.computeIfAbsent(type, t -> new ConcurrentHashMap<String, Slot>());
+	}
+
+	private void send()
+	{
+		long nextSend = System.nanoTime();
+
+		while (!closed)
+		{
+			Object item;
+
+			try
+			{
+				item = pending.take();
+			}
+			catch (InterruptedException e)
+			{
+				break;
+			}
+
+			Object dataBean;
+
+			if (item instanceof Slot)
+				dataBean = ((Slot) item).value.getAndSet(null);
+			else
+			{
+				queued.decrementAndGet();
+				dataBean = item;
+			}
+
+			if (dataBean == null)
+				continue;
+
+			if (sendIntervalNanos > 0)
+			{
+				long delay;
+				while ((delay = nextSend - System.nanoTime()) > 0 && !closed)
+					LockSupport.parkNanos(delay);
+				nextSend = Math.max(nextSend, System.nanoTime() - sendIntervalNanos) + sendIntervalNanos;
+			}
+
+			try
+			{
+				publisher.publish(dataBean);
+			}
+			catch (Exception e)
+			{
+				log.error("Publishing failed (port=" + getAddress().getPort() + ").", e);
+			}
+		}
+	}
+
+	/**
+	 * @return key of the slot the bean is conflated in, or <code>null</code> when
+	 * the bean must be sent as is
+	 */
+	private static String conflationKey(Object dataBean)
+	{
+		if (dataBean instanceof TopOfBook)
+			return ((TopOfBook) dataBean).getProductCode();
+		if (dataBean instanceof FullBook)
+			return ((FullBook) dataBean).getProductCode();
+		if (dataBean instanceof OHLC && !((OHLC) dataBean).isClosed())
+			return ((OHLC) dataBean).getProductCode();
+		if (dataBean instanceof TradeOHLC && !((TradeOHLC) dataBean).isClosed())
+			return ((TradeOHLC) dataBean).getProductCode();
+		return null;
+	}
+
+	private static String productCode(Object dataBean)
+	{
+		return dataBean instanceof OHLC ? ((OHLC) dataBean).getProductCode() 
+				: ((TradeOHLC) dataBean).getProductCode();
+	}
+
+	public static Publisher fromXml(Node rootNode, Publisher publisher)
+	{
+		int capacity = DEFAULT_CAPACITY;
+		Node capacityNode = rootNode.getAttributes().getNamedItem("conflationCapacity");
+		if (capacityNode != null)
+			capacity = Integer.parseInt(capacityNode.getNodeValue().trim());
+
+		int maxRate = 0;
+		Node maxRateNode = rootNode.getAttributes().getNamedItem("maxRate");
+		if (maxRateNode != null)
+			maxRate = Integer.parseInt(maxRateNode.getNodeValue().trim());
+
+		return new ConflatingPublisher(publisher, capacity, maxRate);
+	}
+}
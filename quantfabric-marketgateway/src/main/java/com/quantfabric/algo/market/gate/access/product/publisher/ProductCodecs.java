@@ -0,0 +1,301 @@
+/*
+ * Copyright 2022-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.quantfabric.algo.market.gate.access.product.publisher;
+
+import static com.quantfabric.net.stream.binary.BinaryCodecs.getInts;
+import static com.quantfabric.net.stream.binary.BinaryCodecs.getLongs;
+import static com.quantfabric.net.stream.binary.BinaryCodecs.getString;
+import static com.quantfabric.net.stream.binary.BinaryCodecs.putInts;
+import static com.quantfabric.net.stream.binary.BinaryCodecs.putLongs;
+import static com.quantfabric.net.stream.binary.BinaryCodecs.putString;
+
+import java.nio.ByteBuffer;
+
+import com.quantfabric.algo.market.datamodel.IncrementalUpdate;
+import com.quantfabric.algo.market.gate.access.product.producer.FullBook;
+import com.quantfabric.algo.market.gate.access.product.producer.OHLC;
+import com.quantfabric.algo.market.gate.access.product.producer.TopOfBook;
+import com.quantfabric.algo.market.gate.access.product.producer.TradeOHLC;
+import com.quantfabric.net.stream.binary.BinaryCodec;
+import com.quantfabric.net.stream.binary.BinaryCodecs;
+
+/**
+ * Binary codecs of the products published by {@link ZMQPublisher}. Type ids are part of
+ * the wire format and must not be reused for other products.
+ */
+public final class ProductCodecs
+{
+	public static final int TOP_OF_BOOK = 1;
+	public static final int FULL_BOOK = 2;
+	public static final int INCREMENTAL_UPDATE = 3;
+	public static final int OHLC = 4;
+	public static final int TRADE_OHLC = 5;
+
+	private ProductCodecs()
+	{
+	}
+
+	public static BinaryCodecs create()
+	{
+		BinaryCodecs codecs = new BinaryCodecs();
+
+		codecs.register(TOP_OF_BOOK, new TopOfBookCodec());
+		codecs.register(FULL_BOOK, new FullBookCodec());
+		codecs.register(INCREMENTAL_UPDATE, new IncrementalUpdateCodec());
+		codecs.register(OHLC, new OHLCCodec());
+		codecs.register(TRADE_OHLC, new TradeOHLCCodec());
+
+		return codecs;
+	}
+
+	public static class TopOfBookCodec implements BinaryCodec<TopOfBook>
+	{
+		@Override
+		public Class<TopOfBook> getType()
+		{
+			return TopOfBook.class;
+		}
+
+		@Override
+		public void encode(TopOfBook value, ByteBuffer buffer)
+		{
+			buffer.putLong(value.getSnapshotId());
+			buffer.putLong(value.getSourceTimestamp());
+			buffer.putLong(value.getBidPrice());
+			buffer.putInt(value.getBidValue());
+			buffer.putLong(value.getAskPrice());
+			buffer.putInt(value.getAskValue());
+			putString(buffer, value.getProductCode());
+		}
+
+		@Override
+		public TopOfBook decode(ByteBuffer buffer)
+		{
+			long snapshotId = buffer.getLong();
+			long sourceTimestamp = buffer.getLong();
+			long bidPrice = buffer.getLong();
+			int bidValue = buffer.getInt();
+			long askPrice = buffer.getLong();
+			int askValue = buffer.getInt();
+
+			return new TopOfBook(snapshotId, bidPrice, bidValue, askPrice, askValue, 
+					getString(buffer), sourceTimestamp);
+		}
+	}
+
+	public static class FullBookCodec implements BinaryCodec<FullBook>
+	{
+		@Override
+		public Class<FullBook> getType()
+		{
+			return FullBook.class;
+		}
+
+		@Override
+		public void encode(FullBook value, ByteBuffer buffer)
+		{
+			buffer.putLong(value.getSnapshotId());
+			buffer.putLong(value.getSourceTimestamp());
+			putString(buffer, value.getProductCode());
+			putString(buffer, value.getInstrumentId());
+			putString(buffer, value.getSymbol());
+			putString(buffer, value.getFeedName());
+			putLongs(buffer, value.getBidPrices());
+			putLongs(buffer, value.getBidVolumes());
+			putLongs(buffer, value.getAskPrices());
+			putLongs(buffer, value.getAskVolumes());
+		}
+
+		@Override
+		public FullBook decode(ByteBuffer buffer)
+		{
+			long snapshotId = buffer.getLong();
+			long sourceTimestamp = buffer.getLong();
+			String productCode = getString(buffer);
+			String instrumentId = getString(buffer);
+			String symbol = getString(buffer);
+			String feedName = getString(buffer);
+			long[] bidPrices = getLongs(buffer);
+			long[] bidVolumes = getLongs(buffer);
+			long[] askPrices = getLongs(buffer);
+			long[] askVolumes = getLongs(buffer);
+
+			return new FullBook(snapshotId, bidPrices, bidVolumes, askPrices, askVolumes, 
+					productCode, sourceTimestamp, instrumentId, symbol, feedName);
+		}
+	}
+
+	public static class IncrementalUpdateCodec implements BinaryCodec<IncrementalUpdate>
+	{
+		@Override
+		public Class<IncrementalUpdate> getType()
+		{
+			return IncrementalUpdate.class;
+		}
+
+		@Override
+		public void encode(IncrementalUpdate value, ByteBuffer buffer)
+		{
+			buffer.putLong(value.getSnapshotId());
+			buffer.putLong(value.getSequence());
+			buffer.put(value.isNewSnapshot() ? (byte) 1 : (byte) 0);
+			putString(buffer, value.getProductCode());
+			putInts(buffer, value.getBidIds());
+			putLongs(buffer, value.getBidPrices());
+			putInts(buffer, value.getBidVolumes());
+			putInts(buffer, value.getAskIds());
+			putLongs(buffer, value.getAskPrices());
+			putInts(buffer, value.getAskVolumes());
+			putInts(buffer, value.getDeletedIds());
+		}
+
+		@Override
+		public IncrementalUpdate decode(ByteBuffer buffer)
+		{
+			long snapshotId = buffer.getLong();
+			long sequence = buffer.getLong();
+			boolean newSnapshot = buffer.get() != 0;
+			String productCode = getString(buffer);
+			int[] bidIds = getInts(buffer);
+			long[] bidPrices = getLongs(buffer);
+			int[] bidVolumes = getInts(buffer);
+			int[] askIds = getInts(buffer);
+			long[] askPrices = getLongs(buffer);
+			int[] askVolumes = getInts(buffer);
+			int[] deletedIds = getInts(buffer);
+
+			IncrementalUpdate update = new IncrementalUpdate(snapshotId, bidIds, bidPrices, bidVolumes, 
+					askIds, askPrices, askVolumes, deletedIds, productCode);
+			update.setNewSnapshot(newSnapshot);
+			update.setSequence(sequence);
+
+			return update;
+		}
+	}
+
+	public static class OHLCCodec implements BinaryCodec<OHLC>
+	{
+		@Override
+		public Class<OHLC> getType()
+		{
+			return OHLC.class;
+		}
+
+		@Override
+		public void encode(OHLC value, ByteBuffer buffer)
+		{
+			buffer.putLong(value.getSnapshotId());
+			buffer.putLong(value.getBarId());
+			buffer.putInt(value.getTimeFrameInSeconds());
+			buffer.putLong(value.getOpen());
+			buffer.putLong(value.getOpenSourceTimestamp());
+			buffer.putLong(value.getHigh());
+			buffer.putLong(value.getHighSourceTimestamp());
+			buffer.putLong(value.getLow());
+			buffer.putLong(value.getLowSourceTimestamp());
+			buffer.putLong(value.getClose());
+			buffer.putLong(value.getCloseSourceTimestamp());
+			buffer.put(value.isClosed() ? (byte) 1 : (byte) 0);
+			buffer.putLong(value.getCloseTimestamp());
+			putString(buffer, value.getProductCode());
+		}
+
+		@Override
+		public OHLC decode(ByteBuffer buffer)
+		{
+			long snapshotId = buffer.getLong();
+			long barId = buffer.getLong();
+			int timeFrameInSeconds = buffer.getInt();
+			long open = buffer.getLong();
+			long openSourceTimestamp = buffer.getLong();
+			long high = buffer.getLong();
+			long highSourceTimestamp = buffer.getLong();
+			long low = buffer.getLong();
+			long lowSourceTimestamp = buffer.getLong();
+			long close = buffer.getLong();
+			long closeSourceTimestamp = buffer.getLong();
+			boolean closed = buffer.get() != 0;
+			long closeTimestamp = buffer.getLong();
+
+			return new OHLC(snapshotId, open, openSourceTimestamp, high, highSourceTimestamp, low, 
+					lowSourceTimestamp, close, closeSourceTimestamp, closed, closeTimestamp, 
+					timeFrameInSeconds, getString(buffer), barId);
+		}
+	}
+
+	public static class TradeOHLCCodec implements BinaryCodec<TradeOHLC>
+	{
+		@Override
+		public Class<TradeOHLC> getType()
+		{
+			return TradeOHLC.class;
+		}
+
+		@Override
+		public void encode(TradeOHLC value, ByteBuffer buffer)
+		{
+			buffer.putLong(value.getSnapshotId());
+			buffer.putLong(value.getBarId());
+			buffer.putInt(value.getTimeFrameInSeconds());
+			buffer.putLong(value.getOpen());
+			buffer.putLong(value.getOpenSourceTimestamp());
+			buffer.putLong(value.getHigh());
+			buffer.putLong(value.getHighSourceTimestamp());
+			buffer.putLong(value.getLow());
+			buffer.putLong(value.getLowSourceTimestamp());
+			buffer.putLong(value.getClose());
+			buffer.putLong(value.getCloseSourceTimestamp());
+			buffer.put((byte) ((value.isClosed() ? 1 : 0) | (value.isClosedByTimeout() ? 2 : 0)));
+			buffer.putLong(value.getCloseTimestamp());
+			buffer.putInt(value.getTradeCount());
+			buffer.putInt(value.getBuyCount());
+			buffer.putInt(value.getSellCount());
+			buffer.putDouble(value.getBuySellRatio());
+			buffer.putLong(value.getAvgBuy());
+			buffer.putLong(value.getAvgSell());
+			putString(buffer, value.getProductCode());
+		}
+
+		@Override
+		public TradeOHLC decode(ByteBuffer buffer)
+		{
+			long snapshotId = buffer.getLong();
+			long barId = buffer.getLong();
+			int timeFrameInSeconds = buffer.getInt();
+			long open = buffer.getLong();
+			long openSourceTimestamp = buffer.getLong();
+			long high = buffer.getLong();
+			long highSourceTimestamp = buffer.getLong();
+			long low = buffer.getLong();
+			long lowSourceTimestamp = buffer.getLong();
+			long close = buffer.getLong();
+			long closeSourceTimestamp = buffer.getLong();
+			byte flags = buffer.get();
+			long closeTimestamp = buffer.getLong();
+			int tradeCount = buffer.getInt();
+			int buyCount = buffer.getInt();
+			int sellCount = buffer.getInt();
+			double buySellRatio = buffer.getDouble();
+			long avgBuy = buffer.getLong();
+			long avgSell = buffer.getLong();
+
+			return new TradeOHLC(snapshotId, open, openSourceTimestamp, high, highSourceTimestamp, low, 
+					lowSourceTimestamp, close, closeSourceTimestamp, (flags & 1) != 0, (flags & 2) != 0, 
+					closeTimestamp, timeFrameInSeconds, getString(buffer), barId, tradeCount, buyCount, 
+					sellCount, buySellRatio, avgBuy, avgSell);
+		}
+	}
+}
@@ -18,12 +18,17 @@ package com.quantfabric.algo.market.gate.access.product.publisher;
 import java.util.HashMap;
 import java.util.Map;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import com.quantfabric.algo.market.gateway.access.product.ContentType;
 import com.quantfabric.algo.market.gateway.access.product.publisher.Publisher;
 import com.quantfabric.algo.market.gateway.access.product.publisher.PublishersManager;
 
 public class PublishersContainer implements PublishersManager
 {
+	private static final Logger log = LoggerFactory.getLogger(PublishersContainer.class);
+	
 	private final Map<String, Map<ContentType, Publisher>> publishers =
 			new HashMap<String, Map<ContentType,Publisher>>();
 	
@@ -62,4 +67,22 @@ public class PublishersContainer implements PublishersManager
 	{
 		return name;
 	}
+	
+	/**
+	 * Closes the publishers holding threads or sockets, they can't publish afterwards.
+	 */
+	public void close()
+	{
+		for (Map<ContentType, Publisher> productPublishers : publishers.values())
+			for (Publisher publisher : productPublishers.values())
+				if (publisher instanceof AutoCloseable)
+					try
+					{
+						((AutoCloseable) publisher).close();
+					}
+					catch (Exception e)
+					{
+						log.error("Can't close publisher of (" + name + ").", e);
+					}
+	}
 }
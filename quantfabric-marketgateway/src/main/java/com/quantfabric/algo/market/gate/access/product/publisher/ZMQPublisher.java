@@ -15,12 +15,16 @@
  */
 package com.quantfabric.algo.market.gate.access.product.publisher;
 
+import java.io.Closeable;
+import java.io.IOException;
+
 import com.quantfabric.algo.market.gateway.access.product.publisher.Publisher;
 import com.quantfabric.algo.market.gateway.access.product.publisher.PublisherAddress;
 import org.w3c.dom.Node;
 
 import com.quantfabric.algo.market.datamodel.IncrementalUpdate;
 import com.quantfabric.algo.market.gateway.access.product.ContentType;
+import com.quantfabric.algo.market.gateway.access.product.WireFormat;
 import com.quantfabric.algo.market.gate.access.product.producer.FullBook;
 import com.quantfabric.algo.market.gate.access.product.producer.TopOfBook;
 import com.quantfabric.net.Transmitter;
@@ -28,9 +32,11 @@ import com.quantfabric.net.stream.Event;
 import com.quantfabric.net.stream.StreamServer;
 import com.quantfabric.net.stream.TypeRegistrator;
 import com.quantfabric.net.stream.ZMQTransmitter;
+import com.quantfabric.net.stream.binary.BinaryStreamServer;
+import com.quantfabric.net.stream.json.JsonStreamServer;
 import com.quantfabric.net.stream.kryo.KryoStreamServer;
 
-public class ZMQPublisher implements Publisher
+public class ZMQPublisher implements Publisher, Closeable
 {
 	private final String pubId;
 	private final StreamServer streamServer;
@@ -39,16 +45,35 @@ public class ZMQPublisher implements Publisher
 	private final PublisherAddress address;
 	
 	public ZMQPublisher(String pubId, String endpointAddress, int port, ContentType contentType)
+	{
+		this(pubId, endpointAddress, port, contentType, WireFormat.KRYO);
+	}
+	
+	public ZMQPublisher(String pubId, String endpointAddress, int port, ContentType contentType, 
+			WireFormat wireFormat)
 	{
 		this.pubId = pubId;
 		this.transmitter = new ZMQTransmitter(port);
-		this.streamServer = new KryoStreamServer(transmitter);
+		this.streamServer = createStreamServer(wireFormat, transmitter);
 		
-		this.address = new PublisherAddress(endpointAddress, port, contentType);
+		this.address = new PublisherAddress(endpointAddress, port, contentType, wireFormat);
 		
 		registerTypes(streamServer, contentType);
 	}
 	
+	private static StreamServer createStreamServer(WireFormat wireFormat, Transmitter transmitter)
+	{
+		switch (wireFormat == null ? WireFormat.KRYO : wireFormat)
+		{
+			case JSON:
+				return new JsonStreamServer(transmitter);
+			case BINARY:
+				return new BinaryStreamServer(ProductCodecs.create(), transmitter);
+			default:
+				return new KryoStreamServer(transmitter);
+		}
+	}
+	
 	@Override
 	public PublisherAddress getAddress()
 	{
@@ -72,6 +97,23 @@ public class ZMQPublisher implements Publisher
 	{
 		streamServer.send(new Event(pubId, dataBean));		
 	}
+	
+	@Override
+	public void close() throws IOException
+	{
+		try
+		{
+			transmitter.endOutput();
+		}
+		catch (IOException e)
+		{
+			throw e;
+		}
+		catch (Exception e)
+		{
+			throw new IOException(e);
+		}
+	}
 
 	public static ZMQPublisher fromXml(Node rootNode, String endpointAddress)
 	{
@@ -83,6 +125,11 @@ public class ZMQPublisher implements Publisher
 		if (contentTypeNode != null)
 			contentType = ContentType.valueOf(contentTypeNode.getNodeValue().trim());
 		
-		return new ZMQPublisher(productCode, endpointAddress, port, contentType);		
+		WireFormat wireFormat = WireFormat.KRYO;
+		Node wireFormatNode = rootNode.getAttributes().getNamedItem("wireFormat");
+		if (wireFormatNode != null)
+			wireFormat = WireFormat.valueOf(wireFormatNode.getNodeValue().trim().toUpperCase());
+		
+		return new ZMQPublisher(productCode, endpointAddress, port, contentType, wireFormat);		
 	}
 }
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2022-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.quantfabric.algo.market.gate.access.product.subscriber;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.quantfabric.algo.market.datamodel.IncrementalUpdate;
+import com.quantfabric.algo.market.dataprovider.incremental.IncrementalBook;
+import com.quantfabric.algo.market.gateway.access.product.subscriber.Subscriber;
+import com.quantfabric.net.stream.Event;
+
+/**
+ * Rebuilds the books of an incremental update stream before handing the updates over
+ * to the subscriber. A gap in the sequence of a product marks its book as out of sync,
+ * the updates of the product are then discarded until the next snapshot.
+ * <p>
+ * Books are updated on the reading thread and should be read from the subscriber.
+ */
+public class IncrementalBookRebuilder implements Subscriber
+{
+	private static final Logger log = LoggerFactory.getLogger(IncrementalBookRebuilder.class);
+
+	public static class RebuiltBook
+	{
+		private final IncrementalBook book = new IncrementalBook();
+		private long sequence;
+		private boolean synced;
+		private long gapCount;
+
+		public IncrementalBook getBook()
+		{
+			return book;
+		}
+
+		/**
+		 * @return sequence of the last applied update
+		 */
+		public long getSequence()
+		{
+			return sequence;
+		}
+
+		public boolean isSynced()
+		{
+			return synced;
+		}
+
+		public long getGapCount()
+		{
+			return gapCount;
+		}
+	}
+
+	private final Subscriber subscriber;
+	private final Map<String, RebuiltBook> books = new ConcurrentHashMap<String, RebuiltBook>();
+
+	public IncrementalBookRebuilder(Subscriber subscriber)
+	{
+		this.subscriber = subscriber;
+	}
+
+	@Override
+	public void update(Event event)
+	{
+		if (event.getEventBean() instanceof IncrementalUpdate && !apply((IncrementalUpdate) event.getEventBean()))
+			return;
+
+		subscriber.update(event);
+	}
+
+	/**
+	 * @return the book of the product, or <code>null</code> before its first update
+	 */
+	public RebuiltBook getBook(String productCode)
+	{
+		return books.get(productCode);
+	}
+
+	/**
+	 * @return <code>false</code> when the update is discarded
+	 */
+	private boolean apply(IncrementalUpdate update)
+	{
+		RebuiltBook rebuilt = books.get(update.getProductCode());
+
+		if (rebuilt == null)
+		{
+			rebuilt = new RebuiltBook();
+			books.put(update.getProductCode(), rebuilt);
+		}
+
+		if (!update.isNewSnapshot())
+		{
+			if (!rebuilt.synced)
+				return false;
+
+			if (update.getSequence() != rebuilt.sequence + 1)
+			{
+				rebuilt.synced = false;
+				rebuilt.gapCount++;
+				log.warn("Gap in updates of " + update.getProductCode() + " (expected=" + (rebuilt.sequence + 1) 
+						+ ", received=" + update.getSequence() + "), waiting for the next snapshot.");
+				return false;
+			}
+		}
+
+		rebuilt.book.apply(update);
+		rebuilt.sequence = update.getSequence();
+		rebuilt.synced = true;
+
+		return true;
+	}
+}
@@ -24,18 +24,22 @@ import org.slf4j.LoggerFactory;
 import com.quantfabric.algo.market.gateway.access.product.Connector;
 import com.quantfabric.algo.market.gateway.access.product.ContentType;
 import com.quantfabric.algo.market.gateway.access.product.publisher.PublisherAddress;
+import com.quantfabric.algo.market.gate.access.product.publisher.ProductCodecs;
 import com.quantfabric.algo.market.gate.access.product.publisher.ZMQPublisher;
 import com.quantfabric.net.Receiver;
 import com.quantfabric.net.stream.Event;
 import com.quantfabric.net.stream.StreamClient;
 import com.quantfabric.net.stream.TypeRegistrator;
 import com.quantfabric.net.stream.ZMQReceiver;
+import com.quantfabric.net.stream.binary.BinaryStreamClient;
+import com.quantfabric.net.stream.json.JsonStreamClient;
 import com.quantfabric.net.stream.kryo.KryoStreamClient;
 
 public class ZMQStreamClient implements Connector
 {
 	private Logger logger; 
 	private Subscriber subscriber;
+	private IncrementalBookRebuilder bookRebuilder;
 	
 	private Receiver receiver;
 	private StreamClient streamClient;	
@@ -58,10 +62,12 @@ public class ZMQStreamClient implements Connector
 		this.logger = LoggerFactory.getLogger(String.format("StreamReader[%s:%d/%s]", 
 				endpoint.getHost(), endpoint.getPort(), endpoint.getContentType().toString()));
 		
-		this.subscriber = subscriber;
+		this.bookRebuilder = endpoint.getContentType() == ContentType.INCREMENTAL_UPDATE 
+				? new IncrementalBookRebuilder(subscriber) : null;
+		this.subscriber = bookRebuilder != null ? bookRebuilder : subscriber;
 		
 		this.receiver = new ZMQReceiver(endpoint.getHost(), endpoint.getPort());
-		this.streamClient = new KryoStreamClient(receiver);
+		this.streamClient = createStreamClient(endpoint, receiver);
 		
 		registerTypes(streamClient, endpoint.getContentType());
 		
@@ -114,6 +120,15 @@ public class ZMQStreamClient implements Connector
 		streamReader.start();
 	}
 	
+	/**
+	 * @return books rebuilt from the incremental updates, <code>null</code> for other 
+	 * content types
+	 */
+	public IncrementalBookRebuilder getBookRebuilder()
+	{
+		return bookRebuilder;
+	}
+	
 	@Override
 	public void close() throws Exception
 	{
@@ -132,6 +147,19 @@ public class ZMQStreamClient implements Connector
 		//logger = null;	
 	}
 	
+	private static StreamClient createStreamClient(PublisherAddress endpoint, Receiver receiver)
+	{
+		switch (endpoint.getWireFormat())
+		{
+			case JSON:
+				return new JsonStreamClient(receiver);
+			case BINARY:
+				return new BinaryStreamClient(ProductCodecs.create(), receiver);
+			default:
+				return new KryoStreamClient(receiver);
+		}
+	}
+	
 	private static void registerTypes(TypeRegistrator typeRegistrator,
 			ContentType contentType)
 	{
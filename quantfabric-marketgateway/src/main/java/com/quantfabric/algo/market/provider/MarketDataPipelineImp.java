@@ -28,11 +28,11 @@ import com.quantfabric.algo.market.gateway.MarketGateway;
 import com.quantfabric.algo.market.gateway.OrderBookSnapshotsProvider;
 import com.quantfabric.algo.market.gateway.access.product.publisher.PublishersManager;
 import com.quantfabric.algo.market.gateway.feed.MarketDataFeed;
-import com.quantfabric.cep.CEPProvider;
-import com.quantfabric.cep.ICEPProvider;
+import com.quantfabric.algo.market.datamodel.MDFeedEvent;
 import com.quantfabric.messaging.BasePublisher;
 import com.quantfabric.messaging.NamedMapSubscriber;
 import com.quantfabric.messaging.NativeSubscriberBuffer;
+import com.quantfabric.messaging.Subscriber;
 import com.quantfabric.messaging.SubscriberBuffer;
 import com.quantfabric.persistence.esper.PersistingUpdateListenerConfig;
 
@@ -45,13 +45,25 @@ public class MarketDataPipelineImp extends BasePublisher<NamedMapSubscriber<Obje
 		return log;
 	}
 	
+	/**
+	 * Request parameter routing a subscription to the given lane of a partitioned pipeline.
+	 */
+	public static final String LANE_PARAMETER = "lane";
+	/**
+	 * Request parameter routing a subscription to the lane owning the given feed.
+	 */
+	public static final String FEED_NAME_PARAMETER = "feedName";
+
 	private final MarketGateway owner;
-	private ICEPProvider cep;
-	private final PipelineHandlersManager handlersManager;
-	private final DataViewManager dataViewManager = new DataViewManager();
+	private final Configuration cepConfig;
+	private final Collection<PersistingUpdateListenerConfig> persisterConfigs;
+	private final List<PipelineLane> lanes = new ArrayList<>();
+	private final List<DataView> dataViews = new ArrayList<>();
+	private final Map<String, Integer> pinnedLanes = new HashMap<>();
 	private final String name;
 	private final HashSet<FeedReference> feeds = new HashSet<>();
 	private boolean singleThreadModel;
+	private boolean partitionedThreadModel;
 	private NativeSubscriberBuffer singleInputChannel;
 	private final Map<FeedReference, SubscriberBuffer<Object>> inputChannels = new HashMap<>();
 	private final Map<String, PipelineService> pipelineServices = new HashMap<>();
@@ -65,21 +77,10 @@ public class MarketDataPipelineImp extends BasePublisher<NamedMapSubscriber<Obje
 		super();
 		this.owner = marketGateway;
 		this.name = pipelineName;
+		this.cepConfig = cepConfig;
+		this.persisterConfigs = persisterConfigs;
 
-		initCep(cepConfig, persisterConfigs);
-		handlersManager = new PipelineHandlersManager(cep);
-		dataViewManager.setStatementProvider(handlersManager);
-	}
-
-	private void initCep(
-			Configuration cepConfig,
-			Collection<PersistingUpdateListenerConfig> persisterConfigs)
-	{
-		String uri = "MDP_"+ name;
-
-		this.cep = CEPProvider.getCEPProvider(uri, cepConfig, persisterConfigs);
-
-		cep.addNamedEventTypes("com.quantfabric.algo.market.datamodel");
+		lanes.add(new PipelineLane(0, "MDP_" + name, cepConfig, persisterConfigs));
 	}
 
 	//region Interface Startable
@@ -102,10 +103,7 @@ public class MarketDataPipelineImp extends BasePublisher<NamedMapSubscriber<Obje
 						//create ctx for view definition
 						viewCtx.put("feedName", feed.getFeedName().getName());
 						//subscribe to feed
-						if(singleThreadModel)
-							marketFeeder.subscribe(singleInputChannel, feed.getFeedName());
-						else
-							marketFeeder.subscribe(inputChannels.get(feed), feed.getFeedName());
+						marketFeeder.subscribe(getFeedInputChannel(feed), feed.getFeedName());
 
 
 						feed.setConnected(true);
@@ -122,7 +120,10 @@ public class MarketDataPipelineImp extends BasePublisher<NamedMapSubscriber<Obje
 				}
 			}
 		}
-		if(singleThreadModel)
+		if(partitionedThreadModel)
+			for (PipelineLane lane : lanes)
+				lane.start();
+		else if(singleThreadModel)
 			singleInputChannel.start();
 
 		this.started = true;
@@ -130,7 +131,10 @@ public class MarketDataPipelineImp extends BasePublisher<NamedMapSubscriber<Obje
 	@Override
 	public void stop()
 	{
-		if(singleThreadModel)
+		if(partitionedThreadModel)
+			for (PipelineLane lane : lanes)
+				lane.stop();
+		else if(singleThreadModel)
 			singleInputChannel.stop();
 
 		for (FeedReference feed : feeds)
@@ -145,12 +149,7 @@ public class MarketDataPipelineImp extends BasePublisher<NamedMapSubscriber<Obje
 					{
 						if (feed.isConnected())
 						{
-							if(singleThreadModel)
-								marketFeeder.unSubscribe(singleInputChannel, feed.getFeedName());
-							else
-								marketFeeder.unSubscribe(inputChannels.get(feed), feed.getFeedName());
-
-
+							marketFeeder.unSubscribe(getFeedInputChannel(feed), feed.getFeedName());
 
 							feed.setConnected(false);
 						}
@@ -172,12 +171,12 @@ public class MarketDataPipelineImp extends BasePublisher<NamedMapSubscriber<Obje
 	//region Iterface Subscriber
 	@Override
 	public void sendUpdate(Object data) {
-		cep.sendEvent(data);
+		routeEvent(data).sendUpdate(data);
 	}
 	@Override
 	public void sendUpdate(Object[] data) {
 		for (int i=0; i<data.length; i++)
-			cep.sendEvent(data[i]);
+			routeEvent(data[i]).sendUpdate(data[i]);
 	}
 	//endregion
 
@@ -185,13 +184,16 @@ public class MarketDataPipelineImp extends BasePublisher<NamedMapSubscriber<Obje
 	@Override
 	protected void initSubscription(NamedMapSubscriber<Object> subscriber,
 									QueryDataViewRequest subject) throws Exception {
-		dataViewManager.activateViews(subject.getDependences(), subject.getParameters());
-		handlersManager.attachSubscriber(subscriber, subject.getQuery());
+		for (PipelineLane lane : routeRequest(subject)) {
+			lane.getDataViewManager().activateViews(subject.getDependences(), subject.getParameters());
+			lane.getHandlersManager().attachSubscriber(subscriber, subject.getQuery());
+		}
 	}
 	@Override
 	protected void destroySubscription(NamedMapSubscriber<Object> subscriber,
 									   QueryDataViewRequest subject) {
-		handlersManager.detachSubscriber(subscriber,  subject.getQuery());
+		for (PipelineLane lane : routeRequest(subject))
+			lane.getHandlersManager().detachSubscriber(subscriber,  subject.getQuery());
 	}
 	//endregion Interface BasePublisher
 
@@ -219,7 +221,65 @@ public class MarketDataPipelineImp extends BasePublisher<NamedMapSubscriber<Obje
 		{
 			singleInputChannel =  new NativeSubscriberBuffer("mdpsinglethread", this);
 			this.singleThreadModel = singleThreadModel;
+			if (singleThreadModel)
+				disposeFeedInputChannels();
+		}
+	}
+
+	@Override
+	public boolean isPartitionedThreadModel() {
+		return partitionedThreadModel;
+	}
+
+	@Override
+	public void setPartitionedThreadModel(int laneCount) {
+		if (started)
+			throw new IllegalStateException("Thread model of a started pipeline (" + name + ") can't be changed");
+		if (laneCount < 1)
+			throw new IllegalArgumentException("Lane count must be positive - " + laneCount);
+
+		while (lanes.size() > laneCount)
+			lanes.remove(lanes.size() - 1).destroy();
+
+		while (lanes.size() < laneCount) {
+			PipelineLane lane = new PipelineLane(lanes.size(), "MDP_" + name + "-lane" + lanes.size(),
+					cepConfig, persisterConfigs);
+			try {
+				for (DataView view : dataViews)
+					lane.getDataViewManager().addDescription(view);
+			}
+			catch (Exception e) {
+				getLogger().error("Can't add data views to lane " + lane.getIndex() + " of pipeline " + name, e);
+			}
+			lanes.add(lane);
 		}
+
+		for (PipelineLane lane : lanes)
+			lane.createInputChannel(name + "-lane" + lane.getIndex());
+
+		partitionedThreadModel = true;
+		disposeFeedInputChannels();
+	}
+
+	public int getLaneCount() {
+		return lanes.size();
+	}
+
+	/**
+	 * Pins a feed to the given lane instead of the hashed one, feeds whose
+	 * events meet in one statement have to share a lane.
+	 */
+	public void assignLane(String feedName, int lane) {
+		if (lane < 0)
+			throw new IllegalArgumentException("Lane index can't be negative - " + lane);
+		pinnedLanes.put(feedName, lane);
+	}
+
+	public int getLaneIndex(String feedName) {
+		Integer pinned = pinnedLanes.get(feedName);
+		if (pinned != null)
+			return pinned % lanes.size();
+		return Math.floorMod(feedName.hashCode(), lanes.size());
 	}
 
 	@Override
@@ -227,7 +287,8 @@ public class MarketDataPipelineImp extends BasePublisher<NamedMapSubscriber<Obje
 	{
 		if(feeds.add(feed))
 		{
-			inputChannels.put(feed, new SubscriberBuffer<Object>(name + "-" + feed.getConnectionName() +"-" + feed.getFeedName().getName(), this));
+			if (!partitionedThreadModel && !singleThreadModel)
+				inputChannels.put(feed, createFeedInputChannel(feed));
 		}
 		else
 			return false;
@@ -240,7 +301,9 @@ public class MarketDataPipelineImp extends BasePublisher<NamedMapSubscriber<Obje
 	{
 		if (feeds.remove(feed))
 		{
-			inputChannels.remove(feed).dispose();
+			SubscriberBuffer<Object> inputChannel = inputChannels.remove(feed);
+			if (inputChannel != null)
+				inputChannel.dispose();
 		}
 		else
 			return false;
@@ -282,7 +345,9 @@ public class MarketDataPipelineImp extends BasePublisher<NamedMapSubscriber<Obje
 	@Override
 	public void addDataViews(List<DataView> views) throws Exception {
 		for(DataView view : views){
-			dataViewManager.addDescription(view);
+			dataViews.add(view);
+			for (PipelineLane lane : lanes)
+				lane.getDataViewManager().addDescription(view);
 		}
 	}
 	//endregion
@@ -293,6 +358,73 @@ public class MarketDataPipelineImp extends BasePublisher<NamedMapSubscriber<Obje
 		return inputChannels.get(feed);
 	}
 
+	/**
+	 * @return the subscriber events derived from the feed (e.g. aggregator output) have to be
+	 * sent to, it is the owning lane's channel when the pipeline is partitioned
+	 */
+	protected Subscriber<Object> getFeedOutputChannel(FeedReference feed)
+	{
+		if (partitionedThreadModel)
+			return lanes.get(getLaneIndex(feed.getFeedName().getName())).getInputChannel();
+		return this;
+	}
+
+	private SubscriberBuffer<Object> createFeedInputChannel(FeedReference feed)
+	{
+		return new SubscriberBuffer<Object>(name + "-" + feed.getConnectionName() +"-" + feed.getFeedName().getName(), this);
+	}
+
+	/**
+	 * Lanes and the single input channel replace the threads of the per feed channels.
+	 */
+	private void disposeFeedInputChannels()
+	{
+		for (SubscriberBuffer<Object> inputChannel : inputChannels.values())
+			inputChannel.dispose();
+		inputChannels.clear();
+	}
+
+	private Subscriber<Object> getFeedInputChannel(FeedReference feed)
+	{
+		if (partitionedThreadModel)
+			return getFeedOutputChannel(feed);
+		if (singleThreadModel)
+			return singleInputChannel;
+		return inputChannels.get(feed);
+	}
+
+	private Subscriber<Object> routeEvent(Object event)
+	{
+		if (lanes.size() > 1 && event instanceof MDFeedEvent) {
+			String feedName = ((MDFeedEvent) event).getFeedName();
+			if (feedName != null)
+				return lanes.get(getLaneIndex(feedName));
+		}
+		return lanes.get(0);
+	}
+
+	/**
+	 * Resolves lanes serving the request: the explicitly requested lane, the lane owning
+	 * the requested feed or, for statements spanning several feeds, every lane.
+	 */
+	private Collection<PipelineLane> routeRequest(QueryDataViewRequest request)
+	{
+		if (lanes.size() == 1)
+			return lanes;
+
+		Map<String, String> parameters = request.getParameters();
+		if (parameters != null) {
+			String lane = parameters.get(LANE_PARAMETER);
+			if (lane != null)
+				return Collections.singletonList(lanes.get(Integer.parseInt(lane) % lanes.size()));
+
+			String feedName = parameters.get(FEED_NAME_PARAMETER);
+			if (feedName != null && getListeningFeed(feedName) != null)
+				return Collections.singletonList(lanes.get(getLaneIndex(feedName)));
+		}
+		return lanes;
+	}
+
 	protected MarketFeeder getMarketFeeder(String name)
 	{
 		return owner.getMarketFeeder(name);
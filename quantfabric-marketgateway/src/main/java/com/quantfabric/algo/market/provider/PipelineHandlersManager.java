@@ -15,9 +15,7 @@
  */
 package com.quantfabric.algo.market.provider;
 
-import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 import org.slf4j.Logger;
@@ -32,6 +30,7 @@ import com.quantfabric.cep.ICEPProvider;
 import com.quantfabric.cep.StatementDefinition;
 import com.quantfabric.cep.StatementDefinitionImpl;
 import com.quantfabric.messaging.NamedMapSubscriber;
+import com.quantfabric.messaging.SubscriberArray;
 
 
 class PipelineHandlersManager implements StatementProvider {
@@ -45,7 +44,8 @@ class PipelineHandlersManager implements StatementProvider {
 		private boolean isMapEventType;
 		private String eventTypeName;
 		private final boolean isPermanent=true;
-		private final List<NamedMapSubscriber<Object>> destributionList = new ArrayList<NamedMapSubscriber<Object>>();
+		//replaced on attach/detach, the CEP thread iterates over it without locking
+		private volatile SubscriberArray<NamedMapSubscriber<Object>> destributionList = SubscriberArray.empty();
 		
 		@SuppressWarnings("unused")
 		public ICEPProvider getCep()
@@ -75,15 +75,15 @@ class PipelineHandlersManager implements StatementProvider {
 			return statement;
 		}
 		
-		public void attachSubscriber(NamedMapSubscriber<Object> subscriber){
+		public synchronized void attachSubscriber(NamedMapSubscriber<Object> subscriber){
 			if(destributionList.size() < 1) {
 				statement.addListener(this);
 		        
 			}
-			destributionList.add(subscriber);
+			destributionList = destributionList.with(subscriber);
 		}
-		public void deattachSubscriber(NamedMapSubscriber<Object> subscriber){
-			destributionList.remove(subscriber);
+		public synchronized void deattachSubscriber(NamedMapSubscriber<Object> subscriber){
+			destributionList = destributionList.without(subscriber);
 			if(destributionList.size() < 1)
 				statement.removeListener(this);
 		}
@@ -91,6 +91,7 @@ class PipelineHandlersManager implements StatementProvider {
 		public void update(EventBean[] newEvents, EventBean[] oldEvents) {
 			try {
 			if(newEvents != null && newEvents.length>0) {
+				SubscriberArray<NamedMapSubscriber<Object>> destributionList = this.destributionList;
 				if(isMapEventType) {
 					
 					Map<?, ?>[] events = new HashMap[newEvents.length];
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2022-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.quantfabric.algo.market.provider;
+
+import java.util.Collection;
+
+import com.espertech.esper.client.Configuration;
+import com.quantfabric.algo.market.datamodel.MDItem;
+import com.quantfabric.cep.CEPProvider;
+import com.quantfabric.cep.ICEPProvider;
+import com.quantfabric.messaging.NativeSubscriberBuffer;
+import com.quantfabric.messaging.Subscriber;
+import com.quantfabric.persistence.esper.PersistingUpdateListenerConfig;
+
+/**
+ * One worker lane of a market data pipeline: a CEP runtime with its own
+ * statements and data views. In the partitioned thread model every lane
+ * is driven by its own input channel, so feeds hashed onto different lanes
+ * are processed in parallel.
+ */
+class PipelineLane implements Subscriber<Object>
+{
+	private final int index;
+	private final ICEPProvider cep;
+	private final PipelineHandlersManager handlersManager;
+	private final DataViewManager dataViewManager = new DataViewManager();
+	private NativeSubscriberBuffer inputChannel;
+
+	PipelineLane(int index, String uri, Configuration cepConfig,
+			Collection<PersistingUpdateListenerConfig> persisterConfigs)
+	{
+		this.index = index;
+		this.cep = CEPProvider.getCEPProvider(uri, cepConfig, persisterConfigs);
+		this.cep.addNamedEventTypes("com.quantfabric.algo.market.datamodel");
+		this.handlersManager = new PipelineHandlersManager(cep);
+		this.dataViewManager.setStatementProvider(handlersManager);
+	}
+
+	int getIndex()
+	{
+		return index;
+	}
+
+	ICEPProvider getCep()
+	{
+		return cep;
+	}
+
+	PipelineHandlersManager getHandlersManager()
+	{
+		return handlersManager;
+	}
+
+	DataViewManager getDataViewManager()
+	{
+		return dataViewManager;
+	}
+
+	/**
+	 * @return the lane's own input channel, or <code>null</code> when the lane
+	 * is fed directly by the callers' threads
+	 */
+	NativeSubscriberBuffer getInputChannel()
+	{
+		return inputChannel;
+	}
+
+	void createInputChannel(String name)
+	{
+		if (inputChannel == null)
+			inputChannel = new NativeSubscriberBuffer(name, this);
+	}
+
+	void start()
+	{
+		if (inputChannel != null)
+			inputChannel.start();
+	}
+
+	void stop()
+	{
+		if (inputChannel != null)
+			inputChannel.stop();
+	}
+
+	void destroy()
+	{
+		if (inputChannel != null)
+			inputChannel.dispose();
+		cep.destroy();
+	}
+
+	@Override
+	public void sendUpdate(Object data)
+	{
+		cep.sendEvent(detach(data));
+	}
+
+	@Override
+	public void sendUpdate(Object[] data)
+	{
+		for (int i = 0; i < data.length; i++)
+			cep.sendEvent(detach(data[i]));
+	}
+
+	/**
+	 * Statements may keep events in their windows, pooled items are replaced by copies.
+	 */
+	private static Object detach(Object data)
+	{
+		if (data instanceof MDItem)
+			return ((MDItem) data).detach();
+		return data;
+	}
+}
@@ -54,6 +54,7 @@ import com.quantfabric.algo.market.history.manager.HistoryManagerImpl;
 import com.quantfabric.algo.market.history.manager.jmx.JmxHistoryManager;
 import com.quantfabric.algo.market.history.manager.jmx.JmxHistoryManagerException;
 import com.quantfabric.algo.runtime.QuantfabricRuntime;
+import com.quantfabric.messaging.Subscriber;
 import com.quantfabric.messaging.SubscriberBuffer;
 import com.quantfabric.persistence.esper.PersistingUpdateListenerConfig;
 import com.quantfabric.util.ListenersGateway;
@@ -242,10 +243,12 @@ public class AggregatingMarketDataPipeline extends MarketDataPipelineImp
 			if (feed.isEnable())
 			{			
 				Collection<MarketViewAggregator> aggregators = null;
+				OrderBookSnapshotsProvider connection = getOrderBookSnapshotsProvider(feed.getConnectionName());
 				
 				try
 				{
-					aggregators = aggregatorManager.createAggregators(feed, getAggreagatorsConfig(feed));
+					aggregators = aggregatorManager.createAggregators(feed, getAggreagatorsConfig(feed),
+							connection != null ? connection.getTimerWheel() : null);
 				}
 				catch (AggregatorManager.AggregatorManagerException e)
 				{
@@ -301,7 +304,7 @@ public class AggregatingMarketDataPipeline extends MarketDataPipelineImp
 				
 		String synchronousOutput = aggregator.getProperties().getProperty("synchronousOutput"); 
 		if (synchronousOutput == null)
-			gateway.attachListener(new SubscriberAdapter(new SubscriberBuffer<Object>(aggregator.getName(), this)));
+			gateway.attachListener(new SubscriberAdapter(createOutputChannel(aggregator.getName(), feed)));
 		else
 		{			
 			synchronousOutput = 
@@ -309,7 +312,7 @@ public class AggregatingMarketDataPipeline extends MarketDataPipelineImp
 			
 			if (!synchronousOutputs.containsKey(synchronousOutput))
 				synchronousOutputs.put(synchronousOutput, 
-						new SynchronousOutput(new SubscriberBuffer<Object>(synchronousOutput, this)));
+						new SynchronousOutput(createOutputChannel(synchronousOutput, feed)));
 			
 			synchronousOutputs.get(synchronousOutput).assignSource(aggregator);
 			
@@ -409,6 +412,14 @@ public class AggregatingMarketDataPipeline extends MarketDataPipelineImp
 		return ListenersGateway.getGatewayProxy(gateway, MarketViewAggregatorListener.class);
 	}
 
+	private Subscriber<Object> createOutputChannel(String name, FeedReference feed)
+	{
+		if (isPartitionedThreadModel())
+			return getFeedOutputChannel(feed);
+		
+		return new SubscriberBuffer<Object>(name, this);
+	}
+
 	private Collection<AggregatorDefinition> getAggreagatorsConfig(FeedReference feedReference)
 	{		
 		return aggregatorDefinitions.get(feedReference);
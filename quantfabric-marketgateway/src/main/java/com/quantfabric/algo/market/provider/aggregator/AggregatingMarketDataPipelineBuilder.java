@@ -66,6 +66,8 @@ public class AggregatingMarketDataPipelineBuilder implements MarketDataPipelineB
 		String pipelineName = piplelineConfigRoot.getAttributes().getNamedItem("name").getTextContent();
 		String pipelineThreadModel = piplelineConfigRoot.getAttributes().getNamedItem("threadModel").getTextContent();
 		boolean singleThread = pipelineThreadModel.equalsIgnoreCase("single");
+		boolean partitioned = pipelineThreadModel.equalsIgnoreCase("partitioned");
+		Map<String, Integer> feedLanes = new HashMap<String, Integer>();
 		
 		DOMElementIterator nodeIterator = new DOMElementIterator(piplelineConfigRoot.getChildNodes());
 			
@@ -149,6 +151,9 @@ public class AggregatingMarketDataPipelineBuilder implements MarketDataPipelineB
 						
 						aggregatorDefinitions.put(feed, new ArrayList<AggregatorDefinition>());
 						
+						if (marketSubElement.hasAttribute("lane"))
+							feedLanes.put(feedName, Integer.valueOf(marketSubElement.getAttribute("lane")));
+						
 						DOMElementIterator marketViewAggregatorsNodeIterator = new DOMElementIterator(marketSubElement.getChildNodes());
 						while(marketViewAggregatorsNodeIterator.hasNext())
 						{
@@ -201,12 +206,20 @@ public class AggregatingMarketDataPipelineBuilder implements MarketDataPipelineB
 
 
 
-		MarketDataPipeline pipeline = 
+		AggregatingMarketDataPipeline pipeline = 
 				new AggregatingMarketDataPipeline(marketGateway, pipelineName, 
 						cepConfig, persisterConfigs, aggregatorDefinitions,
 						pipelineServiceDefinition);
 
-		pipeline.setSingleThreadModel(singleThread);
+		if (partitioned)
+		{
+			pipeline.setPartitionedThreadModel(getLaneCount(piplelineConfigRoot));
+			
+			for (Map.Entry<String, Integer> feedLane : feedLanes.entrySet())
+				pipeline.assignLane(feedLane.getKey(), feedLane.getValue());
+		}
+		else
+			pipeline.setSingleThreadModel(singleThread);
 
 		pipeline.addDataViews(dataViewDescriptions);
 		
@@ -221,6 +234,16 @@ public class AggregatingMarketDataPipelineBuilder implements MarketDataPipelineB
 
 
 
+	private int getLaneCount(Node piplelineConfigRoot)
+	{
+		Node lanesNode = piplelineConfigRoot.getAttributes().getNamedItem("lanes");
+		
+		if (lanesNode == null)
+			return Runtime.getRuntime().availableProcessors();
+		
+		return Integer.parseInt(lanesNode.getTextContent());
+	}
+
 	private Properties findSettings(DOMElementIterator domElementIterator)
 	{
 		while(domElementIterator.hasNext())
@@ -35,7 +35,8 @@ public class AggregatorFactory
 		OrderBook(OrderBookAggregator.class),
 		OHLC(OHLCAggregator.class),
 		TradeOHLC(TradeOHLCAggregator.class),
-		ComplexOHLC(ComplexOHLCAggregator.class);
+		ComplexOHLC(ComplexOHLCAggregator.class),
+		MultiTimeframeOHLC(MultiTimeframeOHLCAggregator.class);
 		
 		private final Class<? extends MarketViewAggregator> aggregatorClass;
 		
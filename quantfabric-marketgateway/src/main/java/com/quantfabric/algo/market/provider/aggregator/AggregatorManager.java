@@ -27,6 +27,7 @@ import org.slf4j.LoggerFactory;
 import com.quantfabric.algo.market.dataprovider.FeedReference;
 import com.quantfabric.algo.market.history.MultiTimeFrameHistoryProvider;
 import com.quantfabric.algo.market.history.MultiTimeFrameHistoryProviderDictionary;
+import com.quantfabric.util.timer.TimerWheel;
 
 public class AggregatorManager
 {	
@@ -83,12 +84,27 @@ public class AggregatorManager
 	public List<MarketViewAggregator> createAggregators(
 			FeedReference feedReference, 
 			Collection<AggregatorDefinition> aggregatorDefinitions) throws AggregatorManagerException
+	{
+		return createAggregators(feedReference, aggregatorDefinitions, null);
+	}
+	
+	/**
+	 * @param timerWheel wheel following the time of the feed's market data, given to the
+	 * aggregators as the <code>timerWheel</code> property; <code>null</code> for the shared one
+	 */
+	public List<MarketViewAggregator> createAggregators(
+			FeedReference feedReference, 
+			Collection<AggregatorDefinition> aggregatorDefinitions,
+			TimerWheel timerWheel) throws AggregatorManagerException
 	{
 		List<MarketViewAggregator> aggregators =
 			new ArrayList<MarketViewAggregator>();
 		
 		for (AggregatorDefinition aggregatorDefinition : aggregatorDefinitions)
 		{
+			if (timerWheel != null)
+				aggregatorDefinition.getProperties().put("timerWheel", timerWheel);
+			
 			if (feedMultiTimeFrameHistoryProvider != null)
 			{
 				MultiTimeFrameHistoryProvider multiTimeFrameHistoryProvider =
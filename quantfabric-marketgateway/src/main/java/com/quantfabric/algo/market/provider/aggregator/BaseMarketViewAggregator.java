@@ -28,6 +28,7 @@ import org.slf4j.LoggerFactory;
 import com.quantfabric.algo.market.provider.aggregator.mdprocessor.SlippageFilter;
 import com.quantfabric.algo.market.dataprovider.orderbook.OrderBookInfo;
 import com.quantfabric.algo.market.dataprovider.orderbook.OrderBookSnapshot;
+import com.quantfabric.util.latency.LatencyStage;
 
 public abstract class BaseMarketViewAggregator implements MarketViewAggregator
 {
@@ -143,14 +144,30 @@ public abstract class BaseMarketViewAggregator implements MarketViewAggregator
 	public void onNewSnapshot(OrderBookSnapshot orderBookSnapshot)
 			throws OrderBookSnapshotListenerException
 	{
-		marketDataProcessor.processNewSnapshot(orderBookSnapshot);		
+		long start = LatencyStage.start();
+		try
+		{
+			marketDataProcessor.processNewSnapshot(orderBookSnapshot);
+		}
+		finally
+		{
+			LatencyStage.AGGREGATOR.recordSince(start);
+		}
 	}
 
 	@Override
 	public void onEndUpdate(OrderBookInfo orderBookInfo, long updateId,
 			boolean isBookModified)
 	{
-		marketDataProcessor.processEndUpdate(orderBookInfo, updateId, isBookModified);		
+		long start = LatencyStage.start();
+		try
+		{
+			marketDataProcessor.processEndUpdate(orderBookInfo, updateId, isBookModified);
+		}
+		finally
+		{
+			LatencyStage.AGGREGATOR.recordSince(start);
+		}
 	}
 
 	@Override
@@ -26,6 +26,7 @@ import com.quantfabric.algo.market.datamodel.OHLCUpdate;
 import com.quantfabric.algo.market.datamodel.OHLCValue;
 import com.quantfabric.algo.market.dataprovider.orderbook.OrderBookInfo;
 import com.quantfabric.algo.market.dataprovider.orderbook.OrderBookSnapshot;
+import com.quantfabric.util.timer.TimerWheel;
 
 public class ComplexOHLCAggregator extends BaseMarketViewAggregator {
 
@@ -53,7 +54,7 @@ public class ComplexOHLCAggregator extends BaseMarketViewAggregator {
 		if (timeOffsetProperty != null)
 			timeOffset = Integer.parseInt(timeOffsetProperty);
 		
-		ohlcCloser = new ComplexOHLCCloser(timeframe, timeOffset);
+		ohlcCloser = new ComplexOHLCCloser(timeframe, timeOffset, (TimerWheel) properties.get("timerWheel"));
 		
 		ohlcCloser.setListener(new OHLCUpdateListener() {
 			
@@ -71,7 +72,7 @@ public class ComplexOHLCAggregator extends BaseMarketViewAggregator {
 	private void createComplexOHLC(Object aggregation, long updateId) {
 		
 		try {
-			ohlcCloser.update(new java.util.Date(getTimestamp((OHLCUpdate) aggregation)), (OHLCUpdate) aggregation);
+			ohlcCloser.update(getTimestamp((OHLCUpdate) aggregation), (OHLCUpdate) aggregation);
 		} catch (Exception e) {
 			getLogger().error("Update ComplexOHLCCloser failed.", e);
 		}
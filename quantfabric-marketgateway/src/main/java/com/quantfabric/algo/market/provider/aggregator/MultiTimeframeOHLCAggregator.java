@@ -0,0 +1,169 @@
+/*
+ * Copyright 2022-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.quantfabric.algo.market.provider.aggregator;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Properties;
+
+import com.quantfabric.algo.cep.indicators.ohlc.OHLCRollup;
+import com.quantfabric.algo.cep.indicators.ohlc.OHLCUpdateListener;
+import com.quantfabric.algo.market.datamodel.ComplexAccumulatedOHLC;
+import com.quantfabric.algo.market.datamodel.MDDealableQuote;
+import com.quantfabric.algo.market.datamodel.OHLCUpdate;
+import com.quantfabric.algo.market.datamodel.OHLCValue;
+import com.quantfabric.algo.market.history.MultiTimeFrameHistoryProvider;
+import com.quantfabric.algo.market.history.TimeFrame;
+import com.quantfabric.algo.market.history.TimeFrameHistoryRecorder;
+import com.quantfabric.algo.market.history.TimeFrameHistoryTable;
+import com.quantfabric.algo.market.history.TimeFrameHistoryView;
+import com.quantfabric.util.PropertiesViewer;
+import com.quantfabric.util.timeframes.Timeframe;
+import com.quantfabric.util.timeframes.TimeframeFactory;
+import com.quantfabric.util.timer.TimerWheel;
+
+/**
+ * OHLC bars of all timeframes listed in the <code>timeFrames</code> property built by one
+ * {@link OHLCRollup}, so a top quote updates the finest bar once and the coarser bars are
+ * derived from it instead of being calculated by an {@link OHLCAggregator} each.
+ * With <code>isHistoryRecorder</code> the aggregator writes the bars of every timeframe to
+ * the history tables of the <code>multiTimeFrameHistoryProvider</code>.
+ */
+public class MultiTimeframeOHLCAggregator extends TopMDQuoteAggregator
+{
+	private OHLCRollup rollup;
+	private final Map<Integer, String> timeframeNames = new HashMap<Integer, String>();
+	private final Map<Integer, TimeFrameHistoryRecorder> historyRecorders = new HashMap<Integer, TimeFrameHistoryRecorder>();
+	private final Map<Integer, TimeFrameHistoryView> historyViews = new HashMap<Integer, TimeFrameHistoryView>();
+	private boolean synchronizedWithHistory = false;
+
+	public MultiTimeframeOHLCAggregator(String name, Properties properties)
+	{
+		super(name, properties);
+
+		String timeframesProperty = properties.getProperty("timeFrames");
+
+		if (timeframesProperty != null)
+		{
+			String[] timeframes = PropertiesViewer.getMultiProperty(properties, "timeFrames", ',', timeframesProperty);
+
+			MultiTimeFrameHistoryProvider multiTimeFrameHistoryProvider =
+				(MultiTimeFrameHistoryProvider) properties.get("multiTimeFrameHistoryProvider");
+			boolean isHistoryRecorder = Boolean.parseBoolean(properties.getProperty("isHistoryRecorder", "false"));
+
+			for (String timeframe : timeframes)
+			{
+				int lengthInSeconds = TimeframeFactory.getTimeframe(timeframe).getLengthInSeconds();
+				timeframeNames.put(lengthInSeconds, timeframe);
+
+				if (multiTimeFrameHistoryProvider != null)
+				{
+					TimeFrameHistoryTable historyTable = multiTimeFrameHistoryProvider.getTimeFrameHandler(
+							TimeFrame.getTimeFrame(lengthInSeconds));
+
+					if (isHistoryRecorder)
+						historyRecorders.put(lengthInSeconds, historyTable);
+
+					historyViews.put(lengthInSeconds, historyTable);
+				}
+			}
+
+			String timeOffsetProperty = properties.getProperty("timeOffset");
+			int timeOffset = 0;
+			if (timeOffsetProperty != null)
+				timeOffset = Integer.parseInt(timeOffsetProperty);
+
+			rollup = new OHLCRollup(timeframes, timeOffset, (TimerWheel) properties.get("timerWheel"));
+			rollup.setListener(
+				new OHLCUpdateListener()
+				{
+					@Override
+					public void update(OHLCValue value)
+					{
+						OHLCUpdate update = new OHLCUpdate(
+								timeframeNames.get(value.getTimeFrameInSeconds()), value, getTopQuote());
+						MultiTimeframeOHLCAggregator.super.publish(update, value.isClosed());
+
+						TimeFrameHistoryRecorder historyRecorder = historyRecorders.get(value.getTimeFrameInSeconds());
+
+						if (historyRecorder != null)
+							if (value.isJustOpened())
+							{
+								historyRecorder.addBar(value);
+							}
+							else
+							{
+								historyRecorder.replaceBar(value);
+							}
+					}
+
+					@Override
+					public void update(ComplexAccumulatedOHLC value) {}
+				});
+		}
+	}
+
+	@Override
+	public void publish(Object event, boolean forceProcessing)
+	{
+		if (event instanceof MDDealableQuote)
+		{
+			MDDealableQuote topQuote = (MDDealableQuote) event;
+
+			try
+			{
+				if (!synchronizedWithHistory)
+				{
+					synchronizeWithHistory(topQuote);
+					synchronizedWithHistory = true;
+				}
+
+				if (topQuote.getBidPrice() != 0)
+					rollup.update(topQuote.getSourceTimestamp(), topQuote.getBidPrice());
+			}
+			catch (Exception e)
+			{
+				getLogger().error("Update OHLCRollup failed.", e);
+			}
+		}
+	}
+
+	/**
+	 * Continues the open bars of the history tables which are still open at the first quote.
+	 */
+	private void synchronizeWithHistory(MDDealableQuote topQuote)
+	{
+		for (Timeframe timeframe : rollup.getTimeframes())
+		{
+			TimeFrameHistoryView historyView = historyViews.get(timeframe.getLengthInSeconds());
+
+			if (historyView == null)
+				continue;
+
+			OHLCValue openBar = historyView.getOpenBar();
+
+			if (openBar != null && timeframe.intervalStart(openBar.getCloseSourceTimestamp()) ==
+					timeframe.intervalStart(topQuote.getSourceTimestamp()))
+			{
+				getLogger().info(
+						"OHLC rollup (" + topQuote.getFeedName() + " " + timeframe.getLengthInSeconds()
+						+ ") synchronized (accuracy: " + (topQuote.getSourceTimestamp() - openBar.getCloseSourceTimestamp())
+						+ "ms) by " + openBar);
+				rollup.init(openBar);
+			}
+		}
+	}
+}
@@ -15,7 +15,6 @@
  */
 package com.quantfabric.algo.market.provider.aggregator;
 
-import java.util.Date;
 import java.util.Properties;
 
 import com.quantfabric.algo.cep.indicators.ohlc.OHLCCalculator;
@@ -30,6 +29,7 @@ import com.quantfabric.algo.market.history.TimeFrameHistoryRecorder;
 import com.quantfabric.algo.market.history.TimeFrameHistoryTable;
 import com.quantfabric.algo.market.history.TimeFrameHistoryView;
 import com.quantfabric.util.timeframes.TimeframeFactory;
+import com.quantfabric.util.timer.TimerWheel;
 
 public class OHLCAggregator extends TopMDQuoteAggregator
 {
@@ -65,7 +65,7 @@ public class OHLCAggregator extends TopMDQuoteAggregator
 			if (timeOffsetProperty != null)
 				timeOffset = Integer.parseInt(timeOffsetProperty);
 			
-			ohlcCalculator = new OHLCCalculator(timeframe, timeOffset);
+			ohlcCalculator = new OHLCCalculator(timeframe, timeOffset, (TimerWheel) properties.get("timerWheel"));
 			ohlcCalculator.setListener(
 				new OHLCUpdateListener() 
 				{	
@@ -110,8 +110,8 @@ public class OHLCAggregator extends TopMDQuoteAggregator
 					OHLCValue openBar = historyView.getOpenBar();
 					if (openBar != null)
 					{
-						if (ohlcCalculator.getTimeframe().interval(new Date(openBar.getCloseSourceTimestamp())).equals(
-							ohlcCalculator.getTimeframe().interval(new Date(topQuote.getSourceTimestamp()))))
+						if (ohlcCalculator.getTimeframe().intervalStart(openBar.getCloseSourceTimestamp()) ==
+							ohlcCalculator.getTimeframe().intervalStart(topQuote.getSourceTimestamp()))
 						{
 							getLogger().info(
 									"OHLC calculator ("+ topQuote.getFeedName() + " " + ohlcCalculator.getTimeframe().getLengthInSeconds()
@@ -22,6 +22,8 @@ import com.quantfabric.algo.market.datamodel.MDPrice;
 import com.quantfabric.algo.market.dataprovider.orderbook.OrderBookInfo;
 import com.quantfabric.algo.market.dataprovider.orderbook.OrderBookInfo.OrderBookTypes;
 import com.quantfabric.algo.market.dataprovider.orderbook.OrderBookSnapshot;
+import com.quantfabric.algo.market.dataprovider.orderbook.OrderBookView;
+import com.quantfabric.algo.market.dataprovider.orderbook.SharedOrderBookView;
 import com.quantfabric.util.CollectionHelper;
 
 public class OrderBookAggregator extends BaseMarketViewAggregator
@@ -101,14 +103,23 @@ public class OrderBookAggregator extends BaseMarketViewAggregator
 			if (getProperties().containsKey("depth"))
 			{
 				int depth = Integer.parseInt(getProperties().getProperty("depth"));
-				CollectionHelper.shrinkList(lastOrderBook.getBids().getAllLevels(), depth);
-				CollectionHelper.shrinkList(lastOrderBook.getOffers().getAllLevels(), depth);
+				lastOrderBook.setBids(limitDepth(lastOrderBook.getBids(), depth));
+				lastOrderBook.setOffers(limitDepth(lastOrderBook.getOffers(), depth));
 			}
 			
 			publish(lastOrderBook);
 		}
 	}
 	
+	private static OrderBookView limitDepth(OrderBookView orderBookView, int depth)
+	{
+		if (orderBookView instanceof SharedOrderBookView)
+			return ((SharedOrderBookView) orderBookView).limitDepth(depth);
+		
+		CollectionHelper.shrinkList(orderBookView.getAllLevels(), depth);
+		return orderBookView;
+	}
+	
 	@Override
 	public void processNoUpdate(long snapshotId)
 	{
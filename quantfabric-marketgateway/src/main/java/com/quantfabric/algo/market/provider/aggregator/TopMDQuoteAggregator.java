@@ -41,6 +41,15 @@ public class TopMDQuoteAggregator extends BaseMarketViewAggregator
 	{
 		super(name, properties);
 	}
+	
+	/**
+	 * Quotes are built from the best levels only.
+	 */
+	@Override
+	public boolean isTopOfBookOnly()
+	{
+		return true;
+	}
 
 	@Override   
 	public void processNewSnapshot(OrderBookSnapshot orderBookSnapshot)
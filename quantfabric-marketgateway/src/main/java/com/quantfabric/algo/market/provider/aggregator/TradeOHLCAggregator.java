@@ -15,7 +15,6 @@
  */
 package com.quantfabric.algo.market.provider.aggregator;
 
-import java.util.Date;
 import java.util.Properties;
 
 import com.quantfabric.algo.cep.indicators.ohlc.OHLCUpdateListener;
@@ -25,6 +24,7 @@ import com.quantfabric.algo.market.datamodel.MDDealableQuote;
 import com.quantfabric.algo.market.datamodel.MDTrade;
 import com.quantfabric.algo.market.datamodel.OHLCUpdate;
 import com.quantfabric.algo.market.datamodel.OHLCValue;
+import com.quantfabric.util.timer.TimerWheel;
 
 public class TradeOHLCAggregator extends OHLCAggregator {
 
@@ -46,7 +46,7 @@ public class TradeOHLCAggregator extends OHLCAggregator {
 			if (timeOffsetProperty != null)
 				timeOffset = Integer.parseInt(timeOffsetProperty);
 
-			ohlcCalculator = new TradeOHLCCalculator(timeframe, timeOffset);
+			ohlcCalculator = new TradeOHLCCalculator(timeframe, timeOffset, (TimerWheel) properties.get("timerWheel"));
 			ohlcCalculator.setListener(new OHLCUpdateListener() {
 
 				@Override
@@ -80,8 +80,8 @@ public class TradeOHLCAggregator extends OHLCAggregator {
 					if (!ohlcCalculator.isInitialized() && historyView != null) {
 						OHLCValue openBar = historyView.getOpenBar();
 						if (openBar != null) {
-							if (ohlcCalculator.getTimeframe().interval(new Date(openBar.getCloseSourceTimestamp()))
-									.equals(ohlcCalculator.getTimeframe().interval(new Date(topQuote.getTrade().getSourceTimestamp())))) {
+							if (ohlcCalculator.getTimeframe().intervalStart(openBar.getCloseSourceTimestamp())
+									== ohlcCalculator.getTimeframe().intervalStart(topQuote.getTrade().getSourceTimestamp())) {
 								getLogger().info(
 										"Trade OHLC calculator (" + topQuote.getTrade().getFeedName() + " " + ohlcCalculator.getTimeframe().getLengthInSeconds()
 												+ ") synchronized (accuracy: " + (topQuote.getTrade().getSourceTimestamp() - openBar.getCloseSourceTimestamp())
@@ -110,7 +110,7 @@ public class TradeOHLCAggregator extends OHLCAggregator {
 	@Override
 	protected void updateCalculator(MDDealableQuote topQuote) throws Exception {
 		if (topQuote.getTrade().getPrice() != 0 && isNewTrade)
-			ohlcCalculator.update(new Date(topQuote.getSourceTimestamp()), topQuote.getTrade().getPrice(), topQuote.getTrade().getTradeSide());
+			ohlcCalculator.update(topQuote.getSourceTimestamp(), topQuote.getTrade().getPrice(), topQuote.getTrade().getTradeSide());
 	}
 
 	private boolean tryUpdateLastTradeId(long tradeId) {
@@ -25,7 +25,6 @@ import com.quantfabric.algo.market.dataprovider.orderbook.OrderBookInfo;
 import com.quantfabric.algo.market.dataprovider.orderbook.OrderBookInfo.OrderBookTypes;
 import com.quantfabric.algo.market.dataprovider.orderbook.OrderBookSnapshot;
 import com.quantfabric.algo.market.dataprovider.orderbook.OrderBookView;
-import com.quantfabric.util.CollectionHelper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -78,16 +77,14 @@ public class VWAPAggregator extends BaseMarketViewAggregator {
     @Override
     public void processNewSnapshot(OrderBookSnapshot orderBookSnapshot)
             throws OrderBookSnapshotListenerException {
-        OrderBookView orderBookView = orderBookSnapshot.getOrderBookView();
-
-        OrderBookView orderBook = orderBookView.clone();
+        OrderBookView orderBook = orderBookSnapshot.getOrderBookView();
 
         List<MDPrice> prices = orderBook.getAllLevels();
 
         if (getProperties().containsKey("depth")) {
             int depth = Integer.parseInt(getProperties().getProperty("depth"));
-            CollectionHelper.shrinkList(prices, depth);
-            CollectionHelper.shrinkList(prices, depth);
+            if (prices.size() > depth)
+                prices = prices.subList(0, depth);
             currentBidVWAP.setDepth(depth);
             currentOfferVWAP.setDepth(depth);
         }
@@ -0,0 +1,192 @@
+/*
+ * Copyright 2022-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.quantfabric.algo.market.gate.access.product.publisher;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import com.quantfabric.algo.market.datamodel.IncrementalUpdate;
+import com.quantfabric.algo.market.gate.access.product.producer.TopOfBook;
+import com.quantfabric.algo.market.gateway.access.product.ContentType;
+import com.quantfabric.algo.market.gateway.access.product.publisher.Publisher;
+import com.quantfabric.algo.market.gateway.access.product.publisher.PublisherAddress;
+
+public class ConflatingPublisherTest
+{
+	/**
+	 * Records the sent beans, holds the sender on the first one until released.
+	 */
+	private static class RecordingPublisher implements Publisher, AutoCloseable
+	{
+		private final PublisherAddress address = new PublisherAddress("localhost", 5555, ContentType.TOP_OF_BOOK);
+		private final List<Object> sent = new ArrayList<Object>();
+		private final CountDownLatch entered = new CountDownLatch(1);
+		private final CountDownLatch release;
+		private final CountDownLatch received;
+		private volatile boolean closed;
+
+		RecordingPublisher(boolean hold, int expected)
+		{
+			this.release = new CountDownLatch(hold ? 1 : 0);
+			this.received = new CountDownLatch(expected);
+		}
+
+		@Override
+		public PublisherAddress getAddress()
+		{
+			return address;
+		}
+
+		@Override
+		public void publish(Object dataBean) throws Exception
+		{
+			entered.countDown();
+			release.await();
+
+			synchronized (sent)
+			{
+				sent.add(dataBean);
+			}
+			received.countDown();
+		}
+
+		@Override
+		public void close()
+		{
+			closed = true;
+		}
+
+		List<Object> awaitSent() throws InterruptedException
+		{
+			assertTrue(received.await(5, TimeUnit.SECONDS));
+			synchronized (sent)
+			{
+				return new ArrayList<Object>(sent);
+			}
+		}
+	}
+
+	private static TopOfBook topOfBook(String productCode, long bidPrice)
+	{
+		return new TopOfBook(1L, bidPrice, 1, bidPrice + 1, 1, productCode, 0L);
+	}
+
+	private static IncrementalUpdate update(long snapshotId)
+	{
+		return new IncrementalUpdate(snapshotId, null, null, null, null, null, null, null, "EURUSD");
+	}
+
+	@Test
+	public void testBookStatesAreConflatedPerProduct() throws Exception
+	{
+		RecordingPublisher target = new RecordingPublisher(true, 3);
+		ConflatingPublisher publisher = new ConflatingPublisher(target, 16, 0);
+
+		TopOfBook first = topOfBook("EURUSD", 1000L);
+		publisher.publish(first);
+		assertTrue(target.entered.await(5, TimeUnit.SECONDS));
+
+		publisher.publish(topOfBook("EURUSD", 1001L));
+		publisher.publish(topOfBook("EURUSD", 1002L));
+		TopOfBook last = topOfBook("EURUSD", 1003L);
+		publisher.publish(last);
+		TopOfBook other = topOfBook("GBPUSD", 2000L);
+		publisher.publish(other);
+		target.release.countDown();
+
+		List<Object> sent = target.awaitSent();
+		assertEquals(3, sent.size());
+		assertTrue(sent.get(0) == first);
+		assertTrue(sent.get(1) == last);
+		assertTrue(sent.get(2) == other);
+		assertEquals(2, publisher.getConflatedCount());
+		assertEquals(0, publisher.getDroppedCount());
+
+		publisher.close();
+	}
+
+	@Test
+	public void testQueueOverflowIsDropped() throws Exception
+	{
+		RecordingPublisher target = new RecordingPublisher(true, 3);
+		ConflatingPublisher publisher = new ConflatingPublisher(target, 2, 0);
+
+		publisher.publish(update(1L));
+		assertTrue(target.entered.await(5, TimeUnit.SECONDS));
+
+		publisher.publish(update(2L));
+		publisher.publish(update(3L));
+		publisher.publish(update(4L));
+		assertEquals(1, publisher.getDroppedCount());
+		target.release.countDown();
+
+		List<Object> sent = target.awaitSent();
+		assertEquals(1L, ((IncrementalUpdate) sent.get(0)).getSnapshotId());
+		assertEquals(2L, ((IncrementalUpdate) sent.get(1)).getSnapshotId());
+		assertEquals(3L, ((IncrementalUpdate) sent.get(2)).getSnapshotId());
+		assertEquals(0, publisher.getConflatedCount());
+
+		publisher.close();
+	}
+
+	@Test
+	public void testMaxRateLimitsSending() throws Exception
+	{
+		RecordingPublisher target = new RecordingPublisher(false, 11);
+		ConflatingPublisher publisher = new ConflatingPublisher(target, 16, 100);
+
+		long start = System.nanoTime();
+		for (int i = 0; i < 11; i++)
+			publisher.publish(update(i));
+
+		assertEquals(11, target.awaitSent().size());
+		assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) >= 80);
+
+		publisher.close();
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testCloseClosesUnderlyingPublisher() throws Exception
+	{
+		RecordingPublisher target = new RecordingPublisher(false, 0);
+		ConflatingPublisher publisher = new ConflatingPublisher(target, 16, 0);
+
+		publisher.close();
+		assertTrue(target.closed);
+
+		publisher.publish(update(1L));
+	}
+
+	@Test
+	public void testContainerClosesItsPublishers() throws Exception
+	{
+		RecordingPublisher target = new RecordingPublisher(false, 0);
+		ConflatingPublisher publisher = new ConflatingPublisher(target, 16, 0);
+		PublishersContainer container = new PublishersContainer("test");
+		container.addPublisher("EURUSD", ContentType.TOP_OF_BOOK, publisher);
+
+		container.close();
+
+		assertTrue(target.closed);
+	}
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2022-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.quantfabric.algo.market.gate.access.product.publisher;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+import com.quantfabric.algo.market.datamodel.IncrementalUpdate;
+import com.quantfabric.algo.market.gate.access.product.producer.FullBook;
+import com.quantfabric.algo.market.gate.access.product.producer.OHLC;
+import com.quantfabric.algo.market.gate.access.product.producer.TopOfBook;
+import com.quantfabric.algo.market.gate.access.product.producer.TradeOHLC;
+import com.quantfabric.net.stream.Event;
+import com.quantfabric.net.stream.binary.BinaryCodecs;
+
+public class ProductCodecsTest
+{
+	private final BinaryCodecs codecs = ProductCodecs.create();
+	private final ByteBuffer buffer = ByteBuffer.allocate(4096);
+
+	private Object roundTrip(Object bean)
+	{
+		Event event = new Event("source", bean);
+		event.setCreationTime(11L);
+		event.setSendingTime(12L);
+
+		buffer.clear();
+		codecs.encode(event, buffer);
+		buffer.flip();
+
+		Event decoded = codecs.decode(buffer);
+
+		assertFalse(buffer.hasRemaining());
+		assertEquals("source", decoded.getSource());
+		assertEquals(11L, decoded.getCreationTime());
+		assertEquals(12L, decoded.getSendingTime());
+		assertEquals(bean.getClass(), decoded.getEventBean().getClass());
+
+		return decoded.getEventBean();
+	}
+
+	@Test
+	public void testTopOfBook()
+	{
+		TopOfBook decoded = (TopOfBook) roundTrip(new TopOfBook(1L, 1000L, 5, 1001L, 6, "EURUSD", 99L));
+
+		assertEquals(1L, decoded.getSnapshotId());
+		assertEquals(1000L, decoded.getBidPrice());
+		assertEquals(5, decoded.getBidValue());
+		assertEquals(1001L, decoded.getAskPrice());
+		assertEquals(6, decoded.getAskValue());
+		assertEquals("EURUSD", decoded.getProductCode());
+		assertEquals(99L, decoded.getSourceTimestamp());
+	}
+
+	@Test
+	public void testFullBook()
+	{
+		FullBook decoded = (FullBook) roundTrip(new FullBook(2L, new long[] { 1000L, 999L }, new long[] { 5L, 6L },
+				new long[] { 1001L }, null, "EURUSD", 99L, "1", "EUR/USD", "feed"));
+
+		assertEquals(2L, decoded.getSnapshotId());
+		assertArrayEquals(new long[] { 1000L, 999L }, decoded.getBidPrices());
+		assertArrayEquals(new long[] { 5L, 6L }, decoded.getBidVolumes());
+		assertArrayEquals(new long[] { 1001L }, decoded.getAskPrices());
+		assertNull(decoded.getAskVolumes());
+		assertEquals("EURUSD", decoded.getProductCode());
+		assertEquals(99L, decoded.getSourceTimestamp());
+		assertEquals("1", decoded.getInstrumentId());
+		assertEquals("EUR/USD", decoded.getSymbol());
+		assertEquals("feed", decoded.getFeedName());
+	}
+
+	@Test
+	public void testIncrementalUpdate()
+	{
+		IncrementalUpdate update = new IncrementalUpdate(3L, new int[] { 1 }, new long[] { 1000L }, new int[] { 5 },
+				new int[0], new long[0], new int[0], new int[] { 7, 8 }, "EURUSD");
+		update.setNewSnapshot(true);
+		update.setSequence(42L);
+
+		IncrementalUpdate decoded = (IncrementalUpdate) roundTrip(update);
+
+		assertEquals(3L, decoded.getSnapshotId());
+		assertEquals(42L, decoded.getSequence());
+		assertTrue(decoded.isNewSnapshot());
+		assertEquals("EURUSD", decoded.getProductCode());
+		assertArrayEquals(new int[] { 1 }, decoded.getBidIds());
+		assertArrayEquals(new long[] { 1000L }, decoded.getBidPrices());
+		assertArrayEquals(new int[] { 5 }, decoded.getBidVolumes());
+		assertArrayEquals(new int[0], decoded.getAskIds());
+		assertArrayEquals(new long[0], decoded.getAskPrices());
+		assertArrayEquals(new int[0], decoded.getAskVolumes());
+		assertArrayEquals(new int[] { 7, 8 }, decoded.getDeletedIds());
+	}
+
+	@Test
+	public void testOHLC()
+	{
+		OHLC decoded = (OHLC) roundTrip(new OHLC(4L, 10L, 1L, 12L, 2L, 9L, 3L, 11L, 4L, true, 5L, 60, "EURUSD", 7L));
+
+		assertEquals(4L, decoded.getSnapshotId());
+		assertEquals(10L, decoded.getOpen());
+		assertEquals(1L, decoded.getOpenSourceTimestamp());
+		assertEquals(12L, decoded.getHigh());
+		assertEquals(2L, decoded.getHighSourceTimestamp());
+		assertEquals(9L, decoded.getLow());
+		assertEquals(3L, decoded.getLowSourceTimestamp());
+		assertEquals(11L, decoded.getClose());
+		assertEquals(4L, decoded.getCloseSourceTimestamp());
+		assertTrue(decoded.isClosed());
+		assertEquals(5L, decoded.getCloseTimestamp());
+		assertEquals(60, decoded.getTimeFrameInSeconds());
+		assertEquals("EURUSD", decoded.getProductCode());
+		assertEquals(7L, decoded.getBarId());
+	}
+
+	@Test
+	public void testTradeOHLC()
+	{
+		TradeOHLC decoded = (TradeOHLC) roundTrip(new TradeOHLC(5L, 10L, 1L, 12L, 2L, 9L, 3L, 11L, 4L, false, true,
+				5L, 60, "EURUSD", 7L, 20, 12, 8, 1.5, 1001L, 999L));
+
+		assertEquals(5L, decoded.getSnapshotId());
+		assertEquals(10L, decoded.getOpen());
+		assertEquals(12L, decoded.getHigh());
+		assertEquals(9L, decoded.getLow());
+		assertEquals(11L, decoded.getClose());
+		assertEquals(4L, decoded.getCloseSourceTimestamp());
+		assertFalse(decoded.isClosed());
+		assertTrue(decoded.isClosedByTimeout());
+		assertEquals(5L, decoded.getCloseTimestamp());
+		assertEquals(60, decoded.getTimeFrameInSeconds());
+		assertEquals("EURUSD", decoded.getProductCode());
+		assertEquals(7L, decoded.getBarId());
+		assertEquals(20, decoded.getTradeCount());
+		assertEquals(12, decoded.getBuyCount());
+		assertEquals(8, decoded.getSellCount());
+		assertEquals(1.5, decoded.getBuySellRatio(), 0.0);
+		assertEquals(1001L, decoded.getAvgBuy());
+		assertEquals(999L, decoded.getAvgSell());
+	}
+}
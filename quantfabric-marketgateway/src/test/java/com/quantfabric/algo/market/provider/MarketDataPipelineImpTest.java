@@ -0,0 +1,100 @@
+/*
+ * Copyright 2022-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.quantfabric.algo.market.provider;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.espertech.esper.client.Configuration;
+import com.espertech.esper.client.EPServiceProviderManager;
+import com.quantfabric.algo.market.dataprovider.FeedNameImpl;
+import com.quantfabric.algo.market.dataprovider.FeedReference;
+import com.quantfabric.algo.market.dataprovider.FeedReferenceImpl;
+import com.quantfabric.persistence.esper.PersistingUpdateListenerConfig;
+
+public class MarketDataPipelineImpTest
+{
+	private final MarketDataPipelineImp pipeline = new MarketDataPipelineImp(null, "lanesTest",
+			new Configuration(), Collections.<PersistingUpdateListenerConfig>emptyList());
+
+	@After
+	public void tearDown()
+	{
+		pipeline.setPartitionedThreadModel(1);
+	}
+
+	private static FeedReference feed(String feedName)
+	{
+		return new FeedReferenceImpl(new FeedNameImpl(feedName), "connection");
+	}
+
+	@Test
+	public void testFeedsAreHashedOrPinnedToLanes()
+	{
+		pipeline.setPartitionedThreadModel(4);
+		pipeline.assignLane("EURUSD", 6);
+
+		assertEquals(4, pipeline.getLaneCount());
+		assertEquals(2, pipeline.getLaneIndex("EURUSD"));
+		assertEquals(Math.floorMod("GBPUSD".hashCode(), 4), pipeline.getLaneIndex("GBPUSD"));
+	}
+
+	@Test
+	public void testLanesReplaceFeedInputChannels()
+	{
+		FeedReference early = feed("EURUSD");
+		pipeline.addFeedListener(early);
+		assertNotNull(pipeline.getInputChannel(early));
+
+		pipeline.setPartitionedThreadModel(2);
+		pipeline.assignLane("EURUSD", 1);
+		pipeline.assignLane("USDJPY", 1);
+		FeedReference late = feed("USDJPY");
+		pipeline.addFeedListener(late);
+
+		assertNull(pipeline.getInputChannel(early));
+		assertNull(pipeline.getInputChannel(late));
+		assertNotNull(pipeline.getFeedOutputChannel(early));
+		assertSame(pipeline.getFeedOutputChannel(early), pipeline.getFeedOutputChannel(late));
+		assertTrue(pipeline.removeFeedListener(late));
+	}
+
+	@Test
+	public void testShrinkingDestroysRemovedLanes()
+	{
+		pipeline.setPartitionedThreadModel(4);
+		pipeline.assignLane("EURUSD", 3);
+		assertTrue(Arrays.asList(EPServiceProviderManager.getProviderURIs()).contains("MDP_lanesTest-lane3"));
+
+		pipeline.setPartitionedThreadModel(2);
+
+		assertEquals(2, pipeline.getLaneCount());
+		assertEquals(1, pipeline.getLaneIndex("EURUSD"));
+		assertTrue(Arrays.asList(EPServiceProviderManager.getProviderURIs()).contains("MDP_lanesTest-lane1"));
+		assertFalse(Arrays.asList(EPServiceProviderManager.getProviderURIs()).contains("MDP_lanesTest-lane2"));
+		assertFalse(Arrays.asList(EPServiceProviderManager.getProviderURIs()).contains("MDP_lanesTest-lane3"));
+	}
+}
@@ -692,7 +692,8 @@ public class AlgoServer implements HostManager, AlgoServerUnitProvider, CommandE
 			if (!unitProviders.containsKey(sdsRequest.getUnitName()))
 				return false;
 			
-			final int port = unitProviders.get(sdsRequest.getUnitName()).getStrategyDataStreamPort(sdsRequest.getStrategyName());
+			final TradingUnitProvider unitProvider = unitProviders.get(sdsRequest.getUnitName());
+			final int port = unitProvider.getStrategyDataStreamPort(sdsRequest.getStrategyName());
 			
 			if (port == 0)
 				return false;
@@ -711,6 +712,9 @@ public class AlgoServer implements HostManager, AlgoServerUnitProvider, CommandE
 						zmqReceiver = new ZMQReceiver("localhost", port);
 						output = sdsRequest.getClientHandler().getSocket().getOutputStream();
 						
+						// the stream carries deltas, the new client starts from full objects
+						unitProvider.requestStrategyDataSnapshot(sdsRequest.getStrategyName());
+						
 						byte[] buffer = new byte[PROXY_BUFFER_SIZE];
 						InputStream input = zmqReceiver.getInput();
 						while(true)
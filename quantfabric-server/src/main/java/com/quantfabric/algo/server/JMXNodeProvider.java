@@ -465,6 +465,12 @@ public class JMXNodeProvider implements NodeProvider {
 		return 0;
 	}
 
+	@Override
+	public void requestStrategyDataSnapshot(String strategyName) {
+		TradingStrategyMXBean strategy;
+		if ((strategy = getStrategy(strategyName)) != null) { strategy.requestStrategyDataSnapshot(); }
+	}
+
 	@Override
 	public Set<String> getInstruments() {
 		return unitInstruments.keySet();
@@ -81,6 +81,7 @@ public interface TradingUnit
 	boolean getExecutionPointIsActive(String strategy, String executionPoint);
 	
 	int getStrategyDataStreamPort(String strategy);
+	void requestStrategyDataSnapshot(String strategy);
 	
 	Set<String> getInstruments();
 	String getSymbol(String instrumentId);
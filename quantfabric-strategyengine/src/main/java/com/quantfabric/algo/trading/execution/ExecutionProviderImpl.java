@@ -56,6 +56,7 @@ import com.quantfabric.messaging.Subscriber;
 import com.quantfabric.messaging.SubscriberBuffer;
 import com.quantfabric.net.stream.DataStreamer;
 import com.quantfabric.util.Converter;
+import com.quantfabric.util.latency.LatencyStage;
 
 
 public class ExecutionProviderImpl implements ExecutionProvider,Subscriber<Object> 
@@ -299,10 +300,12 @@ public class ExecutionProviderImpl implements ExecutionProvider,Subscriber<Objec
 			log.debug(String.format("Strategy sent TradeOrder : %s", Converter.toString(order)));
 			try 
 			{					
+				long start = LatencyStage.start();
 				tradeMonitor.addNewOrder(routedTradeOrder);
 				
 				Command command = new SubmitOrderCommand(order);				
 				sendToExecutor(executionPoint, command);				
+				LatencyStage.ORDER_SUBMIT.recordSince(start);
 				sendToExecutionDataStream(routedTradeOrder);
 			}
 			catch(Exception ex) {
@@ -15,6 +15,7 @@
  */
 package com.quantfabric.algo.trading.execution;
 
+import com.quantfabric.algo.trading.strategy.MarketUpdatesAssembler;
 import com.quantfabric.net.Receiver;
 import com.quantfabric.net.stream.Event;
 import com.quantfabric.net.stream.ZMQReceiver;
@@ -30,10 +31,14 @@ public class KryoAlgoHostListener
 		streamClient.registerType("Event", Event.class);
 		StrategyEventsStreamer.registerUsingTypes(streamClient);
 		
+		MarketUpdatesAssembler assembler = new MarketUpdatesAssembler();
+		
 		while(true)
 		{
 			Event event = streamClient.read();
+			event.setEventBean(assembler.assemble(event.getEventBean()));
 			//if (event.getEventBean() instanceof MDOrderBook)
+			if (event.getEventBean() != null)
 				System.out.println(event);
 		}
 		
@@ -18,6 +18,7 @@ package com.quantfabric.algo.trading.execution;
 import java.io.DataOutputStream;
 import java.net.InetSocketAddress;
 
+import com.quantfabric.algo.trading.strategy.MarketUpdatesAssembler;
 import com.quantfabric.net.TcpClient;
 import com.quantfabric.net.stream.Event;
 import com.quantfabric.net.stream.StreamClient;
@@ -51,9 +52,14 @@ public class KryoAlgoServerListener
 								
 		StreamClient streamClient = create("localhost", 4123, "AlgoHost(actSynth)", "TRADEAR FX");
 				
+		MarketUpdatesAssembler assembler = new MarketUpdatesAssembler();
+				
 		while(true)
 		{
-			System.out.println(streamClient.read());
+			Event event = streamClient.read();
+			event.setEventBean(assembler.assemble(event.getEventBean()));
+			if (event.getEventBean() != null)
+				System.out.println(event);
 		}
 		
 	}
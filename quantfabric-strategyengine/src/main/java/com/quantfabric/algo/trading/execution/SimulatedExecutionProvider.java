@@ -0,0 +1,306 @@
+/*
+ * Copyright 2022-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.quantfabric.algo.trading.execution;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.quantfabric.algo.market.datamodel.MDItem;
+import com.quantfabric.algo.market.datamodel.MDPrice;
+import com.quantfabric.algo.market.datamodel.MDTrade;
+import com.quantfabric.algo.order.TradeOrder;
+import com.quantfabric.algo.order.TradeOrder.OrderSide;
+import com.quantfabric.algo.order.TradeOrder.OrderType;
+import com.quantfabric.algo.trading.execution.commands.CancelStrategyOrderCommand;
+import com.quantfabric.algo.trading.execution.commands.ConfirmTradeStrategyOrderCommand;
+import com.quantfabric.algo.trading.execution.commands.RejectTradeStrategyOrderCommand;
+import com.quantfabric.algo.trading.execution.commands.ReplaceStrategyOrderCommand;
+import com.quantfabric.algo.trading.execution.report.TradeReport;
+import com.quantfabric.algo.trading.execution.tradeMonitor.TradeMonitor;
+
+/**
+ * Execution provider of a backtesting run that fills orders against the replayed
+ * market data instead of routing them to a venue.
+ * <p>
+ * The last trade price of a symbol (or the last price update when no trade was seen)
+ * is the fill price: market orders are always filled, limit orders only when they
+ * are marketable at that price, anything else is counted as unfilled. Fills are kept
+ * as {@link TradeReport}s until the replay loop delivers them to the strategy with
+ * {@link #drainTradeReports()}, so no event is sent into the strategy's CEP runtime
+ * from within its own listeners.
+ * <p>
+ * Not thread safe, one instance serves one strategy driven by one thread.
+ */
+public class SimulatedExecutionProvider implements ExecutionProvider
+{
+	private static final Logger log = LoggerFactory.getLogger(SimulatedExecutionProvider.class);
+
+	private final String name;
+	private final Map<String, MarketPrice> lastPrices = new HashMap<String, MarketPrice>();
+	private final Map<String, Position> positions = new HashMap<String, Position>();
+	private final List<TradeReport> tradeReports = new ArrayList<TradeReport>();
+	private final List<TradeReport> pendingReports = new ArrayList<TradeReport>();
+	private long lastTimestamp;
+	private int unfilledOrders;
+
+	public SimulatedExecutionProvider(String name)
+	{
+		this.name = name;
+	}
+
+	/**
+	 * Updates the fill price of the item's symbol, must be called before the item
+	 * is sent to the strategy.
+	 */
+	public void mark(Object event)
+	{
+		if (!(event instanceof MDItem))
+			return;
+
+		MDItem item = (MDItem) event;
+
+		if (item instanceof MDTrade)
+			markPrice(item, ((MDTrade) item).getPrice(), true);
+		else if (item instanceof MDPrice)
+			markPrice(item, ((MDPrice) item).getPrice(), false);
+	}
+
+	private void markPrice(MDItem item, long price, boolean isTrade)
+	{
+		MarketPrice lastPrice = lastPrices.get(item.getSymbol());
+
+		if (lastPrice == null)
+		{
+			lastPrice = new MarketPrice();
+			lastPrices.put(item.getSymbol(), lastPrice);
+		}
+
+		if (isTrade || !lastPrice.isTrade)
+		{
+			lastPrice.price = price;
+			lastPrice.pointsInOne = item.getPointsInOne();
+			lastPrice.isTrade = isTrade;
+		}
+		lastTimestamp = item.getSourceTimestamp();
+	}
+
+	@Override
+	public void update(String executionPoint, TradeOrder order)
+	{
+		String symbol = getSymbol(order);
+		MarketPrice lastPrice = lastPrices.get(symbol);
+
+		if (lastPrice == null || !isFilled(order, lastPrice.price))
+		{
+			unfilledOrders++;
+			return;
+		}
+
+		double price = lastPrice.pointsInOne > 0
+				? (double) lastPrice.price / lastPrice.pointsInOne
+				: lastPrice.price;
+
+		TradeReport report = new TradeReport();
+		report.setTradeReportID(name + "-" + (tradeReports.size() + 1));
+		report.setExecId(report.getTradeReportID());
+		report.setOrderId(order.getOrderReference());
+		report.setSymbol(symbol);
+		report.setSide(order.getOrderSide());
+		report.setLastQty(order.getSize());
+		report.setLastPx(price);
+		report.setTradeDate(lastTimestamp);
+		report.setTransactTime(new Date(lastTimestamp));
+
+		Position position = positions.get(symbol);
+
+		if (position == null)
+		{
+			position = new Position();
+			positions.put(symbol, position);
+		}
+		position.fill(order.getOrderSide(), order.getSize(), price);
+
+		tradeReports.add(report);
+		pendingReports.add(report);
+	}
+
+	private static boolean isFilled(TradeOrder order, long lastPrice)
+	{
+		OrderType orderType = order.getOrderType();
+
+		if (orderType == null || orderType == OrderType.MARKET || orderType == OrderType.FOREX_MARKET)
+			return true;
+
+		switch (orderType)
+		{
+			case LIMIT:
+			case QUANTFABRIC_LIMIT:
+			case FOREX_LIMIT:
+			case MARKET_LIMIT:
+			case LIMIT_MAKER:
+				return order.getOrderSide() == OrderSide.BUY
+						? order.getPrice() >= lastPrice
+						: order.getPrice() <= lastPrice;
+			default:
+				return false;
+		}
+	}
+
+	private static String getSymbol(TradeOrder order)
+	{
+		return order.getInstrument() != null ? order.getInstrument().getSymbol() : order.getInstrumentId();
+	}
+
+	/**
+	 * @return fills made since the previous call
+	 */
+	public List<TradeReport> drainTradeReports()
+	{
+		if (pendingReports.isEmpty())
+			return Collections.emptyList();
+
+		List<TradeReport> reports = new ArrayList<TradeReport>(pendingReports);
+		pendingReports.clear();
+		return reports;
+	}
+
+	public List<TradeReport> getTradeReports()
+	{
+		return Collections.unmodifiableList(tradeReports);
+	}
+
+	public int getUnfilledOrders()
+	{
+		return unfilledOrders;
+	}
+
+	/**
+	 * @return net position per symbol
+	 */
+	public Map<String, Double> getPositions()
+	{
+		Map<String, Double> result = new HashMap<String, Double>();
+
+		for (Map.Entry<String, Position> entry : positions.entrySet())
+			result.put(entry.getKey(), entry.getValue().size);
+
+		return result;
+	}
+
+	/**
+	 * @return realized and open profit of all symbols, open positions are marked
+	 * to the last price
+	 */
+	public double getPnL()
+	{
+		double pnl = 0;
+
+		for (Map.Entry<String, Position> entry : positions.entrySet())
+		{
+			Position position = entry.getValue();
+			MarketPrice lastPrice = lastPrices.get(entry.getKey());
+			double price = lastPrice.pointsInOne > 0
+					? (double) lastPrice.price / lastPrice.pointsInOne
+					: lastPrice.price;
+
+			pnl += position.cash + position.size * price;
+		}
+		return pnl;
+	}
+
+	@Override
+	public void update(String executionPoint, CancelStrategyOrderCommand command)
+	{
+		// orders are filled or dropped at once, nothing rests to be canceled
+	}
+
+	@Override
+	public void update(String executionPoint, ReplaceStrategyOrderCommand command)
+	{
+	}
+
+	@Override
+	public void update(String executionPoint, ConfirmTradeStrategyOrderCommand command)
+	{
+	}
+
+	@Override
+	public void update(String executionPoint, RejectTradeStrategyOrderCommand command)
+	{
+	}
+
+	@Override
+	public void update(TradeReport tradeReport)
+	{
+		log.debug("External trade report ignored by simulated execution (" + name + ")");
+	}
+
+	/**
+	 * @return <code>null</code>, the simulated execution keeps no order state to monitor
+	 */
+	@Override
+	public TradeMonitor getTradeMonitor()
+	{
+		return null;
+	}
+
+	@Override
+	public void sendToStrategyDataStream(Object data)
+	{
+	}
+
+	@Override
+	public void sendToExecutionDataStream(Object data)
+	{
+	}
+
+	@Override
+	public void start()
+	{
+	}
+
+	@Override
+	public void stop()
+	{
+	}
+
+	private static class MarketPrice
+	{
+		private long price;
+		private int pointsInOne;
+		private boolean isTrade;
+	}
+
+	private static class Position
+	{
+		private double size;
+		private double cash;
+
+		private void fill(OrderSide side, double quantity, double price)
+		{
+			double signed = side == OrderSide.SELL ? -quantity : quantity;
+			size += signed;
+			cash -= signed * price;
+		}
+	}
+}
@@ -28,6 +28,7 @@ import com.quantfabric.algo.market.datamodel.VWAP;
 import com.quantfabric.algo.market.dataprovider.FeedNameImpl;
 import com.quantfabric.algo.market.dataprovider.orderbook.OrderBookInfo;
 import com.quantfabric.algo.market.dataprovider.orderbook.OrderBookViewBean;
+import com.quantfabric.algo.market.dataprovider.orderbook.SharedOrderBookView;
 import com.quantfabric.algo.order.IFDSettings;
 import com.quantfabric.algo.order.OCOSettings;
 import com.quantfabric.algo.order.PeggedSettings;
@@ -40,6 +41,8 @@ import com.quantfabric.algo.trading.execution.report.RejectedManageStrategyOrder
 import com.quantfabric.algo.trading.execution.report.ReplacedStrategyOrderExecution;
 import com.quantfabric.algo.trading.execution.report.TradeReport;
 import com.quantfabric.algo.trading.execution.tradeMonitor.OrderExecutionState;
+import com.quantfabric.algo.trading.strategy.MarketViewDelta;
+import com.quantfabric.algo.trading.strategy.OrderBookDelta;
 import com.quantfabric.algo.trading.strategy.events.StrategyEvent;
 import com.quantfabric.algo.trading.strategy.events.StrategyInfoChangedEvent;
 import com.quantfabric.algo.trading.strategy.events.StrategySettingChangedEvent;
@@ -47,6 +50,7 @@ import com.quantfabric.algo.trading.strategy.events.StrategyStateChangedEvent;
 import com.quantfabric.net.stream.DataFilter;
 import com.quantfabric.net.stream.DataStreamer;
 import com.quantfabric.net.stream.StreamServer;
+import com.quantfabric.net.stream.TypeDataFilter;
 import com.quantfabric.net.stream.TypeRegistrator;
 
 public class StrategyEventsStreamer extends DataStreamer
@@ -66,39 +70,22 @@ public class StrategyEventsStreamer extends DataStreamer
 	@Override
 	protected DataFilter createDataFilter(DataStreamer dataStreamer)
 	{		
-		return 
-			new DataFilter(this) {
-				
-				@Override
-				protected boolean filter(Object data)
-				{				
-					if (data instanceof RoutedTradeOrder)
-						return true;
-					if (data instanceof TradeOrder)
-						return true;
-					if (data instanceof AcceptStrategyOrderExecution)
-						return true;
-					if (data instanceof DoneStrategyOrderExecution)
-						return true;
-					if (data instanceof InterruptedStrategyOrderExecution)
-						return true;
-					if (data instanceof ReplacedStrategyOrderExecution)
-						return true;
-					if (data instanceof RejectedManageStrategyOrderExecution)
-						return true;					
-					if (data instanceof InstrumentRiskValue)
-						return true;					
-					if (data instanceof ComplexMarketView)
-						return true;
-					if (data instanceof MDOrderBook)
-						return true;					
-					if (data instanceof StrategyEvent)
-						return true;					
-					if (data instanceof TradeReport)
-						return true;
-                    return data instanceof BaseLightweightMDFeedEvent;
-                }
-			};
+		return new TypeDataFilter(this,
+				RoutedTradeOrder.class,
+				TradeOrder.class,
+				AcceptStrategyOrderExecution.class,
+				DoneStrategyOrderExecution.class,
+				InterruptedStrategyOrderExecution.class,
+				ReplacedStrategyOrderExecution.class,
+				RejectedManageStrategyOrderExecution.class,
+				InstrumentRiskValue.class,
+				ComplexMarketView.class,
+				MDOrderBook.class,
+				MarketViewDelta.class,
+				OrderBookDelta.class,
+				StrategyEvent.class,
+				TradeReport.class,
+				BaseLightweightMDFeedEvent.class);
 	}
 
 	@Override
@@ -139,6 +126,9 @@ public class StrategyEventsStreamer extends DataStreamer
 		typeRegistrator.registerType("InstrumentRiskValue", InstrumentRiskValue.class);
 		typeRegistrator.registerType("ComplexMarketView", ComplexMarketView.class);
 		typeRegistrator.registerType("MDOrderBook", MDOrderBook.class);				
+		typeRegistrator.registerType("MarketViewDelta", MarketViewDelta.class);
+		typeRegistrator.registerType("OrderBookDelta", OrderBookDelta.class);
+		typeRegistrator.registerType("long[]", long[].class);
 		typeRegistrator.registerType("OVWAP", OWAP.class);
 		typeRegistrator.registerType("OVWAP$OWAPSides", OWAP.OWAPSides.class);
 		typeRegistrator.registerType("VWAP", VWAP.class);
@@ -160,6 +150,7 @@ public class StrategyEventsStreamer extends DataStreamer
 		typeRegistrator.registerType("TradeReport", TradeReport.class);
 		
 		typeRegistrator.registerType("BaseLightweightMDFeedEvent", BaseLightweightMDFeedEvent.class);		
+		typeRegistrator.registerType("SharedOrderBookView", SharedOrderBookView.class);
 	}
 
 }
@@ -17,14 +17,13 @@ package com.quantfabric.algo.trading.execution.tradeMonitor;
 
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.GregorianCalendar;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
-import java.util.Timer;
-import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -38,68 +37,49 @@ import com.quantfabric.algo.trading.execution.report.ComplexOrderExecution;
 import com.quantfabric.algo.trading.execution.tradeMonitor.OrderExecutionState.ExecutionStatus;
 import com.quantfabric.algo.trading.execution.tradeMonitor.OrderExecutionState.TradingStatus;
 
+/**
+ * Execution states of the orders of a batch. All maps are concurrent, so the strategy thread
+ * and the execution report threads only contend on the same order or complex order.
+ * <p>
+ * Orders are indexed by instrument and by complex order attributes. Completed orders are
+ * queued in completion order and removed once they are older than {@link #COMPLETED_ORDER_RETENTION},
+ * the expiry runs incrementally on new and completed orders and only looks at the expired head
+ * of the queue.
+ */
 public class ExecutionBatch
 {
 	private static final Logger log = LoggerFactory.getLogger(ExecutionBatch.class);
 	
-	private final Map<String, OrderExecutionState> deals = new HashMap<String, OrderExecutionState>();
-	private final Map<String, ComplexOrderExecution> complexExecutions =
-		new HashMap<String, ComplexOrderExecution>();
-	private final Map<String, Map<String, ComplexOrderExecution>> complexExecutionsByInstrument =
-		new HashMap<String, Map<String, ComplexOrderExecution>>();
-	private final Map<String, Double> positions = new HashMap<String, Double>();
-	
-	private final Timer collectorTimer = new Timer();
-	
-	public ExecutionBatch()
-	{
-		setupCompletedOrderCollector(10000L);
-	}
+	public static final long COMPLETED_ORDER_RETENTION = 10000L;
 	
-	private Set<String> getDealsOrderReferences()
+	private static class CompletedOrder
 	{
-		synchronized (deals)
-		{		
-			return new HashSet<String>(deals.keySet());
+		private final OrderExecutionState state;
+		private final long completedAt = System.currentTimeMillis();
+		
+		CompletedOrder(OrderExecutionState state)
+		{
+			this.state = state;
 		}
 	}
 	
-	private void setupCompletedOrderCollector(final long millisecondsOld)
-	{
-		TimerTask collector = new TimerTask()
-		{
-			@Override
-			public void run()
-			{
-				log.debug("Start completed orders collector");
-				Set<String> orderReferences = getDealsOrderReferences();
-				for (String orderReference : orderReferences)
-				{
-					OrderExecutionState orderExecutionState = getOrderExecutionState(orderReference);
-					if (orderExecutionState != null && orderExecutionState.isCompleted())
-					{
-						long old = GregorianCalendar.getInstance().getTime().getTime() - 
-							orderExecutionState.getTimeOfComplete().getTime();
-						if (old > millisecondsOld)
-						{
-							log.debug("remove completed order (" + orderReference + ")");
-							deleteOrderExecutionState(orderReference);
-						}
-					}					
-				}
-			}
-		};
-		
-		collectorTimer.schedule(collector, 30000, 30000);
-	}
-
+	private final Map<String, OrderExecutionState> deals = new ConcurrentHashMap<String, OrderExecutionState>();
+	private final Map<String, Set<OrderExecutionState>> dealsByInstrument = 
+		new ConcurrentHashMap<String, Set<OrderExecutionState>>();
+	private final Map<String, Map<Integer, OrderExecutionState>> dealsByComplexOrder = 
+		new ConcurrentHashMap<String, Map<Integer, OrderExecutionState>>();
+	private final Queue<CompletedOrder> completedDeals = new ConcurrentLinkedQueue<CompletedOrder>();
+	
+	private final Map<String, ComplexOrderExecution> complexExecutions =
+		new ConcurrentHashMap<String, ComplexOrderExecution>();
+	private final Map<String, Map<String, ComplexOrderExecution>> complexExecutionsByInstrument =
+		new ConcurrentHashMap<String, Map<String, ComplexOrderExecution>>();
+	private final Map<String, Double> positions = new ConcurrentHashMap<String, Double>();
+	
 	public ComplexOrderExecution getComplexOrderExecution(String complexOrderReference)
 	{
-		if (!complexExecutions.containsKey(complexOrderReference))
-			complexExecutions.put(complexOrderReference, 
-					new ComplexOrderExecution(complexOrderReference));
-		
-		return complexExecutions.get(complexOrderReference);
+		return complexExecutions.computeIfAbsent(key(complexOrderReference), 
+				key -> new ComplexOrderExecution(complexOrderReference));
 	}
 	
 	public Collection<ComplexOrderExecution> getComplexOrderExecutions()
@@ -109,78 +89,109 @@ public class ExecutionBatch
 	
 	public void deleteComplexOrderExecution(String complexOrderReference)
 	{
-		complexExecutions.remove(complexOrderReference);
+		complexExecutions.remove(key(complexOrderReference));
 	}
 		
 	public ComplexOrderExecution getComplexOrderExecution(
 			String instrumentId, String complexOrderReference)
 	{
-		if (!complexExecutionsByInstrument.containsKey(instrumentId))
-			complexExecutionsByInstrument.put(instrumentId, 
-					new HashMap<String, ComplexOrderExecution>());
-
-		Map<String, ComplexOrderExecution> complexOrderExecutions =
-			complexExecutionsByInstrument.get(instrumentId);
-		
-		if (!complexOrderExecutions.containsKey(complexOrderReference))
-			complexOrderExecutions.put(complexOrderReference, 
-					new ComplexOrderExecution(complexOrderReference));
-		
-		return complexOrderExecutions.get(complexOrderReference);
+		return getComplexOrderExecutionsMap(instrumentId).computeIfAbsent(key(complexOrderReference), 
+				key -> new ComplexOrderExecution(complexOrderReference));
 	}
 	
 	public Collection<ComplexOrderExecution> getComplexOrderExecutions(
 			String instrumentId)
 	{
-		if (!complexExecutionsByInstrument.containsKey(instrumentId))
-			complexExecutionsByInstrument.put(instrumentId, 
-					new HashMap<String, ComplexOrderExecution>());
-
-		return complexExecutionsByInstrument.get(instrumentId).values();
+		return getComplexOrderExecutionsMap(instrumentId).values();
 	}
 	
 	public void deleteComplexOrderExecution(String instrumentId, String complexOrderReference)
 	{
-		complexExecutionsByInstrument.get(instrumentId).remove(complexOrderReference);
+		getComplexOrderExecutionsMap(instrumentId).remove(key(complexOrderReference));
+	}
+	
+	private Map<String, ComplexOrderExecution> getComplexOrderExecutionsMap(String instrumentId)
+	{
+		return complexExecutionsByInstrument.computeIfAbsent(key(instrumentId), 
+				id -> new ConcurrentHashMap<String, ComplexOrderExecution>());
 	}
 	
 	public OrderExecutionState newOrderExecution(RoutedTradeOrder routedTradeOrder)
 	{
-		synchronized (deals)
-		{	
-			return deals.put(routedTradeOrder.getOrder().getOrderReference(), new OrderExecutionState(routedTradeOrder));
-		}
+		return addOrderExecutionState(new OrderExecutionState(routedTradeOrder));
 	}
 	
 	public OrderExecutionState newOrderExecution(RoutedTradeOrder order, 
 			String institutionOrderReference, OrderExecutionState replacedOrderExecutionState)
 	{
-		synchronized (deals)
-		{
-			return deals.put(order.getOrder().getOrderReference(), 
-				new OrderExecutionState(order, institutionOrderReference, 
+		return addOrderExecutionState(new OrderExecutionState(order, institutionOrderReference, 
 						replacedOrderExecutionState));
-		}
 	}
 	
-	public OrderExecutionState getOrderExecutionState(String orderReference)
+	private OrderExecutionState addOrderExecutionState(OrderExecutionState deal)
 	{
-		synchronized (deals)
+		expireCompletedOrders();
+		
+		TradeOrder order = deal.getOrder();
+		OrderExecutionState previous = deals.put(order.getOrderReference(), deal);
+		
+		if (previous != null)
+			unindex(previous);
+		
+		dealsByInstrument.computeIfAbsent(key(order.getInstrumentId()), 
+				id -> ConcurrentHashMap.<OrderExecutionState>newKeySet()).add(deal);
+		
+		if (order.getComplexOrderReference() != null)
+			dealsByComplexOrder.computeIfAbsent(order.getComplexOrderReference(), 
+					reference -> new ConcurrentHashMap<Integer, OrderExecutionState>())
+				.put(order.getComplexOrderLegId(), deal);
+		
+		return previous;
+	}
+	
+	/**
+	 * Schedules removal of the order, to be called once the order is marked completed.
+	 */
+	public void orderCompleted(OrderExecutionState orderExecutionState)
+	{
+		completedDeals.offer(new CompletedOrder(orderExecutionState));
+		expireCompletedOrders();
+	}
+	
+	private void expireCompletedOrders()
+	{
+		long now = System.currentTimeMillis();
+		CompletedOrder head;
+		
+		while ((head = completedDeals.peek()) != null && now - head.completedAt > COMPLETED_ORDER_RETENTION)
 		{
-			return deals.get(orderReference);
+			if (completedDeals.remove(head))
+			{
+				String orderReference = head.state.getOrder().getOrderReference();
+				
+				if (deals.get(orderReference) == head.state)
+				{
+					log.debug("remove completed order (" + orderReference + ")");
+					deleteOrderExecutionState(orderReference);
+				}
+			}
 		}
 	}
 	
+	public OrderExecutionState getOrderExecutionState(String orderReference)
+	{
+		return deals.get(orderReference);
+	}
+	
+	/**
+	 * @return the latest order registered with the complex attributes
+	 */
 	public OrderExecutionState getOrderExecutionStateByComplexAttr(
 			String complexOrderReference, int complexOrderLegId)
 	{
-		for (OrderExecutionState orderExecutionState : getOrdersExecutionState())
-			if (orderExecutionState.getOrder().getComplexOrderReference().
-					equals(complexOrderReference) &&
-				orderExecutionState.getOrder().getComplexOrderLegId() == complexOrderLegId)
-				return orderExecutionState;
+		Map<Integer, OrderExecutionState> legs = dealsByComplexOrder.get(complexOrderReference);
 		
-		return null;		
+		return legs == null ? null : legs.get(complexOrderLegId);
 	}
 	
 	public List<OrderExecutionState> getOppositeActiveOrders(TradeOrder tradeOrder)
@@ -188,10 +199,10 @@ public class ExecutionBatch
 		ArrayList<OrderExecutionState> listOfOpositeActiveOrder = 
 			new ArrayList<OrderExecutionState>();
 		
-		for (OrderExecutionState orderExecutionState : getActiveOrders(false, false))
+		for (OrderExecutionState orderExecutionState : getInstrumentOrders(tradeOrder.getInstrumentId()))
 		{
 			TradeOrder activeOrder = orderExecutionState.getOrder();
-			if (activeOrder.getInstrumentId().equals(tradeOrder.getInstrumentId()) && 
+			if (orderExecutionState.getExecutionStatus() == ExecutionStatus.Active && 
 					activeOrder.getOrderSide() != tradeOrder.getOrderSide())
 				listOfOpositeActiveOrder.add(orderExecutionState);					
 		}
@@ -199,37 +210,32 @@ public class ExecutionBatch
 		return listOfOpositeActiveOrder;
 	}
 	
-	/*public OrderExecutionState getOrderExecutionStateByReplacemetOrderReference(
-			String replacemetOrderReference)
-	{
-		for (OrderExecutionState orderExecutionState : deals.values())	
-			if (orderExecutionState.getReplacementOrderReference().equals(replacemetOrderReference))
-				return orderExecutionState;
-		
-		return null;
-	}*/
-	
 	public Collection<OrderExecutionState> getOrdersExecutionState()
 	{
-		synchronized (deals)
-		{		
-			return new ArrayList<OrderExecutionState>(deals.values());
-		}
+		return new ArrayList<OrderExecutionState>(deals.values());
 	}
 	
 	public List<OrderExecutionState> getActiveOrders(Instrument instrument, boolean includeAcceptPendingOrders, boolean includeReplacePendingOrders)
 	{
-		ArrayList<OrderExecutionState> listOfActiveOrder = new ArrayList<OrderExecutionState>();
-		for (OrderExecutionState deal : getActiveOrders(includeAcceptPendingOrders, includeReplacePendingOrders))
-			if (deal.getOrder().getInstrument().getId().equals(instrument.getId()))
-					listOfActiveOrder.add(deal);
-		return listOfActiveOrder;
+		return filterActiveOrders(getInstrumentOrders(instrument.getId()), 
+				includeAcceptPendingOrders, includeReplacePendingOrders);
+	}
+	
+	public List<OrderExecutionState> getInstrumentOrders(Instrument instrument)
+	{
+		return new ArrayList<OrderExecutionState>(getInstrumentOrders(instrument.getId()));
 	}
 	
 	public List<OrderExecutionState> getActiveOrders(boolean includeAcceptPendingOrders, boolean includeReplacePendingOrders)
+	{
+		return filterActiveOrders(deals.values(), includeAcceptPendingOrders, includeReplacePendingOrders);
+	}
+	
+	private static List<OrderExecutionState> filterActiveOrders(Collection<OrderExecutionState> deals, 
+			boolean includeAcceptPendingOrders, boolean includeReplacePendingOrders)
 	{
 		ArrayList<OrderExecutionState> listOfActiveOrder = new ArrayList<OrderExecutionState>();
-		for (OrderExecutionState deal : getOrdersExecutionState())
+		for (OrderExecutionState deal : deals)
 			if (deal.getExecutionStatus() == ExecutionStatus.Active || 
 				(includeAcceptPendingOrders && deal.getExecutionStatus() == ExecutionStatus.OrderAcceptPending) || 
 				(includeReplacePendingOrders && deal.getExecutionStatus() == ExecutionStatus.OrderReplacePending))
@@ -239,10 +245,17 @@ public class ExecutionBatch
 		return listOfActiveOrder;
 	}
 	
+	private Collection<OrderExecutionState> getInstrumentOrders(String instrumentId)
+	{
+		Set<OrderExecutionState> instrumentDeals = dealsByInstrument.get(key(instrumentId));
+		
+		return instrumentDeals == null ? Collections.<OrderExecutionState>emptySet() : instrumentDeals;
+	}
+	
 	public Collection<OrderExecutionState> getInterruptedOrders(boolean includeWithEmptyTrading)
 	{
 		ArrayList<OrderExecutionState> listOfActiveOrder = new ArrayList<OrderExecutionState>();
-		for (OrderExecutionState deal : getOrdersExecutionState())
+		for (OrderExecutionState deal : deals.values())
 			if (deal.getExecutionStatus() == ExecutionStatus.Interrupted && 
 					(includeWithEmptyTrading || deal.getTradingStatus() != TradingStatus.Empty))				
 				listOfActiveOrder.add(deal);
@@ -256,40 +269,55 @@ public class ExecutionBatch
 	
 	public int deleteOrderExecutionState(String orderReference)
 	{
-		synchronized (deals)
-		{			
-	
-			OrderExecutionState deal = deals.get(orderReference);
-			if (deal != null)
-			{		
-				log.debug("delete execution state of order (" + 
-						orderReference + " from execution batch)");
-				
-				if (deal.isReplacer() && !orderReference.equals(deal.getReplacedOrderReference()))
-					deleteOrderExecutionState(deal.getReplacedOrderReference());
-							
-				deals.remove(orderReference);	
+		OrderExecutionState deal = deals.remove(orderReference);
+		if (deal != null)
+		{		
+			log.debug("delete execution state of order (" + 
+					orderReference + " from execution batch)");
+			
+			unindex(deal);
+			
+			if (deal.isReplacer() && !orderReference.equals(deal.getReplacedOrderReference()))
+				deleteOrderExecutionState(deal.getReplacedOrderReference());
+		}
+		return deals.size();
+	}
+	
+	private void unindex(OrderExecutionState deal)
+	{
+		TradeOrder order = deal.getOrder();
+		
+		Set<OrderExecutionState> instrumentDeals = dealsByInstrument.get(key(order.getInstrumentId()));
+		if (instrumentDeals != null)
+			instrumentDeals.remove(deal);
+		
+		if (order.getComplexOrderReference() != null)
+		{
+			Map<Integer, OrderExecutionState> legs = dealsByComplexOrder.get(order.getComplexOrderReference());
+			if (legs != null)
+			{
+				legs.remove(order.getComplexOrderLegId(), deal);
+				if (legs.isEmpty())
+					dealsByComplexOrder.remove(order.getComplexOrderReference(), legs);
 			}
-			return deals.size();
 		}
 	}
 
 	public void addPosition(String instrumentId, double size)
 	{
-		positions.put(instrumentId, getPositionByInstrument(instrumentId) + size);
+		positions.merge(key(instrumentId), size, Double::sum);
 	}
 	
 	public void subPosition(String instrumentId, double size)
 	{
-		positions.put(instrumentId, getPositionByInstrument(instrumentId) - size);
+		positions.merge(key(instrumentId), -size, Double::sum);
 	}
 	
 	public double getPositionByInstrument(String instrumentId)
 	{
-		if (!positions.containsKey(instrumentId))
-			return 0;
+		Double position = positions.get(key(instrumentId));
 		
-		return positions.get(instrumentId);
+		return position == null ? 0 : position;
 	}
 	
 	public void updateOrderState(TradeOrder order, Trade tradeRep) {
@@ -302,26 +330,43 @@ public class ExecutionBatch
 		ComplexOrderExecution complexOrderExecutionByInstrument = getComplexOrderExecution(instrumentId, complexOrderReference);
 		ComplexOrderExecution complexOrderExecution = this.getComplexOrderExecution(complexOrderReference);
 		
-		if (complexOrderExecutionByInstrument != null) {
+		// legs of a complex order are reported on different order stripes
+		synchronized (complexOrderExecutionByInstrument) {
 			complexOrderExecutionByInstrument.update(order, tradeRep);
 		}
-		if (complexOrderExecution != null) {
+		synchronized (complexOrderExecution) {
 			complexOrderExecution.update(order, tradeRep);
 		}
 	}
 	
 	public void checkAndDeleteComplexOrderExecution(String instrumentId, String reference) {
-		ComplexOrderExecution complexOrderExecution = getComplexOrderExecution(reference);
-		ComplexOrderExecution complexOrderExecutionByInstrument = getComplexOrderExecution(instrumentId, reference);
-		if(complexOrderExecution != null && complexOrderExecution.getLeavesSize() == 0){
-			deleteComplexOrderExecution(reference);
+		ComplexOrderExecution complexOrderExecution = complexExecutions.get(key(reference));
+		ComplexOrderExecution complexOrderExecutionByInstrument = getComplexOrderExecutionsMap(instrumentId).get(key(reference));
+		
+		if (complexOrderExecution != null) {
+			synchronized (complexOrderExecution) {
+				if (complexOrderExecution.getLeavesSize() == 0)
+					complexExecutions.remove(key(reference), complexOrderExecution);
+			}
 		}
 		
-		if(complexOrderExecutionByInstrument != null && complexOrderExecutionByInstrument.getLeavesSize() == 0){
-			deleteComplexOrderExecution(instrumentId, reference);
+		if (complexOrderExecutionByInstrument != null) {
+			synchronized (complexOrderExecutionByInstrument) {
+				if (complexOrderExecutionByInstrument.getLeavesSize() == 0)
+					getComplexOrderExecutionsMap(instrumentId).remove(key(reference), complexOrderExecutionByInstrument);
+			}
 		}
 	}
 
+	/**
+	 * Concurrent maps don't take <code>null</code> keys, orders without instrument or complex
+	 * order reference are kept under the empty key.
+	 */
+	private static String key(String value)
+	{
+		return value == null ? "" : value;
+	}
+
 	public void updatePosition(TradeOrder order, Trade tradeRep) {
 		if (order.getOrderSide() == OrderSide.BUY) {
 			this.addPosition(order.getInstrumentId(), tradeRep.getQuantity());
@@ -29,6 +29,7 @@ import com.quantfabric.algo.order.report.Replaced;
 import com.quantfabric.algo.order.report.Trade;
 import com.quantfabric.algo.trading.execution.RoutedTradeOrder;
 import com.quantfabric.algo.trading.execution.commands.ReplaceStrategyOrderCommand;
+import com.quantfabric.util.latency.LatencyStage;
 
 public class OrderExecutionState
 {
@@ -69,6 +70,7 @@ public class OrderExecutionState
 	private ExecutionStatus executionStatus;
 	private TradingStatus tradingStatus;
 	private long ackRoundTrip;
+	private final long submittedNanos = LatencyStage.start();
 	
 	public OrderExecutionState(RoutedTradeOrder routedTradeOrder)
 	{
@@ -213,6 +215,7 @@ public class OrderExecutionState
 		setExecutionStatus(ExecutionStatus.Active);
 		setInstitutionOrderReference(acceptedRep.getInstitutionOrderReference());
 		setAckRoundTrip(calculateRoundTripLatency(getOrder(), acceptedRep));
+		LatencyStage.VENUE_ACK.recordSince(submittedNanos);
 	}
 	
 	public void orderCancelPending()
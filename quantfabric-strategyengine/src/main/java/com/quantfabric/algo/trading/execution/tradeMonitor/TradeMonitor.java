@@ -15,7 +15,11 @@
  */
 package com.quantfabric.algo.trading.execution.tradeMonitor;
 
-import java.util.Vector;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -67,7 +71,7 @@ public class TradeMonitor
 		private long minValue = 0L;
 		private long maxValue = 0L;
 		
-		public void addMesurement(long value)
+		public synchronized void addMesurement(long value)
 		{
 			mesurementCount++;
 			totalTripTime += value;
@@ -80,19 +84,19 @@ public class TradeMonitor
 		}
 		
 		@Override
-		public int getMesurementCount()
+		public synchronized int getMesurementCount()
 		{
 			return mesurementCount;
 		}
 		
 		@Override
-		public long getTotalTripTime()
+		public synchronized long getTotalTripTime()
 		{
 			return totalTripTime;
 		}
 		
 		@Override
-		public long getMeanValue()
+		public synchronized long getMeanValue()
 		{
 			if (mesurementCount == 0)
 				return 0L;
@@ -101,19 +105,29 @@ public class TradeMonitor
 		}
 
 		@Override
-		public long getMaxValue()
+		public synchronized long getMaxValue()
 		{
 			return maxValue;
 		}
 
 		@Override
-		public long getMinValue()
+		public synchronized long getMinValue()
 		{
 			return minValue;
 		}
 	}
 	
-	private final Vector<ExecutionBatch> orderBatches = new Vector<ExecutionBatch>();
+	/**
+	 * Number of locks the order flow is striped on, reports of one order are handled
+	 * in order while reports of different orders don't wait for each other.
+	 */
+	private static final int LOCK_STRIPES = 64;
+	
+	private final List<ExecutionBatch> orderBatches = new CopyOnWriteArrayList<ExecutionBatch>();
+	private volatile ExecutionBatch currentOrderBatch;
+	private final Object[] orderLocks = new Object[LOCK_STRIPES];
+	private final Queue<ExecutionReport> pendingReports = new ConcurrentLinkedQueue<ExecutionReport>();
+	private final AtomicBoolean deliveringReports = new AtomicBoolean();
 	private final static Logger log = LoggerFactory.getLogger(TradeMonitor.class);
 	private final TripMeter tripMeter = new TripMeter();
 	private final String name;
@@ -124,6 +138,9 @@ public class TradeMonitor
 	{
 		this.name = name;
 		this.executionProvider = executionProvider;
+		
+		for (int i = 0; i < orderLocks.length; i++)
+			orderLocks[i] = new Object();
 	}
 	
 	public final TripMeter getTripMeter()
@@ -140,39 +157,49 @@ public class TradeMonitor
 	{
 		synchronized (orderBatches)
 		{
-			orderBatches.add(new ExecutionBatch());
-			return getCurrentOrderBatch();
+			ExecutionBatch batch = new ExecutionBatch();
+			orderBatches.add(batch);
+			currentOrderBatch = batch;
+			return batch;
 		}		
 	}
 	
 	public ExecutionBatch getCurrentOrderBatch()
 	{
+		ExecutionBatch batch = currentOrderBatch;
+		
+		if (batch != null)
+			return batch;
+		
 		synchronized (orderBatches)
 		{
-			if (orderBatches.isEmpty())
+			if (currentOrderBatch == null)
 				//add default OrderBatch
 				newOrderBatch();
 			
-			return orderBatches.lastElement();
+			return currentOrderBatch;
 		}
 	}
 	
+	private Object getOrderLock(String orderReference)
+	{
+		return orderLocks[orderReference == null ? 0 : Math.floorMod(orderReference.hashCode(), orderLocks.length)];
+	}
+	
+	/**
+	 * New orders are only put to the concurrent maps of the batch, no lock is taken so
+	 * a report handler may register a replacing order while it holds the lock of the replaced one.
+	 */
 	public void addNewOrder(RoutedTradeOrder routedTradeOrder)
 	{
-		synchronized (this)
-		{	
-			getCurrentOrderBatch().newOrderExecution(routedTradeOrder);
-		}
+		getCurrentOrderBatch().newOrderExecution(routedTradeOrder);
 	}
 	
 	public void addNewOrder(RoutedTradeOrder order, String institutionOrderReference, 
 			OrderExecutionState replacedOrderExecutionState)
 	{
-		synchronized (this)
-		{
-			getCurrentOrderBatch().newOrderExecution(
-				order, institutionOrderReference, replacedOrderExecutionState);
-		}			
+		getCurrentOrderBatch().newOrderExecution(
+			order, institutionOrderReference, replacedOrderExecutionState);
 	}
 	
 	public void orderCanceling(TradeOrder order)
@@ -182,7 +209,7 @@ public class TradeMonitor
 		
 	public void orderCanceling(String orderReference)
 	{
-		synchronized (this)
+		synchronized (getOrderLock(orderReference))
 		{
 			getCurrentOrderBatch().getOrderExecutionState(orderReference).orderCancelPending();
 		}
@@ -193,30 +220,42 @@ public class TradeMonitor
 		orderCanceling(cancelCommand.getOriginalOrderReference());
 	}
 		
+	/**
+	 * The report is handled under the lock of its order, the risk of the instrument is
+	 * aggregated after the lock is released.
+	 */
 	public void appendExecutionReport(OrderExecutionReport orderExecutionReport)
 	{
-		synchronized (this)
+		Instrument riskInstrument = null;
+		
+		synchronized (getOrderLock(getLockingOrderReference(orderExecutionReport)))
 		{		
 			log.debug("Incoming execution report : " + orderExecutionReport);
 			
 			if (orderExecutionReport instanceof Accepted)
-				handleAccptedReport((Accepted)orderExecutionReport);
+				riskInstrument = handleAccptedReport((Accepted)orderExecutionReport);
 			else
 				if (orderExecutionReport instanceof Interrupted)
-					handleInterruptedReport((Interrupted)orderExecutionReport);
+					riskInstrument = handleInterruptedReport((Interrupted)orderExecutionReport);
 				else
 					if (orderExecutionReport instanceof Trade)
-						handleTradeReport((Trade)orderExecutionReport);
+						riskInstrument = handleTradeReport((Trade)orderExecutionReport);
 					else
 						if (orderExecutionReport instanceof Replaced)
-							handleReplacedOrder((Replaced)orderExecutionReport);
+							riskInstrument = handleReplacedOrder((Replaced)orderExecutionReport);
 						else
 							if (orderExecutionReport instanceof InterruptFailed)
-								handleInterruptFailed((InterruptFailed)orderExecutionReport);
-		}		
+								riskInstrument = handleInterruptFailed((InterruptFailed)orderExecutionReport);
+		}
+		
+		if (riskInstrument != null)
+			sendInstrumentRisk(riskInstrument);
 	}
 
-	private void handleInterruptFailed(InterruptFailed interruptFailedRep)
+	/**
+	 * @return instrument which risk has changed, or <code>null</code>
+	 */
+	private Instrument handleInterruptFailed(InterruptFailed interruptFailedRep)
 	{
 		String orderRef = interruptFailedRep.getOriginalLocalOrderReference();
 		/*if (orderRef == null)
@@ -252,8 +291,7 @@ public class TradeMonitor
 		
 			sendReportToStrategy(report);
 			
-			sendInstrumentRisk(order.getInstrument());
-				
+			return order.getInstrument();
 		}
 		else
 		{
@@ -266,19 +304,23 @@ public class TradeMonitor
 						0L,
 						0L,
 						interruptFailedRep.getSourceTimestamp()));
+			
+			return null;
 		}
-		
 	}
 
-	private void handleReplacedOrder(Replaced replacedRep)
+	private Instrument handleReplacedOrder(Replaced replacedRep)
 	{
 		String orderReference = replacedRep.getOriginalLocalOrderReference();
 		OrderExecutionState executionState = 
 			getCurrentOrderBatch().getOrderExecutionState(orderReference);
 		
 		if (executionState == null)
+		{
 			log.error("Obtained Replaced Report (ExecutionId=" + replacedRep.getExecutionID() + 
 					" for unknown Order (" + orderReference + "). Replaced Report will skipped.");
+			return null;
+		}
 		else
 		{
 			RoutedTradeOrder newRoutedOrder = executionState.orderReplaced(replacedRep);
@@ -300,11 +342,11 @@ public class TradeMonitor
 							newOrder.getSize(), 
 							executionState.getOrder().getOrderReference()));
 			
-			sendInstrumentRisk(newOrder.getInstrument());			
+			return newOrder.getInstrument();
 		}
 	}
 
-	private void handleTradeReport(Trade tradeRep) {
+	private Instrument handleTradeReport(Trade tradeRep) {
 		ExecutionBatch currentBatch = getCurrentOrderBatch();
 		String orderReference = getOrderReference(tradeRep);
 		OrderExecutionState executionState = currentBatch.getOrderExecutionState(orderReference);
@@ -312,7 +354,7 @@ public class TradeMonitor
 		if (executionState == null) {
 			log.error("Obtained Trade Report (ExecutionId=" + tradeRep.getExecutionID() + 
 					" for unknown Order (" + orderReference + "). Trade Report will skipped.");
-			return ;
+			return null;
 		}
 		/*else if (isDoubleCheckRequired())
 			if (executionState.isCompleted())
@@ -337,6 +379,7 @@ public class TradeMonitor
 			
 			if (executionState.getExecutionStatus() == ExecutionStatus.Done) {
 				executionState.markCompleted();
+				currentBatch.orderCompleted(executionState);
 				executionProvider.getLoanCancelProvider(executionState.getExecutionPoint()).cancelLoanByTrade(order, tradeRep);					
 				
 				Integer price = tradeRep.getAveragePrice();
@@ -355,7 +398,7 @@ public class TradeMonitor
 						price, quantity, 
 						order.getOrderSide(), extractText(tradeRep)));			
 									
-				sendInstrumentRisk(order.getInstrument());
+				return order.getInstrument();
 			}
 		}
 		else if (tradeRep.getClass() == SoftFilled.class || tradeRep.getClass() == SoftPartialFilled.class) {
@@ -371,6 +414,8 @@ public class TradeMonitor
 						tradeRep.getPrice(), tradeRep.getQuantity(),
 						tradeRep.getOrderStatus() == OrderStatus.ConfirmPartialFillPending));
 			}
+		
+		return null;
 	}
 
 	private String extractText(Trade tradeRep) {
@@ -381,7 +426,7 @@ public class TradeMonitor
 		return text;
 	}
 	
-	private void handleInterruptedReport(Interrupted interruptedRep)
+	private Instrument handleInterruptedReport(Interrupted interruptedRep)
 	{
 		ExecutionBatch currentBatch = getCurrentOrderBatch();
 		String orderReference = interruptedRep.getLocalOrderReference();
@@ -389,8 +434,11 @@ public class TradeMonitor
 			currentBatch.getOrderExecutionState(orderReference);
 		
 		if (executionState == null)
+		{
 			log.error("Obtained Interrupted Report (ExecutionId=" + interruptedRep.getExecutionID() + 
 					" for unknown Order (" + orderReference + "). Interrupted Report will skipped.");
+			return null;
+		}
 		else
 		{						
 			executionState.orderInterrupted(interruptedRep);
@@ -410,6 +458,7 @@ public class TradeMonitor
 				text += interruptedRep.getText();
 			
 			executionState.markCompleted();
+			currentBatch.orderCompleted(executionState);
 			
 			executionProvider.getLoanCancelProvider(executionState.getExecutionPoint()).
 				cancelLoanByInterrupted(order, interruptedRep);
@@ -422,22 +471,25 @@ public class TradeMonitor
 					interruptedRep.getSourceTimestamp(),
 					executionState.getAckRoundTrip(),
 					executionState.getTradingStatus(), text));			
-						
-			sendInstrumentRisk(order.getInstrument());
 			
 			tripMeter.addMesurement(executionState.getAckRoundTrip());
+			
+			return order.getInstrument();
 		}
 	}	
 	
-	private void handleAccptedReport(Accepted acceptedRep)
+	private Instrument handleAccptedReport(Accepted acceptedRep)
 	{
 		String orderReference = getOrderReference(acceptedRep);   
 		OrderExecutionState executionState = 
 			getCurrentOrderBatch().getOrderExecutionState(orderReference);
 		
 		if (executionState == null)
+		{
 			log.error("Obtained Accepted Report (ExecutionId=" + acceptedRep.getExecutionID() + 
 					" for unknown Order (" + orderReference + "). Accepted Report will skipped.");
+			return null;
+		}
 		else
 		{
 			executionState.orderAccepted(acceptedRep);
@@ -455,22 +507,50 @@ public class TradeMonitor
 					order.getSignalSourceTimestamp(),
 					acceptedRep.getSourceTimestamp(), text));		
 			
-			sendInstrumentRisk(order.getInstrument());
+			return order.getInstrument();
 		}
 	}
 	
+	/**
+	 * Reports of different stripes are queued and delivered by one thread at a time, 
+	 * so the strategy never gets two reports concurrently. The report may be delivered 
+	 * by the thread currently delivering, after this method has returned.
+	 */
 	private void sendReportToStrategy(ExecutionReport report)
 	{
 		log.debug("send report to strategy : " + report);
-		executionProvider.sendToStrategy(report);
-	}
+		pendingReports.offer(report);
 		
+		while (!pendingReports.isEmpty() && deliveringReports.compareAndSet(false, true))
+			try
+			{
+				ExecutionReport pendingReport;
+				while ((pendingReport = pendingReports.poll()) != null)
+					executionProvider.sendToStrategy(pendingReport);
+			}
+			finally
+			{
+				deliveringReports.set(false);
+			}
+	}
+	
+	/**
+	 * Every order of the instrument is read under its own lock, one lock at a time,
+	 * so it must be called without holding a stripe.
+	 */
 	private void sendInstrumentRisk(Instrument instrument)
 	{
 		double riskValue = 0;
-		for (OrderExecutionState executionState : getCurrentOrderBatch().getActiveOrders(instrument, false, false))
-			if (executionState != null)
-				riskValue += executionState.getOrder().getSize();
+		for (OrderExecutionState executionState : getCurrentOrderBatch().getInstrumentOrders(instrument))
+		{
+			TradeOrder order = executionState.getOrder();
+			
+			synchronized (getOrderLock(order.getOrderReference()))
+			{
+				if (executionState.getExecutionStatus() == ExecutionStatus.Active)
+					riskValue += order.getSize();
+			}
+		}
 			
 		sendReportToStrategy(new InstrumentRiskValue(instrument.getId(), riskValue));
 	}
@@ -480,6 +560,18 @@ public class TradeMonitor
 		return orderExecutionReport.getLocalOrderReference();
 	}
 	
+	/**
+	 * Replace and cancel reports refer to the order they manage.
+	 */
+	private static String getLockingOrderReference(OrderExecutionReport orderExecutionReport)
+	{
+		if (orderExecutionReport instanceof Replaced)
+			return ((Replaced) orderExecutionReport).getOriginalLocalOrderReference();
+		if (orderExecutionReport instanceof InterruptFailed)
+			return ((InterruptFailed) orderExecutionReport).getOriginalLocalOrderReference();
+		return getOrderReference(orderExecutionReport);
+	}
+	
 	public boolean isDoubleCheckRequired() {
 		return isDoubleCheckRequired;
 	}
@@ -504,7 +596,7 @@ public class TradeMonitor
 
 	public void orderReplacing(String originalOrderReference, ReplaceStrategyOrderCommand replaceCommmand)
 	{
-		synchronized (this)
+		synchronized (getOrderLock(originalOrderReference))
 		{
 			getCurrentOrderBatch().getOrderExecutionState(originalOrderReference).
 				orderReplacePending(replaceCommmand);	
@@ -17,13 +17,13 @@ package com.quantfabric.algo.trading.strategy;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.xml.transform.TransformerException;
 
@@ -35,6 +35,7 @@ import org.w3c.dom.Document;
 import com.espertech.esper.client.Configuration;
 import com.espertech.esper.client.EPStatement;
 import com.quantfabric.algo.market.datamodel.ComplexMarketView;
+import com.quantfabric.algo.market.datamodel.MDEvent;
 import com.quantfabric.algo.market.datamodel.MDOrderBook;
 import com.quantfabric.algo.market.datamodel.StatusChanged;
 import com.quantfabric.algo.order.OCOSettings;
@@ -63,14 +64,13 @@ import com.quantfabric.cep.ICEPProvider;
 import com.quantfabric.cep.QuantfabricCEPException;
 import com.quantfabric.util.Converter;
 import com.quantfabric.util.VariableWrapper;
+import com.quantfabric.util.latency.LatencyStage;
 
 public class BaseTradingStrategy implements TradingStrategy,
         StrategyConfiguration {
 
     private static final Map<String, BaseTradingStrategy> strategies =
-            new HashMap<String, BaseTradingStrategy>();
-
-    //private MarketUpdatesDataStreamPoster marketUpdatesDataStreamPoster;
+            new ConcurrentHashMap<String, BaseTradingStrategy>();
 
     public static BaseTradingStrategy getStrategy(String strategyId) {
         return strategies.get(strategyId);
@@ -92,6 +92,7 @@ public class BaseTradingStrategy implements TradingStrategy,
     private final Map<StrategyEpStatement, EPStatement> stmts = new LinkedHashMap<StrategyEpStatement, EPStatement>();
     private final ICEPProvider cep;
     private final ExecutionProvider executor;
+    private final DeltaMarketUpdatesDataStreamPoster marketUpdatesDataStreamPoster;
     private final StrategyRunner runtime;
     private boolean isRunning;
     private boolean isPlugged;
@@ -290,6 +291,7 @@ public class BaseTradingStrategy implements TradingStrategy,
         this.name = name;
         this.runtime = runtime;
         executor = runtime.getExecutionProvider(this);
+        marketUpdatesDataStreamPoster = new DeltaMarketUpdatesDataStreamPoster(executor);
 
         cepConfig.addEventTypeAutoName("com.quantfabric.algo.trading.strategy.events");
         cepConfig.addEventTypeAutoName("com.quantfabric.algo.order");
@@ -315,6 +317,7 @@ public class BaseTradingStrategy implements TradingStrategy,
 
     @Override
     public void destroyCep() {
+        strategies.remove(getId());
         cep.destroy();
     }
 
@@ -371,6 +374,7 @@ public class BaseTradingStrategy implements TradingStrategy,
                 }
 
             executor.start();
+            marketUpdatesDataStreamPoster.start();
             activateDataSinks();
             isRunning = true;
             signalStrategyStateChanged();
@@ -399,6 +403,7 @@ public class BaseTradingStrategy implements TradingStrategy,
 
             isRunning = false;
             signalStrategyStateChanged();
+            marketUpdatesDataStreamPoster.stop();
             executor.stop();
 
             log.info("Strategy (" + this.getName() + ") was stoped");
@@ -416,6 +421,12 @@ public class BaseTradingStrategy implements TradingStrategy,
     @Override
     public void sendUpdate(final Object data) {
 
+        if (LatencyStage.ENABLED && data instanceof MDEvent) {
+            LatencyStage.MARKET_DATA_TO_STRATEGY.recordSince(((MDEvent) data).receivedNanos());
+        }
+
+        long start = LatencyStage.start();
+
         if (data instanceof StatusChanged) {
             runtime.connectionStatusChanged(this, (StatusChanged) data);
         }
@@ -431,9 +442,13 @@ public class BaseTradingStrategy implements TradingStrategy,
             executor.sendToStrategyDataStream(data);
         }
 
-        if (data instanceof ComplexMarketView || data instanceof MDOrderBook) {
-            executor.sendToStrategyDataStream(data);
+        if (data instanceof ComplexMarketView) {
+            marketUpdatesDataStreamPoster.post((ComplexMarketView) data);
+        } else if (data instanceof MDOrderBook) {
+            marketUpdatesDataStreamPoster.post((MDOrderBook) data);
         }
+
+        LatencyStage.STRATEGY_UPDATE.recordSince(start);
     }
 
     @SuppressWarnings("rawtypes")
@@ -693,6 +708,15 @@ public class BaseTradingStrategy implements TradingStrategy,
         return strategyDataStreamPort;
     }
 
+    /**
+     * Posts full market views and order books of all feeds to the strategy data stream, for a
+     * client just joined the stream.
+     */
+    @Override
+    public void requestStrategyDataSnapshot() {
+        marketUpdatesDataStreamPoster.requestFullPost();
+    }
+
     @Override
     public void submitMarketOrder(String source, String executionPoint,
                                   OrderSide side, String instrumentId, int size, TimeInForceMode timeInForce, int expireSec) {
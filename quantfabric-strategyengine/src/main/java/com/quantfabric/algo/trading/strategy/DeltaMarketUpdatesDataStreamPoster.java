@@ -0,0 +1,426 @@
+/*
+ * Copyright 2022-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.quantfabric.algo.trading.strategy;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.quantfabric.algo.market.datamodel.ComplexMarketView;
+import com.quantfabric.algo.market.datamodel.MDDealableQuote;
+import com.quantfabric.algo.market.datamodel.MDOrderBook;
+import com.quantfabric.algo.market.datamodel.MDPrice;
+import com.quantfabric.algo.market.datamodel.MDTrade;
+import com.quantfabric.algo.market.datamodel.OWAP;
+import com.quantfabric.algo.market.datamodel.VWAP;
+import com.quantfabric.algo.market.dataprovider.orderbook.OrderBookView;
+import com.quantfabric.algo.trading.execution.ExecutionProvider;
+import com.quantfabric.util.Startable;
+
+/**
+ * Coalesces market views and order books posted by a strategy and sends to the strategy data
+ * stream, once per period, only what changed since the previous post of a feed:
+ * a {@link MarketViewDelta} or an {@link OrderBookDelta}. Feeds with nothing changed are not sent.
+ * <p>
+ * The stream is shared by all its clients, so every <code>fullPostInterval</code>-th post of a
+ * feed is the full object, which lets clients that missed a delta catch up. A new client asks
+ * for the full objects of all feeds by {@link #requestFullPost()}.
+ * At most <code>maxPostsPerPeriod</code> market views and as many order books are sent per
+ * period, the feeds left over stay pending, oldest first, and are coalesced further.
+ * <p>
+ * Posting runs on a timer thread of the poster, a slow stream consumer never delays
+ * the timeouts of the shared timer wheel.
+ * <p>
+ * Streams are assembled back into full objects by {@link MarketUpdatesAssembler}.
+ */
+public class DeltaMarketUpdatesDataStreamPoster implements MarketUpdatesDataStreamPoster, Startable
+{
+	public static final long DEFAULT_PERIOD_TO_POST = 250;
+	public static final int DEFAULT_FULL_POST_INTERVAL = 100;
+	public static final int DEFAULT_MAX_POSTS_PER_PERIOD = 64;
+
+	private static final long NONE = Long.MIN_VALUE;
+	private static final int[] VIEW_FIELDS = { MarketViewDelta.TOP_QUOTE, MarketViewDelta.BID_VWAP,
+			MarketViewDelta.OFFER_VWAP, MarketViewDelta.BID_OWAP, MarketViewDelta.OFFER_OWAP };
+	/** offsets of the fields in the values of a view, mid prices follow the last one */
+	private static final int[] VIEW_FIELD_OFFSETS = { 0, 4, 6, 8, 10, 12 };
+	private static final int VIEW_VALUES = 15;
+
+	private final ExecutionProvider executionProvider;
+	private final long periodToPost;
+	private final int fullPostInterval;
+	private final int maxPostsPerPeriod;
+
+	private final Map<String, ComplexMarketView> marketViews = new ConcurrentHashMap<String, ComplexMarketView>();
+	private final Map<String, MDOrderBook> orderBooks = new ConcurrentHashMap<String, MDOrderBook>();
+
+	private final Set<String> updatedMarketViews = new LinkedHashSet<String>();
+	private final Set<String> updatedOrderBooks = new LinkedHashSet<String>();
+
+	// accessed by the posting thread only
+	private final Map<String, PostedMarketView> postedMarketViews = new HashMap<String, PostedMarketView>();
+	private final Map<String, PostedOrderBook> postedOrderBooks = new HashMap<String, PostedOrderBook>();
+
+	private Timer poster;
+	private volatile boolean fullPostRequested;
+
+	public DeltaMarketUpdatesDataStreamPoster(ExecutionProvider executionProvider)
+	{
+		this(executionProvider, DEFAULT_PERIOD_TO_POST, DEFAULT_FULL_POST_INTERVAL, DEFAULT_MAX_POSTS_PER_PERIOD);
+	}
+
+	public DeltaMarketUpdatesDataStreamPoster(ExecutionProvider executionProvider, long periodToPost,
+			int fullPostInterval, int maxPostsPerPeriod)
+	{
+		this.executionProvider = executionProvider;
+		this.periodToPost = periodToPost;
+		this.fullPostInterval = fullPostInterval;
+		this.maxPostsPerPeriod = maxPostsPerPeriod;
+	}
+
+	@Override
+	public synchronized void start()
+	{
+		if (poster != null)
+			return;
+
+		poster = new Timer("MarketUpdatesDataStreamPoster", true);
+		poster.schedule(
+			new TimerTask()
+			{
+				@Override
+				public void run()
+				{
+					postUpdates();
+				}
+			}, periodToPost, periodToPost);
+	}
+
+	@Override
+	public synchronized void stop()
+	{
+		if (poster != null)
+		{
+			poster.cancel();
+			poster = null;
+		}
+	}
+
+	/**
+	 * Makes the next posts of all feeds full objects, e.g. for a client joining the stream.
+	 */
+	public void requestFullPost()
+	{
+		fullPostRequested = true;
+	}
+
+	@Override
+	public void post(ComplexMarketView marketView)
+	{
+		marketViews.put(marketView.getFeedName(), marketView);
+		synchronized (updatedMarketViews)
+		{
+			updatedMarketViews.add(marketView.getFeedName());
+		}
+	}
+
+	@Override
+	public void post(MDOrderBook orderBook)
+	{
+		orderBooks.put(orderBook.getFeedName(), orderBook);
+		synchronized (updatedOrderBooks)
+		{
+			updatedOrderBooks.add(orderBook.getFeedName());
+		}
+	}
+
+	/**
+	 * Sends the pending updates, called by the posting timer once per period.
+	 */
+	synchronized void postUpdates()
+	{
+		if (fullPostRequested)
+		{
+			fullPostRequested = false;
+			postedMarketViews.clear();
+			postedOrderBooks.clear();
+			markUpdated(updatedMarketViews, marketViews.keySet());
+			markUpdated(updatedOrderBooks, orderBooks.keySet());
+		}
+
+		for (String feedName : takeUpdated(updatedMarketViews))
+		{
+			ComplexMarketView marketView = marketViews.get(feedName);
+			if (marketView != null)
+				postMarketView(feedName, marketView);
+		}
+		for (String feedName : takeUpdated(updatedOrderBooks))
+		{
+			MDOrderBook orderBook = orderBooks.get(feedName);
+			if (orderBook != null)
+				postOrderBook(feedName, orderBook);
+		}
+	}
+
+	private static void markUpdated(Set<String> updated, Set<String> feedNames)
+	{
+		synchronized (updated)
+		{
+			updated.addAll(feedNames);
+		}
+	}
+
+	private List<String> takeUpdated(Set<String> updated)
+	{
+		synchronized (updated)
+		{
+			if (updated.isEmpty())
+				return Collections.emptyList();
+
+			List<String> taken = new ArrayList<String>(Math.min(updated.size(), maxPostsPerPeriod));
+			Iterator<String> iterator = updated.iterator();
+
+			while (iterator.hasNext() && taken.size() < maxPostsPerPeriod)
+			{
+				taken.add(iterator.next());
+				iterator.remove();
+			}
+			return taken;
+		}
+	}
+
+	private void postMarketView(String feedName, ComplexMarketView marketView)
+	{
+		long[] values = valuesOf(marketView);
+		PostedMarketView posted = postedMarketViews.get(feedName);
+
+		if (posted == null || posted.deltas >= fullPostInterval)
+		{
+			postedMarketViews.put(feedName, new PostedMarketView(values));
+			executionProvider.sendToStrategyDataStream(marketView);
+			return;
+		}
+
+		if (Arrays.equals(values, posted.values))
+			return;
+
+		MarketViewDelta delta = new MarketViewDelta(feedName, marketView.getSnapshotId(), ++posted.deltas);
+
+		for (int i = 0; i < VIEW_FIELDS.length; i++)
+			if (!Arrays.equals(values, VIEW_FIELD_OFFSETS[i], VIEW_FIELD_OFFSETS[i + 1],
+					posted.values, VIEW_FIELD_OFFSETS[i], VIEW_FIELD_OFFSETS[i + 1]))
+				setField(delta, VIEW_FIELDS[i], marketView);
+
+		delta.setMidVWAPPrice(marketView.getMidVWAPPrice());
+		delta.setMidOWAPPrice(marketView.getMidOWAPPrice());
+		delta.setMidTopPrice(marketView.getMidTopPrice());
+
+		posted.values = values;
+		executionProvider.sendToStrategyDataStream(delta);
+	}
+
+	private static void setField(MarketViewDelta delta, int field, ComplexMarketView marketView)
+	{
+		switch (field)
+		{
+			case MarketViewDelta.TOP_QUOTE:
+				delta.setTopQuote(marketView.getTopQuote());
+				break;
+			case MarketViewDelta.BID_VWAP:
+				delta.setBidVWAP(marketView.getBidVWAP());
+				break;
+			case MarketViewDelta.OFFER_VWAP:
+				delta.setOfferVWAP(marketView.getOfferVWAP());
+				break;
+			case MarketViewDelta.BID_OWAP:
+				delta.setBidOWAP(marketView.getBidOWAP());
+				break;
+			default:
+				delta.setOfferOWAP(marketView.getOfferOWAP());
+		}
+	}
+
+	/**
+	 * @return the compared values of a view, in the order of {@link #VIEW_FIELD_OFFSETS}
+	 */
+	private static long[] valuesOf(ComplexMarketView marketView)
+	{
+		long[] values = new long[VIEW_VALUES];
+		Arrays.fill(values, NONE);
+
+		MDDealableQuote quote = marketView.getTopQuote();
+		if (quote != null)
+		{
+			values[0] = quote.getBidPrice();
+			values[1] = Double.doubleToLongBits(quote.getBidSize());
+			values[2] = quote.getOfferPrice();
+			values[3] = Double.doubleToLongBits(quote.getOfferSize());
+		}
+		fill(values, 4, marketView.getBidVWAP());
+		fill(values, 6, marketView.getOfferVWAP());
+		fill(values, 8, marketView.getBidOWAP());
+		fill(values, 10, marketView.getOfferOWAP());
+		values[12] = marketView.getMidVWAPPrice();
+		values[13] = marketView.getMidOWAPPrice();
+		values[14] = marketView.getMidTopPrice();
+		return values;
+	}
+
+	private static void fill(long[] values, int offset, VWAP vwap)
+	{
+		if (vwap != null)
+		{
+			values[offset] = vwap.getPrice();
+			values[offset + 1] = Double.doubleToLongBits(vwap.getSize());
+		}
+	}
+
+	private static void fill(long[] values, int offset, OWAP owap)
+	{
+		if (owap != null)
+		{
+			values[offset] = owap.getPrice();
+			values[offset + 1] = owap.getAmountOrders();
+		}
+	}
+
+	private void postOrderBook(String feedName, MDOrderBook orderBook)
+	{
+		PostedOrderBook posted = postedOrderBooks.get(feedName);
+		boolean isFull = posted == null || posted.deltas >= fullPostInterval;
+
+		if (isFull)
+		{
+			posted = new PostedOrderBook();
+			postedOrderBooks.put(feedName, posted);
+		}
+
+		// a full post sends the book itself, its levels are not copied
+		List<MDPrice> changedBids = isFull ? null : new ArrayList<MDPrice>();
+		List<MDPrice> changedOffers = isFull ? null : new ArrayList<MDPrice>();
+		long[] removedBids = diff(orderBook.getBids(), posted.bids, changedBids);
+		long[] removedOffers = diff(orderBook.getOffers(), posted.offers, changedOffers);
+		MDTrade bidsTrade = tradeOf(orderBook.getBids());
+		MDTrade offersTrade = tradeOf(orderBook.getOffers());
+
+		if (isFull)
+		{
+			posted.bidsTrade = bidsTrade;
+			posted.offersTrade = offersTrade;
+			executionProvider.sendToStrategyDataStream(orderBook);
+			return;
+		}
+
+		OrderBookDelta delta = new OrderBookDelta(feedName, orderBook.getSnapshotId(),
+				orderBook.getSourceTimestamp(), posted.deltas + 1);
+
+		delta.setChangedBids(changedBids.toArray(new MDPrice[0]));
+		delta.setRemovedBids(removedBids);
+		delta.setChangedOffers(changedOffers.toArray(new MDPrice[0]));
+		delta.setRemovedOffers(removedOffers);
+		if (bidsTrade != posted.bidsTrade)
+			delta.setBidsTrade(posted.bidsTrade = bidsTrade);
+		if (offersTrade != posted.offersTrade)
+			delta.setOffersTrade(posted.offersTrade = offersTrade);
+
+		if (delta.isEmpty())
+			return;
+
+		posted.deltas++;
+		executionProvider.sendToStrategyDataStream(delta);
+	}
+
+	/**
+	 * Collects copies of the new levels and the levels of another size, unless <code>changed</code>
+	 * is <code>null</code>, and replaces the posted levels (price to size) by the current ones.
+	 *
+	 * @return prices of the removed levels
+	 */
+	private static long[] diff(OrderBookView side, Map<Long, Double> posted, List<MDPrice> changed)
+	{
+		List<MDPrice> levels = side == null ? null : side.getAllLevels();
+		Map<Long, Double> current = new HashMap<Long, Double>();
+
+		if (levels != null)
+			for (MDPrice level : levels)
+			{
+				Double size = level.getSize();
+				current.put(level.getPrice(), size);
+				if (changed != null && !size.equals(posted.get(level.getPrice())))
+					changed.add(level.clone());
+			}
+
+		long[] removed = new long[posted.size()];
+		int removedCount = 0;
+
+		for (Long price : posted.keySet())
+			if (!current.containsKey(price))
+				removed[removedCount++] = price;
+
+		posted.clear();
+		posted.putAll(current);
+		return removedCount == removed.length ? removed : Arrays.copyOf(removed, removedCount);
+	}
+
+	private static MDTrade tradeOf(OrderBookView side)
+	{
+		return side == null ? null : side.getTrade();
+	}
+
+	public long getPeriodToPost()
+	{
+		return periodToPost;
+	}
+
+	public int getFullPostInterval()
+	{
+		return fullPostInterval;
+	}
+
+	public int getMaxPostsPerPeriod()
+	{
+		return maxPostsPerPeriod;
+	}
+
+	private static class PostedMarketView
+	{
+		private long[] values;
+		private long deltas;
+
+		PostedMarketView(long[] values)
+		{
+			this.values = values;
+		}
+	}
+
+	private static class PostedOrderBook
+	{
+		private final Map<Long, Double> bids = new HashMap<Long, Double>();
+		private final Map<Long, Double> offers = new HashMap<Long, Double>();
+		private MDTrade bidsTrade;
+		private MDTrade offersTrade;
+		private long deltas;
+	}
+}
@@ -0,0 +1,220 @@
+/*
+ * Copyright 2022-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.quantfabric.algo.trading.strategy;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import com.quantfabric.algo.market.datamodel.ComplexMarketView;
+import com.quantfabric.algo.market.datamodel.MDFeedEvent;
+import com.quantfabric.algo.market.datamodel.MDOrderBook;
+import com.quantfabric.algo.market.datamodel.MDPrice;
+import com.quantfabric.algo.market.datamodel.MDTrade;
+import com.quantfabric.algo.market.dataprovider.orderbook.OrderBookView;
+import com.quantfabric.algo.market.dataprovider.orderbook.OrderBookViewBean;
+
+/**
+ * Client side of {@link DeltaMarketUpdatesDataStreamPoster}: applies the deltas of a strategy
+ * data stream to the last full market views and order books of their feeds. A feed is skipped
+ * from its first full post on until its next one when a delta is missed.
+ * <p>
+ * Every delta builds new objects, the market views and order books returned before are never
+ * changed, so they may be kept or handed to other threads.
+ * <p>
+ * Not thread-safe, a stream is expected to be read by a single thread.
+ */
+public class MarketUpdatesAssembler
+{
+	private final Map<String, AssembledMarketView> marketViews = new HashMap<String, AssembledMarketView>();
+	private final Map<String, AssembledOrderBook> orderBooks = new HashMap<String, AssembledOrderBook>();
+
+	/**
+	 * @return the market view or the order book a stream event (re)builds, the event itself
+	 * when it's of another type or <code>null</code> when a delta can't be applied
+	 */
+	public Object assemble(Object eventBean)
+	{
+		if (eventBean instanceof ComplexMarketView)
+		{
+			ComplexMarketView marketView = (ComplexMarketView) eventBean;
+			marketViews.put(marketView.getFeedName(), new AssembledMarketView(marketView));
+			return marketView;
+		}
+		if (eventBean instanceof MarketViewDelta)
+			return apply((MarketViewDelta) eventBean);
+		if (eventBean instanceof MDOrderBook)
+		{
+			MDOrderBook orderBook = (MDOrderBook) eventBean;
+			orderBooks.put(orderBook.getFeedName(), new AssembledOrderBook(orderBook));
+			return orderBook;
+		}
+		if (eventBean instanceof OrderBookDelta)
+			return apply((OrderBookDelta) eventBean);
+
+		return eventBean;
+	}
+
+	private ComplexMarketView apply(MarketViewDelta delta)
+	{
+		AssembledMarketView assembled = marketViews.get(delta.getFeedName());
+
+		if (assembled == null)
+			return null;
+		if (delta.getSequence() != assembled.sequence + 1)
+		{
+			marketViews.remove(delta.getFeedName());
+			return null;
+		}
+
+		ComplexMarketView marketView = copyOf(assembled.marketView);
+
+		delta.applyTo(marketView);
+		assembled.sequence++;
+		assembled.marketView = marketView;
+		return marketView;
+	}
+
+	private static ComplexMarketView copyOf(ComplexMarketView marketView)
+	{
+		ComplexMarketView copy = new ComplexMarketView(marketView, marketView.getSnapshotId());
+
+		copy.setTopQuote(marketView.getTopQuote());
+		copy.setBidVWAP(marketView.getBidVWAP());
+		copy.setOfferVWAP(marketView.getOfferVWAP());
+		copy.setBidOWAP(marketView.getBidOWAP());
+		copy.setOfferOWAP(marketView.getOfferOWAP());
+		copy.setMidVWAPPrice(marketView.getMidVWAPPrice());
+		copy.setMidOWAPPrice(marketView.getMidOWAPPrice());
+		copy.setMidTopPrice(marketView.getMidTopPrice());
+		return copy;
+	}
+
+	private MDOrderBook apply(OrderBookDelta delta)
+	{
+		AssembledOrderBook assembled = orderBooks.get(delta.getFeedName());
+
+		if (assembled == null)
+			return null;
+		if (delta.getSequence() != assembled.sequence + 1)
+		{
+			orderBooks.remove(delta.getFeedName());
+			return null;
+		}
+
+		assembled.sequence++;
+		apply(assembled.bids, delta.getChangedBids(), delta.getRemovedBids());
+		apply(assembled.offers, delta.getChangedOffers(), delta.getRemovedOffers());
+		if (delta.getBidsTrade() != null)
+			assembled.bidsTrade = delta.getBidsTrade();
+		if (delta.getOffersTrade() != null)
+			assembled.offersTrade = delta.getOffersTrade();
+
+		return assembled.toOrderBook(delta.getSnapshotId(), delta.getSourceTimestamp());
+	}
+
+	private static void apply(Map<Long, MDPrice> levels, MDPrice[] changed, long[] removed)
+	{
+		for (long price : removed)
+			levels.remove(price);
+		for (MDPrice level : changed)
+			levels.put(level.getPrice(), level);
+	}
+
+	private static class AssembledMarketView
+	{
+		private ComplexMarketView marketView;
+		private long sequence;
+
+		AssembledMarketView(ComplexMarketView marketView)
+		{
+			this.marketView = marketView;
+		}
+	}
+
+	private static class AssembledOrderBook
+	{
+		private final MDOrderBook template;
+		private final TreeMap<Long, MDPrice> bids = new TreeMap<Long, MDPrice>(Collections.reverseOrder());
+		private final TreeMap<Long, MDPrice> offers = new TreeMap<Long, MDPrice>();
+		private MDTrade bidsTrade;
+		private MDTrade offersTrade;
+		private long sequence;
+
+		AssembledOrderBook(MDOrderBook orderBook)
+		{
+			this.template = orderBook;
+			this.bidsTrade = fill(bids, orderBook.getBids());
+			this.offersTrade = fill(offers, orderBook.getOffers());
+		}
+
+		private static MDTrade fill(Map<Long, MDPrice> levels, OrderBookView side)
+		{
+			if (side == null)
+				return null;
+			if (side.getAllLevels() != null)
+				for (MDPrice level : side.getAllLevels())
+					levels.put(level.getPrice(), level);
+			return side.getTrade();
+		}
+
+		MDOrderBook toOrderBook(long snapshotId, long sourceTimestamp)
+		{
+			MDOrderBook orderBook = new MDOrderBook((MDFeedEvent) template);
+
+			orderBook.setSnapshotId(snapshotId);
+			orderBook.setSourceTimestamp(sourceTimestamp);
+			orderBook.setBids(toView(template.getBids(), bids, bidsTrade, sourceTimestamp));
+			orderBook.setOffers(toView(template.getOffers(), offers, offersTrade, sourceTimestamp));
+			return orderBook;
+		}
+
+		private static OrderBookView toView(OrderBookView templateSide, Map<Long, MDPrice> levels,
+				MDTrade trade, long sourceTimestamp)
+		{
+			OrderBookViewBean view = new OrderBookViewBean();
+			List<MDPrice> allLevels = new ArrayList<MDPrice>(levels.size());
+
+			for (Entry<Long, MDPrice> entry : levels.entrySet())
+			{
+				MDPrice level = entry.getValue();
+
+				// a level of another depth is copied, books returned before keep theirs
+				if (level.getDepthLevel() != allLevels.size())
+				{
+					level = level.clone();
+					level.setDepthLevel(allLevels.size());
+					entry.setValue(level);
+				}
+				allLevels.add(level);
+			}
+
+			if (templateSide != null)
+			{
+				view.setFeedName(templateSide.getFeedName());
+				view.setOrderBookType(templateSide.getOrderBookType());
+			}
+			view.setAllLevels(allLevels);
+			view.setTrade(trade);
+			view.setSourceTimestamp(sourceTimestamp);
+			return view;
+		}
+	}
+}
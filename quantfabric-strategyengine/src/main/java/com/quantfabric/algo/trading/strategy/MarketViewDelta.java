@@ -0,0 +1,217 @@
+/*
+ * Copyright 2022-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.quantfabric.algo.trading.strategy;
+
+import java.io.Serializable;
+
+import com.quantfabric.algo.market.datamodel.ComplexMarketView;
+import com.quantfabric.algo.market.datamodel.MDDealableQuote;
+import com.quantfabric.algo.market.datamodel.OWAP;
+import com.quantfabric.algo.market.datamodel.VWAP;
+
+/**
+ * Fields of a {@link ComplexMarketView} changed since the previous post of its feed.
+ * Only the components flagged in {@link #getChangedFields()} are set, the mid prices
+ * are always carried.
+ */
+public class MarketViewDelta implements Serializable
+{
+	private static final long serialVersionUID = -3871530862218711604L;
+
+	public static final int TOP_QUOTE = 1;
+	public static final int BID_VWAP = 1 << 1;
+	public static final int OFFER_VWAP = 1 << 2;
+	public static final int BID_OWAP = 1 << 3;
+	public static final int OFFER_OWAP = 1 << 4;
+
+	private String feedName;
+	private long snapshotId;
+	private long sequence;
+	private int changedFields;
+	private MDDealableQuote topQuote;
+	private VWAP bidVWAP;
+	private VWAP offerVWAP;
+	private OWAP bidOWAP;
+	private OWAP offerOWAP;
+	private long midVWAPPrice;
+	private long midOWAPPrice;
+	private long midTopPrice;
+
+	public MarketViewDelta()
+	{
+	}
+
+	public MarketViewDelta(String feedName, long snapshotId, long sequence)
+	{
+		this.feedName = feedName;
+		this.snapshotId = snapshotId;
+		this.sequence = sequence;
+	}
+
+	public boolean isChanged(int field)
+	{
+		return (changedFields & field) != 0;
+	}
+
+	/**
+	 * Applies the changed fields to the view of the previous post.
+	 */
+	public void applyTo(ComplexMarketView marketView)
+	{
+		marketView.setSnapshotId(snapshotId);
+		if (isChanged(TOP_QUOTE))
+			marketView.setTopQuote(topQuote);
+		if (isChanged(BID_VWAP))
+			marketView.setBidVWAP(bidVWAP);
+		if (isChanged(OFFER_VWAP))
+			marketView.setOfferVWAP(offerVWAP);
+		if (isChanged(BID_OWAP))
+			marketView.setBidOWAP(bidOWAP);
+		if (isChanged(OFFER_OWAP))
+			marketView.setOfferOWAP(offerOWAP);
+		marketView.setMidVWAPPrice(midVWAPPrice);
+		marketView.setMidOWAPPrice(midOWAPPrice);
+		marketView.setMidTopPrice(midTopPrice);
+	}
+
+	public String getFeedName()
+	{
+		return feedName;
+	}
+
+	public void setFeedName(String feedName)
+	{
+		this.feedName = feedName;
+	}
+
+	public long getSnapshotId()
+	{
+		return snapshotId;
+	}
+
+	public void setSnapshotId(long snapshotId)
+	{
+		this.snapshotId = snapshotId;
+	}
+
+	/**
+	 * @return number of the delta since the last full post of the feed
+	 */
+	public long getSequence()
+	{
+		return sequence;
+	}
+
+	public void setSequence(long sequence)
+	{
+		this.sequence = sequence;
+	}
+
+	public int getChangedFields()
+	{
+		return changedFields;
+	}
+
+	public void setChangedFields(int changedFields)
+	{
+		this.changedFields = changedFields;
+	}
+
+	public MDDealableQuote getTopQuote()
+	{
+		return topQuote;
+	}
+
+	public void setTopQuote(MDDealableQuote topQuote)
+	{
+		this.topQuote = topQuote;
+		changedFields |= TOP_QUOTE;
+	}
+
+	public VWAP getBidVWAP()
+	{
+		return bidVWAP;
+	}
+
+	public void setBidVWAP(VWAP bidVWAP)
+	{
+		this.bidVWAP = bidVWAP;
+		changedFields |= BID_VWAP;
+	}
+
+	public VWAP getOfferVWAP()
+	{
+		return offerVWAP;
+	}
+
+	public void setOfferVWAP(VWAP offerVWAP)
+	{
+		this.offerVWAP = offerVWAP;
+		changedFields |= OFFER_VWAP;
+	}
+
+	public OWAP getBidOWAP()
+	{
+		return bidOWAP;
+	}
+
+	public void setBidOWAP(OWAP bidOWAP)
+	{
+		this.bidOWAP = bidOWAP;
+		changedFields |= BID_OWAP;
+	}
+
+	public OWAP getOfferOWAP()
+	{
+		return offerOWAP;
+	}
+
+	public void setOfferOWAP(OWAP offerOWAP)
+	{
+		this.offerOWAP = offerOWAP;
+		changedFields |= OFFER_OWAP;
+	}
+
+	public long getMidVWAPPrice()
+	{
+		return midVWAPPrice;
+	}
+
+	public void setMidVWAPPrice(long midVWAPPrice)
+	{
+		this.midVWAPPrice = midVWAPPrice;
+	}
+
+	public long getMidOWAPPrice()
+	{
+		return midOWAPPrice;
+	}
+
+	public void setMidOWAPPrice(long midOWAPPrice)
+	{
+		this.midOWAPPrice = midOWAPPrice;
+	}
+
+	public long getMidTopPrice()
+	{
+		return midTopPrice;
+	}
+
+	public void setMidTopPrice(long midTopPrice)
+	{
+		this.midTopPrice = midTopPrice;
+	}
+}
@@ -0,0 +1,168 @@
+/*
+ * Copyright 2022-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.quantfabric.algo.trading.strategy;
+
+import java.io.Serializable;
+
+import com.quantfabric.algo.market.datamodel.MDOrderBook;
+import com.quantfabric.algo.market.datamodel.MDPrice;
+import com.quantfabric.algo.market.datamodel.MDTrade;
+
+/**
+ * Levels of an {@link MDOrderBook} changed since the previous post of its feed: new levels
+ * and levels of another size, the prices of removed levels and the last trades of the sides
+ * when they changed (<code>null</code> otherwise).
+ */
+public class OrderBookDelta implements Serializable
+{
+	private static final long serialVersionUID = 6040207460916520393L;
+
+	private static final MDPrice[] NO_LEVELS = new MDPrice[0];
+	private static final long[] NO_PRICES = new long[0];
+
+	private String feedName;
+	private long snapshotId;
+	private long sourceTimestamp;
+	private long sequence;
+	private MDPrice[] changedBids = NO_LEVELS;
+	private long[] removedBids = NO_PRICES;
+	private MDPrice[] changedOffers = NO_LEVELS;
+	private long[] removedOffers = NO_PRICES;
+	private MDTrade bidsTrade;
+	private MDTrade offersTrade;
+
+	public OrderBookDelta()
+	{
+	}
+
+	public OrderBookDelta(String feedName, long snapshotId, long sourceTimestamp, long sequence)
+	{
+		this.feedName = feedName;
+		this.snapshotId = snapshotId;
+		this.sourceTimestamp = sourceTimestamp;
+		this.sequence = sequence;
+	}
+
+	public boolean isEmpty()
+	{
+		return changedBids.length == 0 && removedBids.length == 0
+				&& changedOffers.length == 0 && removedOffers.length == 0
+				&& bidsTrade == null && offersTrade == null;
+	}
+
+	public String getFeedName()
+	{
+		return feedName;
+	}
+
+	public void setFeedName(String feedName)
+	{
+		this.feedName = feedName;
+	}
+
+	public long getSnapshotId()
+	{
+		return snapshotId;
+	}
+
+	public void setSnapshotId(long snapshotId)
+	{
+		this.snapshotId = snapshotId;
+	}
+
+	public long getSourceTimestamp()
+	{
+		return sourceTimestamp;
+	}
+
+	public void setSourceTimestamp(long sourceTimestamp)
+	{
+		this.sourceTimestamp = sourceTimestamp;
+	}
+
+	/**
+	 * @return number of the delta since the last full post of the feed
+	 */
+	public long getSequence()
+	{
+		return sequence;
+	}
+
+	public void setSequence(long sequence)
+	{
+		this.sequence = sequence;
+	}
+
+	public MDPrice[] getChangedBids()
+	{
+		return changedBids;
+	}
+
+	public void setChangedBids(MDPrice[] changedBids)
+	{
+		this.changedBids = changedBids;
+	}
+
+	public long[] getRemovedBids()
+	{
+		return removedBids;
+	}
+
+	public void setRemovedBids(long[] removedBids)
+	{
+		this.removedBids = removedBids;
+	}
+
+	public MDPrice[] getChangedOffers()
+	{
+		return changedOffers;
+	}
+
+	public void setChangedOffers(MDPrice[] changedOffers)
+	{
+		this.changedOffers = changedOffers;
+	}
+
+	public long[] getRemovedOffers()
+	{
+		return removedOffers;
+	}
+
+	public void setRemovedOffers(long[] removedOffers)
+	{
+		this.removedOffers = removedOffers;
+	}
+
+	public MDTrade getBidsTrade()
+	{
+		return bidsTrade;
+	}
+
+	public void setBidsTrade(MDTrade bidsTrade)
+	{
+		this.bidsTrade = bidsTrade;
+	}
+
+	public MDTrade getOffersTrade()
+	{
+		return offersTrade;
+	}
+
+	public void setOffersTrade(MDTrade offersTrade)
+	{
+		this.offersTrade = offersTrade;
+	}
+}
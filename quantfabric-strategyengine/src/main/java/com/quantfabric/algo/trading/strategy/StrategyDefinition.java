@@ -45,4 +45,5 @@ public interface StrategyDefinition {
 	void setExecutionAllowed(boolean isExecutionAllowed);
 	void setStrategyDataStreamPort(int port);
 	int getStrategyDataStreamPort();
+	void requestStrategyDataSnapshot();
 }
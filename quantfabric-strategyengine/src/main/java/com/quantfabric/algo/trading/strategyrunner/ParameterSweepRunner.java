@@ -0,0 +1,282 @@
+/*
+ * Copyright 2022-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.quantfabric.algo.trading.strategyrunner;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.espertech.esper.client.Configuration;
+import com.quantfabric.algo.market.datamodel.MDItem;
+import com.quantfabric.algo.trading.execution.SimulatedExecutionProvider;
+import com.quantfabric.algo.trading.execution.report.TradeReport;
+import com.quantfabric.algo.trading.strategy.TradingStrategy;
+
+/**
+ * Backtests one strategy over many parameter sets in parallel.
+ * <p>
+ * The data set is read once into memory and shared read-only by all runs; pooled
+ * market data items are detached on the way in. Every run gets its own strategy
+ * instance with its own CEP runtime and {@link SimulatedExecutionProvider}, is built
+ * and driven by one worker thread from start to end, and has the data set replayed
+ * into it at full speed. The time of a run is the source time of the replayed items:
+ * each run has a clock of its own, moved before every item, which times its CEP runtime
+ * and runs the tasks of its timer wheel (e.g. bars closed by timeout). Results come back
+ * in the order of the parameter sets.
+ */
+public class ParameterSweepRunner
+{
+	private static final Logger log = LoggerFactory.getLogger(ParameterSweepRunner.class);
+	private static final AtomicInteger sweepCount = new AtomicInteger();
+
+	/**
+	 * Creates a configured, not yet started strategy on the given runner.
+	 */
+	public interface StrategyBuilder
+	{
+		TradingStrategy build(String name, StrategyRunner runner) throws Exception;
+	}
+
+	private final String strategyName;
+	private final StrategyBuilder strategyBuilder;
+	private final Object[] dataSet;
+	/** time of the first timed item, the runs start at it */
+	private final long startTime;
+
+	/**
+	 * @param strategyClass class name of a strategy with the
+	 * <code>(String, StrategyRunner, Configuration)</code> constructor that defines
+	 * its own statements and settings
+	 */
+	public ParameterSweepRunner(String strategyName, final String strategyClass, Iterator<?> events)
+	{
+		this(strategyName, new StrategyBuilder() {
+
+			@Override
+			public TradingStrategy build(String name, StrategyRunner runner)
+			{
+				return StrategyFactory.create(name, runner, strategyClass, new Configuration());
+			}
+		}, events);
+	}
+
+	public ParameterSweepRunner(String strategyName, StrategyBuilder strategyBuilder, Iterator<?> events)
+	{
+		this.strategyName = strategyName;
+		this.strategyBuilder = strategyBuilder;
+		this.dataSet = load(events);
+
+		long firstTime = 0;
+		for (int i = 0; i < dataSet.length && firstTime <= 0; i++)
+			firstTime = getEventTime(dataSet[i]);
+		this.startTime = firstTime;
+	}
+
+	/**
+	 * @return source time of a market data item, <code>0</code> for the items without one
+	 */
+	private static long getEventTime(Object event)
+	{
+		return event instanceof MDItem ? Math.max(0, ((MDItem) event).getSourceTimestamp()) : 0;
+	}
+
+	private static Object[] load(Iterator<?> events)
+	{
+		List<Object> items = new ArrayList<Object>();
+
+		try
+		{
+			while (events.hasNext())
+			{
+				Object event = events.next();
+				items.add(event instanceof MDItem ? ((MDItem) event).detach() : event);
+			}
+		}
+		finally
+		{
+			if (events instanceof Closeable)
+				try
+				{
+					((Closeable) events).close();
+				}
+				catch (IOException e)
+				{
+					log.warn("Can't close data set source", e);
+				}
+		}
+		return items.toArray();
+	}
+
+	public int getEventCount()
+	{
+		return dataSet.length;
+	}
+
+	/**
+	 * Runs the parameter sets on as many threads as there are processors.
+	 */
+	public List<SweepResult> run(List<Map<String, String>> parameterSets) throws InterruptedException
+	{
+		return run(parameterSets, Runtime.getRuntime().availableProcessors());
+	}
+
+	public List<SweepResult> run(List<Map<String, String>> parameterSets, int threads) throws InterruptedException
+	{
+		final int sweepId = sweepCount.incrementAndGet();
+		ExecutorService workers = Executors.newFixedThreadPool(
+				Math.max(1, Math.min(threads, parameterSets.size())),
+				new ThreadFactory() {
+					private int count = 0;
+
+					@Override
+					public synchronized Thread newThread(Runnable r)
+					{
+						Thread thread = new Thread(r, "Sweep-" + strategyName + "-" + sweepId + "-" + count++);
+						thread.setDaemon(true);
+						return thread;
+					}
+				});
+
+		try
+		{
+			List<Future<SweepResult>> futures = new ArrayList<Future<SweepResult>>(parameterSets.size());
+
+			for (int i = 0; i < parameterSets.size(); i++)
+			{
+				final String runId = "SWEEP_" + sweepId + "_" + i;
+				final SweepResult result = new SweepResult(i, parameterSets.get(i));
+
+				futures.add(workers.submit(new Callable<SweepResult>() {
+
+					@Override
+					public SweepResult call()
+					{
+						return runOne(runId, result);
+					}
+				}));
+			}
+
+			List<SweepResult> results = new ArrayList<SweepResult>(futures.size());
+
+			for (Future<SweepResult> future : futures)
+				try
+				{
+					results.add(future.get());
+				}
+				catch (ExecutionException e)
+				{
+					// runOne keeps its failures in the result
+					throw new IllegalStateException(e.getCause());
+				}
+
+			return results;
+		}
+		finally
+		{
+			workers.shutdownNow();
+		}
+	}
+
+	private SweepResult runOne(String runId, SweepResult result)
+	{
+		long start = System.currentTimeMillis();
+		SweepStrategyRunner runner = new SweepStrategyRunner(runId);
+		TradingStrategy strategy = null;
+
+		try
+		{
+			if (startTime > 0)
+				runner.advanceTo(startTime);
+
+			strategy = strategyBuilder.build(strategyName + "#" + result.getIndex(), runner);
+
+			if (strategy == null)
+				throw new IllegalStateException("Strategy " + strategyName + " wasn't created");
+
+			for (Map.Entry<String, String> setting : result.getParameters().entrySet())
+				strategy.setSettingValue(setting.getKey(), setting.getValue());
+
+			strategy.setEnabled(true);
+			strategy.start();
+
+			SimulatedExecutionProvider execution = runner.getSimulatedExecutionProvider();
+
+			for (Object event : dataSet)
+			{
+				long eventTime = getEventTime(event);
+
+				// timers due by the event fire before it is seen
+				if (eventTime > 0)
+					runner.advanceTo(eventTime);
+
+				execution.mark(event);
+				strategy.sendUpdate(event);
+
+				for (TradeReport report : execution.drainTradeReports())
+					strategy.sendUpdate(report);
+			}
+
+			strategy.stop();
+		}
+		catch (Exception e)
+		{
+			log.error("Sweep run " + runId + " of " + strategyName + " failed", e);
+			result.setError(e);
+		}
+		finally
+		{
+			if (strategy != null)
+				strategy.destroyCep();
+		}
+
+		SimulatedExecutionProvider execution = runner.getSimulatedExecutionProvider();
+
+		result.setTradeReports(execution.getTradeReports());
+		result.setPositions(execution.getPositions());
+		result.setPnL(execution.getPnL());
+		result.setUnfilledOrders(execution.getUnfilledOrders());
+		result.setElapsedMillis(System.currentTimeMillis() - start);
+
+		return result;
+	}
+
+	/**
+	 * @return a table of the results, one line per run
+	 */
+	public static String formatSummary(List<SweepResult> results)
+	{
+		StringBuilder summary = new StringBuilder(String.format("%4s %12s %7s %9s %9s  %s%n",
+				"run", "pnl", "trades", "unfilled", "millis", "parameters"));
+
+		for (SweepResult result : results)
+			summary.append(result).append(System.lineSeparator());
+
+		return summary.toString();
+	}
+}
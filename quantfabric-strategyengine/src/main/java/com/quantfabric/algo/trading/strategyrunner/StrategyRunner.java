@@ -26,6 +26,7 @@ import com.quantfabric.algo.trading.strategy.DataSink;
 import com.quantfabric.algo.trading.strategy.TradingStrategy;
 import com.quantfabric.cep.ICEPProvider;
 import com.quantfabric.persistence.esper.PersistingUpdateListenerConfig;
+import com.quantfabric.util.timer.TimerWheel;
 
 
 public interface StrategyRunner {
@@ -40,4 +41,12 @@ public interface StrategyRunner {
 	void activateSink(TradingStrategy strategy, DataSink sink) throws Exception;
 	void deActivateSink(TradingStrategy strategy, DataSink sink);
 	void connectionStatusChanged(TradingStrategy recepient, StatusChanged event);
+	
+	/**
+	 * @return wheel for the timers of the strategies, one following the replayed time in a backtest
+	 */
+	default TimerWheel getTimerWheel()
+	{
+		return TimerWheel.getShared();
+	}
 }
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2022-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.quantfabric.algo.trading.strategyrunner;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import com.quantfabric.algo.trading.execution.report.TradeReport;
+
+/**
+ * Outcome of one run of a parameter sweep.
+ */
+public class SweepResult
+{
+	private final int index;
+	private final Map<String, String> parameters;
+	private List<TradeReport> tradeReports = Collections.emptyList();
+	private Map<String, Double> positions = Collections.emptyMap();
+	private double pnl;
+	private int unfilledOrders;
+	private long elapsedMillis;
+	private Exception error;
+
+	SweepResult(int index, Map<String, String> parameters)
+	{
+		this.index = index;
+		this.parameters = Collections.unmodifiableMap(parameters);
+	}
+
+	public int getIndex()
+	{
+		return index;
+	}
+
+	public Map<String, String> getParameters()
+	{
+		return parameters;
+	}
+
+	public List<TradeReport> getTradeReports()
+	{
+		return tradeReports;
+	}
+
+	void setTradeReports(List<TradeReport> tradeReports)
+	{
+		this.tradeReports = tradeReports;
+	}
+
+	/**
+	 * @return net position per symbol at the end of the run
+	 */
+	public Map<String, Double> getPositions()
+	{
+		return positions;
+	}
+
+	void setPositions(Map<String, Double> positions)
+	{
+		this.positions = positions;
+	}
+
+	/**
+	 * @return realized and open profit, open positions marked to the last price
+	 */
+	public double getPnL()
+	{
+		return pnl;
+	}
+
+	void setPnL(double pnl)
+	{
+		this.pnl = pnl;
+	}
+
+	public int getUnfilledOrders()
+	{
+		return unfilledOrders;
+	}
+
+	void setUnfilledOrders(int unfilledOrders)
+	{
+		this.unfilledOrders = unfilledOrders;
+	}
+
+	public long getElapsedMillis()
+	{
+		return elapsedMillis;
+	}
+
+	void setElapsedMillis(long elapsedMillis)
+	{
+		this.elapsedMillis = elapsedMillis;
+	}
+
+	/**
+	 * @return the failure that ended the run early, or <code>null</code>
+	 */
+	public Exception getError()
+	{
+		return error;
+	}
+
+	void setError(Exception error)
+	{
+		this.error = error;
+	}
+
+	public boolean isSucceeded()
+	{
+		return error == null;
+	}
+
+	@Override
+	public String toString()
+	{
+		return String.format("%4d %12.4f %7d %9d %9d  %s%s",
+				index, pnl, tradeReports.size(), unfilledOrders, elapsedMillis, parameters,
+				error == null ? "" : "  FAILED: " + error);
+	}
+}
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2022-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.quantfabric.algo.trading.strategyrunner;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import com.espertech.esper.client.Configuration;
+import com.espertech.esper.client.time.CurrentTimeEvent;
+import com.quantfabric.algo.market.datamodel.StatusChanged;
+import com.quantfabric.algo.market.gateway.MarketGateway;
+import com.quantfabric.algo.trading.execution.ExecutionProvider;
+import com.quantfabric.algo.trading.execution.SimulatedExecutionProvider;
+import com.quantfabric.algo.trading.strategy.DataSink;
+import com.quantfabric.algo.trading.strategy.TradingStrategy;
+import com.quantfabric.cep.CEPProvider;
+import com.quantfabric.cep.ICEPProvider;
+import com.quantfabric.persistence.esper.PersistingUpdateListenerConfig;
+import com.quantfabric.util.timer.ReplayClock;
+import com.quantfabric.util.timer.TimerWheel;
+
+/**
+ * Runtime of a single strategy instance of a parameter sweep: its own CEP runtime
+ * under a URI unique to the run, simulated execution and no market gateway, sinks
+ * or persisters.
+ * <p>
+ * The run has a clock of its own moved by the replayed events: its timer wheel is the one
+ * of the run and its CEP runtimes are timed by it instead of the system time.
+ */
+class SweepStrategyRunner implements StrategyRunner
+{
+	private final String runId;
+	private final ReplayClock clock = new ReplayClock(ReplayClock.MAX_SPEED);
+	private final List<ICEPProvider> cepProviders = new ArrayList<ICEPProvider>();
+	private final SimulatedExecutionProvider executionProvider;
+
+	SweepStrategyRunner(String runId)
+	{
+		this.runId = runId;
+		this.executionProvider = new SimulatedExecutionProvider(runId);
+	}
+
+	SimulatedExecutionProvider getSimulatedExecutionProvider()
+	{
+		return executionProvider;
+	}
+
+	ReplayClock getClock()
+	{
+		return clock;
+	}
+
+	/**
+	 * Moves the run's time to the event, runs the timer tasks due by then and sends
+	 * the time to the CEP runtimes.
+	 */
+	void advanceTo(long eventTime) throws InterruptedException
+	{
+		long previousTime = clock.currentTimeMillis();
+
+		clock.advanceTo(eventTime);
+
+		if (clock.currentTimeMillis() != previousTime)
+			for (ICEPProvider cepProvider : cepProviders)
+				cepProvider.sendEvent(new CurrentTimeEvent(clock.currentTimeMillis()));
+	}
+
+	@Override
+	public TimerWheel getTimerWheel()
+	{
+		return clock.getTimerWheel();
+	}
+
+	@Override
+	public ExecutionProvider getExecutionProvider(TradingStrategy strategy)
+	{
+		return executionProvider;
+	}
+
+	@Override
+	public ICEPProvider getCEPProvider(String strategyName, String cepName, Configuration config)
+	{
+		return getCEPProvider(strategyName, cepName, config,
+				Collections.<PersistingUpdateListenerConfig>emptyList());
+	}
+
+	@Override
+	public ICEPProvider getCEPProvider(String strategyName, String cepName, Configuration config,
+			Collection<PersistingUpdateListenerConfig> persisterConfigs)
+	{
+		Configuration runConfig = config != null ? config : new Configuration();
+		runConfig.getEngineDefaults().getThreading().setInternalTimerEnabled(false);
+
+		ICEPProvider cepProvider = CEPProvider.getCEPProvider(runId + "/" + cepName, runConfig, persisterConfigs);
+
+		if (clock.currentTimeMillis() > 0)
+			cepProvider.sendEvent(new CurrentTimeEvent(clock.currentTimeMillis()));
+		cepProviders.add(cepProvider);
+		return cepProvider;
+	}
+
+	@Override
+	public MarketGateway getMarketGateway()
+	{
+		return null;
+	}
+
+	@Override
+	public void activateSink(TradingStrategy strategy, DataSink sink)
+	{
+	}
+
+	@Override
+	public void deActivateSink(TradingStrategy strategy, DataSink sink)
+	{
+	}
+
+	@Override
+	public void connectionStatusChanged(TradingStrategy recepient, StatusChanged event)
+	{
+	}
+}
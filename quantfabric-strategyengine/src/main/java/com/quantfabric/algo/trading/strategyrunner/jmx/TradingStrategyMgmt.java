@@ -167,6 +167,12 @@ public class TradingStrategyMgmt implements TradingStrategyMXBean
 		return theStrategy.getStrategyDataStreamPort();
 	}
 
+	@Override
+	public void requestStrategyDataSnapshot()
+	{
+		theStrategy.requestStrategyDataSnapshot();
+	}
+
 	@Override
 	public void submitMarketOrder(String source, String executionPoint,
 			OrderSide side, String instrumentId, int size,TimeInForceMode timeInForce,int expireSec)
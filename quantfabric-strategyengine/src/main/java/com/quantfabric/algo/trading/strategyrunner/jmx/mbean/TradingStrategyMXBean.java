@@ -48,4 +48,5 @@ public interface TradingStrategyMXBean extends Startable, ManualTradingProvider
 	boolean isExecutionAllowed();
 	void setExecutionAllowed(boolean isExecutionAllowed);
 	int getStrategyDataStreamPort();
+	void requestStrategyDataSnapshot();
 }
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2022-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.quantfabric.algo.trading.execution;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.quantfabric.algo.market.datamodel.MDItem.MDItemType;
+import com.quantfabric.algo.market.datamodel.MDMessageInfo.MDMessageType;
+import com.quantfabric.algo.market.datamodel.MDPrice;
+import com.quantfabric.algo.market.datamodel.MDPrice.PriceType;
+import com.quantfabric.algo.market.datamodel.MDTrade;
+import com.quantfabric.algo.market.datamodel.MDTrade.MDTradeSide;
+import com.quantfabric.algo.order.TradeOrder;
+import com.quantfabric.algo.order.TradeOrder.OrderSide;
+import com.quantfabric.algo.order.TradeOrder.OrderType;
+import com.quantfabric.algo.trading.execution.report.TradeReport;
+
+public class SimulatedExecutionProviderTest
+{
+	private static final String SYMBOL = "BTCUSDT";
+
+	private final SimulatedExecutionProvider execution = new SimulatedExecutionProvider("test");
+
+	private static MDTrade trade(long time, long price)
+	{
+		return new MDTrade(1L, MDMessageType.INCREMENTAL_REFRESH, "test", new Date(time), 1, 0,
+				MDItemType.TRADE, SYMBOL, price, "USDT", 1, MDTradeSide.BUY);
+	}
+
+	private static MDPrice price(long time, long price)
+	{
+		return new MDPrice(1L, MDMessageType.INCREMENTAL_REFRESH, "test", time, 1, 0,
+				MDItemType.OFFER, "a", SYMBOL, 1, price, 1, PriceType.OFFER, false);
+	}
+
+	private static TradeOrder order(OrderType type, OrderSide side, long price, double size)
+	{
+		TradeOrder order = new TradeOrder("order-" + type + "-" + side + "-" + price);
+		order.setInstrumentId(SYMBOL);
+		order.setOrderType(type);
+		order.setOrderSide(side);
+		order.setPrice(price);
+		order.setSize(size);
+		return order;
+	}
+
+	@Test
+	public void testMarketOrderIsFilledAtLastTrade()
+	{
+		execution.mark(trade(1000L, 100));
+		execution.update("ep", order(OrderType.MARKET, OrderSide.BUY, 0, 2));
+
+		List<TradeReport> reports = execution.drainTradeReports();
+		assertEquals(1, reports.size());
+		assertEquals(100.0, reports.get(0).getLastPx(), 0.0);
+		assertEquals(2.0, reports.get(0).getLastQty(), 0.0);
+		assertEquals(OrderSide.BUY, reports.get(0).getSide());
+		assertEquals(1000L, reports.get(0).getTradeDate());
+		assertEquals(0, execution.getUnfilledOrders());
+		assertEquals(2.0, execution.getPositions().get(SYMBOL), 0.0);
+
+		// delivered once
+		assertTrue(execution.drainTradeReports().isEmpty());
+		assertEquals(1, execution.getTradeReports().size());
+	}
+
+	@Test
+	public void testNonMarketableLimitOrderIsUnfilled()
+	{
+		execution.mark(trade(1000L, 100));
+		execution.update("ep", order(OrderType.LIMIT, OrderSide.BUY, 99, 1));
+		execution.update("ep", order(OrderType.LIMIT, OrderSide.SELL, 101, 1));
+
+		assertTrue(execution.drainTradeReports().isEmpty());
+		assertEquals(2, execution.getUnfilledOrders());
+		assertTrue(execution.getPositions().isEmpty());
+	}
+
+	@Test
+	public void testMarketableLimitOrderIsFilledAtLastTrade()
+	{
+		execution.mark(trade(1000L, 100));
+		execution.update("ep", order(OrderType.LIMIT, OrderSide.BUY, 101, 1));
+		execution.update("ep", order(OrderType.LIMIT, OrderSide.SELL, 100, 1));
+
+		List<TradeReport> reports = execution.drainTradeReports();
+		assertEquals(2, reports.size());
+		assertEquals(100.0, reports.get(0).getLastPx(), 0.0);
+		assertEquals(100.0, reports.get(1).getLastPx(), 0.0);
+		assertEquals(0, execution.getUnfilledOrders());
+	}
+
+	@Test
+	public void testOrderWithoutMarketDataIsUnfilled()
+	{
+		execution.update("ep", order(OrderType.MARKET, OrderSide.BUY, 0, 1));
+
+		assertTrue(execution.drainTradeReports().isEmpty());
+		assertEquals(1, execution.getUnfilledOrders());
+	}
+
+	@Test
+	public void testTradePriceIsPreferredToQuotes()
+	{
+		execution.mark(price(1000L, 90));
+		execution.update("ep", order(OrderType.MARKET, OrderSide.BUY, 0, 1));
+
+		execution.mark(trade(2000L, 100));
+		execution.mark(price(3000L, 120));
+		execution.update("ep", order(OrderType.MARKET, OrderSide.BUY, 0, 1));
+
+		List<TradeReport> reports = execution.drainTradeReports();
+		assertEquals(2, reports.size());
+		assertEquals(90.0, reports.get(0).getLastPx(), 0.0);
+		assertEquals(100.0, reports.get(1).getLastPx(), 0.0);
+		assertEquals(3000L, reports.get(1).getTradeDate());
+	}
+
+	@Test
+	public void testPnLMarksOpenPositionToLastPrice()
+	{
+		execution.mark(trade(1000L, 100));
+		execution.update("ep", order(OrderType.MARKET, OrderSide.BUY, 0, 2));
+		execution.mark(trade(2000L, 110));
+		execution.update("ep", order(OrderType.MARKET, OrderSide.SELL, 0, 1));
+		execution.mark(trade(3000L, 105));
+
+		// realized 10 on the closed unit, open unit marked from 100 to 105
+		assertEquals(15.0, execution.getPnL(), 1e-9);
+		assertEquals(1.0, execution.getPositions().get(SYMBOL), 0.0);
+	}
+}
@@ -0,0 +1,223 @@
+/*
+ * Copyright 2022-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.quantfabric.algo.trading.strategy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.quantfabric.algo.market.datamodel.ComplexMarketView;
+import com.quantfabric.algo.market.datamodel.MDDealableQuote;
+import com.quantfabric.algo.market.datamodel.MDItem.MDItemType;
+import com.quantfabric.algo.market.datamodel.MDMessageInfo.MDMessageType;
+import com.quantfabric.algo.market.datamodel.MDOrderBook;
+import com.quantfabric.algo.market.datamodel.MDPrice;
+import com.quantfabric.algo.market.datamodel.MDPrice.PriceType;
+import com.quantfabric.algo.market.datamodel.VWAP;
+import com.quantfabric.algo.market.datamodel.VWAP.VWAPSides;
+import com.quantfabric.algo.market.dataprovider.orderbook.OrderBookView;
+import com.quantfabric.algo.market.dataprovider.orderbook.OrderBookViewBean;
+import com.quantfabric.algo.trading.execution.ExecutionProvider;
+
+public class MarketUpdatesAssemblerTest
+{
+	private final List<Object> stream = new ArrayList<Object>();
+	private final DeltaMarketUpdatesDataStreamPoster poster = new DeltaMarketUpdatesDataStreamPoster(
+			recordingProvider(stream), DeltaMarketUpdatesDataStreamPoster.DEFAULT_PERIOD_TO_POST, 100, 64);
+	private final MarketUpdatesAssembler assembler = new MarketUpdatesAssembler();
+
+	private static ExecutionProvider recordingProvider(final List<Object> stream)
+	{
+		return (ExecutionProvider) Proxy.newProxyInstance(ExecutionProvider.class.getClassLoader(),
+				new Class<?>[] { ExecutionProvider.class }, (proxy, method, args) -> {
+					if (method.getName().equals("sendToStrategyDataStream"))
+						stream.add(args[0]);
+					return null;
+				});
+	}
+
+	private static MDPrice level(MDItemType side, long price, double size)
+	{
+		return new MDPrice(1L, MDMessageType.SNAPSHOT, "test", 1L, 1, 0, side, side + "" + price, "EURUSD", 1,
+				price, size, PriceType.DEALABLE, true);
+	}
+
+	private static OrderBookView side(MDPrice... levels)
+	{
+		OrderBookViewBean view = new OrderBookViewBean();
+		for (int i = 0; i < levels.length; i++)
+			levels[i].setDepthLevel(i);
+		view.setAllLevels(new ArrayList<MDPrice>(Arrays.asList(levels)));
+		return view;
+	}
+
+	private static MDOrderBook orderBook(long snapshotId, OrderBookView bids, OrderBookView offers)
+	{
+		MDOrderBook orderBook = new MDOrderBook();
+		orderBook.setFeedName("feed");
+		orderBook.setSnapshotId(snapshotId);
+		orderBook.setSourceTimestamp(snapshotId);
+		orderBook.setBids(bids);
+		orderBook.setOffers(offers);
+		return orderBook;
+	}
+
+	private static ComplexMarketView marketView(long snapshotId, long bidPrice, VWAP bidVWAP)
+	{
+		MDDealableQuote quote = new MDDealableQuote();
+		quote.setBidPrice(bidPrice);
+		quote.setBidSize(1);
+
+		ComplexMarketView marketView = new ComplexMarketView(snapshotId);
+		marketView.setFeedName("feed");
+		marketView.setTopQuote(quote);
+		marketView.setBidVWAP(bidVWAP);
+		return marketView;
+	}
+
+	private Object postAndAssemble(Object update)
+	{
+		stream.clear();
+		if (update instanceof MDOrderBook)
+			poster.post((MDOrderBook) update);
+		else
+			poster.post((ComplexMarketView) update);
+		poster.postUpdates();
+
+		assertEquals(1, stream.size());
+		return assembler.assemble(stream.get(0));
+	}
+
+	private static List<Long> prices(OrderBookView side)
+	{
+		List<Long> prices = new ArrayList<Long>();
+		for (MDPrice level : side.getAllLevels())
+		{
+			assertEquals(prices.size(), level.getDepthLevel());
+			prices.add(level.getPrice());
+		}
+		return prices;
+	}
+
+	@Test
+	public void testOrderBookRoundTrip()
+	{
+		MDOrderBook first = (MDOrderBook) postAndAssemble(orderBook(1L,
+				side(level(MDItemType.BID, 100, 1), level(MDItemType.BID, 99, 2)),
+				side(level(MDItemType.OFFER, 101, 1))));
+
+		MDOrderBook second = (MDOrderBook) postAndAssemble(orderBook(2L,
+				side(level(MDItemType.BID, 101, 4), level(MDItemType.BID, 100, 3), level(MDItemType.BID, 98, 1)),
+				side(level(MDItemType.OFFER, 102, 5))));
+
+		assertTrue(stream.get(0) instanceof OrderBookDelta);
+		assertEquals(2L, second.getSnapshotId());
+		assertEquals(Arrays.asList(101L, 100L, 98L), prices(second.getBids()));
+		assertEquals(3.0, second.getBids().getAllLevels().get(1).getSize(), 0.0);
+		assertEquals(Arrays.asList(102L), prices(second.getOffers()));
+
+		// the book assembled before is left as it was
+		assertEquals(Arrays.asList(100L, 99L), prices(first.getBids()));
+		assertEquals(1.0, first.getBids().getAllLevels().get(0).getSize(), 0.0);
+		assertEquals(Arrays.asList(101L), prices(first.getOffers()));
+
+		stream.clear();
+		poster.post(orderBook(3L,
+				side(level(MDItemType.BID, 101, 4), level(MDItemType.BID, 100, 3), level(MDItemType.BID, 98, 1)),
+				side(level(MDItemType.OFFER, 102, 5))));
+		poster.postUpdates();
+		assertTrue(stream.isEmpty());
+	}
+
+	@Test
+	public void testMarketViewRoundTrip()
+	{
+		VWAP bidVWAP = new VWAP(99, 10, 1L, VWAPSides.BID);
+		ComplexMarketView full = marketView(1L, 100, bidVWAP);
+
+		ComplexMarketView first = (ComplexMarketView) postAndAssemble(full);
+		ComplexMarketView second = (ComplexMarketView) postAndAssemble(marketView(2L, 101, bidVWAP));
+
+		assertTrue(stream.get(0) instanceof MarketViewDelta);
+		assertNotSame(first, second);
+		assertEquals(2L, second.getSnapshotId());
+		assertEquals(101, second.getTopQuote().getBidPrice());
+		assertSame(bidVWAP, second.getBidVWAP());
+		assertEquals("feed", second.getFeedName());
+
+		assertEquals(1L, first.getSnapshotId());
+		assertEquals(100, first.getTopQuote().getBidPrice());
+	}
+
+	@Test
+	public void testPostsPeriodically() throws Exception
+	{
+		List<Object> postedStream = new ArrayList<Object>();
+		DeltaMarketUpdatesDataStreamPoster periodicPoster =
+				new DeltaMarketUpdatesDataStreamPoster(recordingProvider(postedStream), 20, 100, 64);
+
+		periodicPoster.start();
+		try
+		{
+			periodicPoster.post(marketView(1L, 100, null));
+			for (int i = 0; i < 100 && postedStream.isEmpty(); i++)
+				Thread.sleep(10);
+			assertEquals(1, postedStream.size());
+
+			periodicPoster.post(marketView(2L, 101, null));
+			for (int i = 0; i < 100 && postedStream.size() < 2; i++)
+				Thread.sleep(10);
+			assertTrue(postedStream.get(1) instanceof MarketViewDelta);
+		}
+		finally
+		{
+			periodicPoster.stop();
+		}
+	}
+
+	@Test
+	public void testFullPostAfterMissedDelta()
+	{
+		VWAP bidVWAP = new VWAP(99, 10, 1L, VWAPSides.BID);
+
+		postAndAssemble(marketView(1L, 100, bidVWAP));
+
+		// the delta of snapshot 2 is lost
+		stream.clear();
+		poster.post(marketView(2L, 101, bidVWAP));
+		poster.postUpdates();
+
+		assertNull(postAndAssemble(marketView(3L, 102, bidVWAP)));
+
+		poster.requestFullPost();
+		stream.clear();
+		poster.postUpdates();
+
+		assertEquals(1, stream.size());
+		assertTrue(stream.get(0) instanceof ComplexMarketView);
+		assertEquals(102, ((ComplexMarketView) assembler.assemble(stream.get(0))).getTopQuote().getBidPrice());
+		assertEquals(103, ((ComplexMarketView) postAndAssemble(marketView(4L, 103, bidVWAP))).getTopQuote().getBidPrice());
+	}
+}
@@ -0,0 +1,194 @@
+/*
+ * Copyright 2022-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.quantfabric.algo.trading.strategyrunner;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.Test;
+
+import com.espertech.esper.client.Configuration;
+import com.espertech.esper.client.EventBean;
+import com.espertech.esper.client.UpdateListener;
+import com.quantfabric.algo.market.datamodel.MDItem.MDItemType;
+import com.quantfabric.algo.market.datamodel.MDMessageInfo.MDMessageType;
+import com.quantfabric.algo.market.datamodel.MDTrade;
+import com.quantfabric.algo.market.datamodel.MDTrade.MDTradeSide;
+import com.quantfabric.algo.order.TradeOrder;
+import com.quantfabric.algo.order.TradeOrder.OrderSide;
+import com.quantfabric.algo.order.TradeOrder.OrderType;
+import com.quantfabric.algo.trading.execution.report.TradeReport;
+import com.quantfabric.algo.trading.strategy.TradingStrategy;
+import com.quantfabric.cep.ICEPProvider;
+import com.quantfabric.util.timer.TimerWheel;
+
+public class ParameterSweepRunnerTest
+{
+	private static final String SYMBOL = "BTCUSDT";
+	private static final long START = 1700000000000L;
+
+	/** what a run of the test strategy has seen, in order */
+	private final Map<String, List<String>> journals = new ConcurrentHashMap<String, List<String>>();
+
+	private static MDTrade trade(long time, long price)
+	{
+		return new MDTrade(1L, MDMessageType.INCREMENTAL_REFRESH, "test", new Date(time), 1, 0,
+				MDItemType.TRADE, SYMBOL, price, "USDT", 1, MDTradeSide.BUY);
+	}
+
+	/**
+	 * Buys once at market when a trade reaches the <code>threshold</code> setting, logs
+	 * the time of its CEP runtime for every trade and a timer set on start.
+	 */
+	private ParameterSweepRunner.StrategyBuilder testStrategy()
+	{
+		return new ParameterSweepRunner.StrategyBuilder()
+		{
+			@Override
+			public TradingStrategy build(final String name, final StrategyRunner runner) throws Exception
+			{
+				final List<String> journal = Collections.synchronizedList(new ArrayList<String>());
+				final Map<String, String> settings = new HashMap<String, String>();
+				final ICEPProvider cep = runner.getCEPProvider(name, "cep", new Configuration());
+				final boolean[] ordered = new boolean[1];
+
+				journals.put(name, journal);
+				cep.addEventType(MDTrade.class);
+				cep.registerStatement("time", "select current_timestamp() as now from MDTrade", false, false);
+				cep.addListener("time", new UpdateListener()
+				{
+					@Override
+					public void update(EventBean[] newEvents, EventBean[] oldEvents)
+					{
+						journal.add("cep " + ((Long) newEvents[0].get("now") - START));
+					}
+				});
+
+				return (TradingStrategy) Proxy.newProxyInstance(TradingStrategy.class.getClassLoader(),
+						new Class<?>[] { TradingStrategy.class }, (proxy, method, args) -> {
+							switch (method.getName())
+							{
+								case "setSettingValue":
+									settings.put((String) args[0], (String) args[1]);
+									break;
+								case "start":
+									final TimerWheel timerWheel = runner.getTimerWheel();
+									timerWheel.schedule(() -> journal.add("timer "
+											+ (timerWheel.getClock().currentTimeMillis() - START)), 2500);
+									break;
+								case "sendUpdate":
+									if (args[0] instanceof MDTrade)
+									{
+										MDTrade trade = (MDTrade) args[0];
+										cep.sendEvent(trade);
+
+										if (!ordered[0] && trade.getPrice() >= Long.parseLong(settings.get("threshold")))
+										{
+											TradeOrder order = new TradeOrder(name + "-buy");
+											order.setInstrumentId(SYMBOL);
+											order.setOrderType(OrderType.MARKET);
+											order.setOrderSide(OrderSide.BUY);
+											order.setSize(1);
+											runner.getExecutionProvider((TradingStrategy) proxy).update("ep", order);
+											ordered[0] = true;
+										}
+									}
+									else if (args[0] instanceof TradeReport)
+										journal.add("fill " + ((TradeReport) args[0]).getLastPx());
+									break;
+								case "destroyCep":
+									cep.destroy();
+									break;
+							}
+							return null;
+						});
+			}
+		};
+	}
+
+	private static Map<String, String> threshold(long price)
+	{
+		return Collections.singletonMap("threshold", String.valueOf(price));
+	}
+
+	@Test
+	public void testRunsAreReplayedInTheirOwnTime() throws Exception
+	{
+		List<MDTrade> trades = new ArrayList<MDTrade>();
+		for (int i = 0; i < 5; i++)
+			trades.add(trade(START + i * 1000L, 100 + i));
+
+		ParameterSweepRunner sweep = new ParameterSweepRunner("test", testStrategy(), trades.iterator());
+		assertEquals(5, sweep.getEventCount());
+
+		List<SweepResult> results = sweep.run(Arrays.asList(threshold(102), threshold(200), threshold(100)), 2);
+
+		assertEquals(3, results.size());
+		for (int i = 0; i < results.size(); i++)
+		{
+			assertEquals(i, results.get(i).getIndex());
+			assertTrue(String.valueOf(results.get(i).getError()), results.get(i).isSucceeded());
+		}
+
+		SweepResult result = results.get(0);
+		assertEquals(1, result.getTradeReports().size());
+		assertEquals(102.0, result.getTradeReports().get(0).getLastPx(), 0.0);
+		assertEquals(1.0, result.getPositions().get(SYMBOL), 0.0);
+		assertEquals(2.0, result.getPnL(), 1e-9);
+
+		result = results.get(1);
+		assertTrue(result.getTradeReports().isEmpty());
+		assertEquals(0.0, result.getPnL(), 0.0);
+
+		assertEquals(4.0, results.get(2).getPnL(), 1e-9);
+
+		// the timer fires in the replayed time, before the event it is due by, and fills
+		// follow the event they were made on
+		assertEquals(Arrays.asList("cep 0", "cep 1000", "cep 2000", "fill 102.0", "timer 3000", "cep 3000", "cep 4000"),
+				journals.get("test#0"));
+		assertEquals(Arrays.asList("cep 0", "cep 1000", "cep 2000", "timer 3000", "cep 3000", "cep 4000"),
+				journals.get("test#1"));
+	}
+
+	@Test
+	public void testFailedRunKeepsItsError() throws Exception
+	{
+		ParameterSweepRunner sweep = new ParameterSweepRunner("test", new ParameterSweepRunner.StrategyBuilder()
+		{
+			@Override
+			public TradingStrategy build(String name, StrategyRunner runner)
+			{
+				throw new IllegalStateException("no strategy");
+			}
+		}, Collections.singletonList(trade(START, 100)).iterator());
+
+		List<SweepResult> results = sweep.run(Collections.singletonList(threshold(100)), 1);
+
+		assertEquals(1, results.size());
+		assertEquals("no strategy", results.get(0).getError().getMessage());
+		assertTrue(results.get(0).getTradeReports().isEmpty());
+	}
+}
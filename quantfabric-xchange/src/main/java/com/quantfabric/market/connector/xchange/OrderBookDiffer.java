@@ -0,0 +1,440 @@
+/*
+ * Copyright 2022-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.quantfabric.market.connector.xchange;
+
+import com.quantfabric.algo.instrument.Instrument;
+import com.quantfabric.algo.market.datamodel.MDDelete;
+import com.quantfabric.algo.market.datamodel.MDItem.MDItemType;
+import com.quantfabric.algo.market.datamodel.MDItemPool;
+import com.quantfabric.algo.market.datamodel.MDMessageInfo.MDMessageType;
+import com.quantfabric.algo.market.datamodel.MDPrice;
+import com.quantfabric.algo.market.gateway.feed.Feed;
+import com.quantfabric.algo.market.gateway.feed.MarketDataFeed;
+import com.quantfabric.messaging.Publisher.PublisherException;
+import com.quantfabric.util.latency.LatencyStage;
+import org.knowm.xchange.dto.marketdata.OrderBook;
+import org.knowm.xchange.dto.trade.LimitOrder;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Turns the full order books of snapshot-only streams into incremental updates.
+ * <p>
+ * The previous book of every feed is kept as price-sorted arrays. A new book is merged
+ * against it and only added or resized levels are published as {@link MDPrice} and
+ * removed levels as {@link MDDelete}, closed by an EndUpdate. The first book of a feed,
+ * and the first one after {@link #reset(Feed)}, is published as a snapshot.
+ * <p>
+ * Levels are identified by their side and price, which is what the order book caches
+ * key incremental updates by. A book is stored before its changes are published, if
+ * publishing fails the next book of the feed is published as a snapshot.
+ * <p>
+ * Items of feeds with pooled items enabled are taken from the differ's pools, the adapter
+ * releases them once published.
+ */
+public class OrderBookDiffer {
+
+	/**
+	 * Receiver of the published items, the adapter owning the differ.
+	 */
+	interface Target {
+
+		String getSourceName();
+
+		void publish(Object item) throws PublisherException;
+
+		void publishNewSnapshot(long messageId, long sourceTimestamp, MarketDataFeed feed) throws PublisherException;
+
+		void publishEndUpdate(MDMessageType messageType, long messageId, long sourceTimestamp, int itemCount)
+				throws PublisherException;
+	}
+
+	private static final class Side {
+
+		private final MDItemType type;
+		private final String idPrefix;
+
+		private long[] prices = new long[0];
+		private double[] sizes = new double[0];
+		private int depth;
+
+		private long[] nextPrices = new long[0];
+		private double[] nextSizes = new double[0];
+		private int nextDepth;
+
+		Side(MDItemType type, String idPrefix) {
+			this.type = type;
+			this.idPrefix = idPrefix;
+		}
+
+		/**
+		 * Loads the levels into the next buffers in ascending price order, empty
+		 * levels are skipped.
+		 */
+		void load(List<LimitOrder> orders, Instrument instrument) {
+			if (nextPrices.length < orders.size()) {
+				nextPrices = new long[orders.size()];
+				nextSizes = new double[orders.size()];
+			}
+
+			nextDepth = 0;
+			boolean ascending = true;
+			boolean descending = true;
+
+			for (int i = 0; i < orders.size(); i++) {
+				LimitOrder order = orders.get(i);
+				double size = order.getOriginalAmount() == null ? 0 : order.getOriginalAmount().doubleValue();
+
+				if (order.getLimitPrice() == null || size <= 0)
+					continue;
+
+				long price = instrument.castToLong(order.getLimitPrice());
+
+				if (nextDepth > 0) {
+					ascending &= price > nextPrices[nextDepth - 1];
+					descending &= price < nextPrices[nextDepth - 1];
+				}
+
+				nextPrices[nextDepth] = price;
+				nextSizes[nextDepth++] = size;
+			}
+
+			if (!ascending) {
+				if (descending)
+					reverse();
+				else
+					sort();
+			}
+		}
+
+		private void reverse() {
+			for (int i = 0, j = nextDepth - 1; i < j; i++, j--) {
+				long price = nextPrices[i];
+				nextPrices[i] = nextPrices[j];
+				nextPrices[j] = price;
+
+				double size = nextSizes[i];
+				nextSizes[i] = nextSizes[j];
+				nextSizes[j] = size;
+			}
+		}
+
+		/**
+		 * Books from XChange are sorted, this is only a fallback. Duplicate prices
+		 * are merged.
+		 */
+		private void sort() {
+			Integer[] order = new Integer[nextDepth];
+			for (int i = 0; i < nextDepth; i++)
+				order[i] = i;
+
+			Arrays.sort(order, (a, b) -> Long.compare(nextPrices[a], nextPrices[b]));
+
+			long[] sortedPrices = new long[nextPrices.length];
+			double[] sortedSizes = new double[nextSizes.length];
+			int depth = 0;
+
+			for (Integer i : order) {
+				if (depth > 0 && sortedPrices[depth - 1] == nextPrices[i])
+					sortedSizes[depth - 1] += nextSizes[i];
+				else {
+					sortedPrices[depth] = nextPrices[i];
+					sortedSizes[depth++] = nextSizes[i];
+				}
+			}
+
+			nextPrices = sortedPrices;
+			nextSizes = sortedSizes;
+			nextDepth = depth;
+		}
+
+		/**
+		 * Makes the loaded levels the current ones, buffers are swapped not copied.
+		 */
+		void commit() {
+			long[] swappedPrices = prices;
+			double[] swappedSizes = sizes;
+
+			prices = nextPrices;
+			sizes = nextSizes;
+			depth = nextDepth;
+
+			nextPrices = swappedPrices;
+			nextSizes = swappedSizes;
+			nextDepth = 0;
+		}
+
+		String itemId(long price) {
+			return idPrefix + price;
+		}
+	}
+
+	private static final class FeedBook {
+
+		private final Side bids = new Side(MDItemType.BID, "B");
+		private final Side offers = new Side(MDItemType.OFFER, "O");
+		private boolean initialized;
+	}
+
+	/**
+	 * Change found by the merge, kept in reusable parallel arrays.
+	 */
+	private static final class Changes {
+
+		private Side[] sides = new Side[16];
+		private long[] prices = new long[16];
+		// negative for removed levels
+		private double[] sizes = new double[16];
+		private int count;
+
+		void add(Side side, long price, double size) {
+			if (count == prices.length) {
+				sides = Arrays.copyOf(sides, count * 2);
+				prices = Arrays.copyOf(prices, count * 2);
+				sizes = Arrays.copyOf(sizes, count * 2);
+			}
+
+			sides[count] = side;
+			prices[count] = price;
+			sizes[count++] = size;
+		}
+
+		void clear() {
+			Arrays.fill(sides, 0, count, null);
+			count = 0;
+		}
+	}
+
+	private final Target adapter;
+	private final Map<Integer, FeedBook> books = new ConcurrentHashMap<>();
+	private final ThreadLocal<Changes> changes = ThreadLocal.withInitial(Changes::new);
+	private final MDItemPool<MDPrice> priceItems = MDItemPool.forPrices(MDItemPool.DEFAULT_CAPACITY);
+	private final MDItemPool<MDDelete> deleteItems = MDItemPool.forDeletes(MDItemPool.DEFAULT_CAPACITY);
+
+	public OrderBookDiffer(final XChangeMarketAdapter adapter) {
+		this(new Target() {
+
+			@Override
+			public String getSourceName() {
+				return adapter.getSourceName();
+			}
+
+			@Override
+			public void publish(Object item) throws PublisherException {
+				adapter.publish(item);
+			}
+
+			@Override
+			public void publishNewSnapshot(long messageId, long sourceTimestamp, MarketDataFeed feed)
+					throws PublisherException {
+				adapter.publishNewSnapshot(messageId, sourceTimestamp, feed);
+			}
+
+			@Override
+			public void publishEndUpdate(MDMessageType messageType, long messageId, long sourceTimestamp,
+					int itemCount) throws PublisherException {
+				adapter.publishEndUpdate(messageType, messageId, sourceTimestamp, itemCount);
+			}
+		});
+	}
+
+	OrderBookDiffer(Target adapter) {
+		this.adapter = adapter;
+	}
+
+	/**
+	 * Forgets the feed's book, the next one is published as a snapshot.
+	 */
+	public void reset(Feed feed) {
+		books.remove(feed.getFeedId());
+	}
+
+	public void resetAll() {
+		books.clear();
+	}
+
+	/**
+	 * Publishes the difference between the book and the previous book of the feed.
+	 *
+	 * @return the number of published items, nothing is published for an unchanged book
+	 */
+	public int publish(MarketDataFeed feed, OrderBook orderBook) throws PublisherException {
+		long receivedNanos = LatencyStage.start();
+		FeedBook book = books.computeIfAbsent(feed.getFeedId(), id -> new FeedBook());
+
+		synchronized (book) {
+			Instrument instrument = feed.getInstrument();
+			long sourceTimestamp = orderBook.getTimeStamp() == null
+					? System.currentTimeMillis() : orderBook.getTimeStamp().getTime();
+
+			book.bids.load(orderBook.getBids(), instrument);
+			book.offers.load(orderBook.getAsks(), instrument);
+
+			boolean incremental = book.initialized;
+			Changes changes = this.changes.get();
+
+			try {
+				if (incremental) {
+					merge(book.bids, changes);
+					merge(book.offers, changes);
+				}
+
+				// subscribers may have seen part of the update, the book is stored anyway
+				// and a failed update makes the next one a snapshot
+				book.bids.commit();
+				book.offers.commit();
+				book.initialized = false;
+
+				int itemCount = incremental
+						? publishChanges(feed, changes, sourceTimestamp, receivedNanos)
+						: publishSnapshot(feed, book, sourceTimestamp, receivedNanos);
+
+				book.initialized = true;
+
+				return itemCount;
+			}
+			finally {
+				changes.clear();
+			}
+		}
+	}
+
+	private int publishSnapshot(MarketDataFeed feed, FeedBook book, long sourceTimestamp, long receivedNanos)
+			throws PublisherException {
+		long messageId = feed.nextSeqId();
+		int itemCount = book.bids.depth + book.offers.depth;
+		int itemIndex = 0;
+
+		adapter.publishNewSnapshot(messageId, sourceTimestamp, feed);
+
+		for (Side side : new Side[] { book.bids, book.offers })
+			for (int i = 0; i < side.depth; i++)
+				adapter.publish(price(MDMessageType.SNAPSHOT, messageId, sourceTimestamp, receivedNanos, itemCount,
+						itemIndex++, feed, side, side.prices[i], side.sizes[i]));
+
+		adapter.publishEndUpdate(MDMessageType.SNAPSHOT, messageId, sourceTimestamp, itemCount);
+
+		return itemCount;
+	}
+
+	private int publishChanges(MarketDataFeed feed, Changes changes, long sourceTimestamp, long receivedNanos)
+			throws PublisherException {
+		int itemCount = changes.count;
+
+		if (itemCount == 0)
+			return 0;
+
+		long messageId = feed.nextSeqId();
+
+		for (int i = 0; i < itemCount; i++) {
+			Side side = changes.sides[i];
+
+			if (changes.sizes[i] < 0)
+				adapter.publish(delete(messageId, sourceTimestamp, receivedNanos, itemCount, i, feed, side,
+						changes.prices[i]));
+			else
+				adapter.publish(price(MDMessageType.INCREMENTAL_REFRESH, messageId, sourceTimestamp, receivedNanos,
+						itemCount, i, feed, side, changes.prices[i], changes.sizes[i]));
+		}
+
+		adapter.publishEndUpdate(MDMessageType.INCREMENTAL_REFRESH, messageId, sourceTimestamp, itemCount);
+
+		return itemCount;
+	}
+
+	/**
+	 * Walks the previous and the loaded levels in price order and records the changes.
+	 */
+	private static void merge(Side side, Changes changes) {
+		int i = 0;
+		int j = 0;
+
+		while (i < side.depth || j < side.nextDepth) {
+			if (j == side.nextDepth || i < side.depth && side.prices[i] < side.nextPrices[j])
+				changes.add(side, side.prices[i++], -1);
+			else if (i == side.depth || side.prices[i] > side.nextPrices[j]) {
+				changes.add(side, side.nextPrices[j], side.nextSizes[j]);
+				j++;
+			}
+			else {
+				if (side.sizes[i] != side.nextSizes[j])
+					changes.add(side, side.nextPrices[j], side.nextSizes[j]);
+				i++;
+				j++;
+			}
+		}
+	}
+
+	private MDPrice price(MDMessageType messageType, long messageId, long sourceTimestamp, long receivedNanos,
+			int itemCount, int itemIndex, MarketDataFeed feed, Side side, long price, double size) {
+		MDPrice item;
+
+		if (!feed.isPooledItems()) {
+			item = new MDPrice(messageId, messageType, adapter.getSourceName(), sourceTimestamp, itemCount, itemIndex,
+					side.type, side.itemId(price), feed.getInstrument().getSymbol(), feed.getFeedId(), price, size,
+					MDPrice.PriceType.DEALABLE, true);
+			item.setReceivedNanos(receivedNanos);
+			return item;
+		}
+
+		item = priceItems.acquire();
+		item.setMessageId(messageId);
+		item.setMessageType(messageType);
+		item.setSourceName(adapter.getSourceName());
+		item.setSourceTimestamp(sourceTimestamp);
+		item.setItemCount(itemCount);
+		item.setItemIndex(itemIndex);
+		item.setMdItemType(side.type);
+		item.setMdItemId(side.itemId(price));
+		item.setSymbol(feed.getInstrument().getSymbol());
+		item.setFeedId(feed.getFeedId());
+		item.setPrice(price);
+		item.setSize(size);
+		item.setPriceType(MDPrice.PriceType.DEALABLE);
+		item.setAggregated(true);
+		item.setReceivedNanos(receivedNanos);
+		return item;
+	}
+
+	private MDDelete delete(long messageId, long sourceTimestamp, long receivedNanos, int itemCount, int itemIndex,
+			MarketDataFeed feed, Side side, long price) {
+		MDDelete item;
+
+		if (!feed.isPooledItems()) {
+			item = new MDDelete(messageId, adapter.getSourceName(), sourceTimestamp, itemCount, itemIndex,
+					side.type, side.itemId(price), feed.getInstrument().getSymbol(), feed.getFeedId());
+			item.setReceivedNanos(receivedNanos);
+			return item;
+		}
+
+		item = deleteItems.acquire();
+		item.setMessageId(messageId);
+		item.setMessageType(MDMessageType.INCREMENTAL_REFRESH);
+		item.setSourceName(adapter.getSourceName());
+		item.setSourceTimestamp(sourceTimestamp);
+		item.setItemCount(itemCount);
+		item.setItemIndex(itemIndex);
+		item.setMdItemType(side.type);
+		item.setMdItemId(side.itemId(price));
+		item.setSymbol(feed.getInstrument().getSymbol());
+		item.setFeedId(feed.getFeedId());
+		item.setReceivedNanos(receivedNanos);
+		return item;
+	}
+}
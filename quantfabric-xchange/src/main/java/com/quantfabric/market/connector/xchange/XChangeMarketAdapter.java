@@ -562,8 +562,14 @@ public abstract  class XChangeMarketAdapter extends BaseMarketAdapter {
 
 	protected void publishEndUpdate(long snapshotId,long sourceTimestamp,int itemCount) throws Publisher.PublisherException {
 
+		publishEndUpdate(MDMessageType.SNAPSHOT, snapshotId, sourceTimestamp, itemCount);
+	}
+
+	protected void publishEndUpdate(MDMessageType messageType, long messageId, long sourceTimestamp, int itemCount)
+			throws Publisher.PublisherException {
+
 		EndUpdate endUpdate =
-				new EndUpdate(snapshotId, MDMessageType.SNAPSHOT,
+				new EndUpdate(messageId, messageType,
 						getSourceName(), sourceTimestamp, itemCount);
 
 		publish(endUpdate);
@@ -0,0 +1,201 @@
+/*
+ * Copyright 2022-2023 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.quantfabric.market.connector.xchange;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.Test;
+import org.knowm.xchange.currency.CurrencyPair;
+import org.knowm.xchange.dto.Order.OrderType;
+import org.knowm.xchange.dto.marketdata.OrderBook;
+import org.knowm.xchange.dto.trade.LimitOrder;
+
+import com.quantfabric.algo.instrument.InstrumentImpl;
+import com.quantfabric.algo.market.datamodel.MDDelete;
+import com.quantfabric.algo.market.datamodel.MDItem.MDItemType;
+import com.quantfabric.algo.market.datamodel.MDMessageInfo.MDMessageType;
+import com.quantfabric.algo.market.datamodel.MDPrice;
+import com.quantfabric.algo.market.dataprovider.FeedNameImpl;
+import com.quantfabric.algo.market.gateway.feed.MarketDataFeed;
+import com.quantfabric.algo.market.gateway.feed.MarketDataFeedImpl;
+import com.quantfabric.messaging.Publisher.PublisherException;
+
+public class OrderBookDifferTest {
+
+	private static final String NEW_SNAPSHOT = "newSnapshot";
+	private static final String END_UPDATE = "endUpdate";
+
+	private static class RecordingTarget implements OrderBookDiffer.Target {
+
+		private final List<Object> items = new ArrayList<>();
+		private int failAt = -1;
+
+		@Override
+		public String getSourceName() {
+			return "test";
+		}
+
+		@Override
+		public void publish(Object item) throws PublisherException {
+			if (items.size() == failAt)
+				throw new PublisherException("subscriber failed");
+			items.add(item);
+		}
+
+		@Override
+		public void publishNewSnapshot(long messageId, long sourceTimestamp, MarketDataFeed feed) {
+			items.add(NEW_SNAPSHOT);
+		}
+
+		@Override
+		public void publishEndUpdate(MDMessageType messageType, long messageId, long sourceTimestamp, int itemCount) {
+			items.add(END_UPDATE);
+		}
+	}
+
+	private final RecordingTarget target = new RecordingTarget();
+	private final OrderBookDiffer differ = new OrderBookDiffer(target);
+	private final MarketDataFeed feed =
+			new MarketDataFeedImpl(new FeedNameImpl("feed"), new InstrumentImpl("BTC", "USDT", 100));
+
+	private static LimitOrder level(OrderType type, String price, String size) {
+		return new LimitOrder(type, new BigDecimal(size), CurrencyPair.BTC_USDT, null, null, new BigDecimal(price));
+	}
+
+	private static OrderBook book(List<LimitOrder> asks, List<LimitOrder> bids) {
+		return new OrderBook(new Date(1000L), asks, bids);
+	}
+
+	private static List<LimitOrder> levels(OrderType type, String... pricesAndSizes) {
+		List<LimitOrder> levels = new ArrayList<>();
+		for (int i = 0; i < pricesAndSizes.length; i += 2)
+			levels.add(level(type, pricesAndSizes[i], pricesAndSizes[i + 1]));
+		return levels;
+	}
+
+	@Test
+	public void testFirstBookIsPublishedAsSnapshot() throws Exception {
+		int count = differ.publish(feed, book(
+				levels(OrderType.ASK, "10.01", "1", "10.02", "2"),
+				levels(OrderType.BID, "10.00", "3", "9.99", "4")));
+
+		assertEquals(4, count);
+		assertEquals(6, target.items.size());
+		assertEquals(NEW_SNAPSHOT, target.items.get(0));
+		assertPrice(target.items.get(1), MDItemType.BID, 999, 4);
+		assertPrice(target.items.get(2), MDItemType.BID, 1000, 3);
+		assertPrice(target.items.get(3), MDItemType.OFFER, 1001, 1);
+		assertPrice(target.items.get(4), MDItemType.OFFER, 1002, 2);
+		assertEquals(MDMessageType.SNAPSHOT, ((MDPrice) target.items.get(1)).getMessageType());
+		assertEquals(END_UPDATE, target.items.get(5));
+	}
+
+	@Test
+	public void testOnlyChangedLevelsArePublished() throws Exception {
+		differ.publish(feed, book(
+				levels(OrderType.ASK, "10.01", "1", "10.02", "2"),
+				levels(OrderType.BID, "10.00", "3", "9.99", "4")));
+		target.items.clear();
+
+		int count = differ.publish(feed, book(
+				levels(OrderType.ASK, "10.01", "1"),
+				levels(OrderType.BID, "10.00", "5", "9.99", "4", "9.98", "1")));
+
+		assertEquals(3, count);
+		assertEquals(4, target.items.size());
+		assertPrice(target.items.get(0), MDItemType.BID, 998, 1);
+		assertPrice(target.items.get(1), MDItemType.BID, 1000, 5);
+		MDDelete delete = (MDDelete) target.items.get(2);
+		assertEquals(MDItemType.OFFER, delete.getMdItemType());
+		assertEquals("O1002", delete.getMdItemId());
+		assertEquals(END_UPDATE, target.items.get(3));
+
+		target.items.clear();
+		assertEquals(0, differ.publish(feed, book(
+				levels(OrderType.ASK, "10.01", "1"),
+				levels(OrderType.BID, "10.00", "5", "9.99", "4", "9.98", "1"))));
+		assertTrue(target.items.isEmpty());
+	}
+
+	@Test
+	public void testUnsortedLevelsAreMerged() throws Exception {
+		differ.publish(feed, book(
+				levels(OrderType.ASK, "10.02", "1", "10.01", "1", "10.02", "2"),
+				levels(OrderType.BID)));
+
+		assertEquals(4, target.items.size());
+		assertPrice(target.items.get(1), MDItemType.OFFER, 1001, 1);
+		assertPrice(target.items.get(2), MDItemType.OFFER, 1002, 3);
+	}
+
+	@Test
+	public void testFailedUpdateIsFollowedBySnapshot() throws Exception {
+		differ.publish(feed, book(
+				levels(OrderType.ASK, "10.01", "1"),
+				levels(OrderType.BID, "10.00", "3")));
+		target.items.clear();
+
+		target.failAt = 1;
+		try {
+			differ.publish(feed, book(
+					levels(OrderType.ASK, "10.02", "1"),
+					levels(OrderType.BID, "9.99", "3")));
+			fail("publishing didn't fail");
+		}
+		catch (PublisherException e) {
+		}
+
+		target.failAt = -1;
+		target.items.clear();
+
+		int count = differ.publish(feed, book(
+				levels(OrderType.ASK, "10.02", "1"),
+				levels(OrderType.BID, "9.99", "3")));
+
+		assertEquals(2, count);
+		assertEquals(NEW_SNAPSHOT, target.items.get(0));
+		assertPrice(target.items.get(1), MDItemType.BID, 999, 3);
+		assertPrice(target.items.get(2), MDItemType.OFFER, 1002, 1);
+		assertEquals(END_UPDATE, target.items.get(3));
+	}
+
+	@Test
+	public void testPooledFeedsTakeItemsFromPool() throws Exception {
+		feed.setPooledItems(true);
+
+		differ.publish(feed, book(
+				levels(OrderType.ASK, "10.01", "1"),
+				levels(OrderType.BID, "10.00", "3")));
+
+		MDPrice price = (MDPrice) target.items.get(1);
+		assertTrue(price.isPooled());
+		assertPrice(price, MDItemType.BID, 1000, 3);
+	}
+
+	private static void assertPrice(Object item, MDItemType type, long price, double size) {
+		MDPrice mdPrice = (MDPrice) item;
+		assertEquals(type, mdPrice.getMdItemType());
+		assertEquals(price, mdPrice.getPrice());
+		assertEquals(size, mdPrice.getSize(), 0.0);
+	}
+}